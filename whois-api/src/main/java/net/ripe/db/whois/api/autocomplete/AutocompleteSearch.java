@@ -4,6 +4,7 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import net.ripe.db.whois.api.fulltextsearch.FullTextAnalyzer;
 import net.ripe.db.whois.api.fulltextsearch.FullTextIndex;
+import net.ripe.db.whois.api.fulltextsearch.IndexTemplate;
 import net.ripe.db.whois.common.dao.RpslObjectDao;
 import net.ripe.db.whois.common.rpsl.AttributeType;
 import net.ripe.db.whois.common.rpsl.ObjectTemplate;
@@ -30,7 +31,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.Nullable;
@@ -92,18 +92,18 @@ public class AutocompleteSearch {
 
                 final TopFieldDocs topDocs = indexSearcher.search(query, MAX_SEARCH_RESULTS, SORT_BY_LOOKUP_KEY, true);
 
+                final List<Document> documents = Lists.newArrayListWithExpectedSize(topDocs.scoreDocs.length);
                 for (ScoreDoc scoreDoc : topDocs.scoreDocs) {
-                    final Document doc = indexSearcher.doc(scoreDoc.doc);
-                    final Map<String, Object> result = Maps.newLinkedHashMap();
-                    final RpslObject rpslObject;
+                    documents.add(indexSearcher.doc(scoreDoc.doc));
+                }
 
-                    try {
-                        rpslObject =   objectDao.getByKey(
-                                            ObjectType.getByName(doc.get(FullTextIndex.OBJECT_TYPE_FIELD_NAME)),
-                                            doc.get(FullTextIndex.LOOKUP_KEY_FIELD_NAME)
-                                        );
+                final Map<Integer, RpslObject> rpslObjects = IndexTemplate.loadObjects(objectDao, documents);
+
+                for (final Document doc : documents) {
+                    final Map<String, Object> result = Maps.newLinkedHashMap();
+                    final RpslObject rpslObject = rpslObjects.get(Integer.parseInt(doc.get(FullTextIndex.PRIMARY_KEY_FIELD_NAME)));
 
-                    } catch (EmptyResultDataAccessException ex) {
+                    if (rpslObject == null) {
                         LOGGER.info("seems like object has been deleted from database");
                         continue;
                     }
@@ -2,13 +2,13 @@ package net.ripe.db.whois.api.fulltextsearch;
 
 import com.google.common.base.CharMatcher;
 import com.google.common.base.Stopwatch;
+import com.google.common.base.Throwables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import net.ripe.db.whois.common.dao.jdbc.JdbcRpslObjectOperations;
 import net.ripe.db.whois.common.dao.jdbc.JdbcStreamingHelper;
 import net.ripe.db.whois.common.domain.CIString;
-import net.ripe.db.whois.common.domain.serials.SerialEntry;
 import net.ripe.db.whois.common.rpsl.AttributeType;
 import net.ripe.db.whois.common.rpsl.RpslAttribute;
 import net.ripe.db.whois.common.rpsl.RpslObject;
@@ -28,7 +28,10 @@ import org.apache.lucene.index.DocValuesType;
 import org.apache.lucene.index.IndexOptions;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
 import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.IOUtils;
 import org.slf4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
@@ -36,13 +39,16 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
+import org.springframework.util.FileSystemUtils;
 
 import javax.annotation.Nullable;
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import javax.sql.DataSource;
+import java.io.File;
 import java.io.IOException;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -51,7 +57,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
@@ -118,20 +128,27 @@ public class FullTextIndex extends RebuildableIndex {
         ATTRIBUTE_FIELD_TYPE.freeze();
     }
 
+    // serials read per query when updating; an object changed more than once in a batch is indexed once
+    private static final int UPDATE_BATCH_SIZE = 10_000;
+
     private final JdbcTemplate jdbcTemplate;
     private final String source;
     private final FacetsConfig facetsConfig;
+    private final int rebuildShards;
 
     @Autowired
     FullTextIndex(
             @Qualifier("whoisSlaveDataSource") final DataSource dataSource,
             @Value("${whois.source}") final String source,
             @Value("${dir.fulltext.index:}") final String indexDir,
-            @Value("${fulltext.search.max.concurrent:10}") final int maxConcurrentSearches) {
-        super(LOGGER, indexDir, maxConcurrentSearches);
+            @Value("${fulltext.search.max.concurrent:10}") final int maxConcurrentSearches,
+            @Value("${fulltext.index.commit.interval.msecs:300000}") final long commitIntervalMillis,
+            @Value("${fulltext.index.rebuild.shards:1}") final int rebuildShards) {
+        super(LOGGER, indexDir, maxConcurrentSearches, commitIntervalMillis);
         this.jdbcTemplate = new JdbcTemplate(dataSource);
         this.source = source;
         this.facetsConfig = new FacetsConfig();
+        this.rebuildShards = rebuildShards;
     }
 
     @PostConstruct
@@ -180,6 +197,12 @@ public class FullTextIndex extends RebuildableIndex {
         indexWriter.deleteAll();
         final int maxSerial = JdbcRpslObjectOperations.getSerials(jdbcTemplate).getEnd();
 
+        if (rebuildShards > 1) {
+            rebuildSharded(indexWriter, taxonomyWriter);
+            updateMetadata(indexWriter, source, maxSerial);
+            return;
+        }
+
         // sadly Executors don't offer a bounded/blocking submit() implementation
         int numThreads = Runtime.getRuntime().availableProcessors();
         final ArrayBlockingQueue<Runnable> workQueue = new ArrayBlockingQueue<>(numThreads * 64);
@@ -221,6 +244,149 @@ public class FullTextIndex extends RebuildableIndex {
         updateMetadata(indexWriter, source, maxSerial);
     }
 
+    /**
+     * Split the object ids into ranges of about the same number of objects, each read on its own connection and
+     * indexed into its own temporary index, and merge the temporary indexes into the index. All shards share the
+     * taxonomy, so no facet ordinals need remapping.
+     */
+    private void rebuildSharded(final IndexWriter indexWriter, final TaxonomyWriter taxonomyWriter) throws IOException {
+        final List<Integer> boundaries = getShardBoundaries();
+
+        final List<RebuildShard> shards = Lists.newArrayListWithExpectedSize(boundaries.size());
+        for (int shard = 0; shard < boundaries.size(); shard++) {
+            final int from = boundaries.get(shard);
+            final int to = (shard + 1 < boundaries.size()) ? boundaries.get(shard + 1) - 1 : Integer.MAX_VALUE;
+            shards.add(new RebuildShard(shard, from, to, new File(indexDir, "rebuild-shard-" + shard), taxonomyWriter));
+        }
+
+        LOGGER.info("Rebuilding index {} in {} shards", indexDir, shards.size());
+
+        final ExecutorService executorService = Executors.newFixedThreadPool(shards.size());
+        try {
+            for (final Future<Integer> result : executorService.invokeAll(shards)) {
+                result.get();
+            }
+
+            final Stopwatch stopwatch = Stopwatch.createStarted();
+            indexWriter.addIndexes(shards.stream().map(shard -> shard.directory).toArray(Directory[]::new));
+            LOGGER.info("Merged {} shards into index {} in {}", shards.size(), indexDir, stopwatch.stop());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while rebuilding index", e);
+        } catch (ExecutionException e) {
+            Throwables.throwIfInstanceOf(e.getCause(), IOException.class);
+            throw new IllegalStateException("Rebuilding index shard", e.getCause());
+        } finally {
+            executorService.shutdownNow();
+            shards.forEach(RebuildShard::cleanup);
+        }
+    }
+
+    /**
+     * @return the first object id of each shard, taken at even row offsets so every shard indexes about the same
+     * number of objects, however the object ids are spread.
+     */
+    private List<Integer> getShardBoundaries() {
+        final int nrObjects = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM last WHERE sequence_id != 0", Integer.class);
+
+        final List<Integer> boundaries = Lists.newArrayListWithExpectedSize(rebuildShards);
+        boundaries.add(0);
+        for (int shard = 1; shard < rebuildShards; shard++) {
+            final long offset = (long) nrObjects * shard / rebuildShards;
+            final List<Integer> objectIds = jdbcTemplate.queryForList("" +
+                            "SELECT object_id " +
+                            "FROM last " +
+                            "WHERE sequence_id != 0 " +
+                            "ORDER BY object_id " +
+                            "LIMIT ?, 1",
+                    Integer.class, offset);
+
+            // fewer objects than shards
+            if (!objectIds.isEmpty() && objectIds.get(0) > boundaries.get(boundaries.size() - 1)) {
+                boundaries.add(objectIds.get(0));
+            }
+        }
+
+        return boundaries;
+    }
+
+    private final class RebuildShard implements Callable<Integer> {
+        private static final int LOG_EVERY = 100000;
+
+        private final int shard;
+        private final int fromObjectId;
+        private final int toObjectId;
+        private final File path;
+        private final TaxonomyWriter taxonomyWriter;
+
+        private Directory directory;
+
+        private RebuildShard(final int shard, final int fromObjectId, final int toObjectId, final File path, final TaxonomyWriter taxonomyWriter) {
+            this.shard = shard;
+            this.fromObjectId = fromObjectId;
+            this.toObjectId = toObjectId;
+            this.path = path;
+            this.taxonomyWriter = taxonomyWriter;
+        }
+
+        @Override
+        public Integer call() throws IOException {
+            final Stopwatch stopwatch = Stopwatch.createStarted();
+            directory = FSDirectory.open(path.toPath());
+
+            final int nrIndexed;
+            try (final IndexWriter shardWriter = new IndexWriter(directory, new IndexWriterConfig(INDEX_ANALYZER).setOpenMode(IndexWriterConfig.OpenMode.CREATE))) {
+                nrIndexed = JdbcStreamingHelper.executeStreaming(jdbcTemplate, "" +
+                                "SELECT object_id, object " +
+                                "FROM last " +
+                                "WHERE sequence_id != 0 " +
+                                "AND object_id BETWEEN ? AND ?",
+                        ps -> {
+                            ps.setInt(1, fromObjectId);
+                            ps.setInt(2, toObjectId);
+                        },
+                        rs -> {
+                            int count = 0;
+
+                            while (rs.next()) {
+                                final int objectId = rs.getInt(1);
+                                final RpslObject rpslObject;
+                                try {
+                                    rpslObject = RpslObject.parse(objectId, rs.getBytes(2));
+                                } catch (RuntimeException e) {
+                                    LOGGER.warn("Unable to parse object with id: {}", objectId, e);
+                                    continue;
+                                }
+
+                                try {
+                                    shardWriter.addDocument(createDocument(taxonomyWriter, rpslObject));
+                                } catch (IOException e) {
+                                    throw new IllegalStateException("Indexing", e);
+                                }
+
+                                if (++count % LOG_EVERY == 0) {
+                                    LOGGER.info("Shard {} indexed {} objects in {}", shard, count, stopwatch);
+                                }
+                            }
+
+                            return count;
+                        });
+            }
+
+            final long elapsedMillis = Math.max(1, stopwatch.elapsed(TimeUnit.MILLISECONDS));
+            LOGGER.info("Shard {} indexed {} objects (object_id {} - {}) in {} ({} objects/s)",
+                    shard, nrIndexed, fromObjectId, toObjectId, stopwatch.stop(), nrIndexed * 1000L / elapsedMillis);
+            return nrIndexed;
+        }
+
+        private void cleanup() {
+            IOUtils.closeWhileHandlingException(directory);
+            if (path.exists() && !FileSystemUtils.deleteRecursively(path)) {
+                LOGGER.warn("Unable to remove {}", path);
+            }
+        }
+    }
+
     @Scheduled(fixedDelayString = "${fulltext.index.update.interval.msecs:60000}")
     public void scheduledUpdate() {
         if (!isEnabled()) {
@@ -245,24 +411,8 @@ public class FullTextIndex extends RebuildableIndex {
             LOGGER.debug("Updating index {} from {} to {}", indexDir, last, end);
 
             final Stopwatch stopwatch = Stopwatch.createStarted();
-            for (int serial = last + 1; serial <= end; serial++) {
-                final SerialEntry serialEntry = JdbcRpslObjectOperations.getSerialEntry(jdbcTemplate, serial);
-                if (serialEntry == null) {
-                    // suboptimal;there could be big gaps in serial entries.
-                    continue;
-                }
-
-                final RpslObject rpslObject = serialEntry.getRpslObject();
-
-                switch (serialEntry.getOperation()) {
-                    case UPDATE:
-                        deleteEntry(indexWriter, rpslObject);
-                        addEntry(indexWriter, taxonomyWriter, rpslObject);
-                        break;
-                    case DELETE:
-                        deleteEntry(indexWriter, rpslObject);
-                        break;
-                }
+            for (int serial = last + 1; serial <= end; serial += UPDATE_BATCH_SIZE) {
+                updateEntries(indexWriter, taxonomyWriter, serial, Math.min(end, serial + UPDATE_BATCH_SIZE - 1));
             }
 
             LOGGER.debug("Updated index {} in {}", indexDir, stopwatch.stop());
@@ -271,6 +421,47 @@ public class FullTextIndex extends RebuildableIndex {
         updateMetadata(indexWriter, source, end);
     }
 
+    // objects are reindexed as they are now, so applying a range more than once is harmless
+    private void updateEntries(final IndexWriter indexWriter, final TaxonomyWriter taxonomyWriter, final int fromSerial, final int toSerial) throws IOException {
+        final List<Integer> objectIds = Lists.newArrayList();
+        final List<RpslObject> rpslObjects = Lists.newArrayList();
+
+        jdbcTemplate.query("" +
+                        "SELECT changed.object_id, last.object " +
+                        "FROM (SELECT DISTINCT object_id FROM serials WHERE serial_id BETWEEN ? AND ?) changed " +
+                        "LEFT JOIN last ON last.object_id = changed.object_id AND last.sequence_id != 0",
+                (RowCallbackHandler) rs -> {
+                    final int objectId = rs.getInt(1);
+                    objectIds.add(objectId);
+
+                    final byte[] object = rs.getBytes(2);
+                    if (object == null) {
+                        return;
+                    }
+
+                    try {
+                        rpslObjects.add(RpslObject.parse(objectId, object));
+                    } catch (RuntimeException e) {
+                        LOGGER.warn("Unable to parse object with id: {}", objectId, e);
+                    }
+                },
+                fromSerial, toSerial);
+
+        if (objectIds.isEmpty()) {
+            return;
+        }
+
+        indexWriter.deleteDocuments(IntPoint.newSetQuery(PRIMARY_KEY_FIELD_NAME, objectIds));
+
+        final List<Document> documents = Lists.newArrayListWithExpectedSize(rpslObjects.size());
+        for (final RpslObject rpslObject : rpslObjects) {
+            documents.add(createDocument(taxonomyWriter, rpslObject));
+        }
+        indexWriter.addDocuments(documents);
+
+        LOGGER.debug("Reindexed {} objects changed in serials {} - {}", objectIds.size(), fromSerial, toSerial);
+    }
+
     private void updateMetadata(final IndexWriter indexWriter, final String source, final int serial) {
         final Map<String, String> metadata = Maps.newHashMap();
         metadata.put("serial", Integer.toString(serial));
@@ -279,6 +470,10 @@ public class FullTextIndex extends RebuildableIndex {
     }
 
     private void addEntry(final IndexWriter indexWriter, final TaxonomyWriter taxonomyWriter, final RpslObject rpslObject) throws IOException {
+        indexWriter.addDocument(createDocument(taxonomyWriter, rpslObject));
+    }
+
+    private Document createDocument(final TaxonomyWriter taxonomyWriter, final RpslObject rpslObject) throws IOException {
         final Document document = new Document();
 
         // primary key
@@ -299,7 +494,7 @@ public class FullTextIndex extends RebuildableIndex {
 
         document.add(new FacetField(OBJECT_TYPE_FIELD_NAME, rpslObject.getType().getName()));
 
-        indexWriter.addDocument(facetsConfig.build(taxonomyWriter, document));
+        return facetsConfig.build(taxonomyWriter, document);
     }
 
     public RpslObject filterRpslObject(final RpslObject rpslObject) {
@@ -331,13 +526,6 @@ public class FullTextIndex extends RebuildableIndex {
         return CharMatcher.javaIsoControl().removeFrom(value);
     }
 
-    private void deleteEntry(final IndexWriter indexWriter, final RpslObject rpslObject) throws IOException {
-        indexWriter.deleteDocuments(
-                IntPoint.newExactQuery(
-                        PRIMARY_KEY_FIELD_NAME,
-                        rpslObject.getObjectId()));
-    }
-
     private String filterAttribute(final String value) {
         if (value.toLowerCase().startsWith("md5-pw")) {
             return "MD5-PW";
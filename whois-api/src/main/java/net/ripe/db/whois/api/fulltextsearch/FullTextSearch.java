@@ -29,7 +29,6 @@ import org.apache.lucene.queryparser.classic.QueryParser;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.MultiCollector;
 import org.apache.lucene.search.Query;
-import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.Sort;
 import org.apache.lucene.search.SortField;
 import org.apache.lucene.search.TopDocs;
@@ -43,7 +42,6 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.stereotype.Component;
 
 import javax.servlet.http.HttpServletRequest;
@@ -176,20 +174,22 @@ public class FullTextSearch {
 
                     indexSearcher.search(query, MultiCollector.wrap(topFieldCollector, facetsCollector));
 
-                    final Map<RpslObject, Document> rpslObjectToDocument = Maps.newHashMap();
-
                     final TopDocs topDocs = topFieldCollector.topDocs();
                     final int start = Math.max(0, searchRequest.getStart());
                     int resultSize = Math.min(maxResultSize, Long.valueOf(topDocs.totalHits.value).intValue());
 
                     final int end = Math.min(start + searchRequest.getRows(), resultSize);
+                    final List<Document> documents = Lists.newArrayListWithExpectedSize(Math.max(0, end - start));
                     for (int index = start; index < end; index++) {
-                        final ScoreDoc scoreDoc = topDocs.scoreDocs[index];
-                        final Document document = indexSearcher.doc(scoreDoc.doc);
-                        final RpslObject object;
-                        try {
-                            object = objectDao.getById(getObjectId(document));
-                        } catch (EmptyResultDataAccessException e) {
+                        documents.add(indexSearcher.doc(topDocs.scoreDocs[index].doc));
+                    }
+
+                    final Map<Integer, RpslObject> objects = IndexTemplate.loadObjects(objectDao, documents);
+
+                    final Map<RpslObject, Document> rpslObjectToDocument = Maps.newHashMap();
+                    for (final Document document : documents) {
+                        final RpslObject object = objects.get(getObjectId(document));
+                        if (object == null) {
                             // object was deleted from the database but index was not updated yet
                             resultSize--;
                             continue;
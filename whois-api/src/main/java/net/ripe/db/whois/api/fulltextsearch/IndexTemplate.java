@@ -1,8 +1,11 @@
 package net.ripe.db.whois.api.fulltextsearch;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.google.common.net.InetAddresses;
+import net.ripe.db.whois.common.dao.RpslObjectDao;
+import net.ripe.db.whois.common.domain.Identifiable;
 import net.ripe.db.whois.common.rpsl.AttributeType;
 import net.ripe.db.whois.common.rpsl.ObjectType;
 import net.ripe.db.whois.common.rpsl.RpslAttribute;
@@ -15,16 +18,15 @@ import net.ripe.db.whois.query.domain.QueryException;
 import org.apache.commons.lang.StringUtils;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.facet.taxonomy.FacetLabel;
+import org.apache.lucene.facet.taxonomy.SearcherTaxonomyManager;
+import org.apache.lucene.facet.taxonomy.SearcherTaxonomyManager.SearcherAndTaxonomy;
 import org.apache.lucene.facet.taxonomy.TaxonomyReader;
 import org.apache.lucene.facet.taxonomy.TaxonomyWriter;
-import org.apache.lucene.facet.taxonomy.directory.DirectoryTaxonomyReader;
 import org.apache.lucene.facet.taxonomy.directory.DirectoryTaxonomyWriter;
-import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.IndexableField;
-import org.apache.lucene.index.ReaderManager;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
@@ -37,6 +39,7 @@ import java.io.File;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Semaphore;
 
@@ -50,8 +53,9 @@ public class IndexTemplate implements Closeable {
     private final Semaphore updateLock = new Semaphore(1);
 
     private IndexWriter indexWriter;
-    private ReaderManager readerManager;
     private DirectoryTaxonomyWriter taxonomyWriter;
+    // searcher and taxonomy reader shared by all searches, reopened together on every write
+    private volatile SearcherTaxonomyManager searcherTaxonomyManager;
     private IndexWriterConfig config;
 
     public IndexTemplate(final String directory, final IndexWriterConfig config) throws IOException {
@@ -81,24 +85,36 @@ public class IndexTemplate implements Closeable {
         updateLock.acquireUninterruptibly();
 
         try {
-            closeWhileHandlingException(readerManager, indexWriter, taxonomyWriter, index, taxonomy);
+            // taxonomy first, as documents committed to the index may refer to its categories
+            closeWhileHandlingException(searcherTaxonomyManager, taxonomyWriter, indexWriter, index, taxonomy);
         } finally {
             updateLock.release();
         }
     }
 
     public void write(final WriteCallback writeCallback) throws IOException {
+        write(writeCallback, true);
+    }
+
+    /**
+     * @param commit if false, the changes are visible to searches but only committed by a later write (or on close);
+     *               if the write fails, uncommitted changes of earlier writes are rolled back as well.
+     */
+    public void write(final WriteCallback writeCallback, final boolean commit) throws IOException {
         updateLock.acquireUninterruptibly();
 
         try {
             writeCallback.write(indexWriter, taxonomyWriter);
-            taxonomyWriter.prepareCommit();
-            indexWriter.prepareCommit();
 
-            taxonomyWriter.commit();
-            indexWriter.commit();
+            if (commit) {
+                taxonomyWriter.prepareCommit();
+                indexWriter.prepareCommit();
+
+                taxonomyWriter.commit();
+                indexWriter.commit();
+            }
 
-            readerManager.maybeRefresh();
+            searcherTaxonomyManager.maybeRefresh();
         } catch (IOException | RuntimeException e) {
             LOGGER.error("Unexpected", e);
             rollback();
@@ -132,7 +148,10 @@ public class IndexTemplate implements Closeable {
         taxonomyWriter.commit();
         indexWriter.commit();
 
-        readerManager = new ReaderManager(indexWriter, false, false);
+        // searches keep using the readers of the previous manager until it is replaced, and release them to it
+        final SearcherTaxonomyManager previousManager = searcherTaxonomyManager;
+        searcherTaxonomyManager = new SearcherTaxonomyManager(indexWriter, false, null, taxonomyWriter);
+        closeWhileHandlingException(previousManager);
     }
 
     private static void addFacetCategories(final TaxonomyWriter taxonomyWriter) throws IOException {
@@ -143,25 +162,43 @@ public class IndexTemplate implements Closeable {
     }
 
     public <T> T read(final ReadCallback<T> readCallback) throws IOException {
-        DirectoryReader indexReader = null;
-        TaxonomyReader taxonomyReader = null;
+        return search((indexReader, taxonomyReader, indexSearcher) -> readCallback.read(indexReader, taxonomyReader));
+    }
 
-        try {
-            indexReader = readerManager.acquire();
-            taxonomyReader = new DirectoryTaxonomyReader(taxonomy);
+    /**
+     * @throws org.apache.lucene.store.AlreadyClosedException if the index is closed
+     */
+    public <T> T search(final SearchCallback<T> searchCallback) throws IOException {
+        final SearcherTaxonomyManager manager = searcherTaxonomyManager;
+        final SearcherAndTaxonomy searcherAndTaxonomy = manager.acquire();
 
-            return readCallback.read(indexReader, taxonomyReader);
+        try {
+            return searchCallback.search(searcherAndTaxonomy.searcher.getIndexReader(), searcherAndTaxonomy.taxonomyReader, searcherAndTaxonomy.searcher);
         } finally {
-            closeWhileHandlingException(taxonomyReader);
-            readerManager.release(indexReader);
+            manager.release(searcherAndTaxonomy);
         }
     }
 
-    public <T> T search(final SearchCallback<T> searchCallback) throws IOException {
-        return read((final IndexReader indexReader, final TaxonomyReader taxonomyReader) -> {
-            final IndexSearcher indexSearcher = new IndexSearcher(indexReader);
-            return searchCallback.search(indexReader, taxonomyReader, indexSearcher);
-        });
+    /**
+     * Load the objects of the given documents in one batch. Objects deleted since they were indexed are left out.
+     *
+     * @return the objects by object id
+     */
+    public static Map<Integer, RpslObject> loadObjects(final RpslObjectDao objectDao, final List<Document> documents) {
+        final List<Identifiable> proxy = Lists.newArrayListWithExpectedSize(documents.size());
+        for (final Document document : documents) {
+            final int objectId = Integer.parseInt(document.get(FullTextIndex.PRIMARY_KEY_FIELD_NAME));
+            proxy.add(() -> objectId);
+        }
+
+        final List<RpslObject> rpslObjects = Lists.newArrayListWithExpectedSize(proxy.size());
+        objectDao.load(proxy, rpslObjects);
+
+        final Map<Integer, RpslObject> result = Maps.newHashMapWithExpectedSize(rpslObjects.size());
+        for (final RpslObject rpslObject : rpslObjects) {
+            result.put(rpslObject.getObjectId(), rpslObject);
+        }
+        return result;
     }
 
     public interface WriteCallback {
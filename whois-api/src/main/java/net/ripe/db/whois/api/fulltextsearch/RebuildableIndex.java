@@ -18,13 +18,18 @@ public abstract class RebuildableIndex {
 
     private final Semaphore searchLock;
 
+    // updates are visible to searches immediately, but only committed to disk once per interval
+    private final long commitIntervalMillis;
+    private long lastCommitMillis;
+
     protected final String indexDir;
     protected IndexTemplate index;
 
-    protected RebuildableIndex(final Logger logger, final String indexDir, final int maxConcurrentSearches) {
+    protected RebuildableIndex(final Logger logger, final String indexDir, final int maxConcurrentSearches, final long commitIntervalMillis) {
         this.logger = logger;
         this.indexDir = indexDir;
         this.searchLock = new Semaphore(maxConcurrentSearches, true);
+        this.commitIntervalMillis = commitIntervalMillis;
     }
 
     protected void init(final IndexWriterConfig config, final IndexTemplate.WriteCallback initializer) {
@@ -73,7 +78,14 @@ public abstract class RebuildableIndex {
         }
 
         try {
-            index.write(writeCallback);
+            final long now = System.currentTimeMillis();
+            final boolean commit = now - lastCommitMillis >= commitIntervalMillis;
+
+            index.write(writeCallback, commit);
+
+            if (commit) {
+                lastCommitMillis = now;
+            }
         } catch (IOException e) {
             logger.error("Updating index: {}", indexDir, e);
         } finally {
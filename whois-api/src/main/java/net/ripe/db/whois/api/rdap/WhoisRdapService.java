@@ -42,7 +42,6 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.stereotype.Component;
 
 import javax.servlet.http.HttpServletRequest;
@@ -63,6 +62,7 @@ import java.net.URI;
 import java.time.LocalDateTime;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -344,13 +344,15 @@ public class WhoisRdapService {
                                 final org.apache.lucene.search.Query query = queryParser.parse(term.toLowerCase());
 
                                 final TopDocs topDocs = indexSearcher.search(query, maxResultSize, SORT_BY_OBJECT_TYPE);
+                                final List<Document> documents = Lists.newArrayListWithExpectedSize(topDocs.scoreDocs.length);
                                 for (ScoreDoc scoreDoc : topDocs.scoreDocs) {
-                                    final Document document = indexSearcher.doc(scoreDoc.doc);
+                                    documents.add(indexSearcher.doc(scoreDoc.doc));
+                                }
 
-                                    final RpslObject rpslObject;
-                                    try {
-                                        rpslObject = objectDao.getById(getObjectId(document));
-                                    } catch (EmptyResultDataAccessException e) {
+                                final Map<Integer, RpslObject> rpslObjects = IndexTemplate.loadObjects(objectDao, documents);
+                                for (final Document document : documents) {
+                                    final RpslObject rpslObject = rpslObjects.get(getObjectId(document));
+                                    if (rpslObject == null) {
                                         // object was deleted from the database but index was not updated yet
                                         continue;
                                     }
@@ -372,7 +374,8 @@ public class WhoisRdapService {
                 throw new NotFoundException("not found");
             }
 
-            final Iterable<LocalDateTime> lastUpdateds = objects.stream().map(input -> objectDao.getLastUpdated(input.getObjectId())).collect(Collectors.toList());
+            final Map<Integer, LocalDateTime> lastUpdatedByObjectId = objectDao.getLastUpdated(objects.stream().map(RpslObject::getObjectId).collect(Collectors.toList()));
+            final Iterable<LocalDateTime> lastUpdateds = objects.stream().map(input -> lastUpdatedByObjectId.get(input.getObjectId())).collect(Collectors.toList());
 
             return Response.ok(rdapObjectMapper.mapSearch(
                     getRequestUrl(request),
@@ -35,6 +35,10 @@ public class RestMessages {
         return new Message(Messages.Type.ERROR, "Invalid source '%s'", source);
     }
 
+    public static Message invalidCursor(final CharSequence cursor) {
+        return new Message(Messages.Type.ERROR, "Invalid cursor '%s'", cursor);
+    }
+
     public static Message queryStringEmpty() {
         return new Message(Messages.Type.ERROR, "Query param 'query-string' cannot be empty");
     }
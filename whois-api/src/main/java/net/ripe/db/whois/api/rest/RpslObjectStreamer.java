@@ -6,7 +6,6 @@ import net.ripe.db.whois.api.rest.domain.Link;
 import net.ripe.db.whois.api.rest.domain.Parameters;
 import net.ripe.db.whois.api.rest.domain.Service;
 import net.ripe.db.whois.api.rest.domain.Version;
-import net.ripe.db.whois.api.rest.domain.WhoisObject;
 import net.ripe.db.whois.api.rest.domain.WhoisResources;
 import net.ripe.db.whois.api.rest.mapper.WhoisObjectServerMapper;
 import net.ripe.db.whois.common.ApplicationVersion;
@@ -21,6 +20,7 @@ import net.ripe.db.whois.query.domain.QueryException;
 import net.ripe.db.whois.query.domain.TagResponseObject;
 import net.ripe.db.whois.query.handler.QueryHandler;
 import net.ripe.db.whois.query.query.Query;
+import net.ripe.db.whois.query.query.QueryCursor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -36,6 +36,7 @@ import java.io.OutputStream;
 import java.net.InetAddress;
 import java.util.ArrayDeque;
 import java.util.List;
+import java.util.Objects;
 import java.util.Queue;
 
 @Component
@@ -136,11 +137,18 @@ public class RpslObjectStreamer {
 
             // tags come separately
             private final Queue<RpslObject> rpslObjectQueue = new ArrayDeque<>(1);
+            private QueryCursor queuedPosition;
             private TagResponseObject tagResponseObject = null;
             private final List<Message> errors = Lists.newArrayList();
             private final int offset = parameters.getOffset() != null ? parameters.getOffset() : 0;
             private final int limit = parameters.getLimit() != null ? parameters.getLimit() : Integer.MAX_VALUE;
             private int count = 0;
+            private final WhoisObjectServerMapper.Batch batch = whoisObjectServerMapper.newBatch(parameters, whoisObject -> streamingMarshal.writeArray(whoisObject));
+
+            // position of the primary objects of the last two groups of objects returned, and where to resume
+            private QueryCursor position;
+            private QueryCursor previousPosition;
+            private QueryCursor nextCursor;
 
             // TODO: [AH] replace this 'if instanceof' mess with an OO approach
             @Override
@@ -162,8 +170,9 @@ public class RpslObjectStreamer {
                     rpslObjectFound = true;
                     startStreaming();
                 }
-                streamObject(rpslObjectQueue.poll());
+                streamObject(rpslObjectQueue.poll(), queuedPosition);
                 rpslObjectQueue.add(rpslObject);
+                queuedPosition = query.getPaging() != null ? query.getPaging().getPosition() : null;
             }
 
             private void startStreaming() {
@@ -180,7 +189,7 @@ public class RpslObjectStreamer {
                 streamingMarshal.startArray("object");
             }
 
-            private void streamObject(@Nullable final RpslObject rpslObject) {
+            private void streamObject(@Nullable final RpslObject rpslObject, @Nullable final QueryCursor objectPosition) {
                 if (rpslObject == null) {
                     return;
                 }
@@ -191,19 +200,31 @@ public class RpslObjectStreamer {
 
                 if (!withinLimit(count, limit, offset)) {
                     // stop returning objects once limit is reached
+                    nextCursor = getNextCursor(objectPosition);
                     throw new QueryException(QueryCompletionInfo.DISCONNECTED);
                 }
 
-                final WhoisObject whoisObject = whoisObjectServerMapper.map(rpslObject, parameters);
-                whoisObjectServerMapper.mapTags(whoisObject, tagResponseObject);
-                whoisObjectServerMapper.mapAbuseContact(whoisObject, parameters, rpslObject);
-                whoisObjectServerMapper.mapManagedAttributes(whoisObject, parameters, rpslObject);
-                whoisObjectServerMapper.mapResourceHolder(whoisObject, parameters, rpslObject);
+                if (!Objects.equals(objectPosition, position)) {
+                    previousPosition = position;
+                    position = objectPosition;
+                }
 
-                streamingMarshal.writeArray(whoisObject);
+                batch.add(rpslObject, tagResponseObject);
                 tagResponseObject = null;
             }
 
+            /**
+             * Resume after the last primary object of which all related objects were returned, unless none were.
+             */
+            @Nullable
+            private QueryCursor getNextCursor(@Nullable final QueryCursor nextPosition) {
+                if (Objects.equals(nextPosition, position) && previousPosition != null) {
+                    return previousPosition;
+                }
+
+                return position;
+            }
+
             private boolean withinOffset(final int count, final int offset) {
                 return count >= offset;
             }
@@ -220,11 +241,15 @@ public class RpslObjectStreamer {
                 if (!rpslObjectFound) {
                     return errors;
                 }
-                streamObject(rpslObjectQueue.poll());
+                streamObject(rpslObjectQueue.poll(), queuedPosition);
+                batch.flush();
 
                 streamingMarshal.endArray();
 
                 streamingMarshal.end("objects");
+                if (nextCursor != null) {
+                    streamingMarshal.write("next-cursor", nextCursor.encode());
+                }
                 if (errors.size() > 0) {
                     streamingMarshal.write("errormessages", RestServiceHelper.createErrorMessages(errors));
                     errors.clear();
@@ -17,10 +17,13 @@ import net.ripe.db.whois.query.QueryFlag;
 import net.ripe.db.whois.query.QueryParser;
 import net.ripe.db.whois.query.acl.AccessControlListManager;
 import net.ripe.db.whois.query.query.Query;
+import net.ripe.db.whois.query.query.QueryCursor;
+import net.ripe.db.whois.query.query.QueryPaging;
 import org.apache.commons.lang.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.Nullable;
 import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
@@ -129,6 +132,7 @@ public class WhoisSearchService {
      * @param abuseContact annotate resource and organisation object(s) with associated abuse contact (if any)
      * @param limit maximum number of objects to return
      * @param offset starting offset in results to return objects from
+     * @param cursor resume after the last page, as returned in next-cursor (limited responses only)
      *
      */
     @GET
@@ -149,10 +153,12 @@ public class WhoisSearchService {
             @QueryParam("resource-holder") final String resourceHolder,
             @QueryParam("abuse-contact") final String abuseContact,
             @QueryParam("limit") final Integer limit,
-            @QueryParam("offset") final Integer offset) {
+            @QueryParam("offset") final Integer offset,
+            @QueryParam("cursor") final String cursor) {
 
         validateSources(request, sources);
         validateSearchKey(request, searchKey);
+        final QueryCursor resumeAfter = parseCursor(request, cursor);
 
         final Set<QueryFlag> separateFlags = splitInputFlags(request, flags);
         checkForInvalidFlags(request, separateFlags);
@@ -174,6 +180,9 @@ public class WhoisSearchService {
         }
 
         final Query query = Query.parse(queryBuilder.build(searchKey), Query.Origin.REST, isTrusted(request));
+        if (limit != null || cursor != null) {
+            query.setPaging(new QueryPaging(resumeAfter));
+        }
 
         final Parameters parameters = new Parameters.Builder()
                 .inverseAttributes(new InverseAttributes(inverseAttributes))
@@ -218,6 +227,21 @@ public class WhoisSearchService {
         }
     }
 
+    @Nullable
+    private QueryCursor parseCursor(final HttpServletRequest request, @Nullable final String cursor) {
+        if (cursor == null) {
+            return null;
+        }
+
+        try {
+            return QueryCursor.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            throw new WebApplicationException(Response.status(Response.Status.BAD_REQUEST)
+                    .entity(RestServiceHelper.createErrorEntity(request, RestMessages.invalidCursor(cursor)))
+                    .build());
+        }
+    }
+
     private void validateSources(final HttpServletRequest request, final Set<String> sources) {
         for (final String source : sources) {
             if (!sourceContext.isOutOfRegion(source) && !sourceContext.getAllSourceNames().contains(ciString(source))) {
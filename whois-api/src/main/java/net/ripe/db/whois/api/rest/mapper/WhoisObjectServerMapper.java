@@ -1,6 +1,8 @@
 package net.ripe.db.whois.api.rest.mapper;
 
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import net.ripe.db.whois.api.rest.domain.Attribute;
 import net.ripe.db.whois.api.rest.domain.Parameters;
 import net.ripe.db.whois.api.rest.domain.WhoisObject;
@@ -9,38 +11,53 @@ import net.ripe.db.whois.api.rest.domain.WhoisVersion;
 import net.ripe.db.whois.api.rest.search.AbuseContactSearch;
 import net.ripe.db.whois.api.rest.search.ManagedAttributeSearch;
 import net.ripe.db.whois.api.rest.search.ResourceHolderSearch;
+import net.ripe.db.whois.common.dao.MemoizingRpslObjectDao;
+import net.ripe.db.whois.common.dao.RpslObjectDao;
+import net.ripe.db.whois.common.domain.CIString;
 import net.ripe.db.whois.common.domain.Tag;
 import net.ripe.db.whois.common.domain.serials.Operation;
+import net.ripe.db.whois.common.rpsl.AttributeType;
+import net.ripe.db.whois.common.rpsl.ObjectType;
 import net.ripe.db.whois.common.rpsl.RpslAttribute;
 import net.ripe.db.whois.common.rpsl.RpslObject;
 import net.ripe.db.whois.query.domain.DeletedVersionResponseObject;
 import net.ripe.db.whois.query.domain.TagResponseObject;
 import net.ripe.db.whois.query.domain.VersionResponseObject;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.Nullable;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
 
 import static net.ripe.db.whois.api.rest.RestServiceHelper.getServerAttributeMapper;
 
 @Component
 public class WhoisObjectServerMapper {
+    // number of objects annotated together
+    private static final int BATCH_SIZE = 100;
+
     private final WhoisObjectMapper whoisObjectMapper;
     private final ResourceHolderSearch resourceHolderSearch;
     private final AbuseContactSearch abuseContactSearch;
     private final ManagedAttributeSearch managedAttributeSearch;
+    private final RpslObjectDao rpslObjectDao;
 
     @Autowired
     public WhoisObjectServerMapper(
             final WhoisObjectMapper whoisObjectMapper,
             final ResourceHolderSearch resourceHolderSearch,
             final AbuseContactSearch abuseContactSearch,
-            final ManagedAttributeSearch managedAttributeSearch) {
+            final ManagedAttributeSearch managedAttributeSearch,
+            @Qualifier("jdbcRpslObjectSlaveDao") final RpslObjectDao rpslObjectDao) {
         this.whoisObjectMapper = whoisObjectMapper;
         this.resourceHolderSearch = resourceHolderSearch;
         this.abuseContactSearch = abuseContactSearch;
         this.managedAttributeSearch = managedAttributeSearch;
+        this.rpslObjectDao = rpslObjectDao;
     }
 
     public List<WhoisVersion> mapVersions(final List<DeletedVersionResponseObject> deleted, final List<VersionResponseObject> versions) {
@@ -102,4 +119,103 @@ public class WhoisObjectServerMapper {
         }
     }
 
+    /**
+     * Map the objects returned for a single request, passing each mapped object to the consumer in order.
+     */
+    public Batch newBatch(final Parameters parameters, final Consumer<WhoisObject> consumer) {
+        return new Batch(parameters, consumer);
+    }
+
+    /**
+     * Maps objects in batches, so the parents, organisations and abuse-c roles needed for the abuse contact and
+     * resource holder of each object are read ahead once per batch, and are read at most once per request.
+     * Objects are mapped one at a time if neither is requested. Not thread safe.
+     */
+    public final class Batch {
+        private final Parameters parameters;
+        private final Consumer<WhoisObject> consumer;
+        private final boolean abuseContact;
+        private final boolean resourceHolder;
+        private final MemoizingRpslObjectDao objectDao;
+
+        private final List<RpslObject> rpslObjects = Lists.newArrayList();
+        private final List<TagResponseObject> tagResponseObjects = Lists.newArrayList();
+
+        private Batch(final Parameters parameters, final Consumer<WhoisObject> consumer) {
+            this.parameters = parameters;
+            this.consumer = consumer;
+            this.abuseContact = Boolean.TRUE.equals(parameters.getAbuseContact());
+            this.resourceHolder = Boolean.TRUE.equals(parameters.getResourceHolder());
+            this.objectDao = new MemoizingRpslObjectDao(rpslObjectDao);
+        }
+
+        public void add(final RpslObject rpslObject, @Nullable final TagResponseObject tagResponseObject) {
+            rpslObjects.add(rpslObject);
+            tagResponseObjects.add(tagResponseObject);
+
+            if ((!abuseContact && !resourceHolder) || rpslObjects.size() >= BATCH_SIZE) {
+                flush();
+            }
+        }
+
+        public void flush() {
+            if (rpslObjects.isEmpty()) {
+                return;
+            }
+
+            // objects are cleared first, so they are not mapped again if mapping fails
+            final List<RpslObject> batch = Lists.newArrayList(rpslObjects);
+            final List<TagResponseObject> batchTags = Lists.newArrayList(tagResponseObjects);
+            rpslObjects.clear();
+            tagResponseObjects.clear();
+
+            if (abuseContact || resourceHolder) {
+                prefetch(batch);
+            }
+
+            for (int index = 0; index < batch.size(); index++) {
+                final RpslObject rpslObject = batch.get(index);
+                final WhoisObject whoisObject = map(rpslObject, parameters);
+                mapTags(whoisObject, batchTags.get(index));
+                if (abuseContact) {
+                    whoisObject.setAbuseContact(abuseContactSearch.findAbuseContact(rpslObject, objectDao));
+                }
+                mapManagedAttributes(whoisObject, parameters, rpslObject);
+                if (resourceHolder) {
+                    whoisObject.setResourceHolder(resourceHolderSearch.findResourceHolder(rpslObject, objectDao));
+                }
+                consumer.accept(whoisObject);
+            }
+        }
+
+        private void prefetch(final List<RpslObject> batch) {
+            final Set<Integer> parentIds = Sets.newLinkedHashSet();
+            for (final RpslObject rpslObject : batch) {
+                parentIds.addAll(resourceHolderSearch.findParentIds(rpslObject));
+            }
+            objectDao.prefetch(parentIds);
+
+            final List<RpslObject> resources = Lists.newArrayList(batch);
+            for (final Integer parentId : parentIds) {
+                final RpslObject parent = objectDao.getByIdOrNull(parentId);
+                if (parent != null) {
+                    resources.add(parent);
+                }
+            }
+
+            final Set<CIString> organisationKeys = Sets.newLinkedHashSet();
+            for (final RpslObject resource : resources) {
+                organisationKeys.addAll(resource.getValuesForAttribute(AttributeType.ORG));
+            }
+            final List<RpslObject> organisations = objectDao.getByKeys(ObjectType.ORGANISATION, organisationKeys);
+
+            if (abuseContact) {
+                final Set<CIString> abuseContactKeys = Sets.newLinkedHashSet();
+                for (final RpslObject rpslObject : Iterables.concat(resources, organisations)) {
+                    abuseContactKeys.addAll(rpslObject.getValuesForAttribute(AttributeType.ABUSE_C));
+                }
+                objectDao.getByKeys(ObjectType.ROLE, abuseContactKeys);
+            }
+        }
+    }
 }
@@ -1,6 +1,7 @@
 package net.ripe.db.whois.api.rest.search;
 
 import net.ripe.db.whois.api.rest.domain.AbuseContact;
+import net.ripe.db.whois.common.dao.RpslObjectDao;
 import net.ripe.db.whois.common.rpsl.RpslObject;
 import net.ripe.db.whois.query.planner.AbuseCFinder;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -27,4 +28,14 @@ public class AbuseContactSearch {
             .map(abuseContact -> new AbuseContact(abuseContact.getNicHandle(), abuseContact.getAbuseMailbox(), abuseContact.isSuspect(), abuseContact.getOrgId()))
             .orElse(null);
     }
+
+    /**
+     * Find the abuse contact, reading the related objects using the given object dao.
+     */
+    @Nullable
+    public AbuseContact findAbuseContact(final RpslObject rpslObject, final RpslObjectDao rpslObjectDao) {
+        return abuseCFinder.getAbuseContact(rpslObject, rpslObjectDao)
+            .map(abuseContact -> new AbuseContact(abuseContact.getNicHandle(), abuseContact.getAbuseMailbox(), abuseContact.isSuspect(), abuseContact.getOrgId()))
+            .orElse(null);
+    }
 }
@@ -20,6 +20,7 @@ import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.Nullable;
+import java.util.Collections;
 import java.util.List;
 
 @Component
@@ -50,16 +51,24 @@ public class ResourceHolderSearch {
      */
     @Nullable
     public ResourceHolder findResourceHolder(final RpslObject rpslObject) {
+        return findResourceHolder(rpslObject, rpslObjectDao);
+    }
+
+    /**
+     * Find the resource holder, reading the organisation and parents using the given object dao.
+     */
+    @Nullable
+    public ResourceHolder findResourceHolder(final RpslObject rpslObject, final RpslObjectDao rpslObjectDao) {
         if (!RESOURCE_TYPES.contains(rpslObject.getType())) {
             return null;
         }
 
-        final RpslObject org = lookupOrganisation(rpslObject.getValueOrNullForAttribute(AttributeType.ORG));
+        final RpslObject org = lookupOrganisation(rpslObject.getValueOrNullForAttribute(AttributeType.ORG), rpslObjectDao);
         if (org != null) {
             return new ResourceHolder(org.getKey(), org.findAttribute(AttributeType.ORG_NAME).getCleanValue());
         }
 
-        return findInParents(rpslObject);
+        return findInParents(rpslObject, rpslObjectDao);
     }
 
     /**
@@ -68,7 +77,7 @@ public class ResourceHolderSearch {
      * @return
      */
     @Nullable
-    private ResourceHolder findInParents(final RpslObject rpslObject) {
+    private ResourceHolder findInParents(final RpslObject rpslObject, final RpslObjectDao rpslObjectDao) {
         if (! RESOURCE_TREE_TYPES.contains(rpslObject.getType())) {
             return null;
         }
@@ -81,9 +90,9 @@ public class ResourceHolderSearch {
         }
 
         for (IpEntry ipEntry : Lists.reverse(findParentsInTree(interval))) {
-            final RpslObject parent = lookup(ipEntry);
+            final RpslObject parent = lookup(ipEntry, rpslObjectDao);
             if ((parent != null) && (hasUserMntner(parent) || hasUserMntLower(parent))) {
-                final RpslObject org = lookupOrganisation(parent.getValueOrNullForAttribute(AttributeType.ORG));
+                final RpslObject org = lookupOrganisation(parent.getValueOrNullForAttribute(AttributeType.ORG), rpslObjectDao);
                 if (org != null) {
                     return new ResourceHolder(org.getKey(), org.getValueOrNullForAttribute(AttributeType.ORG_NAME));
                 }
@@ -106,7 +115,7 @@ public class ResourceHolderSearch {
     }
 
     @Nullable
-    private RpslObject lookup(final IpEntry ipEntry) {
+    private RpslObject lookup(final IpEntry ipEntry, final RpslObjectDao rpslObjectDao) {
         try {
             return rpslObjectDao.getById(ipEntry.getObjectId());
         } catch (EmptyResultDataAccessException e) {
@@ -115,7 +124,7 @@ public class ResourceHolderSearch {
     }
 
     @Nullable
-    private RpslObject lookupOrganisation(final CIString orgKey) {
+    private RpslObject lookupOrganisation(final CIString orgKey, final RpslObjectDao rpslObjectDao) {
         if (orgKey == null) {
             return null;
         }
@@ -127,6 +136,28 @@ public class ResourceHolderSearch {
         }
     }
 
+    /**
+     * @return the object ids of the parents of the resource, from the least specific.
+     */
+    public List<Integer> findParentIds(final RpslObject rpslObject) {
+        if (!RESOURCE_TREE_TYPES.contains(rpslObject.getType())) {
+            return Collections.emptyList();
+        }
+
+        final IpInterval interval;
+        try {
+            interval = IpInterval.parse(rpslObject.getKey());
+        } catch (IllegalArgumentException e) {
+            return Collections.emptyList();
+        }
+
+        final List<Integer> parentIds = Lists.newArrayList();
+        for (final IpEntry ipEntry : findParentsInTree(interval)) {
+            parentIds.add(ipEntry.getObjectId());
+        }
+        return parentIds;
+    }
+
     private List<? extends IpEntry> findParentsInTree(final IpInterval interval) {
         if (interval instanceof Ipv4Resource) {
             return ipv4Tree.findAllLessSpecific((Ipv4Resource)interval);
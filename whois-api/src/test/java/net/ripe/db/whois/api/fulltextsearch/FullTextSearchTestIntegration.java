@@ -20,6 +20,7 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import javax.sql.DataSource;
 import javax.ws.rs.BadRequestException;
@@ -207,6 +208,39 @@ public class FullTextSearchTestIntegration extends AbstractIntegrationTest {
         assertThat(facet.getValues().toString(), containsString("person (1)"));
     }
 
+    @Test
+    public void rebuild_in_shards_same_as_single_rebuild() {
+        for (int i = 1; i <= 30; i++) {
+            databaseHelper.addObject(RpslObject.parse(
+                    "mntner: DEV" + i + "-MNT\n" +
+                    "remarks: Some remark\n" +
+                    "source: RIPE"));
+            if (i % 3 == 0) {
+                databaseHelper.addObject(RpslObject.parse(
+                        "person: First Last\n" +
+                        "nic-hdl: AA" + i + "-RIPE\n" +
+                        "remarks: Other remark\n" +
+                        "source: RIPE"));
+            }
+        }
+        databaseHelper.deleteObject(RpslObject.parse("mntner: DEV1-MNT\nremarks: Some remark\nsource: RIPE"));
+        fullTextIndex.rebuild();
+        final QueryResponse expected = query("q=remark&facet=true");
+
+        ReflectionTestUtils.setField(fullTextIndex, "rebuildShards", 4);
+        try {
+            fullTextIndex.rebuild();
+        } finally {
+            ReflectionTestUtils.setField(fullTextIndex, "rebuildShards", 1);
+        }
+        final QueryResponse sharded = query("q=remark&facet=true");
+
+        assertThat(numFound(expected), is(39L));
+        assertThat(numFound(sharded), is(numFound(expected)));
+        assertThat(sharded.getFacetFields().get(0).getValues().toString(), is(expected.getFacetFields().get(0).getValues().toString()));
+        assertThat(sharded.getFacetFields().get(0).getValues().toString(), containsString("mntner (29)"));
+    }
+
     @Test
     public void search_multiple_results_with_search_limit() {
         databaseHelper.addObject(RpslObject.parse(
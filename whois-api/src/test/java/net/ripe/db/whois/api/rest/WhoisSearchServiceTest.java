@@ -58,6 +58,7 @@ public class WhoisSearchServiceTest {
                         null,
                         null,
                         null,
+                        null,
                         null);
                 fail("Disallowed option " + disallowedFlag + " did not throw error");
             } catch (WebApplicationException e) {
@@ -66,4 +67,30 @@ public class WhoisSearchServiceTest {
         }
     }
 
+    @Test
+    public void search_invalidCursor() {
+        try {
+            subject.search(
+                    request,
+                    Sets.newHashSet("TEST"),
+                    "AARDVARK-MNT",
+                    Collections.EMPTY_SET,
+                    null,
+                    Collections.EMPTY_SET,
+                    Collections.EMPTY_SET,
+                    Collections.EMPTY_SET,
+                    Collections.EMPTY_SET,
+                    null,
+                    null,
+                    null,
+                    null,
+                    10,
+                    null,
+                    "invalid");
+            fail("Invalid cursor did not throw error");
+        } catch (WebApplicationException e) {
+            assertThat(((WhoisResources)e.getResponse().getEntity()).getErrorMessages().get(0).getText(), is("Invalid cursor '%s'"));
+        }
+    }
+
 }
@@ -12,6 +12,7 @@ import net.ripe.db.whois.api.rest.domain.WhoisVersion;
 import net.ripe.db.whois.api.rest.search.AbuseContactSearch;
 import net.ripe.db.whois.api.rest.search.ManagedAttributeSearch;
 import net.ripe.db.whois.api.rest.search.ResourceHolderSearch;
+import net.ripe.db.whois.common.dao.RpslObjectDao;
 import net.ripe.db.whois.common.dao.VersionDateTime;
 import net.ripe.db.whois.common.domain.CIString;
 import net.ripe.db.whois.common.domain.Tag;
@@ -43,6 +44,9 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
 public class WhoisObjectServerMapperTest {
@@ -60,6 +64,8 @@ public class WhoisObjectServerMapperTest {
     private Parameters parameters;
     @Mock
     private SourceResolver sourceResolver;
+    @Mock
+    private RpslObjectDao rpslObjectDao;
 
     private WhoisObjectServerMapper whoisObjectServerMapper;
     private WhoisObjectMapper whoisObjectMapper;
@@ -70,7 +76,7 @@ public class WhoisObjectServerMapperTest {
                 new FormattedServerAttributeMapper(referencedTypeResolver, sourceResolver, BASE_URL),
                 new FormattedClientAttributeMapper()
         });
-        whoisObjectServerMapper = new WhoisObjectServerMapper(whoisObjectMapper, resourceHolderSearch, abuseContactSearch, managedAttributeSearch);
+        whoisObjectServerMapper = new WhoisObjectServerMapper(whoisObjectMapper, resourceHolderSearch, abuseContactSearch, managedAttributeSearch, rpslObjectDao);
         lenient().when(parameters.getUnformatted()).thenReturn(Boolean.FALSE);
         lenient().when(sourceResolver.getSource(anyString(), any(CIString.class), anyString())).thenReturn("test");
     }
@@ -209,4 +215,37 @@ public class WhoisObjectServerMapperTest {
         assertThat(tag3.getId(), is("barf"));
         assertThat(tag3.getData(), is("barf data"));
     }
+
+    @Test
+    public void batch_reads_related_objects_once() {
+        when(parameters.getAbuseContact()).thenReturn(Boolean.TRUE);
+        final RpslObject first = RpslObject.parse("inetnum: 10.0.0.0 - 10.0.0.255\norg: ORG-TEST1\nsource: TEST");
+        final RpslObject second = RpslObject.parse("inetnum: 10.0.1.0 - 10.0.1.255\norg: ORG-TEST1\nsource: TEST");
+        final RpslObject organisation = RpslObject.parse(1, "organisation: ORG-TEST1\nabuse-c: AB-TEST\nsource: TEST");
+        when(rpslObjectDao.getByKeyOrNull(ObjectType.ORGANISATION, ciString("ORG-TEST1"))).thenReturn(organisation);
+
+        final List<WhoisObject> whoisObjects = Lists.newArrayList();
+        final WhoisObjectServerMapper.Batch batch = whoisObjectServerMapper.newBatch(parameters, whoisObjects::add);
+        batch.add(first, null);
+        batch.add(second, null);
+        assertThat(whoisObjects, hasSize(0));
+
+        batch.flush();
+
+        assertThat(whoisObjects, hasSize(2));
+        assertThat(whoisObjects.get(0).getPrimaryKey().get(0).getValue(), is("10.0.0.0 - 10.0.0.255"));
+        assertThat(whoisObjects.get(1).getPrimaryKey().get(0).getValue(), is("10.0.1.0 - 10.0.1.255"));
+        verify(rpslObjectDao, times(1)).getByKeyOrNull(ObjectType.ORGANISATION, ciString("ORG-TEST1"));
+        verify(rpslObjectDao, times(1)).getByKeyOrNull(ObjectType.ROLE, ciString("AB-TEST"));
+    }
+
+    @Test
+    public void batch_maps_immediately_without_related_objects() {
+        final List<WhoisObject> whoisObjects = Lists.newArrayList();
+        final WhoisObjectServerMapper.Batch batch = whoisObjectServerMapper.newBatch(parameters, whoisObjects::add);
+
+        batch.add(RpslObject.parse("mntner: TEST-MNT\nsource: TEST"), null);
+
+        assertThat(whoisObjects, hasSize(1));
+    }
 }
@@ -7,6 +7,8 @@ import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.document.TextField;
+import org.apache.lucene.facet.taxonomy.FacetLabel;
+import org.apache.lucene.facet.taxonomy.TaxonomyReader;
 import org.apache.lucene.facet.taxonomy.TaxonomyWriter;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
@@ -15,6 +17,7 @@ import org.apache.lucene.queryparser.classic.QueryParser;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.TopScoreDocCollector;
+import org.apache.lucene.store.AlreadyClosedException;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -30,6 +33,9 @@ import java.util.concurrent.TimeUnit;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.fail;
 
 public class IndexTemplateTest {
@@ -215,6 +221,58 @@ public class IndexTemplateTest {
         }
     }
 
+    @Test
+    public void write_without_commit() throws IOException {
+        subject.write((indexWriter, taxonomyWriter) -> addDoc(indexWriter, "title", "isbn"), false);
+
+        assertThat(numDocs(), is(1));
+
+        try {
+            subject.write((indexWriter, taxonomyWriter) -> {
+                throw new IOException();
+            }, false);
+
+            fail("Expected exception");
+        } catch (IOException ignored) {
+        }
+
+        // uncommitted changes are rolled back
+        assertThat(numDocs(), is(0));
+    }
+
+    @Test
+    public void uncommitted_changes_committed_on_close() throws IOException {
+        subject.write((indexWriter, taxonomyWriter) -> addDoc(indexWriter, "title", "isbn"), false);
+        subject.close();
+
+        subject = new IndexTemplate(folder.getAbsolutePath(), new IndexWriterConfig(analyzer));
+
+        assertThat(numDocs(), is(1));
+    }
+
+    @Test
+    public void taxonomy_reader_shared_and_refreshed() throws IOException {
+        final TaxonomyReader taxonomyReader = subject.read((indexReader, reader) -> reader);
+        assertThat(subject.read((indexReader, reader) -> reader), is(sameInstance(taxonomyReader)));
+
+        final FacetLabel category = new FacetLabel("title", "Lucene");
+        subject.write((indexWriter, taxonomyWriter) -> {
+            addDoc(indexWriter, "Lucene", "isbn");
+            taxonomyWriter.addCategory(category);
+        });
+
+        final TaxonomyReader refreshedReader = subject.read((indexReader, reader) -> reader);
+        assertThat(refreshedReader, is(not(sameInstance(taxonomyReader))));
+        assertThat(subject.read((indexReader, reader) -> reader.getOrdinal(category)), is(not(TaxonomyReader.INVALID_ORDINAL)));
+    }
+
+    @Test
+    public void read_after_close() {
+        subject.close();
+
+        assertThrows(AlreadyClosedException.class, this::numDocs);
+    }
+
     int numDocs() throws IOException {
         return subject.read((indexReader, taxonomyReader) -> indexReader.numDocs());
     }
@@ -20,6 +20,7 @@ import static com.fasterxml.jackson.annotation.JsonInclude.Include.NON_EMPTY;
         "service",
         "parameters",
         "objects",
+        "nextCursor",
         "sources",
         "errorMessages",
         "geolocationAttributes",
@@ -41,6 +42,9 @@ public class WhoisResources {
     @XmlElement(name = "objects", required = true)
     @JsonProperty(value = "objects", required = true)
     private WhoisObjects objects;
+    @XmlElement(name = "next-cursor")
+    @JsonProperty(value = "next-cursor")
+    private String nextCursor;
     @XmlElement(name = "sources")
     private Sources sources;
     @XmlElement
@@ -110,6 +114,15 @@ public class WhoisResources {
         return this;
     }
 
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public WhoisResources setNextCursor(final String nextCursor) {
+        this.nextCursor = nextCursor;
+        return this;
+    }
+
     public WhoisResources setGeolocationAttributes(final GeolocationAttributes geolocationAttributes) {
         this.geolocationAttributes = geolocationAttributes;
         return this;
@@ -0,0 +1,187 @@
+package net.ripe.db.whois.common.collect;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * A {@link ProxyIterable} that loads the next batches on an executor while the current batch is being consumed.
+ * <p/>
+ * At most {@code depth} batches are loaded ahead of the consumer. The batch size starts at {@code minPrefetch} and is
+ * doubled (up to {@code maxPrefetch}) while batches load faster than half the target latency, and halved when they
+ * take longer than the target latency.
+ * <p/>
+ * Unlike {@link ProxyIterable}, batches for which the loader returns nothing are skipped rather than represented by null.
+ */
+public class PrefetchingProxyIterable<P, R> implements Iterable<R> {
+    private final Iterable<? extends P> source;
+    private final ProxyLoader<P, R> loader;
+    private final ExecutorService executorService;
+    private final int depth;
+    private final int minPrefetch;
+    private final int maxPrefetch;
+    private final long targetLatencyNanos;
+
+    private final Set<PrefetchingIterator> iterators = ConcurrentHashMap.newKeySet();
+    private volatile boolean cancelled;
+
+    public PrefetchingProxyIterable(final Iterable<? extends P> source,
+                                    final ProxyLoader<P, R> loader,
+                                    final ExecutorService executorService,
+                                    final int depth,
+                                    final int minPrefetch,
+                                    final int maxPrefetch,
+                                    final long targetLatencyNanos) {
+        if (depth < 1 || minPrefetch < 1 || maxPrefetch < minPrefetch) {
+            throw new IllegalArgumentException(String.format("Invalid depth %d or prefetch range %d-%d", depth, minPrefetch, maxPrefetch));
+        }
+
+        this.source = source;
+        this.loader = loader;
+        this.executorService = executorService;
+        this.depth = depth;
+        this.minPrefetch = minPrefetch;
+        this.maxPrefetch = maxPrefetch;
+        this.targetLatencyNanos = targetLatencyNanos;
+    }
+
+    @Override
+    public Iterator<R> iterator() {
+        final PrefetchingIterator iterator = new PrefetchingIterator();
+        iterators.add(iterator);
+        return iterator;
+    }
+
+    /**
+     * Stop loading batches for all iterators, interrupting loads in progress. Iterating afterwards throws {@link CancellationException}.
+     */
+    public void cancel() {
+        cancelled = true;
+        for (final PrefetchingIterator iterator : iterators) {
+            iterator.cancel();
+        }
+        iterators.clear();
+    }
+
+    private static final class Batch<R> {
+        private final List<R> results;
+        private final long elapsedNanos;
+
+        private Batch(final List<R> results, final long elapsedNanos) {
+            this.results = results;
+            this.elapsedNanos = elapsedNanos;
+        }
+    }
+
+    private final class PrefetchingIterator implements Iterator<R> {
+        private final Iterator<? extends P> sourceIterator = source.iterator();
+        private final Deque<Future<Batch<R>>> pending = new ConcurrentLinkedDeque<>();
+        private int prefetch = minPrefetch;
+        private List<R> batch = Collections.emptyList();
+        private int idx;
+
+        @Override
+        public boolean hasNext() {
+            while (idx == batch.size()) {
+                checkCancelled();
+                fill();
+
+                final Future<Batch<R>> next = pending.poll();
+                if (next == null) {
+                    iterators.remove(this);
+                    return false;
+                }
+
+                final Batch<R> loaded = await(next);
+                adapt(loaded);
+
+                batch = loaded.results;
+                idx = 0;
+
+                // keep loading ahead while this batch is being consumed
+                fill();
+            }
+
+            return true;
+        }
+
+        @Override
+        public R next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            return batch.get(idx++);
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        private void fill() {
+            while (!cancelled && pending.size() < depth && sourceIterator.hasNext()) {
+                final List<P> proxyBatch = Lists.newArrayListWithExpectedSize(prefetch);
+                while (sourceIterator.hasNext() && proxyBatch.size() < prefetch) {
+                    proxyBatch.add(sourceIterator.next());
+                }
+
+                pending.add(executorService.submit(() -> load(proxyBatch)));
+            }
+        }
+
+        private Batch<R> load(final List<P> proxyBatch) {
+            final long start = System.nanoTime();
+            final List<R> result = Lists.newArrayListWithExpectedSize(proxyBatch.size());
+            loader.load(proxyBatch, result);
+            return new Batch<>(result, System.nanoTime() - start);
+        }
+
+        private Batch<R> await(final Future<Batch<R>> future) {
+            try {
+                return future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                cancel();
+                throw new CancellationException("Interrupted while loading batch");
+            } catch (ExecutionException e) {
+                cancel();
+                Throwables.throwIfUnchecked(e.getCause());
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+
+        private void adapt(final Batch<R> loaded) {
+            if (loaded.elapsedNanos > targetLatencyNanos) {
+                prefetch = Math.max(minPrefetch, prefetch / 2);
+            } else if (loaded.elapsedNanos < targetLatencyNanos / 2) {
+                prefetch = Math.min(maxPrefetch, prefetch * 2);
+            }
+        }
+
+        private void checkCancelled() {
+            if (cancelled) {
+                throw new CancellationException("Loading cancelled");
+            }
+        }
+
+        private void cancel() {
+            Future<Batch<R>> future;
+            while ((future = pending.poll()) != null) {
+                future.cancel(true);
+            }
+        }
+    }
+}
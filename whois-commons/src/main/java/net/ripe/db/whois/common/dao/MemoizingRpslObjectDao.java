@@ -0,0 +1,191 @@
+package net.ripe.db.whois.common.dao;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import net.ripe.db.whois.common.domain.CIString;
+import net.ripe.db.whois.common.domain.Identifiable;
+import net.ripe.db.whois.common.rpsl.AttributeType;
+import net.ripe.db.whois.common.rpsl.ObjectType;
+import net.ripe.db.whois.common.rpsl.RpslObject;
+import org.springframework.dao.EmptyResultDataAccessException;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static net.ripe.db.whois.common.domain.CIString.ciString;
+
+/**
+ * Remembers the objects looked up by id or key, for the duration of a single request.
+ * <p/>
+ * Objects referenced by many results (parents, organisations, roles) are then read once per request instead of once
+ * per result, and can be read ahead in a single batch using {@link #prefetch(Collection)}. Not thread safe.
+ */
+public class MemoizingRpslObjectDao implements RpslObjectDao {
+    private final RpslObjectDao rpslObjectDao;
+
+    private final Map<Integer, Optional<RpslObject>> objectsById = Maps.newHashMap();
+    private final Map<ObjectType, Map<CIString, Optional<RpslObject>>> objectsByKey = Maps.newEnumMap(ObjectType.class);
+
+    public MemoizingRpslObjectDao(final RpslObjectDao rpslObjectDao) {
+        this.rpslObjectDao = rpslObjectDao;
+    }
+
+    /**
+     * Read the objects that were not read before in a single batch.
+     */
+    public void prefetch(final Collection<Integer> objectIds) {
+        final List<Identifiable> proxy = Lists.newArrayList();
+        for (final Integer objectId : objectIds) {
+            if (!objectsById.containsKey(objectId)) {
+                proxy.add(() -> objectId);
+            }
+        }
+
+        if (proxy.isEmpty()) {
+            return;
+        }
+
+        final List<RpslObject> result = Lists.newArrayListWithExpectedSize(proxy.size());
+        rpslObjectDao.load(proxy, result);
+
+        for (final RpslObject rpslObject : result) {
+            objectsById.put(rpslObject.getObjectId(), Optional.of(rpslObject));
+        }
+
+        for (final Identifiable identifiable : proxy) {
+            objectsById.putIfAbsent(identifiable.getObjectId(), Optional.empty());
+        }
+    }
+
+    @CheckForNull
+    public RpslObject getByIdOrNull(final int objectId) {
+        return objectsById.computeIfAbsent(objectId, key -> {
+            try {
+                return Optional.of(rpslObjectDao.getById(objectId));
+            } catch (EmptyResultDataAccessException e) {
+                return Optional.empty();
+            }
+        }).orElse(null);
+    }
+
+    @Override
+    public RpslObject getById(final int objectId) {
+        final RpslObject rpslObject = getByIdOrNull(objectId);
+        if (rpslObject == null) {
+            throw new EmptyResultDataAccessException(1);
+        }
+        return rpslObject;
+    }
+
+    @Override
+    @Nullable
+    public RpslObject getByKeyOrNull(final ObjectType type, final CIString key) {
+        return objectsByKey.computeIfAbsent(type, objectType -> Maps.newHashMap()).computeIfAbsent(key, searchKey -> {
+            final RpslObject rpslObject = rpslObjectDao.getByKeyOrNull(type, searchKey);
+            if (rpslObject != null) {
+                objectsById.putIfAbsent(rpslObject.getObjectId(), Optional.of(rpslObject));
+            }
+            return Optional.ofNullable(rpslObject);
+        }).orElse(null);
+    }
+
+    @Override
+    @Nullable
+    public RpslObject getByKeyOrNull(final ObjectType type, final String searchKey) {
+        return getByKeyOrNull(type, ciString(searchKey));
+    }
+
+    @Override
+    public RpslObject getByKey(final ObjectType type, final CIString key) {
+        final RpslObject rpslObject = getByKeyOrNull(type, key);
+        if (rpslObject == null) {
+            throw new EmptyResultDataAccessException(1);
+        }
+        return rpslObject;
+    }
+
+    @Override
+    public RpslObject getByKey(final ObjectType type, final String searchKey) {
+        return getByKey(type, ciString(searchKey));
+    }
+
+    @Override
+    public List<RpslObject> getByKeys(final ObjectType type, final Collection<CIString> searchKeys) {
+        final List<RpslObject> result = Lists.newArrayListWithExpectedSize(searchKeys.size());
+        for (final CIString searchKey : searchKeys) {
+            final RpslObject rpslObject = getByKeyOrNull(type, searchKey);
+            if (rpslObject != null) {
+                result.add(rpslObject);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void load(final List<Identifiable> proxy, final List<RpslObject> result) {
+        rpslObjectDao.load(proxy, result);
+    }
+
+    @Override
+    public LocalDateTime getLastUpdated(final int objectId) {
+        return rpslObjectDao.getLastUpdated(objectId);
+    }
+
+    @Override
+    public Map<Integer, LocalDateTime> getLastUpdated(final Collection<Integer> objectIds) {
+        return rpslObjectDao.getLastUpdated(objectIds);
+    }
+
+    @Override
+    public RpslObject findAsBlock(final long begin, final long end) {
+        return rpslObjectDao.findAsBlock(begin, end);
+    }
+
+    @Override
+    public List<RpslObject> findAsBlockIntersections(final long begin, final long end) {
+        return rpslObjectDao.findAsBlockIntersections(begin, end);
+    }
+
+    @Override
+    public RpslObjectInfo findByKey(final ObjectType type, final String searchKey) {
+        return rpslObjectDao.findByKey(type, searchKey);
+    }
+
+    @Override
+    public RpslObjectInfo findByKey(final ObjectType type, final CIString searchKey) {
+        return rpslObjectDao.findByKey(type, searchKey);
+    }
+
+    @Override
+    @Nullable
+    public RpslObjectInfo findByKeyOrNull(final ObjectType type, final String searchKey) {
+        return rpslObjectDao.findByKeyOrNull(type, searchKey);
+    }
+
+    @Override
+    @Nullable
+    public RpslObjectInfo findByKeyOrNull(final ObjectType type, final CIString searchKey) {
+        return rpslObjectDao.findByKeyOrNull(type, searchKey);
+    }
+
+    @Override
+    public List<RpslObjectInfo> findByAttribute(final AttributeType attributeType, final String attributeValue) {
+        return rpslObjectDao.findByAttribute(attributeType, attributeValue);
+    }
+
+    @Override
+    public List<RpslObjectInfo> findMemberOfByObjectTypeWithoutMbrsByRef(final ObjectType objectType, final String attributeValue) {
+        return rpslObjectDao.findMemberOfByObjectTypeWithoutMbrsByRef(objectType, attributeValue);
+    }
+
+    @Override
+    public Collection<RpslObjectInfo> relatedTo(final RpslObject identifiable, final Set<ObjectType> excludeObjectTypes) {
+        return rpslObjectDao.relatedTo(identifiable, excludeObjectTypes);
+    }
+}
@@ -3,6 +3,8 @@ package net.ripe.db.whois.common.dao;
 import net.ripe.db.whois.common.domain.serials.SerialEntry;
 import net.ripe.db.whois.common.domain.serials.SerialRange;
 
+import java.util.Map;
+
 public interface SerialDao {
 
     SerialRange getSerials();
@@ -11,5 +13,10 @@ public interface SerialDao {
 
     SerialEntry getByIdForNrtm(int serialId);
 
+    /**
+     * @return the serial entries from fromSerialId up to and including toSerialId, keyed by serial id in serial order.
+     */
+    Map<Integer, SerialEntry> getByIdRangeForNrtm(int fromSerialId, int toSerialId);
+
     Integer getAgeOfExactOrNextExistingSerial(int serialId);
 }
@@ -1,6 +1,5 @@
 package net.ripe.db.whois.common.dao.jdbc;
 
-import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
@@ -33,6 +32,7 @@ import org.springframework.dao.IncorrectResultSizeDataAccessException;
 import org.springframework.dao.RecoverableDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Repository;
 
@@ -46,7 +46,6 @@ import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
@@ -62,15 +61,33 @@ public class JdbcRpslObjectDao implements RpslObjectDao {
 
     private final JdbcTemplate jdbcTemplate;
     private final SourceContext sourceContext;
+    private final RpslObjectLoadStatistics loadStatistics;
+    @Nullable private final RpslObjectCache objectCache;
 
     @Autowired
-    public JdbcRpslObjectDao(@Qualifier("sourceAwareDataSource") final DataSource dataSource, final SourceContext sourceContext) {
+    public JdbcRpslObjectDao(@Qualifier("sourceAwareDataSource") final DataSource dataSource,
+                             final SourceContext sourceContext,
+                             final RpslObjectLoadStatistics loadStatistics,
+                             final RpslObjectCache objectCache) {
         this.jdbcTemplate = new JdbcTemplate(dataSource);
         this.sourceContext = sourceContext;
+        this.loadStatistics = loadStatistics;
+        this.objectCache = objectCache;
+    }
+
+    // the object cache is keyed by the current source, so it can't be used if the datasource does not depend on it
+    protected JdbcRpslObjectDao(final DataSource dataSource,
+                                final SourceContext sourceContext,
+                                final RpslObjectLoadStatistics loadStatistics) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.sourceContext = sourceContext;
+        this.loadStatistics = loadStatistics;
+        this.objectCache = null;
     }
 
     @Override
     public void load(final List<Identifiable> proxy, final List<RpslObject> result) {
+        final long start = System.nanoTime();
         final Map<Integer, RpslObject> loadedObjects = Maps.newHashMapWithExpectedSize(proxy.size());
 
         Set<Integer> differences = loadObjects(proxy, loadedObjects);
@@ -94,21 +111,22 @@ public class JdbcRpslObjectDao implements RpslObjectDao {
             }
         }
 
-        final List<RpslObject> rpslObjects = Lists.newArrayList(loadedObjects.values());
-        Collections.sort(rpslObjects, new Comparator<RpslObject>() {
-            final List<Integer> requestedIds = Lists.newArrayList(Iterables.transform(proxy, input -> input.getObjectId()));
-
-            @Override
-            public int compare(final RpslObject o1, final RpslObject o2) {
-                return requestedIds.indexOf(o1.getObjectId()) - requestedIds.indexOf(o2.getObjectId());
+        // TODO [AK] Return result rather than adding all to the collection
+        // return objects in requested order (first occurrence wins), removing them so duplicate ids are only added once
+        for (final Identifiable identifiable : proxy) {
+            final RpslObject rpslObject = loadedObjects.remove(identifiable.getObjectId());
+            if (rpslObject != null) {
+                result.add(rpslObject);
             }
-        });
+        }
 
-        // TODO [AK] Return result rather than adding all to the collection
-        result.addAll(rpslObjects);
+        loadStatistics.record(proxy.size(), System.nanoTime() - start);
     }
 
     private Set<Integer> loadObjects(final List<Identifiable> proxy, final Map<Integer, RpslObject> loadedObjects) {
+        final boolean cacheable = isCacheable();
+        final long generation = cacheable ? objectCache.getGeneration() : 0;
+
         final StringBuilder queryBuilder = new StringBuilder();
         final List<Integer> objectIds = Lists.newArrayListWithExpectedSize(proxy.size());
         for (final Identifiable identifiable : proxy) {
@@ -117,8 +135,11 @@ public class JdbcRpslObjectDao implements RpslObjectDao {
                 continue;
             }
 
+            final RpslObject cached;
             if (identifiable instanceof RpslObject) {
                 loadedObjects.put(objectId, (RpslObject) identifiable);
+            } else if (cacheable && (cached = objectCache.getIfPresent(objectId)) != null) {
+                loadedObjects.put(objectId, cached);
             } else {
                 if (queryBuilder.length() > 0) {
                     // UNION ALL is much faster than IN
@@ -135,7 +156,7 @@ public class JdbcRpslObjectDao implements RpslObjectDao {
             }
         }
 
-        final List<RpslObject> rpslObjects = jdbcTemplate.query(
+        final List<RpslObject> rpslObjects = objectIds.isEmpty() ? Collections.emptyList() : jdbcTemplate.query(
                 queryBuilder.toString(),
                 new PreparedStatementSetter() {
                     @Override
@@ -151,6 +172,10 @@ public class JdbcRpslObjectDao implements RpslObjectDao {
             loadedObjects.put(rpslObject.getObjectId(), rpslObject);
         }
 
+        if (cacheable) {
+            objectCache.putAll(generation, rpslObjects);
+        }
+
         if (proxy.size() == loadedObjects.size()) {
             return Collections.emptySet();
         }
@@ -168,6 +193,10 @@ public class JdbcRpslObjectDao implements RpslObjectDao {
 
     @Override
     public RpslObject getById(final int objectId) {
+        if (isCacheable()) {
+            return objectCache.getById(objectId, () -> JdbcRpslObjectOperations.getObjectById(jdbcTemplate, objectId));
+        }
+
         return JdbcRpslObjectOperations.getObjectById(jdbcTemplate, objectId);
     }
 
@@ -177,19 +206,69 @@ public class JdbcRpslObjectDao implements RpslObjectDao {
         return (Timestamp.fromSeconds(timestamp)).toLocalDateTime();
     }
 
+    @Override
+    public Map<Integer, LocalDateTime> getLastUpdated(final Collection<Integer> objectIds) {
+        final Map<Integer, LocalDateTime> lastUpdated = Maps.newHashMapWithExpectedSize(objectIds.size());
+        if (objectIds.isEmpty()) {
+            return lastUpdated;
+        }
+
+        new NamedParameterJdbcTemplate(jdbcTemplate).query(
+                "SELECT object_id, timestamp FROM last WHERE object_id IN (:objectIds)",
+                Collections.singletonMap("objectIds", objectIds),
+                (RowCallbackHandler) rs -> lastUpdated.put(rs.getInt(1), Timestamp.fromSeconds(rs.getLong(2)).toLocalDateTime()));
+
+        return lastUpdated;
+    }
+
     @Override
     public RpslObject getByKey(final ObjectType type, final String key) {
-        return getById(findByKey(type, key).getObjectId());
+        final RpslObject cached = getCachedByKey(type, key);
+        if (cached != null) {
+            return cached;
+        }
+
+        final long generation = isCacheable() ? objectCache.getGeneration() : 0;
+        final RpslObjectInfo rpslObjectInfo = findByKey(type, key);
+        return getById(generation, type, key, rpslObjectInfo.getObjectId());
     }
 
     @Override
     @Nullable
     public RpslObject getByKeyOrNull(final ObjectType type, final String key) {
+        final RpslObject cached = getCachedByKey(type, key);
+        if (cached != null) {
+            return cached;
+        }
+
+        final long generation = isCacheable() ? objectCache.getGeneration() : 0;
         final RpslObjectInfo rpslObjectInfo = findByKeyOrNull(type, key);
         if (rpslObjectInfo == null) {
             return null;
         }
-        return getById(rpslObjectInfo.getObjectId());
+        return getById(generation, type, key, rpslObjectInfo.getObjectId());
+    }
+
+    private boolean isCacheable() {
+        return objectCache != null && objectCache.isCacheable();
+    }
+
+    @CheckForNull
+    private RpslObject getCachedByKey(final ObjectType type, final String key) {
+        if (!isCacheable()) {
+            return null;
+        }
+
+        final Integer objectId = objectCache.getObjectIdIfPresent(type, key);
+        return objectId == null ? null : objectCache.getIfPresent(objectId);
+    }
+
+    private RpslObject getById(final long generation, final ObjectType type, final String key, final int objectId) {
+        final RpslObject rpslObject = getById(objectId);
+        if (isCacheable()) {
+            objectCache.putObjectId(generation, type, key, objectId);
+        }
+        return rpslObject;
     }
 
     @Override
@@ -1,6 +1,7 @@
 package net.ripe.db.whois.common.dao.jdbc;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import net.ripe.db.whois.common.DateTimeProvider;
 import net.ripe.db.whois.common.dao.RpslObjectInfo;
@@ -30,6 +31,7 @@ import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
 import org.springframework.jdbc.datasource.init.DatabasePopulatorUtils;
@@ -41,6 +43,7 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 @Component
@@ -514,14 +517,14 @@ public class JdbcRpslObjectOperations {
 
     //   [TP] If operation is delete return the previous version of the object [needed by NRTM],
     //        otherwise return the exact version which is either in history or in last
-    private static SerialEntry getSerialEntryWithBlobsForNrtm(final JdbcTemplate jdbcTemplate, final int serialId) {
-        return jdbcTemplate.queryForObject("" +
+    private static final String SERIAL_ENTRY_WITH_BLOBS_FOR_NRTM_QUERY = "" +
                 "SELECT serials.operation, " +
                 "       serials.atlast, " +
                 "       serials.object_id, " +
                 "       IF(serials.operation = 2, " +
                 "                rdp_history.object, " +
-                "                COALESCE(legacy_history.object, last.object)) as object " +
+                "                COALESCE(legacy_history.object, last.object)) as object, " +
+                "       serials.serial_id " +
                 "FROM   serials " +
                 "       LEFT JOIN last " +
                 "              ON last.object_id = serials.object_id" +
@@ -531,7 +534,10 @@ public class JdbcRpslObjectOperations {
                 "                 AND legacy_history.sequence_id = serials.sequence_id " +
                 "       LEFT JOIN history rdp_history " +
                 "              ON rdp_history.object_id = serials.object_id " +
-                "                 AND rdp_history.sequence_id = serials.sequence_id - 1 " +
+                "                 AND rdp_history.sequence_id = serials.sequence_id - 1 ";
+
+    private static SerialEntry getSerialEntryWithBlobsForNrtm(final JdbcTemplate jdbcTemplate, final int serialId) {
+        return jdbcTemplate.queryForObject(SERIAL_ENTRY_WITH_BLOBS_FOR_NRTM_QUERY +
                 "WHERE  serials.serial_id = ?", new RowMapper<SerialEntry>() {
             @Override
             public SerialEntry mapRow(ResultSet rs, int rowNum) throws SQLException {
@@ -544,4 +550,30 @@ public class JdbcRpslObjectOperations {
             }
         }, serialId);
     }
+
+    /**
+     * Read the serial entries in a range with a single query, for NRTM; serials missing from the range are skipped.
+     *
+     * @return the serial entries keyed by serial id, in serial order.
+     */
+    public static Map<Integer, SerialEntry> getSerialEntriesForNrtm(final JdbcTemplate jdbcTemplate, final int fromSerialId, final int toSerialId) {
+        final Map<Integer, SerialEntry> serialEntries = Maps.newLinkedHashMap();
+
+        jdbcTemplate.query(SERIAL_ENTRY_WITH_BLOBS_FOR_NRTM_QUERY +
+                "WHERE  serials.serial_id BETWEEN ? AND ? " +
+                "ORDER BY serials.serial_id", new RowCallbackHandler() {
+            @Override
+            public void processRow(final ResultSet rs) throws SQLException {
+                final int serialId = rs.getInt(5);
+                try {
+                    serialEntries.putIfAbsent(serialId, SerialEntry.createSerialEntryWithoutTimestamps
+                            (Operation.getByCode(rs.getInt(1)), rs.getBoolean(2), rs.getInt(3), rs.getBytes(4)));
+                } catch (RuntimeException e) {
+                    throw new IllegalStateException("Failed at serial_id " + serialId, e);
+                }
+            }
+        }, fromSerialId, toSerialId);
+
+        return serialEntries;
+    }
 }
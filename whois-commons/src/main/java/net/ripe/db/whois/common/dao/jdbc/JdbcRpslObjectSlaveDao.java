@@ -14,8 +14,10 @@ import javax.sql.DataSource;
 public class JdbcRpslObjectSlaveDao extends JdbcRpslObjectDao {
 
     @Autowired
-    public JdbcRpslObjectSlaveDao(@Qualifier("whoisSlaveDataSource") final DataSource dataSource, final SourceContext sourceContext) {
-        super(dataSource, sourceContext);
+    public JdbcRpslObjectSlaveDao(@Qualifier("whoisSlaveDataSource") final DataSource dataSource,
+                                  final SourceContext sourceContext,
+                                  final RpslObjectLoadStatistics loadStatistics) {
+        super(dataSource, sourceContext, loadStatistics);
     }
 
 }
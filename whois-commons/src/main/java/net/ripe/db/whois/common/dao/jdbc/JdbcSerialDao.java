@@ -12,6 +12,7 @@ import org.springframework.stereotype.Repository;
 
 import javax.annotation.CheckForNull;
 import javax.sql.DataSource;
+import java.util.Map;
 
 @Repository
 @Primary
@@ -42,6 +43,11 @@ public class JdbcSerialDao implements SerialDao {
         return JdbcRpslObjectOperations.getSerialEntryForNrtm(jdbcTemplate, serialId);
     }
 
+    @Override
+    public Map<Integer, SerialEntry> getByIdRangeForNrtm(final int fromSerialId, final int toSerialId) {
+        return JdbcRpslObjectOperations.getSerialEntriesForNrtm(jdbcTemplate, fromSerialId, toSerialId);
+    }
+
     @Override
     @CheckForNull
     public Integer getAgeOfExactOrNextExistingSerial(final int serialId) {
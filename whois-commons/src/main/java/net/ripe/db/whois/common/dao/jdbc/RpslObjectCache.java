@@ -0,0 +1,247 @@
+package net.ripe.db.whois.common.dao.jdbc;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.Maps;
+import net.ripe.db.whois.common.domain.CIString;
+import net.ripe.db.whois.common.rpsl.ObjectType;
+import net.ripe.db.whois.common.rpsl.RpslObject;
+import net.ripe.db.whois.common.source.Source;
+import net.ripe.db.whois.common.source.SourceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.CheckForNull;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * Cache of parsed objects read from slave sources, invalidated from the serials applied to the IP trees by
+ * {@link net.ripe.db.whois.common.iptree.IpTreeCacheManager}, so cached objects are as up to date as the IP trees.
+ * <p/>
+ * Objects are cached by object id, and object ids by primary key; a key lookup is only answered from the cache while
+ * the object it refers to is cached as well. Disabled unless whois.object.cache.size is set.
+ */
+@Component
+public class RpslObjectCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RpslObjectCache.class);
+
+    private final SourceContext sourceContext;
+    private final boolean enabled;
+
+    private final Cache<ObjectIdKey, RpslObject> objects;
+    private final Cache<PrimaryKey, Integer> objectIds;
+    private final Map<Source, SourceState> sourceStates = Maps.newConcurrentMap();
+
+    @Autowired
+    public RpslObjectCache(final SourceContext sourceContext,
+                           @Value("${whois.object.cache.size:0}") final long maximumSize) {
+        this.sourceContext = sourceContext;
+        this.enabled = maximumSize > 0;
+        this.objects = CacheBuilder.newBuilder().maximumSize(Math.max(0, maximumSize)).recordStats().build();
+        this.objectIds = CacheBuilder.newBuilder().maximumSize(Math.max(0, maximumSize)).build();
+
+        if (enabled) {
+            LOGGER.info("Caching up to {} objects", maximumSize);
+        }
+    }
+
+    /**
+     * @return if reads from the current source are cached.
+     */
+    public boolean isCacheable() {
+        return enabled && sourceContext.getCurrentSource().getType() == Source.Type.SLAVE;
+    }
+
+    @CheckForNull
+    public RpslObject getIfPresent(final int objectId) {
+        return objects.getIfPresent(new ObjectIdKey(sourceContext.getCurrentSource(), objectId));
+    }
+
+    public RpslObject getById(final int objectId, final Supplier<RpslObject> loader) {
+        final Source source = sourceContext.getCurrentSource();
+        final ObjectIdKey key = new ObjectIdKey(source, objectId);
+
+        final RpslObject cached = objects.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        final SourceState sourceState = getSourceState(source);
+        final long generation = sourceState.generation;
+        final RpslObject rpslObject = loader.get();
+        sourceState.putIfUnchanged(generation, () -> objects.put(key, rpslObject));
+        return rpslObject;
+    }
+
+    @CheckForNull
+    public Integer getObjectIdIfPresent(final ObjectType type, final String searchKey) {
+        return objectIds.getIfPresent(new PrimaryKey(sourceContext.getCurrentSource(), type, searchKey));
+    }
+
+    /**
+     * Cache objects loaded by the caller, provided no objects were invalidated since the given generation.
+     */
+    public void putAll(final long generation, final List<RpslObject> rpslObjects) {
+        final Source source = sourceContext.getCurrentSource();
+        getSourceState(source).putIfUnchanged(generation, () -> {
+            for (final RpslObject rpslObject : rpslObjects) {
+                objects.put(new ObjectIdKey(source, rpslObject.getObjectId()), rpslObject);
+            }
+        });
+    }
+
+    public void putObjectId(final long generation, final ObjectType type, final String searchKey, final int objectId) {
+        final Source source = sourceContext.getCurrentSource();
+        getSourceState(source).putIfUnchanged(generation, () -> objectIds.put(new PrimaryKey(source, type, searchKey), objectId));
+    }
+
+    /**
+     * @return the generation of the current source, to be read before loading objects that are to be cached.
+     */
+    public long getGeneration() {
+        return getSourceState(sourceContext.getCurrentSource()).generation;
+    }
+
+    public CacheStats getStats() {
+        return objects.stats();
+    }
+
+    public long getSize() {
+        return objects.size();
+    }
+
+    public void invalidateAll() {
+        for (final SourceState sourceState : sourceStates.values()) {
+            sourceState.invalidate(() -> {
+                objects.invalidateAll();
+                objectIds.invalidateAll();
+            });
+        }
+    }
+
+    /**
+     * Invalidate the objects of the source changed by the serials in the given range.
+     */
+    public void invalidate(final Source source, final JdbcTemplate jdbcTemplate, final long fromExclusive, final long toInclusive) {
+        final SourceState sourceState = sourceStates.get(source);
+        if (sourceState == null) {
+            return;
+        }
+
+        final List<Integer> changedObjectIds = jdbcTemplate.queryForList("" +
+                        "SELECT object_id " +
+                        "FROM serials " +
+                        "WHERE serial_id > ? " +
+                        "AND serial_id <= ?",
+                Integer.class,
+                fromExclusive,
+                toInclusive);
+
+        sourceState.invalidate(() -> {
+            for (final Integer objectId : changedObjectIds) {
+                objects.invalidate(new ObjectIdKey(source, objectId));
+            }
+        });
+
+        LOGGER.debug("Invalidated {} objects in {} (serials {} - {})", changedObjectIds.size(), source, fromExclusive, toInclusive);
+    }
+
+    /**
+     * Invalidate all objects of the source, e.g. when the IP trees of the source are rebuilt.
+     */
+    public void invalidate(final Source source) {
+        final SourceState sourceState = sourceStates.get(source);
+        if (sourceState == null) {
+            return;
+        }
+
+        sourceState.invalidate(() -> {
+            objects.asMap().keySet().removeIf(key -> key.source.equals(source));
+            objectIds.asMap().keySet().removeIf(key -> key.source.equals(source));
+        });
+    }
+
+    private SourceState getSourceState(final Source source) {
+        return sourceStates.computeIfAbsent(source, key -> new SourceState());
+    }
+
+    // objects loaded while entries of the source were being invalidated may already be stale, so they are not cached
+    private static final class SourceState {
+        private volatile long generation;
+
+        private synchronized void invalidate(final Runnable invalidation) {
+            generation++;
+            invalidation.run();
+        }
+
+        private synchronized void putIfUnchanged(final long expectedGeneration, final Runnable put) {
+            if (generation == expectedGeneration) {
+                put.run();
+            }
+        }
+    }
+
+    private static final class ObjectIdKey {
+        private final Source source;
+        private final int objectId;
+
+        private ObjectIdKey(final Source source, final int objectId) {
+            this.source = source;
+            this.objectId = objectId;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            final ObjectIdKey that = (ObjectIdKey) o;
+            return objectId == that.objectId && source.equals(that.source);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(source, objectId);
+        }
+    }
+
+    private static final class PrimaryKey {
+        private final Source source;
+        private final ObjectType type;
+        private final CIString searchKey;
+
+        private PrimaryKey(final Source source, final ObjectType type, final String searchKey) {
+            this.source = source;
+            this.type = type;
+            this.searchKey = CIString.ciString(searchKey);
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            final PrimaryKey that = (PrimaryKey) o;
+            return type == that.type && source.equals(that.source) && searchKey.equals(that.searchKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(source, type, searchKey);
+        }
+    }
+}
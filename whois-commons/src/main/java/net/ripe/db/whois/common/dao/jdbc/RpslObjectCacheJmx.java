@@ -0,0 +1,62 @@
+package net.ripe.db.whois.common.dao.jdbc;
+
+import net.ripe.db.whois.common.jmx.JmxBase;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Callable;
+
+@Component
+@ManagedResource(objectName = JmxBase.OBJECT_NAME_BASE + "RpslObjectCache", description = "Whois object cache")
+public class RpslObjectCacheJmx extends JmxBase {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RpslObjectCacheJmx.class);
+
+    private final RpslObjectCache objectCache;
+
+    @Autowired
+    public RpslObjectCacheJmx(final RpslObjectCache objectCache) {
+        super(LOGGER);
+        this.objectCache = objectCache;
+    }
+
+    @ManagedAttribute(description = "Number of cached objects")
+    public long getSize() {
+        return objectCache.getSize();
+    }
+
+    @ManagedAttribute(description = "Number of objects read from the cache")
+    public long getHitCount() {
+        return objectCache.getStats().hitCount();
+    }
+
+    @ManagedAttribute(description = "Number of objects not found in the cache")
+    public long getMissCount() {
+        return objectCache.getStats().missCount();
+    }
+
+    @ManagedAttribute(description = "Ratio of objects read from the cache")
+    public double getHitRate() {
+        return objectCache.getStats().hitRate();
+    }
+
+    @ManagedAttribute(description = "Number of objects evicted because the cache was full")
+    public long getEvictionCount() {
+        return objectCache.getStats().evictionCount();
+    }
+
+    @ManagedOperation(description = "Remove all objects from the cache")
+    public String invalidateAll() {
+        return invokeOperation("Invalidate object cache", "", new Callable<String>() {
+            @Override
+            public String call() {
+                objectCache.invalidateAll();
+                return "Object cache invalidated";
+            }
+        });
+    }
+}
@@ -0,0 +1,61 @@
+package net.ripe.db.whois.common.dao.jdbc;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Size and duration of the batches loaded by {@link JdbcRpslObjectDao#load}.
+ */
+@Component
+public class RpslObjectLoadStatistics {
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder objects = new LongAdder();
+    private final LongAdder nanos = new LongAdder();
+    private final LongAccumulator maxBatchSize = new LongAccumulator(Math::max, 0);
+    private final LongAccumulator maxBatchNanos = new LongAccumulator(Math::max, 0);
+
+    void record(final int batchSize, final long elapsedNanos) {
+        batches.increment();
+        objects.add(batchSize);
+        nanos.add(elapsedNanos);
+        maxBatchSize.accumulate(batchSize);
+        maxBatchNanos.accumulate(elapsedNanos);
+    }
+
+    public long getBatches() {
+        return batches.sum();
+    }
+
+    public long getObjects() {
+        return objects.sum();
+    }
+
+    public long getMaxBatchSize() {
+        return maxBatchSize.get();
+    }
+
+    public double getAverageBatchSize() {
+        final long count = batches.sum();
+        return count == 0 ? 0 : (double) objects.sum() / count;
+    }
+
+    public double getAverageBatchMillis() {
+        final long count = batches.sum();
+        return count == 0 ? 0 : (double) nanos.sum() / count / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    public double getMaxBatchMillis() {
+        return (double) maxBatchNanos.get() / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    public void reset() {
+        batches.reset();
+        objects.reset();
+        nanos.reset();
+        maxBatchSize.reset();
+        maxBatchNanos.reset();
+    }
+}
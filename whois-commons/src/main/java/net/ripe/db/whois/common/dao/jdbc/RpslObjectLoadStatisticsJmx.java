@@ -0,0 +1,67 @@
+package net.ripe.db.whois.common.dao.jdbc;
+
+import net.ripe.db.whois.common.jmx.JmxBase;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Callable;
+
+@Component
+@ManagedResource(objectName = JmxBase.OBJECT_NAME_BASE + "RpslObjectLoading", description = "Whois object batch loading statistics")
+public class RpslObjectLoadStatisticsJmx extends JmxBase {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RpslObjectLoadStatisticsJmx.class);
+
+    private final RpslObjectLoadStatistics loadStatistics;
+
+    @Autowired
+    public RpslObjectLoadStatisticsJmx(final RpslObjectLoadStatistics loadStatistics) {
+        super(LOGGER);
+        this.loadStatistics = loadStatistics;
+    }
+
+    @ManagedAttribute(description = "Number of batches loaded")
+    public long getBatches() {
+        return loadStatistics.getBatches();
+    }
+
+    @ManagedAttribute(description = "Number of objects loaded")
+    public long getObjects() {
+        return loadStatistics.getObjects();
+    }
+
+    @ManagedAttribute(description = "Average number of objects per batch")
+    public double getAverageBatchSize() {
+        return loadStatistics.getAverageBatchSize();
+    }
+
+    @ManagedAttribute(description = "Largest number of objects in a batch")
+    public long getMaxBatchSize() {
+        return loadStatistics.getMaxBatchSize();
+    }
+
+    @ManagedAttribute(description = "Average time spent loading a batch (ms)")
+    public double getAverageBatchMillis() {
+        return loadStatistics.getAverageBatchMillis();
+    }
+
+    @ManagedAttribute(description = "Longest time spent loading a batch (ms)")
+    public double getMaxBatchMillis() {
+        return loadStatistics.getMaxBatchMillis();
+    }
+
+    @ManagedOperation(description = "Reset batch loading statistics")
+    public String reset() {
+        return invokeOperation("Reset batch loading statistics", "", new Callable<String>() {
+            @Override
+            public String call() {
+                loadStatistics.reset();
+                return "Batch loading statistics reset";
+            }
+        });
+    }
+}
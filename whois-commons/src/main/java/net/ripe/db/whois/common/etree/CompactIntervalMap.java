@@ -0,0 +1,649 @@
+package net.ripe.db.whois.common.etree;
+
+import com.google.common.collect.Lists;
+import net.ripe.db.whois.common.collect.CollectionHelper;
+import net.ripe.db.whois.common.ip.Interval;
+import org.apache.commons.lang.Validate;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A memory efficient {@link IntervalMap} that stores the intervals as primitive bounds, and the values as an
+ * int identifier, in flat arrays. Keys and values are only instantiated for the results of a lookup.
+ * <p/>
+ * The intervals are kept ordered by lower-bound, and by descending upper-bound for equal lower-bounds, which is a
+ * pre-order walk of the interval tree. Each interval also holds the index of its closest enclosing interval and
+ * the index after its last nested interval.
+ * <p/>
+ * New intervals are validated against the existing intervals and buffered in a {@link NestedIntervalMap}, which
+ * validates them against each other. Removed intervals are only marked as removed, and a new value for an existing
+ * interval is a removal followed by a buffered interval. Both are applied on the next lookup, or once the buffer
+ * grows beyond a quarter of the arrays, by merging into new arrays. This makes loading or removing a large number of
+ * intervals O(n log n), and since the arrays are never modified once merged, a copy shares them with its source.
+ * <p/>
+ * A map created with {@link #multiValue(Codec)} holds multiple values per interval, like a
+ * {@link MultiValueIntervalMap}. The values of an interval are stored as a run of equal intervals, ordered by value,
+ * which share the same enclosing interval.
+ * <p/>
+ * <strong>Note that this implementation is not synchronized</strong>, and lookups may modify the map when
+ * intervals are buffered.
+ *
+ * @param <K> the type of the interval (must implement {@link Interval}).
+ * @param <V> the type of the values to store.
+ */
+public final class CompactIntervalMap<K extends Interval<K>, V> implements IntervalMap<K, V> {
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int MIN_PENDING = 1024;
+    private static final int ROOT = -1;
+
+    /**
+     * Converts keys to primitive bounds, and values to int identifiers and optional words, and back.
+     */
+    public interface Codec<K extends Interval<K>, V> {
+        /**
+         * @return the number of longs used to store a single bound.
+         */
+        int getWords();
+
+        /**
+         * Store the bounds of <code>key</code> at <code>offset</code>, most significant word first. Words are
+         * compared as unsigned values.
+         */
+        void encode(K key, long[] begins, long[] ends, int offset);
+
+        K decode(long[] begins, long[] ends, int offset);
+
+        int getId(V value);
+
+        /**
+         * @return the number of longs used to store the rest of a value, besides its identifier.
+         */
+        default int getValueWords() {
+            return 0;
+        }
+
+        default void encodeValue(final V value, final long[] values, final int offset) {
+        }
+
+        V createValue(K key, int id, long[] values, int offset);
+    }
+
+    private final Codec<K, V> codec;
+    private final int words;
+    private final int valueWords;
+    private final Comparator<? super V> valueOrder;
+
+    private long[] begins;
+    private long[] ends;
+    private int[] ids;
+    private long[] values;
+    private int[] parents;
+    private int[] subtreeEnds;
+    private int size;
+    private BitSet removed;
+    private int nrRemoved;
+
+    private NestedIntervalMap<K, List<V>> pending;
+    private int pendingSize;
+
+    public CompactIntervalMap(final Codec<K, V> codec) {
+        this(codec, null);
+    }
+
+    private CompactIntervalMap(final Codec<K, V> codec, final Comparator<? super V> valueOrder) {
+        this.codec = codec;
+        this.words = codec.getWords();
+        this.valueWords = codec.getValueWords();
+        this.valueOrder = valueOrder;
+        clear();
+    }
+
+    /**
+     * @return an empty map that holds multiple values per interval, in their natural order.
+     */
+    public static <K extends Interval<K>, V extends Comparable<? super V>> CompactIntervalMap<K, V> multiValue(final Codec<K, V> codec) {
+        return new CompactIntervalMap<>(codec, Comparator.naturalOrder());
+    }
+
+    /**
+     * Construct a new {@link CompactIntervalMap} with (key, values) of
+     * <code>source</code> copied. The copy shares the arrays with the source.
+     *
+     * @param source the source to copy.
+     */
+    public CompactIntervalMap(final CompactIntervalMap<K, V> source) {
+        source.merge();
+
+        this.codec = source.codec;
+        this.words = source.words;
+        this.valueWords = source.valueWords;
+        this.valueOrder = source.valueOrder;
+        this.size = source.size;
+        this.begins = source.begins;
+        this.ends = source.ends;
+        this.ids = source.ids;
+        this.values = source.values;
+        this.parents = source.parents;
+        this.subtreeEnds = source.subtreeEnds;
+        clearPending();
+        clearRemoved();
+    }
+
+    public int size() {
+        merge();
+        return size;
+    }
+
+    @Override
+    public void put(final K key, final V value) {
+        Validate.notNull(key);
+        Validate.notNull(value);
+
+        final long[] bounds = encode(key);
+        int live = ROOT;
+        for (int index = findLast(bounds); index != ROOT && isEqual(index, bounds); index--) {
+            if (!removed.get(index)) {
+                if (valueOrder != null && value.equals(toValue(index))) {
+                    return;
+                }
+                live = index;
+            }
+        }
+
+        if (live == ROOT) {
+            final List<K> intersections = findIntersecting(bounds);
+            if (!intersections.isEmpty()) {
+                throw new IntersectingIntervalException(key, intersections);
+            }
+        }
+
+        // throws if the key intersects a buffered interval
+        putPending(key, value);
+        if (valueOrder == null && live != ROOT) {
+            // the arrays may be shared with a copy, so the existing interval is replaced on the next merge
+            removed.set(live);
+            nrRemoved++;
+        }
+        if (++pendingSize > Math.max(MIN_PENDING, size / 4)) {
+            merge();
+        }
+    }
+
+    @Override
+    public void remove(final K key) {
+        Validate.notNull(key);
+
+        final long[] bounds = encode(key);
+        for (int index = findLast(bounds); index != ROOT && isEqual(index, bounds); index--) {
+            if (!removed.get(index)) {
+                removed.set(index);
+                nrRemoved++;
+            }
+        }
+
+        pending.remove(key);
+    }
+
+    @Override
+    public void remove(final K key, final V value) {
+        Validate.notNull(key);
+        Validate.notNull(value);
+
+        final long[] bounds = encode(key);
+        for (int index = findLast(bounds); index != ROOT && isEqual(index, bounds); index--) {
+            if (!removed.get(index) && value.equals(toValue(index))) {
+                removed.set(index);
+                nrRemoved++;
+                return;
+            }
+        }
+
+        removePending(key, value);
+    }
+
+    @Override
+    public void clear() {
+        begins = new long[0];
+        ends = new long[0];
+        ids = new int[0];
+        values = new long[0];
+        parents = new int[0];
+        subtreeEnds = new int[0];
+        size = 0;
+        clearPending();
+        clearRemoved();
+    }
+
+    @Override
+    public List<V> findFirstLessSpecific(final K key) {
+        Validate.notNull(key);
+        final long[] bounds = encode(key);
+
+        int index = findExactOrFirstLessSpecific(bounds);
+        if (index != ROOT && isEqual(index, bounds)) {
+            index = parents[index];
+        }
+
+        return toValues(index);
+    }
+
+    @Override
+    public List<V> findExact(final K key) {
+        Validate.notNull(key);
+        merge();
+
+        final long[] bounds = encode(key);
+        final int index = findLast(bounds);
+        return index != ROOT && isEqual(index, bounds) ? toValues(index) : Collections.emptyList();
+    }
+
+    @Override
+    public List<V> findExactOrFirstLessSpecific(final K key) {
+        Validate.notNull(key);
+        return toValues(findExactOrFirstLessSpecific(encode(key)));
+    }
+
+    @Override
+    public List<V> findAllLessSpecific(final K key) {
+        Validate.notNull(key);
+        final long[] bounds = encode(key);
+
+        int index = findExactOrFirstLessSpecific(bounds);
+        if (index != ROOT && isEqual(index, bounds)) {
+            index = parents[index];
+        }
+
+        return toValuesLeastSpecificFirst(index);
+    }
+
+    @Override
+    public List<V> findExactAndAllLessSpecific(final K key) {
+        Validate.notNull(key);
+        return toValuesLeastSpecificFirst(findExactOrFirstLessSpecific(encode(key)));
+    }
+
+    @Override
+    public List<V> findFirstMoreSpecific(final K key) {
+        Validate.notNull(key);
+        merge();
+
+        final long[] bounds = encode(key);
+        final List<V> result = Lists.newArrayList();
+        int index = lowerBoundBegin(bounds);
+        while (index < size && compare(begins, index * words, bounds, words) <= 0) {
+            if (compare(ends, index * words, bounds, words) <= 0 && !isEqual(index, bounds)) {
+                addRun(result, index);
+                index = subtreeEnds[index];
+            } else {
+                index++;
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    public List<V> findAllMoreSpecific(final K key) {
+        Validate.notNull(key);
+        return findMoreSpecific(encode(key), false);
+    }
+
+    @Override
+    public List<V> findExactAndAllMoreSpecific(final K key) {
+        Validate.notNull(key);
+        return findMoreSpecific(encode(key), true);
+    }
+
+    private List<V> findMoreSpecific(final long[] bounds, final boolean includeExact) {
+        merge();
+
+        final List<V> result = Lists.newArrayList();
+        for (int index = lowerBoundBegin(bounds); index < size && compare(begins, index * words, bounds, words) <= 0; index++) {
+            if (compare(ends, index * words, bounds, words) <= 0 && (includeExact || !isEqual(index, bounds))) {
+                result.add(toValue(index));
+            }
+        }
+
+        return result;
+    }
+
+    private int findExactOrFirstLessSpecific(final long[] bounds) {
+        merge();
+        return findContaining(bounds, 0, bounds, words);
+    }
+
+    /*
+     * The closest enclosing interval is the last interval ordered before the key, or one of its parents.
+     */
+    private int findContaining(final long[] lower, final int lowerOffset, final long[] upper, final int upperOffset) {
+        int index = upperBound(lower, lowerOffset, upper, upperOffset) - 1;
+        while (index != ROOT && !(compare(begins, index * words, lower, lowerOffset) <= 0 && compare(ends, index * words, upper, upperOffset) >= 0)) {
+            index = parents[index];
+        }
+
+        return index;
+    }
+
+    /*
+     * Returns the index of the last interval ordered before or equal to the given bounds, which is the last of a run
+     * of intervals with the given bounds if there is one.
+     */
+    private int findLast(final long[] bounds) {
+        return upperBound(bounds, 0, bounds, words) - 1;
+    }
+
+    /*
+     * Returns the index of the first interval in the run of equal intervals containing the given index.
+     */
+    private int runStart(final int index) {
+        int start = index;
+        while (start > 0 && isEqual(start - 1, start)) {
+            start--;
+        }
+
+        return start;
+    }
+
+    /*
+     * Returns the index after the last interval in the run of equal intervals containing the given index.
+     */
+    private int runEnd(final int index) {
+        int end = index + 1;
+        while (end < size && isEqual(end, index)) {
+            end++;
+        }
+
+        return end;
+    }
+
+    private List<K> findIntersecting(final long[] bounds) {
+        List<K> result = Collections.emptyList();
+
+        // intervals containing the lower-bound but ending before the upper-bound
+        for (int index = findContaining(bounds, 0, bounds, 0); index != ROOT && compare(ends, index * words, bounds, words) < 0; index = parents[index]) {
+            if (compare(begins, index * words, bounds, 0) < 0 && !removed.get(index)) {
+                result = Lists.newArrayList(result);
+                result.add(codec.decode(begins, ends, index * words));
+            }
+        }
+
+        // intervals containing the upper-bound but starting after the lower-bound
+        for (int index = findContaining(bounds, words, bounds, words); index != ROOT && compare(begins, index * words, bounds, 0) > 0; index = parents[index]) {
+            if (compare(ends, index * words, bounds, words) > 0 && !removed.get(index)) {
+                result = Lists.newArrayList(result);
+                result.add(codec.decode(begins, ends, index * words));
+            }
+        }
+
+        return result;
+    }
+
+    /*
+     * Returns the number of intervals ordered before or equal to the interval with the given bounds.
+     */
+    private int upperBound(final long[] lower, final int lowerOffset, final long[] upper, final int upperOffset) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            int comparison = compare(begins, mid * words, lower, lowerOffset);
+            if (comparison == 0) {
+                comparison = compare(upper, upperOffset, ends, mid * words);
+            }
+
+            if (comparison <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        return low;
+    }
+
+    /*
+     * Returns the index of the first interval with a lower-bound not before the lower-bound of the given bounds.
+     */
+    private int lowerBoundBegin(final long[] bounds) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (compare(begins, mid * words, bounds, 0) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        return low;
+    }
+
+    private boolean isEqual(final int index, final long[] bounds) {
+        return compare(begins, index * words, bounds, 0) == 0 && compare(ends, index * words, bounds, words) == 0;
+    }
+
+    private boolean isEqual(final int index, final int other) {
+        return compare(begins, index * words, begins, other * words) == 0 && compare(ends, index * words, ends, other * words) == 0;
+    }
+
+    private int compare(final long[] left, final int leftOffset, final long[] right, final int rightOffset) {
+        for (int word = 0; word < words; word++) {
+            final int comparison = Long.compareUnsigned(left[leftOffset + word], right[rightOffset + word]);
+            if (comparison != 0) {
+                return comparison;
+            }
+        }
+
+        return 0;
+    }
+
+    private long[] encode(final K key) {
+        final long[] lower = new long[words];
+        final long[] upper = new long[words];
+        codec.encode(key, lower, upper, 0);
+
+        final long[] bounds = Arrays.copyOf(lower, words * 2);
+        System.arraycopy(upper, 0, bounds, words, words);
+        return bounds;
+    }
+
+    private V toValue(final int index) {
+        return codec.createValue(codec.decode(begins, ends, index * words), ids[index], values, index * valueWords);
+    }
+
+    private List<V> toValues(final int index) {
+        if (index == ROOT) {
+            return Collections.emptyList();
+        }
+
+        if (valueOrder == null) {
+            return Collections.singletonList(toValue(index));
+        }
+
+        final List<V> result = Lists.newArrayList();
+        addRun(result, index);
+        return result;
+    }
+
+    private void addRun(final List<V> result, final int index) {
+        final int end = runEnd(index);
+        for (int run = runStart(index); run < end; run++) {
+            result.add(toValue(run));
+        }
+    }
+
+    private List<V> toValuesLeastSpecificFirst(final int mostSpecific) {
+        final List<V> result = Lists.newArrayList();
+        for (int index = mostSpecific; index != ROOT; index = parents[index]) {
+            // the run is added in reverse, to be in order once the result is reversed
+            final int start = runStart(index);
+            for (int run = runEnd(index) - 1; run >= start; run--) {
+                result.add(toValue(run));
+            }
+        }
+
+        Collections.reverse(result);
+        return result;
+    }
+
+    private void putPending(final K key, final V value) {
+        if (valueOrder == null) {
+            pending.put(key, Collections.singletonList(value));
+            return;
+        }
+
+        final List<V> pendingValues = CollectionHelper.uniqueResult(pending.findExact(key));
+        if (pendingValues == null) {
+            pending.put(key, Collections.singletonList(value));
+        } else if (!pendingValues.contains(value)) {
+            final List<V> updated = Lists.newArrayList(pendingValues);
+            updated.add(value);
+            updated.sort(valueOrder);
+            pending.put(key, updated);
+        }
+    }
+
+    private void removePending(final K key, final V value) {
+        final List<V> pendingValues = CollectionHelper.uniqueResult(pending.findExact(key));
+        if (pendingValues == null || !pendingValues.contains(value)) {
+            return;
+        }
+
+        if (pendingValues.size() == 1) {
+            pending.remove(key);
+        } else {
+            final List<V> updated = Lists.newArrayList(pendingValues);
+            updated.remove(value);
+            pending.put(key, updated);
+        }
+    }
+
+    private void clearPending() {
+        pending = new NestedIntervalMap<>();
+        pendingSize = 0;
+    }
+
+    private void clearRemoved() {
+        removed = new BitSet();
+        nrRemoved = 0;
+    }
+
+    /*
+     * Merge the buffered intervals into the ordered arrays, and drop the removed intervals. Both are ordered the same
+     * way, and only contain the same interval if it was removed from the arrays and put again, or if it holds
+     * another value in a multi-value map.
+     */
+    private void merge() {
+        if (pendingSize == 0 && nrRemoved == 0) {
+            return;
+        }
+
+        final long[] pendingBegins = new long[pendingSize * words];
+        final long[] pendingEnds = new long[pendingSize * words];
+        final int[] pendingIds = new int[pendingSize];
+        final long[] pendingValueWords = new long[pendingSize * valueWords];
+        final List<V> pendingValues = Lists.newArrayListWithCapacity(pendingSize);
+        pending.forEach((key, values) -> {
+            for (final V value : values) {
+                final int nrPending = pendingValues.size();
+                codec.encode(key, pendingBegins, pendingEnds, nrPending * words);
+                codec.encodeValue(value, pendingValueWords, nrPending * valueWords);
+                pendingIds[nrPending] = codec.getId(value);
+                pendingValues.add(value);
+            }
+        });
+
+        final int nrPending = pendingValues.size();
+        final int capacity = size + nrPending;
+        final long[] mergedBegins = new long[capacity * words];
+        final long[] mergedEnds = new long[capacity * words];
+        final int[] mergedIds = new int[capacity];
+        final long[] mergedValues = new long[capacity * valueWords];
+
+        int merged = 0;
+        int index = 0;
+        int from = 0;
+        while (index < size || from < nrPending) {
+            if (index < size && removed.get(index)) {
+                index++;
+            } else if (from == nrPending || (index < size && compareToPending(index, pendingBegins, pendingEnds, pendingValues, from) < 0)) {
+                System.arraycopy(begins, index * words, mergedBegins, merged * words, words);
+                System.arraycopy(ends, index * words, mergedEnds, merged * words, words);
+                System.arraycopy(values, index * valueWords, mergedValues, merged * valueWords, valueWords);
+                mergedIds[merged++] = ids[index++];
+            } else {
+                System.arraycopy(pendingBegins, from * words, mergedBegins, merged * words, words);
+                System.arraycopy(pendingEnds, from * words, mergedEnds, merged * words, words);
+                System.arraycopy(pendingValueWords, from * valueWords, mergedValues, merged * valueWords, valueWords);
+                mergedIds[merged++] = pendingIds[from++];
+            }
+        }
+
+        begins = mergedBegins;
+        ends = mergedEnds;
+        ids = mergedIds;
+        values = mergedValues;
+        parents = new int[capacity];
+        subtreeEnds = new int[capacity];
+        size = merged;
+        clearPending();
+        clearRemoved();
+
+        relink();
+    }
+
+    /*
+     * Recalculate the parent and subtree end of every interval in a single pass. Only the first interval of a run of
+     * equal intervals is a parent, the others share its parent and subtree end.
+     */
+    private void relink() {
+        int[] stack = new int[INITIAL_CAPACITY];
+        int top = ROOT;
+
+        for (int index = 0; index < size; index++) {
+            if (index > 0 && isEqual(index, index - 1)) {
+                parents[index] = parents[index - 1];
+                continue;
+            }
+
+            while (top != ROOT && compare(ends, stack[top] * words, begins, index * words) < 0) {
+                subtreeEnds[stack[top--]] = index;
+            }
+
+            parents[index] = top == ROOT ? ROOT : stack[top];
+            if (++top == stack.length) {
+                stack = Arrays.copyOf(stack, stack.length * 2);
+            }
+            stack[top] = index;
+        }
+
+        while (top != ROOT) {
+            subtreeEnds[stack[top--]] = size;
+        }
+
+        for (int index = 1; index < size; index++) {
+            if (isEqual(index, index - 1)) {
+                subtreeEnds[index] = subtreeEnds[index - 1];
+            }
+        }
+    }
+
+    private int compareToPending(final int index, final long[] pendingBegins, final long[] pendingEnds, final List<V> pendingValues, final int from) {
+        int comparison = compare(begins, index * words, pendingBegins, from * words);
+        if (comparison == 0) {
+            comparison = compare(pendingEnds, from * words, ends, index * words);
+        }
+
+        // only a multi-value map holds a live interval that is also buffered
+        if (comparison == 0 && valueOrder != null) {
+            comparison = valueOrder.compare(toValue(index), pendingValues.get(from));
+        }
+
+        return comparison;
+    }
+}
@@ -8,22 +8,57 @@ import java.util.List;
 import java.util.SortedSet;
 import java.util.TreeSet;
 
+/**
+ * An {@link IntervalMap} that can hold multiple values per interval.
+ * <p/>
+ * The value sets are never modified once stored, a changed set replaces the previous one. This allows a copy of the
+ * map to share the sets with the original. A map created with {@link #persistent()} also shares the intervals with its
+ * copies.
+ */
 public final class MultiValueIntervalMap<K extends Interval<K>, V> implements IntervalMap<K, V> {
     private final IntervalMap<K, SortedSet<V>> wrapped;
 
     public MultiValueIntervalMap() {
-        this.wrapped = new NestedIntervalMap<>();
+        this(new NestedIntervalMap<>());
+    }
+
+    private MultiValueIntervalMap(final IntervalMap<K, SortedSet<V>> wrapped) {
+        this.wrapped = wrapped;
+    }
+
+    /**
+     * @return an empty map that is copied in constant time, see {@link PersistentIntervalMap}.
+     */
+    public static <K extends Interval<K>, V> MultiValueIntervalMap<K, V> persistent() {
+        return new MultiValueIntervalMap<>(new PersistentIntervalMap<K, SortedSet<V>>());
+    }
+
+    /**
+     * Construct a new {@link MultiValueIntervalMap} with (key, values) of
+     * <code>source</code> copied.
+     *
+     * @param source the source to copy.
+     */
+    public MultiValueIntervalMap(final MultiValueIntervalMap<K, V> source) {
+        if (source.wrapped instanceof PersistentIntervalMap) {
+            this.wrapped = ((PersistentIntervalMap<K, SortedSet<V>>) source.wrapped).snapshot();
+        } else {
+            this.wrapped = new NestedIntervalMap<>((NestedIntervalMap<K, SortedSet<V>>) source.wrapped);
+        }
     }
 
     @Override
     public void put(K key, V value) {
-        SortedSet<V> set = CollectionHelper.uniqueResult(wrapped.findExact(key));
+        final SortedSet<V> set = CollectionHelper.uniqueResult(wrapped.findExact(key));
         if (set == null) {
-            set = new TreeSet<>();
-            wrapped.put(key, set);
+            final SortedSet<V> created = new TreeSet<>();
+            created.add(value);
+            wrapped.put(key, created);
+        } else if (!set.contains(value)) {
+            final SortedSet<V> updated = new TreeSet<>(set);
+            updated.add(value);
+            wrapped.put(key, updated);
         }
-
-        set.add(value);
     }
 
     @Override
@@ -33,15 +68,17 @@ public final class MultiValueIntervalMap<K extends Interval<K>, V> implements In
 
     @Override
     public void remove(K key, V value) {
-        SortedSet<V> set = CollectionHelper.uniqueResult(wrapped.findExact(key));
-        if (set == null) {
+        final SortedSet<V> set = CollectionHelper.uniqueResult(wrapped.findExact(key));
+        if (set == null || !set.contains(value)) {
             return;
         }
 
-        set.remove(value);
-
-        if (set.isEmpty()) {
+        if (set.size() == 1) {
             wrapped.remove(key);
+        } else {
+            final SortedSet<V> updated = new TreeSet<>(set);
+            updated.remove(value);
+            wrapped.put(key, updated);
         }
     }
 
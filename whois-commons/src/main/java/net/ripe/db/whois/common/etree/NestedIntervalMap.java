@@ -11,6 +11,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
+import java.util.function.BiConsumer;
 
 /**
  * A map with intervals as keys. Intervals are only allowed to intersect if they
@@ -129,6 +130,17 @@ public final class NestedIntervalMap<K extends Interval<K>, V> implements Interv
         children.clear();
     }
 
+    /*
+     * Visit every (key, value) ordered by lower-bound, and by descending upper-bound for equal lower-bounds.
+     */
+    void forEach(BiConsumer<K, V> action) {
+        List<InternalNode<K, V>> nodes = new ArrayList<>();
+        children.addAllChildrenToList(nodes);
+        for (InternalNode<K, V> node : nodes) {
+            action.accept(node.getInterval(), node.getValue());
+        }
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (this == obj) return true;
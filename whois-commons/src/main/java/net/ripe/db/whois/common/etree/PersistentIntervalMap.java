@@ -0,0 +1,461 @@
+package net.ripe.db.whois.common.etree;
+
+import net.ripe.db.whois.common.ip.Interval;
+import org.apache.commons.lang.Validate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * A {@link NestedIntervalMap} that can take a read-only {@link #snapshot()} in constant time.
+ * <p/>
+ * Intervals are nested the same way, but the children of an interval are kept in a treap ordered by upper-bound
+ * instead of a {@link java.util.TreeMap}, and each interval is a node of the treap of its siblings. A snapshot shares
+ * all nodes with the map. Nodes are only modified in place until the next snapshot is taken, after which the map
+ * copies the path from the root to a node before modifying it. A modification after a snapshot therefore costs
+ * O(depth * log(siblings)) copied nodes, and the snapshot is never affected.
+ * <p/>
+ * <strong>Note that this implementation is not synchronized.</strong> A snapshot can be read concurrently once it is
+ * safely published to the readers, while the map keeps being modified by a single writer.
+ *
+ * @param <K> the type of the interval (must implement {@link Interval}).
+ * @param <V> the type of the values to store.
+ */
+public final class PersistentIntervalMap<K extends Interval<K>, V> implements IntervalMap<K, V> {
+
+    // nodes created with the current owner are not shared with any snapshot
+    private Object owner = new Object();
+    private Node<K, V> root;
+
+    public PersistentIntervalMap() {
+    }
+
+    private PersistentIntervalMap(final Node<K, V> root) {
+        this.root = root;
+    }
+
+    /**
+     * @return a map with the current (key, values), unaffected by later modifications of this map.
+     */
+    public PersistentIntervalMap<K, V> snapshot() {
+        owner = new Object();
+        return new PersistentIntervalMap<>(root);
+    }
+
+    @Override
+    public void put(final K key, final V value) {
+        Validate.notNull(key);
+        Validate.notNull(value);
+        root = put(root, key, value);
+    }
+
+    @Override
+    public void remove(final K key) {
+        Validate.notNull(key);
+        if (findExactNode(key) != null) {
+            root = remove(root, key);
+        }
+    }
+
+    @Override
+    public void remove(final K key, final V value) {
+        Validate.notNull(key);
+        Validate.notNull(value);
+
+        final Node<K, V> node = findExactNode(key);
+        if (node != null && value.equals(node.value)) {
+            root = remove(root, key);
+        }
+    }
+
+    @Override
+    public void clear() {
+        root = null;
+    }
+
+    @Override
+    public List<V> findFirstLessSpecific(final K key) {
+        Validate.notNull(key);
+        return lastToValues(findAllLessSpecificNodes(key));
+    }
+
+    @Override
+    public List<V> findExact(final K key) {
+        Validate.notNull(key);
+        final Node<K, V> node = findExactNode(key);
+        return node == null ? Collections.emptyList() : Collections.singletonList(node.value);
+    }
+
+    @Override
+    public List<V> findExactOrFirstLessSpecific(final K key) {
+        Validate.notNull(key);
+        return lastToValues(findExactAndAllLessSpecificNodes(key));
+    }
+
+    @Override
+    public List<V> findAllLessSpecific(final K key) {
+        Validate.notNull(key);
+        return toValues(findAllLessSpecificNodes(key));
+    }
+
+    @Override
+    public List<V> findExactAndAllLessSpecific(final K key) {
+        Validate.notNull(key);
+        return toValues(findExactAndAllLessSpecificNodes(key));
+    }
+
+    @Override
+    public List<V> findFirstMoreSpecific(final K key) {
+        Validate.notNull(key);
+
+        final List<Node<K, V>> result = new ArrayList<>();
+        final Node<K, V> container = lastOrNull(findExactAndAllLessSpecificNodes(key));
+        findFirstMoreSpecific(container == null ? root : container.children, key, result);
+        return toValues(result);
+    }
+
+    @Override
+    public List<V> findAllMoreSpecific(final K key) {
+        Validate.notNull(key);
+
+        final List<Node<K, V>> result = findExactAndAllMoreSpecificNodes(key);
+        if (!result.isEmpty() && result.get(0).key.equals(key)) {
+            return toValues(result.subList(1, result.size()));
+        }
+        return toValues(result);
+    }
+
+    @Override
+    public List<V> findExactAndAllMoreSpecific(final K key) {
+        Validate.notNull(key);
+        return toValues(findExactAndAllMoreSpecificNodes(key));
+    }
+
+    private Node<K, V> findExactNode(final K key) {
+        final Node<K, V> node = lastOrNull(findExactAndAllLessSpecificNodes(key));
+        return node != null && node.key.equals(key) ? node : null;
+    }
+
+    private List<Node<K, V>> findExactAndAllLessSpecificNodes(final K key) {
+        final List<Node<K, V>> result = new ArrayList<>();
+        final K lowerBound = key.singletonIntervalAtLowerBound();
+
+        for (Node<K, V> siblings = root; siblings != null; ) {
+            final Node<K, V> containing = ceiling(siblings, lowerBound);
+            if (containing == null || !containing.key.contains(key)) {
+                break;
+            }
+
+            result.add(containing);
+            siblings = containing.children;
+        }
+
+        return result;
+    }
+
+    private List<Node<K, V>> findAllLessSpecificNodes(final K key) {
+        final List<Node<K, V>> result = findExactAndAllLessSpecificNodes(key);
+        if (!result.isEmpty() && result.get(result.size() - 1).key.equals(key)) {
+            return result.subList(0, result.size() - 1);
+        }
+        return result;
+    }
+
+    private List<Node<K, V>> findExactAndAllMoreSpecificNodes(final K key) {
+        final List<Node<K, V>> result = new ArrayList<>();
+        final Node<K, V> containing = lastOrNull(findExactAndAllLessSpecificNodes(key));
+        if (containing == null) {
+            findExactAndAllMoreSpecific(root, key, result);
+        } else {
+            if (containing.key.equals(key)) {
+                result.add(containing);
+            }
+            findExactAndAllMoreSpecific(containing.children, key, result);
+        }
+        return result;
+    }
+
+    private void findExactAndAllMoreSpecific(final Node<K, V> siblings, final K key, final List<Node<K, V>> result) {
+        forEachFrom(siblings, key.singletonIntervalAtLowerBound(), node -> {
+            if (key.contains(node.key)) {
+                result.add(node);
+                forEach(node.children, result::add);
+            } else if (key.intersects(node.key)) {
+                findExactAndAllMoreSpecific(node.children, key, result);
+            } else {
+                return false;
+            }
+            return true;
+        });
+    }
+
+    private void findFirstMoreSpecific(final Node<K, V> siblings, final K key, final List<Node<K, V>> result) {
+        forEachFrom(siblings, key.singletonIntervalAtLowerBound(), node -> {
+            if (key.contains(node.key)) {
+                result.add(node);
+            } else if (key.intersects(node.key)) {
+                findFirstMoreSpecific(node.children, key, result);
+            } else {
+                return false;
+            }
+            return true;
+        });
+    }
+
+    private Node<K, V> put(final Node<K, V> siblings, final K key, final V value) {
+        final K lowerBound = key.singletonIntervalAtLowerBound();
+        final Node<K, V> containing = ceiling(siblings, lowerBound);
+        if (containing != null && containing.key.contains(key)) {
+            return update(siblings, containing.key, node -> {
+                if (node.key.equals(key)) {
+                    node.value = value;
+                } else {
+                    node.children = put(node.children, key, value);
+                }
+            });
+        }
+
+        List<K> intersections = Collections.emptyList();
+        if (containing != null && intersectsButNotContained(key, containing.key)) {
+            intersections = new ArrayList<>(intersections);
+            intersections.add(containing.key);
+        }
+        final Node<K, V> upperCandidate = ceiling(siblings, key);
+        if (upperCandidate != null && intersectsButNotContained(key, upperCandidate.key)) {
+            intersections = new ArrayList<>(intersections);
+            intersections.add(upperCandidate.key);
+        }
+        if (!intersections.isEmpty()) {
+            throw new IntersectingIntervalException(key, intersections);
+        }
+
+        // the siblings contained in the new interval are the ones ending within it, and become its children
+        final Split<K, V> before = split(siblings, lowerBound, false);
+        final Split<K, V> contained = split(before.right, key, true);
+
+        final Node<K, V> node = new Node<>(owner, key, value);
+        node.children = contained.left;
+        return insert(join(before.left, contained.right), node);
+    }
+
+    private Node<K, V> remove(final Node<K, V> siblings, final K key) {
+        final Node<K, V> containing = ceiling(siblings, key.singletonIntervalAtLowerBound());
+        if (containing.key.equals(key)) {
+            // the children of the removed interval take its place among its siblings
+            return replace(siblings, key, containing.children);
+        }
+
+        return update(siblings, containing.key, node -> node.children = remove(node.children, key));
+    }
+
+    private static <K extends Interval<K>> boolean intersectsButNotContained(final K left, final K right) {
+        return left.intersects(right) && !left.contains(right) && !right.contains(left);
+    }
+
+    private Node<K, V> editable(final Node<K, V> node) {
+        return node.owner == owner ? node : new Node<>(owner, node);
+    }
+
+    /*
+     * Returns the first node with an upper-bound not before the upper-bound of the given key.
+     */
+    private static <K extends Interval<K>, V> Node<K, V> ceiling(Node<K, V> tree, final K key) {
+        Node<K, V> result = null;
+        while (tree != null) {
+            if (tree.key.compareUpperBound(key) >= 0) {
+                result = tree;
+                tree = tree.left;
+            } else {
+                tree = tree.right;
+            }
+        }
+        return result;
+    }
+
+    /*
+     * Apply the modification to the node with the given key, copying the path to it where shared.
+     */
+    private Node<K, V> update(final Node<K, V> tree, final K key, final Consumer<Node<K, V>> modification) {
+        final int comparison = key.compareUpperBound(tree.key);
+        final Node<K, V> result = editable(tree);
+        if (comparison < 0) {
+            result.left = update(tree.left, key, modification);
+        } else if (comparison > 0) {
+            result.right = update(tree.right, key, modification);
+        } else {
+            modification.accept(result);
+        }
+        return result;
+    }
+
+    /*
+     * Replace the node with the given key by a tree ordered between its neighbours.
+     */
+    private Node<K, V> replace(final Node<K, V> tree, final K key, final Node<K, V> replacement) {
+        final int comparison = key.compareUpperBound(tree.key);
+        if (comparison == 0) {
+            return join(join(tree.left, replacement), tree.right);
+        }
+
+        final Node<K, V> result = editable(tree);
+        if (comparison < 0) {
+            result.left = replace(tree.left, key, replacement);
+        } else {
+            result.right = replace(tree.right, key, replacement);
+        }
+        return result;
+    }
+
+    private Node<K, V> insert(final Node<K, V> tree, final Node<K, V> node) {
+        if (tree == null) {
+            return node;
+        }
+
+        if (node.priority > tree.priority) {
+            final Split<K, V> split = split(tree, node.key, false);
+            node.left = split.left;
+            node.right = split.right;
+            return node;
+        }
+
+        final Node<K, V> result = editable(tree);
+        if (node.key.compareUpperBound(tree.key) < 0) {
+            result.left = insert(tree.left, node);
+        } else {
+            result.right = insert(tree.right, node);
+        }
+        return result;
+    }
+
+    /*
+     * Split in the nodes before the upper-bound of the given key (or up to and including it), and the others.
+     */
+    private Split<K, V> split(final Node<K, V> tree, final K key, final boolean inclusive) {
+        if (tree == null) {
+            return new Split<>();
+        }
+
+        final int comparison = tree.key.compareUpperBound(key);
+        final Node<K, V> result = editable(tree);
+        final Split<K, V> split;
+        if (comparison < 0 || (inclusive && comparison == 0)) {
+            split = split(tree.right, key, inclusive);
+            result.right = split.left;
+            split.left = result;
+        } else {
+            split = split(tree.left, key, inclusive);
+            result.left = split.right;
+            split.right = result;
+        }
+        return split;
+    }
+
+    /*
+     * Join two trees, all nodes of the left tree ordered before the nodes of the right tree.
+     */
+    private Node<K, V> join(final Node<K, V> left, final Node<K, V> right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+
+        if (left.priority > right.priority) {
+            final Node<K, V> result = editable(left);
+            result.right = join(left.right, right);
+            return result;
+        }
+
+        final Node<K, V> result = editable(right);
+        result.left = join(left, right.left);
+        return result;
+    }
+
+    /*
+     * Visit the nodes with an upper-bound not before the upper-bound of the given key in order, until the visitor
+     * returns false.
+     */
+    private static <K extends Interval<K>, V> boolean forEachFrom(final Node<K, V> tree, final K key, final Predicate<Node<K, V>> visitor) {
+        if (tree == null) {
+            return true;
+        }
+
+        if (tree.key.compareUpperBound(key) >= 0) {
+            if (!forEachFrom(tree.left, key, visitor) || !visitor.test(tree)) {
+                return false;
+            }
+        }
+        return forEachFrom(tree.right, key, visitor);
+    }
+
+    /*
+     * Visit the nodes and all of their children, each node before its children.
+     */
+    private static <K extends Interval<K>, V> void forEach(final Node<K, V> tree, final Consumer<Node<K, V>> visitor) {
+        if (tree == null) {
+            return;
+        }
+
+        forEach(tree.left, visitor);
+        visitor.accept(tree);
+        forEach(tree.children, visitor);
+        forEach(tree.right, visitor);
+    }
+
+    private static <K extends Interval<K>, V> Node<K, V> lastOrNull(final List<Node<K, V>> nodes) {
+        return nodes.isEmpty() ? null : nodes.get(nodes.size() - 1);
+    }
+
+    private static <K extends Interval<K>, V> List<V> lastToValues(final List<Node<K, V>> nodes) {
+        return nodes.isEmpty() ? Collections.emptyList() : Collections.singletonList(nodes.get(nodes.size() - 1).value);
+    }
+
+    private static <K extends Interval<K>, V> List<V> toValues(final List<Node<K, V>> nodes) {
+        final List<V> result = new ArrayList<>(nodes.size());
+        for (final Node<K, V> node : nodes) {
+            result.add(node.value);
+        }
+        return result;
+    }
+
+    /*
+     * An interval with its value and children, and a node in the treap of its siblings.
+     */
+    private static final class Node<K extends Interval<K>, V> {
+        private final Object owner;
+        private final K key;
+        private final int priority;
+        private V value;
+        private Node<K, V> left;
+        private Node<K, V> right;
+        private Node<K, V> children;
+
+        private Node(final Object owner, final K key, final V value) {
+            this.owner = owner;
+            this.key = key;
+            // derived from the key, so the shape of the treap only depends on its keys
+            final int hash = key.hashCode() * 0x9e3779b9;
+            this.priority = hash ^ (hash >>> 16);
+            this.value = value;
+        }
+
+        private Node(final Object owner, final Node<K, V> source) {
+            this.owner = owner;
+            this.key = source.key;
+            this.priority = source.priority;
+            this.value = source.value;
+            this.left = source.left;
+            this.right = source.right;
+            this.children = source.children;
+        }
+    }
+
+    private static final class Split<K extends Interval<K>, V> {
+        private Node<K, V> left;
+        private Node<K, V> right;
+    }
+}
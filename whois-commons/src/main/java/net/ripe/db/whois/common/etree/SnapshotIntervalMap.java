@@ -0,0 +1,143 @@
+package net.ripe.db.whois.common.etree;
+
+import net.ripe.db.whois.common.ip.Interval;
+
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+/**
+ * An {@link IntervalMap} where lookups are served from an immutable snapshot without any locking.
+ * <p/>
+ * Modifications are applied to a private working copy and only become visible to readers once {@link #publish()}
+ * is called, which atomically replaces the snapshot by a copy of the working map. Publishing a
+ * {@link PersistentIntervalMap} takes a snapshot that shares all entries with the working map, other maps are copied
+ * as a whole, so modifications should be applied in batches with a single publish at the end.
+ *
+ * @param <K> the type of the interval (must implement {@link Interval}).
+ * @param <V> the type of the values to store.
+ */
+public final class SnapshotIntervalMap<K extends Interval<K>, V> implements IntervalMap<K, V> {
+
+    private final IntervalMap<K, V> working;
+    private final UnaryOperator<IntervalMap<K, V>> copier;
+
+    private volatile Snapshot<K, V> snapshot;
+    private boolean modified;
+
+    public static <K extends Interval<K>, V> SnapshotIntervalMap<K, V> snapshotMap(final NestedIntervalMap<K, V> working) {
+        return new SnapshotIntervalMap<>(working, map -> new NestedIntervalMap<>((NestedIntervalMap<K, V>) map));
+    }
+
+    public static <K extends Interval<K>, V> SnapshotIntervalMap<K, V> snapshotMap(final PersistentIntervalMap<K, V> working) {
+        return new SnapshotIntervalMap<>(working, map -> ((PersistentIntervalMap<K, V>) map).snapshot());
+    }
+
+    public static <K extends Interval<K>, V> SnapshotIntervalMap<K, V> snapshotMap(final MultiValueIntervalMap<K, V> working) {
+        return new SnapshotIntervalMap<>(working, map -> new MultiValueIntervalMap<>((MultiValueIntervalMap<K, V>) map));
+    }
+
+    public static <K extends Interval<K>, V> SnapshotIntervalMap<K, V> snapshotMap(final CompactIntervalMap<K, V> working) {
+        return new SnapshotIntervalMap<>(working, map -> new CompactIntervalMap<>((CompactIntervalMap<K, V>) map));
+    }
+
+    private SnapshotIntervalMap(final IntervalMap<K, V> working, final UnaryOperator<IntervalMap<K, V>> copier) {
+        this.working = working;
+        this.copier = copier;
+        this.snapshot = new Snapshot<>(copier.apply(working), 0);
+    }
+
+    /**
+     * Make all modifications since the previous publish visible to readers.
+     *
+     * @return the version of the snapshot visible to readers after this call.
+     */
+    public synchronized long publish() {
+        if (modified) {
+            snapshot = new Snapshot<>(copier.apply(working), snapshot.version + 1);
+            modified = false;
+        }
+
+        return snapshot.version;
+    }
+
+    /**
+     * @return the version of the snapshot currently visible to readers, incremented on every publish with modifications.
+     */
+    public long getVersion() {
+        return snapshot.version;
+    }
+
+    @Override
+    public synchronized void put(final K key, final V value) {
+        working.put(key, value);
+        modified = true;
+    }
+
+    @Override
+    public synchronized void remove(final K key) {
+        working.remove(key);
+        modified = true;
+    }
+
+    @Override
+    public synchronized void remove(final K key, final V value) {
+        working.remove(key, value);
+        modified = true;
+    }
+
+    @Override
+    public synchronized void clear() {
+        working.clear();
+        modified = true;
+    }
+
+    @Override
+    public List<V> findFirstLessSpecific(final K key) {
+        return snapshot.map.findFirstLessSpecific(key);
+    }
+
+    @Override
+    public List<V> findExact(final K key) {
+        return snapshot.map.findExact(key);
+    }
+
+    @Override
+    public List<V> findExactOrFirstLessSpecific(final K key) {
+        return snapshot.map.findExactOrFirstLessSpecific(key);
+    }
+
+    @Override
+    public List<V> findAllLessSpecific(final K key) {
+        return snapshot.map.findAllLessSpecific(key);
+    }
+
+    @Override
+    public List<V> findExactAndAllLessSpecific(final K key) {
+        return snapshot.map.findExactAndAllLessSpecific(key);
+    }
+
+    @Override
+    public List<V> findFirstMoreSpecific(final K key) {
+        return snapshot.map.findFirstMoreSpecific(key);
+    }
+
+    @Override
+    public List<V> findAllMoreSpecific(final K key) {
+        return snapshot.map.findAllMoreSpecific(key);
+    }
+
+    @Override
+    public List<V> findExactAndAllMoreSpecific(final K key) {
+        return snapshot.map.findExactAndAllMoreSpecific(key);
+    }
+
+    private static final class Snapshot<K extends Interval<K>, V> {
+        private final IntervalMap<K, V> map;
+        private final long version;
+
+        private Snapshot(final IntervalMap<K, V> map, final long version) {
+            this.map = map;
+            this.version = version;
+        }
+    }
+}
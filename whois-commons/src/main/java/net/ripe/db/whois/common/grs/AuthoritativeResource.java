@@ -28,9 +28,7 @@ import java.util.Objects;
 import java.util.Scanner;
 import java.util.Set;
 
-import static net.ripe.db.whois.common.domain.CIString.ciString;
 import static net.ripe.db.whois.common.rpsl.ObjectType.INET6NUM;
-import static net.ripe.db.whois.common.rpsl.ObjectType.INETNUM;
 
 @Immutable
 public class AuthoritativeResource {
@@ -40,6 +38,10 @@ public class AuthoritativeResource {
     private final SortedRangeSet<Ipv4, Ipv4Range> inetRanges;
     private final SortedRangeSet<Ipv6, Ipv6Range> inet6Ranges;
 
+    private final IntervalIndex autNumIndex;
+    private final IntervalIndex inetIndex;
+    private final IntervalIndex inet6Index;
+
     public static AuthoritativeResource loadFromFile(final Logger logger, final String name, final Path path) {
         try (final Scanner scanner = new Scanner(path)) {
             return loadFromScanner(logger, name, scanner);
@@ -64,6 +66,10 @@ public class AuthoritativeResource {
         this.autNums = autNums;
         this.inetRanges = inetRanges;
         this.inet6Ranges = inet6Ranges;
+
+        this.autNumIndex = new IntervalIndex(autNums);
+        this.inetIndex = new IntervalIndex(inetRanges);
+        this.inet6Index = new IntervalIndex(inet6Ranges);
     }
 
     public int getNrAutNums() {
@@ -89,12 +95,16 @@ public class AuthoritativeResource {
     public boolean isMaintainedInRirSpace(final ObjectType objectType, final CIString pkey) {
         try {
             switch (objectType) {
+                // use whois-common library to parse addresses
+                // to keep backwards compatibility
+                // so that 10/8 is parsed as 10.0.0.0/8
+                // and 2001:2002:2003:2004:1::/65 is parsed as 2001:2002:2003:2004::/65
                 case AUT_NUM:
-                    return autNums.contains(parseAsn(pkey));
+                    return isAutNumMaintainedInRirSpace(Asn.parse(pkey.toString()).asBigInteger().longValue());
                 case INETNUM:
-                    return inetRanges.contains(parseRangeOrSingleAddress(pkey));
+                    return isMaintainedInRirSpace(Ipv4Resource.parse(pkey));
                 case INET6NUM:
-                    return inet6Ranges.contains(parseIpv6(pkey));
+                    return isMaintainedInRirSpace(Ipv6Resource.parse(pkey));
                 default:
                     return true;
             }
@@ -103,6 +113,18 @@ public class AuthoritativeResource {
         }
     }
 
+    public boolean isAutNumMaintainedInRirSpace(final long asn) {
+        return autNumIndex.contains(asn, asn);
+    }
+
+    public boolean isMaintainedInRirSpace(final Ipv4Resource ipv4Resource) {
+        return inetIndex.contains(ipv4Resource.begin(), ipv4Resource.end());
+    }
+
+    public boolean isMaintainedInRirSpace(final Ipv6Resource ipv6Resource) {
+        return inet6Index.contains(ipv6Resource.beginMsb(), ipv6Resource.beginLsb(), ipv6Resource.endMsb(), ipv6Resource.endLsb());
+    }
+
     /**
      * Is this route(6) maintained in this RIR space?
      * We only consider the prefix, not the origin.
@@ -117,9 +139,9 @@ public class AuthoritativeResource {
         try {
             switch (objectType) {
                 case ROUTE:
-                    return isRouteMaintainedInRirSpace(Ipv4RouteEntry.parse(key.toString(), 0));
+                    return isMaintainedInRirSpace(Ipv4RouteEntry.parse(key.toString(), 0).getKey());
                 case ROUTE6:
-                    return isRouteMaintainedInRirSpace(Ipv6RouteEntry.parse(key.toString(), 0));
+                    return isMaintainedInRirSpace(Ipv6RouteEntry.parse(key.toString(), 0).getKey());
             }
         } catch (IllegalArgumentException iae) {
             return true; // if route key parsing failed we can't determine if it's out of region
@@ -128,42 +150,6 @@ public class AuthoritativeResource {
         throw new IllegalArgumentException(String.format("%s is not a route", objectType));
     }
 
-    private boolean isRouteMaintainedInRirSpace(final Ipv4RouteEntry routeEntry) {
-        return isMaintainedInRirSpace(
-                INETNUM,
-                // [SB] TODO: yuck, refactor this at a later time, see AH's TODO in SearchKey
-                ciString(routeEntry.getKey().toString())
-        );
-    }
-
-    private boolean isRouteMaintainedInRirSpace(final Ipv6RouteEntry routeEntry) {
-        return isMaintainedInRirSpace(
-                INET6NUM,
-                // [SB] TODO: yuck, refactor this at a later time, see AH's TODO in SearchKey
-                ciString(routeEntry.getKey().toString())
-        );
-    }
-
-    private AsnRange parseAsn(final CIString pkey) {
-        return Asn.parse(pkey.toString()).asRange();
-    }
-
-    private Ipv6Range parseIpv6(final CIString pkey) {
-        // use whois-common library to parse input
-        // to keep backwards compatibility
-        // so that 2001:2002:2003:2004:1::/65 is parsed as 2001:2002:2003:2004::/65
-        final Ipv6Resource ipv6Resource = Ipv6Resource.parse(pkey);
-        return Ipv6Range.from(ipv6Resource.begin()).to(ipv6Resource.end());
-    }
-
-    private Ipv4Range parseRangeOrSingleAddress(final CIString pkey) {
-        // use whois-common library to parse input
-        // to keep backwards compatibility
-        // so that 10/8 is parsed as 10.0.0.0/8
-        final Ipv4Resource ipv4Resource = Ipv4Resource.parse(pkey);
-        return Ipv4Range.from(ipv4Resource.begin()).to(ipv4Resource.end());
-    }
-
     public Set<ObjectType> getResourceTypes() {
         return RESOURCE_TYPES;
     }
@@ -0,0 +1,76 @@
+package net.ripe.db.whois.common.grs;
+
+import net.ripe.commons.ip.InternetResourceRange;
+import net.ripe.commons.ip.SingleInternetResource;
+import net.ripe.commons.ip.SortedRangeSet;
+import net.ripe.db.whois.common.ip.Ipv6Resource;
+
+import javax.annotation.concurrent.Immutable;
+import java.math.BigInteger;
+
+/**
+ * Disjoint ranges of ASNs or addresses, held as sorted arrays of primitive bounds, so a lookup is a binary search
+ * without any objects created.
+ * <p/>
+ * Bounds are unsigned 128 bit numbers split in a most and least significant half; ASNs and IPv4 addresses only use
+ * the least significant half.
+ */
+@Immutable
+final class IntervalIndex {
+    private final long[] beginMsbs;
+    private final long[] beginLsbs;
+    private final long[] endMsbs;
+    private final long[] endLsbs;
+
+    <C extends SingleInternetResource<C, R>, R extends InternetResourceRange<C, R>> IntervalIndex(final SortedRangeSet<C, R> ranges) {
+        final int size = ranges.size();
+        this.beginMsbs = new long[size];
+        this.beginLsbs = new long[size];
+        this.endMsbs = new long[size];
+        this.endLsbs = new long[size];
+
+        int index = 0;
+        for (final R range : ranges) {
+            final BigInteger begin = range.start().asBigInteger();
+            final BigInteger end = range.end().asBigInteger();
+            beginMsbs[index] = Ipv6Resource.msb(begin);
+            beginLsbs[index] = Ipv6Resource.lsb(begin);
+            endMsbs[index] = Ipv6Resource.msb(end);
+            endLsbs[index] = Ipv6Resource.lsb(end);
+            index++;
+        }
+    }
+
+    int size() {
+        return beginLsbs.length;
+    }
+
+    /**
+     * @return true if a single range contains all of begin to end (inclusive, unsigned 64 bit values)
+     */
+    boolean contains(final long begin, final long end) {
+        return contains(0, begin, 0, end);
+    }
+
+    /**
+     * @return true if a single range contains all of begin to end (inclusive, unsigned 128 bit values)
+     */
+    boolean contains(final long beginMsb, final long beginLsb, final long endMsb, final long endLsb) {
+        // the last range starting at or before begin is the only one that can contain it
+        int low = 0;
+        int high = beginLsbs.length - 1;
+        int candidate = -1;
+
+        while (low <= high) {
+            final int middle = (low + high) >>> 1;
+            if (Ipv6Resource.compare(beginMsbs[middle], beginLsbs[middle], beginMsb, beginLsb) <= 0) {
+                candidate = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+
+        return candidate >= 0 && Ipv6Resource.compare(endMsbs[candidate], endLsbs[candidate], endMsb, endLsb) >= 0;
+    }
+}
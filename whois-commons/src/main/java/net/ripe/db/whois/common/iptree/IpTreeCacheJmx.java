@@ -60,6 +60,17 @@ public class IpTreeCacheJmx extends JmxBase {
         });
     }
 
+    @ManagedOperation(description = "Write on-disk snapshots of in-memory trees (if dir.iptree.snapshot is configured)")
+    public String writeSnapshots() {
+        return invokeOperation("Write in-memory tree snapshots", "", new Callable<String>() {
+            @Override
+            public String call() {
+                ipTreeUpdater.writeSnapshots();
+                return "In-memory tree snapshots written";
+            }
+        });
+    }
+
     @ManagedOperation(description = "Search maximum serial in-memory trees")
     public String getMaxSerials() {
         return invokeOperation("Find tree serials", "", new Callable<String>() {
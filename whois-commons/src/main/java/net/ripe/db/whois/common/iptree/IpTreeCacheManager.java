@@ -1,14 +1,23 @@
 package net.ripe.db.whois.common.iptree;
 
+import com.google.common.base.Splitter;
+import com.google.common.base.Stopwatch;
+import com.google.common.base.Throwables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import net.ripe.db.whois.common.dao.jdbc.JdbcStreamingHelper;
+import net.ripe.db.whois.common.dao.jdbc.RpslObjectCache;
 import net.ripe.db.whois.common.dao.jdbc.domain.ObjectTypeIds;
 import net.ripe.db.whois.common.domain.CIString;
 import net.ripe.db.whois.common.domain.serials.Operation;
+import net.ripe.db.whois.common.etree.CompactIntervalMap;
 import net.ripe.db.whois.common.etree.IntersectingIntervalException;
 import net.ripe.db.whois.common.etree.IntervalMap;
 import net.ripe.db.whois.common.etree.MultiValueIntervalMap;
 import net.ripe.db.whois.common.etree.NestedIntervalMap;
+import net.ripe.db.whois.common.etree.PersistentIntervalMap;
+import net.ripe.db.whois.common.etree.SnapshotIntervalMap;
 import net.ripe.db.whois.common.etree.SynchronizedIntervalMap;
 import net.ripe.db.whois.common.ip.Interval;
 import net.ripe.db.whois.common.ip.Ipv4Resource;
@@ -17,21 +26,37 @@ import net.ripe.db.whois.common.rpsl.ObjectType;
 import net.ripe.db.whois.common.rpsl.attrs.Domain;
 import net.ripe.db.whois.common.source.SourceConfiguration;
 import net.ripe.db.whois.common.source.SourceContext;
+import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.Nullable;
 import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static net.ripe.db.whois.common.domain.serials.Operation.UPDATE;
 import static net.ripe.db.whois.common.domain.serials.Operation.getByCode;
@@ -45,13 +70,47 @@ import static net.ripe.db.whois.common.rpsl.ObjectType.ROUTE6;
 public class IpTreeCacheManager {
     private static final Logger LOGGER = LoggerFactory.getLogger(IpTreeCacheManager.class);
 
+    private static final Splitter COMMA_SPLITTER = Splitter.on(',').omitEmptyStrings().trimResults();
+    private static final Set<ObjectType> COMPACT_TYPES = Sets.immutableEnumSet(INETNUM, INET6NUM, ROUTE, ROUTE6, DOMAIN);
+
     private final JdbcTemplate jdbcTemplate;
     private final SourceContext sourceContext;
+    private final RpslObjectCache rpslObjectCache;
+    private final boolean snapshotEnabled;
+    private final Set<ObjectType> compactTypes;
+    private final String snapshotDir;
 
     @Autowired
-    public IpTreeCacheManager(@Qualifier("sourceAwareDataSource") final DataSource dataSource, final SourceContext sourceContext) {
+    public IpTreeCacheManager(
+            @Qualifier("sourceAwareDataSource") final DataSource dataSource,
+            final SourceContext sourceContext,
+            final RpslObjectCache rpslObjectCache,
+            @Value("${iptree.snapshot.enabled:false}") final boolean snapshotEnabled,
+            @Value("${iptree.compact.types:}") final String compactTypes,
+            @Value("${dir.iptree.snapshot:}") final String snapshotDir) {
         this.jdbcTemplate = new JdbcTemplate(dataSource);
         this.sourceContext = sourceContext;
+        this.rpslObjectCache = rpslObjectCache;
+        this.snapshotEnabled = snapshotEnabled;
+        this.compactTypes = parseCompactTypes(compactTypes);
+        this.snapshotDir = snapshotDir;
+    }
+
+    private static Set<ObjectType> parseCompactTypes(final String compactTypes) {
+        final Set<ObjectType> result = EnumSet.noneOf(ObjectType.class);
+        for (final String compactType : COMMA_SPLITTER.split(compactTypes)) {
+            final ObjectType objectType = ObjectType.getByName(compactType);
+            if (!COMPACT_TYPES.contains(objectType)) {
+                throw new IllegalArgumentException(String.format("No compact IP tree available for %s", objectType.getName()));
+            }
+            result.add(objectType);
+        }
+
+        if (!result.isEmpty()) {
+            LOGGER.info("Using compact IP trees for {}", result);
+        }
+
+        return result;
     }
 
     private static final class IpTreeUpdate {
@@ -76,23 +135,72 @@ public class IpTreeCacheManager {
     private static final class CacheEntry {
         final SourceConfiguration sourceConfiguration;
         final Semaphore updateLock = new Semaphore(1);
-        NestedIntervalMaps nestedIntervalMaps = new NestedIntervalMaps();
+        NestedIntervalMaps nestedIntervalMaps;
 
-        private CacheEntry(final SourceConfiguration sourceConfiguration) {
+        private CacheEntry(final SourceConfiguration sourceConfiguration, final NestedIntervalMaps nestedIntervalMaps) {
             this.sourceConfiguration = sourceConfiguration;
+            this.nestedIntervalMaps = nestedIntervalMaps;
         }
     }
 
     static class NestedIntervalMaps {
-        final IntervalMap<Ipv4Resource, Ipv4Entry> ipv4TreeCache = SynchronizedIntervalMap.synchronizedMap(new NestedIntervalMap<Ipv4Resource, Ipv4Entry>());
-        final IntervalMap<Ipv6Resource, Ipv6Entry> ipv6TreeCache = SynchronizedIntervalMap.synchronizedMap(new NestedIntervalMap<Ipv6Resource, Ipv6Entry>());
-        final IntervalMap<Ipv4Resource, Ipv4RouteEntry> ipv4RouteTreeCache = SynchronizedIntervalMap.synchronizedMap(new MultiValueIntervalMap<Ipv4Resource, Ipv4RouteEntry>());
-        final IntervalMap<Ipv6Resource, Ipv6RouteEntry> ipv6RouteTreeCache = SynchronizedIntervalMap.synchronizedMap(new MultiValueIntervalMap<Ipv6Resource, Ipv6RouteEntry>());
-        final IntervalMap<Ipv4Resource, Ipv4Entry> ipv4DomainTreeCache = SynchronizedIntervalMap.synchronizedMap(new NestedIntervalMap<Ipv4Resource, Ipv4Entry>());
-        final IntervalMap<Ipv6Resource, Ipv6Entry> ipv6DomainTreeCache = SynchronizedIntervalMap.synchronizedMap(new NestedIntervalMap<Ipv6Resource, Ipv6Entry>());
+        final IntervalMap<Ipv4Resource, Ipv4Entry> ipv4TreeCache;
+        final IntervalMap<Ipv6Resource, Ipv6Entry> ipv6TreeCache;
+        final IntervalMap<Ipv4Resource, Ipv4RouteEntry> ipv4RouteTreeCache;
+        final IntervalMap<Ipv6Resource, Ipv6RouteEntry> ipv6RouteTreeCache;
+        final IntervalMap<Ipv4Resource, Ipv4Entry> ipv4DomainTreeCache;
+        final IntervalMap<Ipv6Resource, Ipv6Entry> ipv6DomainTreeCache;
+
+        private final List<SnapshotIntervalMap<?, ?>> snapshotMaps = Lists.newArrayList();
 
         volatile long lastSerial = Long.MIN_VALUE;
 
+        NestedIntervalMaps(final boolean snapshotEnabled, final Set<ObjectType> compactTypes) {
+            ipv4TreeCache = compactTypes.contains(INETNUM) ? compact(snapshotEnabled, new Ipv4EntryCodec()) : nested(snapshotEnabled);
+            ipv6TreeCache = compactTypes.contains(INET6NUM) ? compact(snapshotEnabled, new Ipv6EntryCodec()) : nested(snapshotEnabled);
+            ipv4RouteTreeCache = compactTypes.contains(ROUTE) ? compactMultiValue(snapshotEnabled, new Ipv4RouteEntryCodec()) : multiValue(snapshotEnabled);
+            ipv6RouteTreeCache = compactTypes.contains(ROUTE6) ? compactMultiValue(snapshotEnabled, new Ipv6RouteEntryCodec()) : multiValue(snapshotEnabled);
+            ipv4DomainTreeCache = compactTypes.contains(DOMAIN) ? compact(snapshotEnabled, new Ipv4EntryCodec()) : nested(snapshotEnabled);
+            ipv6DomainTreeCache = compactTypes.contains(DOMAIN) ? compact(snapshotEnabled, new Ipv6EntryCodec()) : nested(snapshotEnabled);
+        }
+
+        private <K extends Interval<K>, V> IntervalMap<K, V> compact(final boolean snapshotEnabled, final CompactIntervalMap.Codec<K, V> codec) {
+            if (snapshotEnabled) {
+                return addSnapshotMap(SnapshotIntervalMap.snapshotMap(new CompactIntervalMap<>(codec)));
+            }
+
+            return SynchronizedIntervalMap.synchronizedMap(new CompactIntervalMap<>(codec));
+        }
+
+        private <K extends Interval<K>, V extends Comparable<? super V>> IntervalMap<K, V> compactMultiValue(final boolean snapshotEnabled, final CompactIntervalMap.Codec<K, V> codec) {
+            if (snapshotEnabled) {
+                return addSnapshotMap(SnapshotIntervalMap.snapshotMap(CompactIntervalMap.multiValue(codec)));
+            }
+
+            return SynchronizedIntervalMap.synchronizedMap(CompactIntervalMap.multiValue(codec));
+        }
+
+        private <K extends Interval<K>, V> IntervalMap<K, V> nested(final boolean snapshotEnabled) {
+            if (snapshotEnabled) {
+                return addSnapshotMap(SnapshotIntervalMap.snapshotMap(new PersistentIntervalMap<K, V>()));
+            }
+
+            return SynchronizedIntervalMap.synchronizedMap(new NestedIntervalMap<K, V>());
+        }
+
+        private <K extends Interval<K>, V> IntervalMap<K, V> multiValue(final boolean snapshotEnabled) {
+            if (snapshotEnabled) {
+                return addSnapshotMap(SnapshotIntervalMap.snapshotMap(MultiValueIntervalMap.<K, V>persistent()));
+            }
+
+            return SynchronizedIntervalMap.synchronizedMap(new MultiValueIntervalMap<K, V>());
+        }
+
+        private <K extends Interval<K>, V> IntervalMap<K, V> addSnapshotMap(final SnapshotIntervalMap<K, V> snapshotMap) {
+            snapshotMaps.add(snapshotMap);
+            return snapshotMap;
+        }
+
         void update(final Iterable<IpTreeUpdate> updates, final long lastSerial, final CacheEntry cacheEntry) {
             for (final IpTreeUpdate ipTreeUpdate : updates) {
                 try {
@@ -104,9 +212,18 @@ public class IpTreeCacheManager {
                 }
             }
 
+            publish();
+
             this.lastSerial = lastSerial;
         }
 
+        // make the whole batch visible at once when readers are served from snapshots
+        void publish() {
+            for (final SnapshotIntervalMap<?, ?> snapshotMap : snapshotMaps) {
+                snapshotMap.publish();
+            }
+        }
+
         private void update(final IpTreeUpdate ipTreeUpdate) {
             switch (ipTreeUpdate.objectType) {
                 case INETNUM:
@@ -186,11 +303,78 @@ public class IpTreeCacheManager {
             throw new IllegalArgumentException(String.format("Cannot rebuild %s using different source configuration: %s", existingEntry.sourceConfiguration, sourceConfiguration));
         }
 
-        final CacheEntry cacheEntry = new CacheEntry(sourceConfiguration);
+        final CacheEntry cacheEntry = new CacheEntry(sourceConfiguration, new NestedIntervalMaps(snapshotEnabled, compactTypes));
         rebuild(sourceConfiguration.getJdbcTemplate(), cacheEntry);
         cache.put(source, cacheEntry);
     }
 
+    /**
+     * Load the IP trees from the on-disk snapshot of the source, and catch up from the serials. Falls back to a
+     * full rebuild if there is no usable snapshot.
+     */
+    void load(final SourceConfiguration sourceConfiguration) {
+        final CIString source = sourceConfiguration.getSource().getName();
+        final Path snapshotFile = getSnapshotFile(sourceConfiguration);
+        if (snapshotFile == null || !Files.exists(snapshotFile) || cache.containsKey(source)) {
+            rebuild(sourceConfiguration);
+            return;
+        }
+
+        final CacheEntry cacheEntry = new CacheEntry(sourceConfiguration, new NestedIntervalMaps(snapshotEnabled, compactTypes));
+        try {
+            final long lastSerial = IpTreeSnapshot.read(snapshotFile, source, cacheEntry.nestedIntervalMaps);
+            final long databaseSerial = getLastSerial(sourceConfiguration.getJdbcTemplate());
+            if (lastSerial > databaseSerial) {
+                LOGGER.info("Ignoring IP tree snapshot for {}; serial in snapshot: {}; serial in DB: {}", source, lastSerial, databaseSerial);
+                rebuild(sourceConfiguration);
+                return;
+            }
+
+            cacheEntry.nestedIntervalMaps.publish();
+            cacheEntry.nestedIntervalMaps.lastSerial = lastSerial;
+            LOGGER.info("Loaded IP tree snapshot for {} at serial {}", source, lastSerial);
+        } catch (IOException e) {
+            LOGGER.warn("Unable to load IP tree snapshot {} due to {}", snapshotFile, e.getMessage());
+            rebuild(sourceConfiguration);
+            return;
+        }
+
+        cache.put(source, cacheEntry);
+        update(sourceConfiguration);
+    }
+
+    /**
+     * Write the IP trees of the source to disk, if a snapshot directory is configured.
+     */
+    void writeSnapshot(final SourceConfiguration sourceConfiguration) {
+        final Path snapshotFile = getSnapshotFile(sourceConfiguration);
+        final CacheEntry cacheEntry = cache.get(sourceConfiguration.getSource().getName());
+        if (snapshotFile == null || cacheEntry == null) {
+            return;
+        }
+
+        cacheEntry.updateLock.acquireUninterruptibly();
+        try {
+            Files.createDirectories(snapshotFile.getParent());
+            IpTreeSnapshot.write(snapshotFile, sourceConfiguration.getSource().getName(), cacheEntry.nestedIntervalMaps);
+            LOGGER.info("Written IP tree snapshot for {} at serial {}", sourceConfiguration.getSource().getName(), cacheEntry.nestedIntervalMaps.lastSerial);
+        } catch (IOException e) {
+            LOGGER.warn("Unable to write IP tree snapshot {} due to {}", snapshotFile, e.getMessage());
+        } finally {
+            cacheEntry.updateLock.release();
+        }
+    }
+
+    @Nullable
+    private Path getSnapshotFile(final SourceConfiguration sourceConfiguration) {
+        // the test source is reloaded every night, so a snapshot cannot be caught up
+        if (StringUtils.isBlank(snapshotDir) || sourceConfiguration.getSource().isTest()) {
+            return null;
+        }
+
+        return Paths.get(snapshotDir, sourceConfiguration.getSource().getName().toLowerCase() + ".iptree");
+    }
+
     public boolean check(final SourceContext sourceContext) {
         return cache.get(sourceContext.getCurrentSourceConfiguration().getSource().getName()) != null;
     }
@@ -249,6 +433,9 @@ public class IpTreeCacheManager {
         } else {
             LOGGER.debug("Local database is ahead of IpTree; serial in trees: {}; serial in DB: {}", fromExclusive, toInclusive);
 
+            // invalidate cached objects before the trees move past these serials, so a failure is retried on the next update
+            rpslObjectCache.invalidate(cacheEntry.sourceConfiguration.getSource(), jdbcTemplate, fromExclusive, toInclusive);
+
             final List<IpTreeUpdate> ipTreeUpdates = jdbcTemplate.query("" +
                             "SELECT last.object_type, last.pkey, last.object_id, serials.operation " +
                             "FROM serials " +
@@ -309,86 +496,129 @@ public class IpTreeCacheManager {
     }
 
     private void rebuild(final JdbcTemplate jdbcTemplate, final CacheEntry cacheEntry) {
-        final NestedIntervalMaps nestedIntervalMaps = new NestedIntervalMaps();
+        final NestedIntervalMaps nestedIntervalMaps = new NestedIntervalMaps(snapshotEnabled, compactTypes);
 
         final long toInclusive = getLastSerial(jdbcTemplate);
 
-        final List<IpTreeUpdate> ipTreeUpdates = Lists.newArrayList();
-        ipTreeUpdates.addAll(jdbcTemplate.query("" +
-                        "SELECT begin_in, end_in, object_id " +
-                        "FROM inetnum ",
-                new RowMapper<IpTreeUpdate>() {
-                    @Override
-                    public IpTreeUpdate mapRow(ResultSet rs, int rowNum) throws SQLException {
-                        return new IpTreeUpdate(INETNUM,
-                                new Ipv4Entry(new Ipv4Resource(rs.getLong(1), rs.getLong(2)), rs.getInt(3)).getKey().toRangeString(),
-                                rs.getInt(3),
-                                UPDATE);
-                    }
-                }
-        ));
-
-        ipTreeUpdates.addAll(jdbcTemplate.query("" +
-                        "SELECT i6_msb, i6_lsb, prefix_length, object_id " +
-                        "FROM inet6num ",
-                new RowMapper<IpTreeUpdate>() {
-                    @Override
-                    public IpTreeUpdate mapRow(ResultSet rs, int rowNum) throws SQLException {
-                        return new IpTreeUpdate(INET6NUM,
-                                new Ipv6Entry(Ipv6Resource.parseFromStrings(rs.getString(1), rs.getString(2), rs.getInt(3)), rs.getInt(4)).getKey().toString(),
-                                rs.getInt(4),
-                                UPDATE);
-                    }
-                }
-        ));
-
-        ipTreeUpdates.addAll(jdbcTemplate.query("" +
-                        "SELECT prefix, prefix_length, origin, object_id " +
-                        "FROM route ",
-                new RowMapper<IpTreeUpdate>() {
-                    @Override
-                    public IpTreeUpdate mapRow(ResultSet rs, int rowNum) throws SQLException {
-                        return new IpTreeUpdate(ROUTE,
-                                Ipv4Resource.parsePrefixWithLength(rs.getLong(1), rs.getInt(2)).toString() + rs.getString(3),
-                                rs.getInt(4),
-                                UPDATE);
-                    }
-                }
-        ));
-
-        ipTreeUpdates.addAll(jdbcTemplate.query("" +
-                        "SELECT r6_msb, r6_lsb, prefix_length, object_id, origin " +
-                        "FROM route6 ",
-                new RowMapper<IpTreeUpdate>() {
-                    @Override
-                    public IpTreeUpdate mapRow(final ResultSet rs, final int rowNum) throws SQLException {
-                        return new IpTreeUpdate(ROUTE6,
-                                new Ipv6Entry(Ipv6Resource.parseFromStrings(rs.getString(1), rs.getString(2), rs.getInt(3)), rs.getInt(4)).getKey() + rs.getString(5),
-                                rs.getInt(4),
-                                UPDATE);
-                    }
-                }
-        ));
-
-        ipTreeUpdates.addAll(jdbcTemplate.query("" +
-                        "SELECT domain, object_id " +
-                        "FROM domain ",
-                new RowMapper<IpTreeUpdate>() {
-                    @Override
-                    public IpTreeUpdate mapRow(final ResultSet rs, final int rowNum) throws SQLException {
-                        return new IpTreeUpdate(DOMAIN,
-                                rs.getString(1),
-                                rs.getInt(2),
-                                UPDATE);
-                    }
-                }
-        ));
+        // every object type streams into its own tree(s), so the tables can be read in parallel
+        final List<Runnable> loaders = Lists.newArrayList(
+                () -> load(jdbcTemplate, cacheEntry, INETNUM, "" +
+                                "SELECT begin_in, end_in, object_id " +
+                                "FROM inetnum",
+                        rs -> {
+                            final Ipv4Resource key = new Ipv4Resource(rs.getLong(1), rs.getLong(2));
+                            nestedIntervalMaps.ipv4TreeCache.put(key, new Ipv4Entry(key, rs.getInt(3)));
+                        }),
+
+                () -> load(jdbcTemplate, cacheEntry, INET6NUM, "" +
+                                "SELECT i6_msb, i6_lsb, prefix_length, object_id " +
+                                "FROM inet6num",
+                        rs -> {
+                            final Ipv6Resource key = Ipv6Resource.parsePrefixWithLength(rs.getLong(1), rs.getLong(2), rs.getInt(3));
+                            nestedIntervalMaps.ipv6TreeCache.put(key, new Ipv6Entry(key, rs.getInt(4)));
+                        }),
+
+                () -> load(jdbcTemplate, cacheEntry, ROUTE, "" +
+                                "SELECT prefix, prefix_length, origin, object_id " +
+                                "FROM route",
+                        rs -> {
+                            final Ipv4Resource key = Ipv4Resource.parsePrefixWithLength(rs.getLong(1), rs.getInt(2));
+                            nestedIntervalMaps.ipv4RouteTreeCache.put(key, new Ipv4RouteEntry(key, rs.getInt(4), rs.getString(3).toUpperCase()));
+                        }),
+
+                () -> load(jdbcTemplate, cacheEntry, ROUTE6, "" +
+                                "SELECT r6_msb, r6_lsb, prefix_length, object_id, origin " +
+                                "FROM route6",
+                        rs -> {
+                            final Ipv6Resource key = Ipv6Resource.parsePrefixWithLength(rs.getLong(1), rs.getLong(2), rs.getInt(3));
+                            nestedIntervalMaps.ipv6RouteTreeCache.put(key, new Ipv6RouteEntry(key, rs.getInt(4), rs.getString(5).toUpperCase()));
+                        }),
+
+                () -> load(jdbcTemplate, cacheEntry, DOMAIN, "" +
+                                "SELECT domain, object_id " +
+                                "FROM domain",
+                        rs -> {
+                            final Domain domain = Domain.parse(rs.getString(1));
+                            switch (domain.getType()) {
+                                case INADDR:
+                                    final Ipv4Resource ipv4Key = (Ipv4Resource) domain.getReverseIp();
+                                    nestedIntervalMaps.ipv4DomainTreeCache.put(ipv4Key, new Ipv4Entry(ipv4Key, rs.getInt(2)));
+                                    break;
+                                case IP6:
+                                    final Ipv6Resource ipv6Key = (Ipv6Resource) domain.getReverseIp();
+                                    nestedIntervalMaps.ipv6DomainTreeCache.put(ipv6Key, new Ipv6Entry(ipv6Key, rs.getInt(2)));
+                                    break;
+                                default:
+                                    LOGGER.debug("Ignoring domain: {}", domain.getValue());
+                                    break;
+                            }
+                        })
+        );
+
+        // a source aware (transactional) template is bound to the calling thread
+        if (jdbcTemplate == cacheEntry.sourceConfiguration.getJdbcTemplate()) {
+            loadInParallel(loaders, cacheEntry);
+        } else {
+            loaders.forEach(Runnable::run);
+        }
+
+        nestedIntervalMaps.publish();
+        nestedIntervalMaps.lastSerial = toInclusive;
 
-        nestedIntervalMaps.update(ipTreeUpdates, toInclusive, cacheEntry);
+        // the serials skipped by the rebuild are not invalidated one by one
+        rpslObjectCache.invalidate(cacheEntry.sourceConfiguration.getSource());
 
         cacheEntry.nestedIntervalMaps = nestedIntervalMaps;
     }
 
+    private void loadInParallel(final List<Runnable> loaders, final CacheEntry cacheEntry) {
+        final ExecutorService executorService = Executors.newFixedThreadPool(loaders.size(), new ThreadFactory() {
+            final AtomicInteger threadNum = new AtomicInteger();
+
+            @Override
+            public Thread newThread(final Runnable r) {
+                return new Thread(r, String.format("IpTreeRebuild-%s-%s", cacheEntry.sourceConfiguration.getSource().getName(), threadNum.incrementAndGet()));
+            }
+        });
+
+        try {
+            final List<Future<?>> futures = Lists.newArrayList();
+            for (final Runnable loader : loaders) {
+                futures.add(executorService.submit(loader));
+            }
+
+            for (final Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while rebuilding IP trees", e);
+        } catch (ExecutionException e) {
+            Throwables.throwIfUnchecked(e.getCause());
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    private void load(final JdbcTemplate jdbcTemplate, final CacheEntry cacheEntry, final ObjectType objectType, final String sql, final RowCallbackHandler rowCallbackHandler) {
+        final Stopwatch stopwatch = Stopwatch.createStarted();
+        final AtomicInteger rows = new AtomicInteger();
+
+        JdbcStreamingHelper.executeStreaming(jdbcTemplate, sql, (RowCallbackHandler) rs -> {
+            rows.incrementAndGet();
+            try {
+                rowCallbackHandler.processRow(rs);
+            } catch (IntersectingIntervalException e) {
+                LOGGER.info("Skipping intersecting entry in {}: {}", cacheEntry.sourceConfiguration.getSource(), e.getMessage());
+            } catch (RuntimeException e) {
+                LOGGER.info("Unable to load {} {}: {}", objectType.getName(), rs.getInt("object_id"), e.getMessage());
+            }
+        });
+
+        LOGGER.info("Loaded {} {} rows for {} in {}", rows, objectType.getName(), cacheEntry.sourceConfiguration.getSource(), stopwatch);
+    }
+
     private long getLastSerial(final JdbcTemplate jdbcTemplate) {
         return jdbcTemplate.queryForObject("SELECT IFNULL(MAX(serial_id),0) FROM serials", Long.class);
     }
@@ -0,0 +1,186 @@
+package net.ripe.db.whois.common.iptree;
+
+import net.ripe.db.whois.common.domain.CIString;
+import net.ripe.db.whois.common.etree.IntervalMap;
+import net.ripe.db.whois.common.ip.Ipv4Resource;
+import net.ripe.db.whois.common.ip.Ipv6Resource;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Binary on-disk copy of the IP trees of a single source, tagged with the last serial the trees reflect.
+ * <p/>
+ * Entries are stored in tree order (least specific first), so reading a snapshot inserts every entry
+ * after its parent.
+ */
+class IpTreeSnapshot {
+    private static final int MAGIC = 0x49505452;     // "IPTR"
+    private static final int FORMAT_VERSION = 1;
+
+    private IpTreeSnapshot() {
+        // do not instantiate
+    }
+
+    static void write(final Path file, final CIString source, final IpTreeCacheManager.NestedIntervalMaps nestedIntervalMaps) throws IOException {
+        final Path tmpFile = file.resolveSibling(file.getFileName() + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmpFile)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            writeString(out, source.toString());
+            out.writeLong(nestedIntervalMaps.lastSerial);
+
+            writeIpv4Entries(out, nestedIntervalMaps.getIpv4TreeCache().findExactAndAllMoreSpecific(Ipv4Resource.MAX_RANGE));
+            writeIpv6Entries(out, nestedIntervalMaps.getIpv6TreeCache().findExactAndAllMoreSpecific(Ipv6Resource.MAX_RANGE));
+            writeIpv4RouteEntries(out, nestedIntervalMaps.getIpv4RouteTreeCache().findExactAndAllMoreSpecific(Ipv4Resource.MAX_RANGE));
+            writeIpv6RouteEntries(out, nestedIntervalMaps.getIpv6RouteTreeCache().findExactAndAllMoreSpecific(Ipv6Resource.MAX_RANGE));
+            writeIpv4Entries(out, nestedIntervalMaps.getIpv4DomainTreeCache().findExactAndAllMoreSpecific(Ipv4Resource.MAX_RANGE));
+            writeIpv6Entries(out, nestedIntervalMaps.getIpv6DomainTreeCache().findExactAndAllMoreSpecific(Ipv6Resource.MAX_RANGE));
+        }
+
+        Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Read the snapshot into empty trees.
+     *
+     * @return the last serial the snapshot reflects
+     * @throws IOException if the file cannot be read, or is not a snapshot of the given source.
+     */
+    static long read(final Path file, final CIString source, final IpTreeCacheManager.NestedIntervalMaps nestedIntervalMaps) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot too large to map: " + channel.size());
+            }
+
+            final ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                throw new IOException("Unsupported snapshot format");
+            }
+
+            final String snapshotSource = readString(buffer);
+            if (!source.equals(snapshotSource)) {
+                throw new IOException("Snapshot is for source " + snapshotSource);
+            }
+
+            final long lastSerial = buffer.getLong();
+
+            readIpv4Entries(buffer, nestedIntervalMaps.getIpv4TreeCache());
+            readIpv6Entries(buffer, nestedIntervalMaps.getIpv6TreeCache());
+            readIpv4RouteEntries(buffer, nestedIntervalMaps.getIpv4RouteTreeCache());
+            readIpv6RouteEntries(buffer, nestedIntervalMaps.getIpv6RouteTreeCache());
+            readIpv4Entries(buffer, nestedIntervalMaps.getIpv4DomainTreeCache());
+            readIpv6Entries(buffer, nestedIntervalMaps.getIpv6DomainTreeCache());
+
+            return lastSerial;
+        } catch (RuntimeException e) {
+            throw new IOException("Invalid snapshot", e);
+        }
+    }
+
+    private static void writeIpv4Entries(final DataOutputStream out, final List<Ipv4Entry> entries) throws IOException {
+        out.writeInt(entries.size());
+        for (final Ipv4Entry entry : entries) {
+            writeIpv4Resource(out, entry.getKey());
+            out.writeInt(entry.getObjectId());
+        }
+    }
+
+    private static void readIpv4Entries(final ByteBuffer buffer, final IntervalMap<Ipv4Resource, Ipv4Entry> intervalMap) {
+        for (int count = buffer.getInt(); count > 0; count--) {
+            final Ipv4Resource key = readIpv4Resource(buffer);
+            intervalMap.put(key, new Ipv4Entry(key, buffer.getInt()));
+        }
+    }
+
+    private static void writeIpv6Entries(final DataOutputStream out, final List<Ipv6Entry> entries) throws IOException {
+        out.writeInt(entries.size());
+        for (final Ipv6Entry entry : entries) {
+            writeIpv6Resource(out, entry.getKey());
+            out.writeInt(entry.getObjectId());
+        }
+    }
+
+    private static void readIpv6Entries(final ByteBuffer buffer, final IntervalMap<Ipv6Resource, Ipv6Entry> intervalMap) {
+        for (int count = buffer.getInt(); count > 0; count--) {
+            final Ipv6Resource key = readIpv6Resource(buffer);
+            intervalMap.put(key, new Ipv6Entry(key, buffer.getInt()));
+        }
+    }
+
+    private static void writeIpv4RouteEntries(final DataOutputStream out, final List<Ipv4RouteEntry> entries) throws IOException {
+        out.writeInt(entries.size());
+        for (final Ipv4RouteEntry entry : entries) {
+            writeIpv4Resource(out, entry.getKey());
+            out.writeInt(entry.getObjectId());
+            writeString(out, entry.getOrigin());
+        }
+    }
+
+    private static void readIpv4RouteEntries(final ByteBuffer buffer, final IntervalMap<Ipv4Resource, Ipv4RouteEntry> intervalMap) {
+        for (int count = buffer.getInt(); count > 0; count--) {
+            final Ipv4Resource key = readIpv4Resource(buffer);
+            intervalMap.put(key, new Ipv4RouteEntry(key, buffer.getInt(), readString(buffer)));
+        }
+    }
+
+    private static void writeIpv6RouteEntries(final DataOutputStream out, final List<Ipv6RouteEntry> entries) throws IOException {
+        out.writeInt(entries.size());
+        for (final Ipv6RouteEntry entry : entries) {
+            writeIpv6Resource(out, entry.getKey());
+            out.writeInt(entry.getObjectId());
+            writeString(out, entry.getOrigin());
+        }
+    }
+
+    private static void readIpv6RouteEntries(final ByteBuffer buffer, final IntervalMap<Ipv6Resource, Ipv6RouteEntry> intervalMap) {
+        for (int count = buffer.getInt(); count > 0; count--) {
+            final Ipv6Resource key = readIpv6Resource(buffer);
+            intervalMap.put(key, new Ipv6RouteEntry(key, buffer.getInt(), readString(buffer)));
+        }
+    }
+
+    private static void writeIpv4Resource(final DataOutputStream out, final Ipv4Resource resource) throws IOException {
+        out.writeInt((int) resource.begin());
+        out.writeInt((int) resource.end());
+    }
+
+    private static Ipv4Resource readIpv4Resource(final ByteBuffer buffer) {
+        final long begin = Integer.toUnsignedLong(buffer.getInt());
+        final long end = Integer.toUnsignedLong(buffer.getInt());
+        return new Ipv4Resource(begin, end);
+    }
+
+    private static void writeIpv6Resource(final DataOutputStream out, final Ipv6Resource resource) throws IOException {
+        out.writeLong(resource.beginMsb());
+        out.writeLong(resource.beginLsb());
+        out.writeLong(resource.endMsb());
+        out.writeLong(resource.endLsb());
+    }
+
+    private static Ipv6Resource readIpv6Resource(final ByteBuffer buffer) {
+        return new Ipv6Resource(buffer.getLong(), buffer.getLong(), buffer.getLong(), buffer.getLong());
+    }
+
+    private static void writeString(final DataOutputStream out, final String value) throws IOException {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(final ByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.getShort() & 0xffff];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -85,14 +85,29 @@ public class IpTreeUpdater {
             }
         });
 
-        rebuild();
+        load();
     }
 
     @PreDestroy
     public void stop() {
+        writeSnapshots();
         executorService.shutdownNow();
     }
 
+    private void load() {
+        LOGGER.info("Loading IP trees");
+        final Stopwatch stopwatch = Stopwatch.createStarted();
+
+        invokeAll(sourceConfigurationForSlave, new OperationCallback() {
+            @Override
+            public void execute(final SourceConfiguration sourceConfiguration) {
+                ipTreeCacheManager.load(sourceConfiguration);
+            }
+        });
+
+        LOGGER.info("Finished loading IP trees in {}", stopwatch);
+    }
+
     public void rebuild() {
         LOGGER.info("Building IP trees");
         final Stopwatch stopwatch = Stopwatch.createStarted();
@@ -126,6 +141,19 @@ public class IpTreeUpdater {
         });
     }
 
+    /**
+     * Write the snapshots periodically as well as on shutdown, so they can be caught up after an unclean shutdown.
+     */
+    @Scheduled(fixedDelayString = "${iptree.snapshot.interval.msecs:3600000}", initialDelayString = "${iptree.snapshot.interval.msecs:3600000}")
+    public void writeSnapshots() {
+        invokeAll(sourceConfigurationForSlave, new OperationCallback() {
+            @Override
+            public void execute(final SourceConfiguration sourceConfiguration) {
+                ipTreeCacheManager.writeSnapshot(sourceConfiguration);
+            }
+        });
+    }
+
     public void updateTransactional() {
         ipTreeCacheManager.updateTransactional(sourceContext.getCurrentSourceConfiguration());
     }
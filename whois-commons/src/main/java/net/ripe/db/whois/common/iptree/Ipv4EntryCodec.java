@@ -0,0 +1,32 @@
+package net.ripe.db.whois.common.iptree;
+
+import net.ripe.db.whois.common.etree.CompactIntervalMap;
+import net.ripe.db.whois.common.ip.Ipv4Resource;
+
+public final class Ipv4EntryCodec implements CompactIntervalMap.Codec<Ipv4Resource, Ipv4Entry> {
+    @Override
+    public int getWords() {
+        return 1;
+    }
+
+    @Override
+    public void encode(final Ipv4Resource key, final long[] begins, final long[] ends, final int offset) {
+        begins[offset] = key.begin();
+        ends[offset] = key.end();
+    }
+
+    @Override
+    public Ipv4Resource decode(final long[] begins, final long[] ends, final int offset) {
+        return new Ipv4Resource(begins[offset], ends[offset]);
+    }
+
+    @Override
+    public int getId(final Ipv4Entry value) {
+        return value.getObjectId();
+    }
+
+    @Override
+    public Ipv4Entry createValue(final Ipv4Resource key, final int id, final long[] values, final int offset) {
+        return new Ipv4Entry(key, id);
+    }
+}
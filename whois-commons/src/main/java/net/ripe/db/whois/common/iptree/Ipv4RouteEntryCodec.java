@@ -0,0 +1,47 @@
+package net.ripe.db.whois.common.iptree;
+
+import net.ripe.db.whois.common.etree.CompactIntervalMap;
+import net.ripe.db.whois.common.ip.Ipv4Resource;
+import net.ripe.db.whois.common.rpsl.attrs.AutNum;
+
+/**
+ * Stores a route by its prefix, and its origin as AS number.
+ */
+public final class Ipv4RouteEntryCodec implements CompactIntervalMap.Codec<Ipv4Resource, Ipv4RouteEntry> {
+    private final Ipv4EntryCodec prefixCodec = new Ipv4EntryCodec();
+
+    @Override
+    public int getWords() {
+        return prefixCodec.getWords();
+    }
+
+    @Override
+    public void encode(final Ipv4Resource key, final long[] begins, final long[] ends, final int offset) {
+        prefixCodec.encode(key, begins, ends, offset);
+    }
+
+    @Override
+    public Ipv4Resource decode(final long[] begins, final long[] ends, final int offset) {
+        return prefixCodec.decode(begins, ends, offset);
+    }
+
+    @Override
+    public int getId(final Ipv4RouteEntry value) {
+        return value.getObjectId();
+    }
+
+    @Override
+    public int getValueWords() {
+        return 1;
+    }
+
+    @Override
+    public void encodeValue(final Ipv4RouteEntry value, final long[] values, final int offset) {
+        values[offset] = AutNum.parse(value.getOrigin()).getValue();
+    }
+
+    @Override
+    public Ipv4RouteEntry createValue(final Ipv4Resource key, final int id, final long[] values, final int offset) {
+        return new Ipv4RouteEntry(key, id, "AS" + values[offset]);
+    }
+}
@@ -0,0 +1,34 @@
+package net.ripe.db.whois.common.iptree;
+
+import net.ripe.db.whois.common.etree.CompactIntervalMap;
+import net.ripe.db.whois.common.ip.Ipv6Resource;
+
+public final class Ipv6EntryCodec implements CompactIntervalMap.Codec<Ipv6Resource, Ipv6Entry> {
+    @Override
+    public int getWords() {
+        return 2;
+    }
+
+    @Override
+    public void encode(final Ipv6Resource key, final long[] begins, final long[] ends, final int offset) {
+        begins[offset] = key.beginMsb();
+        begins[offset + 1] = key.beginLsb();
+        ends[offset] = key.endMsb();
+        ends[offset + 1] = key.endLsb();
+    }
+
+    @Override
+    public Ipv6Resource decode(final long[] begins, final long[] ends, final int offset) {
+        return new Ipv6Resource(begins[offset], begins[offset + 1], ends[offset], ends[offset + 1]);
+    }
+
+    @Override
+    public int getId(final Ipv6Entry value) {
+        return value.getObjectId();
+    }
+
+    @Override
+    public Ipv6Entry createValue(final Ipv6Resource key, final int id, final long[] values, final int offset) {
+        return new Ipv6Entry(key, id);
+    }
+}
@@ -0,0 +1,47 @@
+package net.ripe.db.whois.common.iptree;
+
+import net.ripe.db.whois.common.etree.CompactIntervalMap;
+import net.ripe.db.whois.common.ip.Ipv6Resource;
+import net.ripe.db.whois.common.rpsl.attrs.AutNum;
+
+/**
+ * Stores a route by its prefix, and its origin as AS number.
+ */
+public final class Ipv6RouteEntryCodec implements CompactIntervalMap.Codec<Ipv6Resource, Ipv6RouteEntry> {
+    private final Ipv6EntryCodec prefixCodec = new Ipv6EntryCodec();
+
+    @Override
+    public int getWords() {
+        return prefixCodec.getWords();
+    }
+
+    @Override
+    public void encode(final Ipv6Resource key, final long[] begins, final long[] ends, final int offset) {
+        prefixCodec.encode(key, begins, ends, offset);
+    }
+
+    @Override
+    public Ipv6Resource decode(final long[] begins, final long[] ends, final int offset) {
+        return prefixCodec.decode(begins, ends, offset);
+    }
+
+    @Override
+    public int getId(final Ipv6RouteEntry value) {
+        return value.getObjectId();
+    }
+
+    @Override
+    public int getValueWords() {
+        return 1;
+    }
+
+    @Override
+    public void encodeValue(final Ipv6RouteEntry value, final long[] values, final int offset) {
+        values[offset] = AutNum.parse(value.getOrigin()).getValue();
+    }
+
+    @Override
+    public Ipv6RouteEntry createValue(final Ipv6Resource key, final int id, final long[] values, final int offset) {
+        return new Ipv6RouteEntry(key, id, "AS" + values[offset]);
+    }
+}
@@ -0,0 +1,59 @@
+package net.ripe.db.whois.common.pipeline;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+
+/**
+ * Lets a worker thread block until the outbound buffer of its channel drains below the low water mark, woken up by
+ * the writability change of the channel rather than by polling.
+ * <p/>
+ * Add one instance per channel to the pipeline without an executor group, so the events are handled by the IO
+ * thread while the worker thread is blocked.
+ */
+public class ChannelWritability extends ChannelInboundHandlerAdapter {
+
+    @Override
+    public void channelWritabilityChanged(final ChannelHandlerContext ctx) {
+        signal();
+        ctx.fireChannelWritabilityChanged();
+    }
+
+    @Override
+    public void channelInactive(final ChannelHandlerContext ctx) {
+        signal();
+        ctx.fireChannelInactive();
+    }
+
+    private synchronized void signal() {
+        notifyAll();
+    }
+
+    /**
+     * Block until the channel is writable.
+     *
+     * @return false if the channel was closed before it became writable.
+     */
+    public synchronized boolean await(final Channel channel) {
+        boolean interrupted = false;
+        try {
+            while (!channel.isWritable()) {
+                if (!channel.isActive()) {
+                    return false;
+                }
+
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+
+            return true;
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package net.ripe.db.whois.common.collect;
+
+import com.google.common.collect.Lists;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+public class PrefetchingProxyIterableTest {
+    private ExecutorService executorService;
+
+    @BeforeEach
+    public void setUp() {
+        executorService = Executors.newFixedThreadPool(2);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void keeps_order() {
+        final List<Integer> source = IntStream.rangeClosed(1, 1000).boxed().collect(Collectors.toList());
+
+        final PrefetchingProxyIterable<Integer, String> subject = new PrefetchingProxyIterable<>(source, toStringLoader(), executorService, 2, 7, 7, TimeUnit.SECONDS.toNanos(1));
+
+        assertThat(Lists.newArrayList(subject), is(source.stream().map(String::valueOf).collect(Collectors.toList())));
+    }
+
+    @Test
+    public void empty_source() {
+        final PrefetchingProxyIterable<Integer, String> subject = new PrefetchingProxyIterable<>(Collections.emptyList(), toStringLoader(), executorService, 2, 1, 1, 0);
+        final Iterator<String> iterator = subject.iterator();
+
+        assertThat(iterator.hasNext(), is(false));
+        Assertions.assertThrows(NoSuchElementException.class, iterator::next);
+    }
+
+    @Test
+    public void empty_batches_are_skipped() {
+        final ProxyLoader<Integer, String> loader = (proxy, result) -> proxy.stream()
+                .filter(id -> id % 3 == 0)
+                .forEach(id -> result.add(String.valueOf(id)));
+
+        final PrefetchingProxyIterable<Integer, String> subject = new PrefetchingProxyIterable<>(Arrays.asList(1, 2, 3, 4, 5, 6, 7), loader, executorService, 1, 1, 1, 0);
+
+        assertThat(Lists.newArrayList(subject), contains("3", "6"));
+    }
+
+    @Test
+    public void batch_size_grows_for_fast_loads() {
+        final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        final ProxyLoader<Integer, String> loader = (proxy, result) -> {
+            batchSizes.add(proxy.size());
+            toStringLoader().load(proxy, result);
+        };
+
+        final List<Integer> source = IntStream.rangeClosed(1, 10_000).boxed().collect(Collectors.toList());
+        final PrefetchingProxyIterable<Integer, String> subject = new PrefetchingProxyIterable<>(source, loader, executorService, 1, 10, 80, TimeUnit.HOURS.toNanos(1));
+
+        assertThat(Lists.newArrayList(subject).size(), is(source.size()));
+        assertThat(batchSizes.get(0), is(10));
+        assertThat(batchSizes, everyItem(lessThanOrEqualTo(80)));
+        assertThat(batchSizes.stream().mapToInt(Integer::intValue).max().getAsInt(), is(80));
+    }
+
+    @Test
+    public void batch_size_stays_minimal_for_slow_loads() {
+        final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        final ProxyLoader<Integer, String> loader = (proxy, result) -> {
+            batchSizes.add(proxy.size());
+            toStringLoader().load(proxy, result);
+        };
+
+        final List<Integer> source = IntStream.rangeClosed(1, 100).boxed().collect(Collectors.toList());
+        final PrefetchingProxyIterable<Integer, String> subject = new PrefetchingProxyIterable<>(source, loader, executorService, 1, 10, 80, -1);
+
+        assertThat(Lists.newArrayList(subject).size(), is(source.size()));
+        assertThat(batchSizes, everyItem(is(10)));
+    }
+
+    @Test
+    public void loader_exception_is_propagated() {
+        final ProxyLoader<Integer, String> loader = (proxy, result) -> {
+            throw new IllegalStateException("failed");
+        };
+
+        final PrefetchingProxyIterable<Integer, String> subject = new PrefetchingProxyIterable<>(Arrays.asList(1, 2, 3), loader, executorService, 2, 1, 1, 0);
+
+        final IllegalStateException e = Assertions.assertThrows(IllegalStateException.class, () -> subject.iterator().hasNext());
+        assertThat(e.getMessage(), is("failed"));
+    }
+
+    @Test
+    public void cancel_stops_loading() throws Exception {
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final List<Integer> loaded = new CopyOnWriteArrayList<>();
+        final ProxyLoader<Integer, String> loader = (proxy, result) -> {
+            loaded.addAll(proxy);
+            if (proxy.contains(2)) {
+                blocked.countDown();
+                try {
+                    Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            toStringLoader().load(proxy, result);
+        };
+
+        final List<Integer> source = IntStream.rangeClosed(1, 100).boxed().collect(Collectors.toList());
+        final PrefetchingProxyIterable<Integer, String> subject = new PrefetchingProxyIterable<>(source, loader, executorService, 1, 1, 1, TimeUnit.HOURS.toNanos(1));
+        final Iterator<String> iterator = subject.iterator();
+
+        assertThat(iterator.next(), is("1"));
+        assertThat(blocked.await(10, TimeUnit.SECONDS), is(true));
+
+        subject.cancel();
+
+        Assertions.assertThrows(CancellationException.class, iterator::hasNext);
+        assertThat(loaded.size(), greaterThan(0));
+        assertThat(loaded.size(), lessThanOrEqualTo(3));
+    }
+
+    private static ProxyLoader<Integer, String> toStringLoader() {
+        return (proxy, result) -> {
+            for (final Integer integer : proxy) {
+                result.add(String.valueOf(integer));
+            }
+        };
+    }
+}
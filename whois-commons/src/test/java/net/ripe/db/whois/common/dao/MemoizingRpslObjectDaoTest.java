@@ -0,0 +1,89 @@
+package net.ripe.db.whois.common.dao;
+
+import com.google.common.collect.Lists;
+import net.ripe.db.whois.common.rpsl.ObjectType;
+import net.ripe.db.whois.common.rpsl.RpslObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.EmptyResultDataAccessException;
+
+import java.util.List;
+
+import static net.ripe.db.whois.common.domain.CIString.ciString;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class MemoizingRpslObjectDaoTest {
+    @Mock RpslObjectDao rpslObjectDao;
+
+    private final RpslObject organisation = RpslObject.parse(1, "organisation: ORG-TEST1\nsource: TEST");
+
+    private MemoizingRpslObjectDao subject;
+
+    @BeforeEach
+    public void setUp() {
+        subject = new MemoizingRpslObjectDao(rpslObjectDao);
+    }
+
+    @Test
+    public void getById_read_once() {
+        when(rpslObjectDao.getById(1)).thenReturn(organisation);
+
+        assertThat(subject.getById(1), is(organisation));
+        assertThat(subject.getById(1), is(organisation));
+
+        verify(rpslObjectDao, times(1)).getById(1);
+    }
+
+    @Test
+    public void getById_missing_read_once() {
+        when(rpslObjectDao.getById(2)).thenThrow(new EmptyResultDataAccessException(1));
+
+        assertThrows(EmptyResultDataAccessException.class, () -> subject.getById(2));
+        assertThat(subject.getByIdOrNull(2), is(nullValue()));
+
+        verify(rpslObjectDao, times(1)).getById(2);
+    }
+
+    @Test
+    public void getByKey_read_once() {
+        when(rpslObjectDao.getByKeyOrNull(ObjectType.ORGANISATION, ciString("ORG-TEST1"))).thenReturn(organisation);
+
+        assertThat(subject.getByKey(ObjectType.ORGANISATION, "org-test1"), is(organisation));
+        assertThat(subject.getByKeyOrNull(ObjectType.ORGANISATION, ciString("ORG-TEST1")), is(organisation));
+        assertThat(subject.getById(1), is(organisation));
+
+        verify(rpslObjectDao, times(1)).getByKeyOrNull(ObjectType.ORGANISATION, ciString("ORG-TEST1"));
+        verifyNoMoreInteractions(rpslObjectDao);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void prefetch_reads_in_single_batch() {
+        doAnswer(invocation -> {
+            ((List<RpslObject>) invocation.getArgument(1)).add(organisation);
+            return null;
+        }).when(rpslObjectDao).load(anyList(), anyList());
+
+        subject.prefetch(Lists.newArrayList(1, 2));
+        subject.prefetch(Lists.newArrayList(1, 2));
+
+        assertThat(subject.getByIdOrNull(1), is(organisation));
+        assertThat(subject.getByIdOrNull(2), is(nullValue()));
+        verify(rpslObjectDao, times(1)).load(anyList(), any());
+        verifyNoMoreInteractions(rpslObjectDao);
+    }
+}
@@ -18,7 +18,9 @@ import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
 import java.time.temporal.Temporal;
+import java.util.Map;
 
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.nullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -148,6 +150,34 @@ public class JdbcSerialDaoIntegrationTest extends AbstractDaoIntegrationTest {
         assertThat(subject.getByIdForNrtm(3).getRpslObject(), is(object3));
     }
 
+    // getByIdRangeForNrtm()
+
+    @Test
+    public void getByIdRangeForNrtm() {
+        final RpslObject object1 = databaseHelper.addObject("aut-num: AS1\ndescr: first");
+        final RpslObject object2 = databaseHelper.updateObject("aut-num: AS1\ndescr: second");
+        databaseHelper.deleteObject(object2);
+
+        final Map<Integer, SerialEntry> serialEntries = subject.getByIdRangeForNrtm(1, 3);
+
+        assertThat(serialEntries.keySet(), contains(1, 2, 3));
+        assertThat(serialEntries.get(1).getRpslObject(), is(object1));
+        assertThat(serialEntries.get(2).getRpslObject(), is(object2));
+        assertThat(serialEntries.get(3).getOperation(), is(Operation.DELETE));
+        assertThat(serialEntries.get(3).getRpslObject(), is(object2));
+    }
+
+    @Test
+    public void getByIdRangeForNrtm_partial_range() {
+        databaseHelper.addObject("aut-num: AS1\ndescr: first");
+        final RpslObject object2 = databaseHelper.updateObject("aut-num: AS1\ndescr: second");
+
+        final Map<Integer, SerialEntry> serialEntries = subject.getByIdRangeForNrtm(2, 5);
+
+        assertThat(serialEntries.keySet(), contains(2));
+        assertThat(serialEntries.get(2).getRpslObject(), is(object2));
+    }
+
     @Test
     public void getAgeOfExactOrNextExistingSerial_create_and_multiple_updates() {
         final LocalDateTime createTimestamp = LocalDateTime.parse("2001-02-04T17:00:00");
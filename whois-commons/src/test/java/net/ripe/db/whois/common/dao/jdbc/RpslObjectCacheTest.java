@@ -0,0 +1,124 @@
+package net.ripe.db.whois.common.dao.jdbc;
+
+import net.ripe.db.whois.common.rpsl.ObjectType;
+import net.ripe.db.whois.common.rpsl.RpslObject;
+import net.ripe.db.whois.common.source.Source;
+import net.ripe.db.whois.common.source.SourceContext;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class RpslObjectCacheTest {
+    private static final Source SLAVE = Source.slave("TEST");
+
+    @Mock SourceContext sourceContext;
+    @Mock JdbcTemplate jdbcTemplate;
+
+    private RpslObjectCache subject;
+
+    private final RpslObject mntner = RpslObject.parse(1, "mntner: TEST-MNT\nsource: TEST");
+
+    @BeforeEach
+    public void setUp() {
+        lenient().when(sourceContext.getCurrentSource()).thenReturn(SLAVE);
+
+        subject = new RpslObjectCache(sourceContext, 100);
+    }
+
+    @Test
+    public void disabled() {
+        subject = new RpslObjectCache(sourceContext, 0);
+
+        assertThat(subject.isCacheable(), is(false));
+    }
+
+    @Test
+    public void master_source_not_cacheable() {
+        when(sourceContext.getCurrentSource()).thenReturn(Source.master("TEST"));
+
+        assertThat(subject.isCacheable(), is(false));
+    }
+
+    @Test
+    public void get_by_id_is_cached() {
+        final AtomicInteger loads = new AtomicInteger();
+
+        subject.getById(1, () -> { loads.incrementAndGet(); return mntner; });
+        final RpslObject cached = subject.getById(1, () -> { loads.incrementAndGet(); return mntner; });
+
+        assertThat(cached, is(mntner));
+        assertThat(loads.get(), is(1));
+        assertThat(subject.getStats().hitCount(), is(1L));
+        assertThat(subject.getStats().missCount(), is(1L));
+    }
+
+    @Test
+    public void changed_object_is_invalidated() {
+        subject.getById(1, () -> mntner);
+        subject.putObjectId(subject.getGeneration(), ObjectType.MNTNER, "test-mnt", 1);
+
+        when(jdbcTemplate.queryForList(anyString(), eq(Integer.class), anyLong(), anyLong())).thenReturn(Arrays.asList(1, 2));
+        subject.invalidate(SLAVE, jdbcTemplate, 10, 12);
+
+        assertThat(subject.getIfPresent(1), is(nullValue()));
+        assertThat(subject.getObjectIdIfPresent(ObjectType.MNTNER, "TEST-MNT"), is(1));
+    }
+
+    @Test
+    public void unchanged_object_is_kept() {
+        subject.getById(1, () -> mntner);
+
+        when(jdbcTemplate.queryForList(anyString(), eq(Integer.class), anyLong(), anyLong())).thenReturn(Collections.singletonList(2));
+        subject.invalidate(SLAVE, jdbcTemplate, 10, 12);
+
+        assertThat(subject.getIfPresent(1), is(mntner));
+    }
+
+    @Test
+    public void object_loaded_during_invalidation_is_not_cached() {
+        final long generation = subject.getGeneration();
+
+        when(jdbcTemplate.queryForList(anyString(), eq(Integer.class), anyLong(), anyLong())).thenReturn(Collections.singletonList(1));
+        subject.invalidate(SLAVE, jdbcTemplate, 10, 12);
+
+        subject.putAll(generation, Collections.singletonList(mntner));
+
+        assertThat(subject.getIfPresent(1), is(nullValue()));
+    }
+
+    @Test
+    public void rebuild_invalidates_source() {
+        subject.getById(1, () -> mntner);
+        subject.putObjectId(subject.getGeneration(), ObjectType.MNTNER, "test-mnt", 1);
+
+        subject.invalidate(SLAVE);
+
+        assertThat(subject.getIfPresent(1), is(nullValue()));
+        assertThat(subject.getObjectIdIfPresent(ObjectType.MNTNER, "TEST-MNT"), is(nullValue()));
+    }
+
+    @Test
+    public void source_without_cached_objects_is_not_queried() {
+        subject.invalidate(SLAVE, jdbcTemplate, 10, 12);
+
+        verifyNoInteractions(jdbcTemplate);
+    }
+}
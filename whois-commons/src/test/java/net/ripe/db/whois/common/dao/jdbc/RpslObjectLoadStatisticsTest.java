@@ -0,0 +1,42 @@
+package net.ripe.db.whois.common.dao.jdbc;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+public class RpslObjectLoadStatisticsTest {
+    private final RpslObjectLoadStatistics subject = new RpslObjectLoadStatistics();
+
+    @Test
+    public void no_batches() {
+        assertThat(subject.getBatches(), is(0L));
+        assertThat(subject.getAverageBatchSize(), is(0.0));
+        assertThat(subject.getAverageBatchMillis(), is(0.0));
+    }
+
+    @Test
+    public void record() {
+        subject.record(10, TimeUnit.MILLISECONDS.toNanos(2));
+        subject.record(30, TimeUnit.MILLISECONDS.toNanos(6));
+
+        assertThat(subject.getBatches(), is(2L));
+        assertThat(subject.getObjects(), is(40L));
+        assertThat(subject.getAverageBatchSize(), is(20.0));
+        assertThat(subject.getMaxBatchSize(), is(30L));
+        assertThat(subject.getAverageBatchMillis(), is(4.0));
+        assertThat(subject.getMaxBatchMillis(), is(6.0));
+    }
+
+    @Test
+    public void reset() {
+        subject.record(10, 1);
+
+        subject.reset();
+
+        assertThat(subject.getBatches(), is(0L));
+        assertThat(subject.getMaxBatchSize(), is(0L));
+    }
+}
@@ -0,0 +1,330 @@
+package net.ripe.db.whois.common.etree;
+
+import net.ripe.db.whois.common.ip.Ipv4Resource;
+import net.ripe.db.whois.common.ip.Ipv6Resource;
+import net.ripe.db.whois.common.iptree.Ipv4Entry;
+import net.ripe.db.whois.common.iptree.Ipv4EntryCodec;
+import net.ripe.db.whois.common.iptree.Ipv4RouteEntry;
+import net.ripe.db.whois.common.iptree.Ipv4RouteEntryCodec;
+import net.ripe.db.whois.common.iptree.Ipv6Entry;
+import net.ripe.db.whois.common.iptree.Ipv6EntryCodec;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class CompactIntervalMapTest {
+    private CompactIntervalMap<Ipv4Resource, Ipv4Entry> subject;
+
+    @BeforeEach
+    public void setUp() {
+        subject = new CompactIntervalMap<>(new Ipv4EntryCodec());
+    }
+
+    @Test
+    public void put_and_find() {
+        subject.put(Ipv4Resource.parse("10.0.0.0/8"), entry("10.0.0.0/8", 1));
+        subject.put(Ipv4Resource.parse("10.0.0.0/24"), entry("10.0.0.0/24", 2));
+        subject.put(Ipv4Resource.parse("10.0.1.0/24"), entry("10.0.1.0/24", 3));
+
+        assertThat(ids(subject.findExact(Ipv4Resource.parse("10.0.0.0/24"))), contains(2));
+        assertThat(ids(subject.findExactAndAllLessSpecific(Ipv4Resource.parse("10.0.0.1"))), contains(1, 2));
+        assertThat(ids(subject.findFirstLessSpecific(Ipv4Resource.parse("10.0.0.0/24"))), contains(1));
+        assertThat(ids(subject.findFirstMoreSpecific(Ipv4Resource.parse("10.0.0.0/8"))), contains(2, 3));
+        assertThat(ids(subject.findAllMoreSpecific(Ipv4Resource.parse("10.0.0.0/23"))), contains(2, 3));
+        assertThat(subject.findExact(Ipv4Resource.parse("10.0.2.0/24")), is(empty()));
+    }
+
+    @Test
+    public void put_replaces_value() {
+        subject.put(Ipv4Resource.parse("10.0.0.0/8"), entry("10.0.0.0/8", 1));
+        subject.findExact(Ipv4Resource.parse("10.0.0.0/8"));
+        subject.put(Ipv4Resource.parse("10.0.0.0/8"), entry("10.0.0.0/8", 2));
+
+        assertThat(ids(subject.findExact(Ipv4Resource.parse("10.0.0.0/8"))), contains(2));
+    }
+
+    @Test
+    public void put_replaces_pending_value() {
+        subject.put(Ipv4Resource.parse("10.0.0.0/8"), entry("10.0.0.0/8", 1));
+        subject.put(Ipv4Resource.parse("10.0.0.0/8"), entry("10.0.0.0/8", 2));
+
+        assertThat(ids(subject.findExact(Ipv4Resource.parse("10.0.0.0/8"))), contains(2));
+        assertThat(subject.size(), is(1));
+    }
+
+    @Test
+    public void put_intersecting() {
+        subject.put(Ipv4Resource.parse("10.0.0.0-10.0.0.10"), entry("10.0.0.0-10.0.0.10", 1));
+        subject.findExact(Ipv4Resource.parse("10.0.0.0-10.0.0.10"));
+
+        assertThrows(IntersectingIntervalException.class, () ->
+                subject.put(Ipv4Resource.parse("10.0.0.5-10.0.0.20"), entry("10.0.0.5-10.0.0.20", 2)));
+        assertThrows(IntersectingIntervalException.class, () ->
+                subject.put(Ipv4Resource.parse("9.0.0.0-10.0.0.5"), entry("9.0.0.0-10.0.0.5", 3)));
+    }
+
+    @Test
+    public void put_intersecting_pending() {
+        subject.put(Ipv4Resource.parse("10.0.0.0-10.0.0.10"), entry("10.0.0.0-10.0.0.10", 1));
+
+        assertThrows(IntersectingIntervalException.class, () ->
+                subject.put(Ipv4Resource.parse("10.0.0.5-10.0.0.20"), entry("10.0.0.5-10.0.0.20", 2)));
+        assertThrows(IntersectingIntervalException.class, () ->
+                subject.put(Ipv4Resource.parse("9.0.0.0-10.0.0.5"), entry("9.0.0.0-10.0.0.5", 3)));
+        assertThat(ids(subject.findExactAndAllMoreSpecific(Ipv4Resource.MAX_RANGE)), contains(1));
+    }
+
+    @Test
+    public void remove_promotes_children() {
+        subject.put(Ipv4Resource.parse("10.0.0.0/8"), entry("10.0.0.0/8", 1));
+        subject.put(Ipv4Resource.parse("10.0.0.0/16"), entry("10.0.0.0/16", 2));
+        subject.put(Ipv4Resource.parse("10.0.0.0/24"), entry("10.0.0.0/24", 3));
+
+        subject.remove(Ipv4Resource.parse("10.0.0.0/16"));
+
+        assertThat(ids(subject.findFirstMoreSpecific(Ipv4Resource.parse("10.0.0.0/8"))), contains(3));
+        assertThat(ids(subject.findExactAndAllLessSpecific(Ipv4Resource.parse("10.0.0.0/24"))), contains(1, 3));
+    }
+
+    @Test
+    public void remove_with_value() {
+        subject.put(Ipv4Resource.parse("10.0.0.0/8"), entry("10.0.0.0/8", 1));
+
+        subject.remove(Ipv4Resource.parse("10.0.0.0/8"), entry("10.0.0.0/8", 1));
+
+        assertThat(subject.findExact(Ipv4Resource.parse("10.0.0.0/8")), is(empty()));
+    }
+
+    @Test
+    public void remove_and_put_again() {
+        subject.put(Ipv4Resource.parse("10.0.0.0/8"), entry("10.0.0.0/8", 1));
+        subject.put(Ipv4Resource.parse("10.0.0.0/16"), entry("10.0.0.0/16", 2));
+        subject.size();
+
+        subject.remove(Ipv4Resource.parse("10.0.0.0/16"));
+        subject.put(Ipv4Resource.parse("10.0.0.0/16"), entry("10.0.0.0/16", 3));
+        subject.remove(Ipv4Resource.parse("10.0.0.0/8"));
+
+        assertThat(ids(subject.findExactAndAllMoreSpecific(Ipv4Resource.MAX_RANGE)), contains(3));
+        assertThat(subject.size(), is(1));
+    }
+
+    @Test
+    public void removed_interval_does_not_intersect() {
+        subject.put(Ipv4Resource.parse("10.0.0.0-10.0.0.10"), entry("10.0.0.0-10.0.0.10", 1));
+        subject.size();
+
+        subject.remove(Ipv4Resource.parse("10.0.0.0-10.0.0.10"));
+        subject.put(Ipv4Resource.parse("10.0.0.5-10.0.0.20"), entry("10.0.0.5-10.0.0.20", 2));
+
+        assertThrows(IntersectingIntervalException.class, () ->
+                subject.put(Ipv4Resource.parse("10.0.0.0-10.0.0.10"), entry("10.0.0.0-10.0.0.10", 3)));
+        assertThat(ids(subject.findExactAndAllMoreSpecific(Ipv4Resource.MAX_RANGE)), contains(2));
+    }
+
+    @Test
+    public void copy() {
+        subject.put(Ipv4Resource.parse("10.0.0.0/8"), entry("10.0.0.0/8", 1));
+
+        final CompactIntervalMap<Ipv4Resource, Ipv4Entry> copy = new CompactIntervalMap<>(subject);
+        subject.put(Ipv4Resource.parse("10.0.0.0/24"), entry("10.0.0.0/24", 2));
+
+        assertThat(ids(copy.findExactAndAllMoreSpecific(Ipv4Resource.MAX_RANGE)), contains(1));
+        assertThat(ids(subject.findExactAndAllMoreSpecific(Ipv4Resource.MAX_RANGE)), contains(1, 2));
+    }
+
+    @Test
+    public void copy_not_affected_by_replaced_value() {
+        subject.put(Ipv4Resource.parse("10.0.0.0/8"), entry("10.0.0.0/8", 1));
+
+        final CompactIntervalMap<Ipv4Resource, Ipv4Entry> copy = new CompactIntervalMap<>(subject);
+        subject.put(Ipv4Resource.parse("10.0.0.0/8"), entry("10.0.0.0/8", 2));
+
+        assertThat(ids(copy.findExact(Ipv4Resource.parse("10.0.0.0/8"))), contains(1));
+        assertThat(ids(subject.findExact(Ipv4Resource.parse("10.0.0.0/8"))), contains(2));
+        assertThat(subject.size(), is(1));
+    }
+
+    @Test
+    public void ipv6() {
+        final CompactIntervalMap<Ipv6Resource, Ipv6Entry> ipv6 = new CompactIntervalMap<>(new Ipv6EntryCodec());
+        ipv6.put(Ipv6Resource.parse("2001::/16"), new Ipv6Entry(Ipv6Resource.parse("2001::/16"), 1));
+        ipv6.put(Ipv6Resource.parse("2001:db8::/32"), new Ipv6Entry(Ipv6Resource.parse("2001:db8::/32"), 2));
+        ipv6.put(Ipv6Resource.parse("8000::/1"), new Ipv6Entry(Ipv6Resource.parse("8000::/1"), 3));
+        ipv6.put(Ipv6Resource.parse("::/0"), new Ipv6Entry(Ipv6Resource.parse("::/0"), 4));
+
+        assertThat(ipv6.findExactOrFirstLessSpecific(Ipv6Resource.parse("2001:db8::1")).get(0).getKey(), is(Ipv6Resource.parse("2001:db8::/32")));
+        assertThat(ipv6.findExactOrFirstLessSpecific(Ipv6Resource.parse("ffff::1")).get(0).getObjectId(), is(3));
+        assertThat(ipv6.findFirstMoreSpecific(Ipv6Resource.parse("::/0")).stream().map(Ipv6Entry::getObjectId).collect(Collectors.toList()), contains(1, 3));
+    }
+
+    @Test
+    public void same_results_as_nested_interval_map() {
+        final long seed = System.currentTimeMillis();
+        final Random random = new Random(seed);
+        final NestedIntervalMap<Ipv4Resource, Ipv4Entry> expected = new NestedIntervalMap<>();
+
+        for (int i = 0; i < 5000; i++) {
+            final Ipv4Resource key = randomInterval(random);
+            final Ipv4Entry value = new Ipv4Entry(key, i);
+            try {
+                expected.put(key, value);
+            } catch (IntersectingIntervalException e) {
+                assertThrows(IntersectingIntervalException.class, () -> subject.put(key, value), "seed: " + seed);
+                continue;
+            }
+
+            subject.put(key, value);
+            if (random.nextInt(3) == 0) {
+                subject.size();
+            }
+
+            if (random.nextInt(10) == 0) {
+                final Ipv4Resource removed = randomInterval(random);
+                expected.remove(removed);
+                subject.remove(removed);
+            }
+
+            final List<Ipv4Entry> entries = expected.findExactAndAllMoreSpecific(Ipv4Resource.MAX_RANGE);
+            if (!entries.isEmpty() && random.nextInt(10) == 0) {
+                final Ipv4Entry removed = entries.get(random.nextInt(entries.size()));
+                expected.remove(removed.getKey(), removed);
+                subject.remove(removed.getKey(), removed);
+            }
+        }
+
+        for (int i = 0; i < 1000; i++) {
+            final Ipv4Resource key = random.nextBoolean() ? randomInterval(random) : expected.findExactAndAllMoreSpecific(Ipv4Resource.MAX_RANGE).get(random.nextInt(100)).getKey();
+            final String message = "key: " + key + ", seed: " + seed;
+
+            assertEquals(ids(expected.findExact(key)), ids(subject.findExact(key)), message);
+            assertEquals(ids(expected.findFirstLessSpecific(key)), ids(subject.findFirstLessSpecific(key)), message);
+            assertEquals(ids(expected.findExactOrFirstLessSpecific(key)), ids(subject.findExactOrFirstLessSpecific(key)), message);
+            assertEquals(ids(expected.findAllLessSpecific(key)), ids(subject.findAllLessSpecific(key)), message);
+            assertEquals(ids(expected.findExactAndAllLessSpecific(key)), ids(subject.findExactAndAllLessSpecific(key)), message);
+            assertEquals(ids(expected.findFirstMoreSpecific(key)), ids(subject.findFirstMoreSpecific(key)), message);
+            assertEquals(ids(expected.findAllMoreSpecific(key)), ids(subject.findAllMoreSpecific(key)), message);
+            assertEquals(ids(expected.findExactAndAllMoreSpecific(key)), ids(subject.findExactAndAllMoreSpecific(key)), message);
+        }
+    }
+
+    @Test
+    public void multi_value() {
+        final CompactIntervalMap<Ipv4Resource, Ipv4RouteEntry> routes = CompactIntervalMap.multiValue(new Ipv4RouteEntryCodec());
+        routes.put(Ipv4Resource.parse("10.0.0.0/8"), route("10.0.0.0/8", 1, "AS3333"));
+        routes.put(Ipv4Resource.parse("10.0.0.0/16"), route("10.0.0.0/16", 2, "AS3333"));
+        routes.put(Ipv4Resource.parse("10.0.0.0/16"), route("10.0.0.0/16", 3, "AS12"));
+        routes.put(Ipv4Resource.parse("10.0.0.0/16"), route("10.0.0.0/16", 2, "AS3333"));
+        routes.size();
+        routes.put(Ipv4Resource.parse("10.0.0.0/16"), route("10.0.0.0/16", 4, "AS4294967295"));
+        routes.put(Ipv4Resource.parse("10.0.0.0/24"), route("10.0.0.0/24", 5, "AS3333"));
+        routes.put(Ipv4Resource.parse("10.1.0.0/16"), route("10.1.0.0/16", 6, "AS3333"));
+
+        assertThat(routes.size(), is(6));
+        assertThat(routes.findExact(Ipv4Resource.parse("10.0.0.0/16")), contains(
+                route("10.0.0.0/16", 3, "AS12"),
+                route("10.0.0.0/16", 2, "AS3333"),
+                route("10.0.0.0/16", 4, "AS4294967295")));
+        assertThat(routeIds(routes.findExactAndAllLessSpecific(Ipv4Resource.parse("10.0.0.1"))), contains(1, 3, 2, 4, 5));
+        assertThat(routeIds(routes.findFirstLessSpecific(Ipv4Resource.parse("10.0.0.0/24"))), contains(3, 2, 4));
+        assertThat(routeIds(routes.findFirstMoreSpecific(Ipv4Resource.parse("10.0.0.0/8"))), contains(3, 2, 4, 6));
+        assertThat(routeIds(routes.findAllMoreSpecific(Ipv4Resource.parse("10.0.0.0/8"))), contains(3, 2, 4, 5, 6));
+
+        routes.remove(Ipv4Resource.parse("10.0.0.0/16"), route("10.0.0.0/16", 2, "AS3333"));
+        assertThat(routeIds(routes.findExact(Ipv4Resource.parse("10.0.0.0/16"))), contains(3, 4));
+        assertThat(routeIds(routes.findFirstLessSpecific(Ipv4Resource.parse("10.0.0.0/24"))), contains(3, 4));
+
+        routes.remove(Ipv4Resource.parse("10.0.0.0/16"));
+        assertThat(routes.findExact(Ipv4Resource.parse("10.0.0.0/16")), is(empty()));
+        assertThat(routeIds(routes.findFirstLessSpecific(Ipv4Resource.parse("10.0.0.0/24"))), contains(1));
+    }
+
+    @Test
+    public void multi_value_same_results_as_multi_value_interval_map() {
+        final long seed = System.currentTimeMillis();
+        final Random random = new Random(seed);
+        final CompactIntervalMap<Ipv4Resource, Ipv4RouteEntry> routes = CompactIntervalMap.multiValue(new Ipv4RouteEntryCodec());
+        final MultiValueIntervalMap<Ipv4Resource, Ipv4RouteEntry> expected = new MultiValueIntervalMap<>();
+
+        for (int i = 0; i < 5000; i++) {
+            final Ipv4Resource key = randomInterval(random);
+            final Ipv4RouteEntry value = new Ipv4RouteEntry(key, i, "AS" + random.nextInt(4));
+            try {
+                expected.put(key, value);
+            } catch (IntersectingIntervalException e) {
+                assertThrows(IntersectingIntervalException.class, () -> routes.put(key, value), "seed: " + seed);
+                continue;
+            }
+
+            routes.put(key, value);
+            if (random.nextInt(3) == 0) {
+                routes.size();
+            }
+
+            if (random.nextInt(20) == 0) {
+                final Ipv4Resource removed = randomInterval(random);
+                expected.remove(removed);
+                routes.remove(removed);
+            }
+
+            final List<Ipv4RouteEntry> entries = expected.findExactAndAllMoreSpecific(Ipv4Resource.MAX_RANGE);
+            if (!entries.isEmpty() && random.nextInt(10) == 0) {
+                final Ipv4RouteEntry removed = entries.get(random.nextInt(entries.size()));
+                expected.remove(removed.getKey(), removed);
+                routes.remove(removed.getKey(), removed);
+            }
+        }
+
+        for (int i = 0; i < 1000; i++) {
+            final Ipv4Resource key = random.nextBoolean() ? randomInterval(random) : expected.findExactAndAllMoreSpecific(Ipv4Resource.MAX_RANGE).get(random.nextInt(100)).getKey();
+            final String message = "key: " + key + ", seed: " + seed;
+
+            assertEquals(expected.findExact(key), routes.findExact(key), message);
+            assertEquals(expected.findFirstLessSpecific(key), routes.findFirstLessSpecific(key), message);
+            assertEquals(expected.findExactOrFirstLessSpecific(key), routes.findExactOrFirstLessSpecific(key), message);
+            assertEquals(expected.findAllLessSpecific(key), routes.findAllLessSpecific(key), message);
+            assertEquals(expected.findExactAndAllLessSpecific(key), routes.findExactAndAllLessSpecific(key), message);
+            assertEquals(expected.findFirstMoreSpecific(key), routes.findFirstMoreSpecific(key), message);
+            assertEquals(expected.findAllMoreSpecific(key), routes.findAllMoreSpecific(key), message);
+            assertEquals(expected.findExactAndAllMoreSpecific(key), routes.findExactAndAllMoreSpecific(key), message);
+        }
+    }
+
+    private static Ipv4Resource randomInterval(final Random random) {
+        final long base = Ipv4Resource.parse("10.0.0.0").begin();
+        if (random.nextInt(5) == 0) {
+            final long begin = base + random.nextInt(1 << 16);
+            return new Ipv4Resource(begin, begin + random.nextInt(256));
+        }
+
+        final int prefixLength = 16 + random.nextInt(17);
+        final long begin = (base + random.nextInt(1 << 16)) & (0xffffffffL << (32 - prefixLength));
+        return new Ipv4Resource(begin, begin + (1L << (32 - prefixLength)) - 1);
+    }
+
+    private static Ipv4Entry entry(final String key, final int objectId) {
+        return new Ipv4Entry(Ipv4Resource.parse(key), objectId);
+    }
+
+    private static Ipv4RouteEntry route(final String key, final int objectId, final String origin) {
+        return new Ipv4RouteEntry(Ipv4Resource.parse(key), objectId, origin);
+    }
+
+    private static List<Integer> routeIds(final List<Ipv4RouteEntry> entries) {
+        return entries.stream().map(Ipv4RouteEntry::getObjectId).collect(Collectors.toList());
+    }
+
+    private static List<Integer> ids(final List<? extends Ipv4Entry> entries) {
+        return entries.stream().map(Ipv4Entry::getObjectId).collect(Collectors.toList());
+    }
+}
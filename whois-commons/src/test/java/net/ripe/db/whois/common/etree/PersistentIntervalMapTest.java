@@ -0,0 +1,159 @@
+package net.ripe.db.whois.common.etree;
+
+import net.ripe.db.whois.common.ip.Ipv4Resource;
+import net.ripe.db.whois.common.iptree.Ipv4Entry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class PersistentIntervalMapTest {
+    private PersistentIntervalMap<Ipv4Resource, Ipv4Entry> subject;
+
+    @BeforeEach
+    public void setUp() {
+        subject = new PersistentIntervalMap<>();
+    }
+
+    @Test
+    public void put_and_find() {
+        subject.put(Ipv4Resource.parse("10.0.0.0/24"), entry("10.0.0.0/24", 2));
+        subject.put(Ipv4Resource.parse("10.0.1.0/24"), entry("10.0.1.0/24", 3));
+        subject.put(Ipv4Resource.parse("10.0.0.0/8"), entry("10.0.0.0/8", 1));
+
+        assertThat(ids(subject.findExact(Ipv4Resource.parse("10.0.0.0/24"))), contains(2));
+        assertThat(ids(subject.findExactAndAllLessSpecific(Ipv4Resource.parse("10.0.0.1"))), contains(1, 2));
+        assertThat(ids(subject.findFirstLessSpecific(Ipv4Resource.parse("10.0.0.0/24"))), contains(1));
+        assertThat(ids(subject.findFirstMoreSpecific(Ipv4Resource.parse("10.0.0.0/8"))), contains(2, 3));
+        assertThat(ids(subject.findAllMoreSpecific(Ipv4Resource.parse("10.0.0.0/8"))), contains(2, 3));
+        assertThat(subject.findExact(Ipv4Resource.parse("10.0.2.0/24")), is(empty()));
+    }
+
+    @Test
+    public void put_intersecting() {
+        subject.put(Ipv4Resource.parse("10.0.0.0-10.0.0.10"), entry("10.0.0.0-10.0.0.10", 1));
+
+        assertThrows(IntersectingIntervalException.class, () ->
+                subject.put(Ipv4Resource.parse("10.0.0.5-10.0.0.20"), entry("10.0.0.5-10.0.0.20", 2)));
+        assertThrows(IntersectingIntervalException.class, () ->
+                subject.put(Ipv4Resource.parse("9.0.0.0-10.0.0.5"), entry("9.0.0.0-10.0.0.5", 3)));
+        assertThat(ids(subject.findExactAndAllMoreSpecific(Ipv4Resource.MAX_RANGE)), contains(1));
+    }
+
+    @Test
+    public void remove_promotes_children() {
+        subject.put(Ipv4Resource.parse("10.0.0.0/8"), entry("10.0.0.0/8", 1));
+        subject.put(Ipv4Resource.parse("10.0.0.0/16"), entry("10.0.0.0/16", 2));
+        subject.put(Ipv4Resource.parse("10.0.0.0/24"), entry("10.0.0.0/24", 3));
+
+        subject.remove(Ipv4Resource.parse("10.0.0.0/16"));
+
+        assertThat(ids(subject.findFirstMoreSpecific(Ipv4Resource.parse("10.0.0.0/8"))), contains(3));
+        assertThat(ids(subject.findExactAndAllLessSpecific(Ipv4Resource.parse("10.0.0.0/24"))), contains(1, 3));
+    }
+
+    @Test
+    public void snapshot_is_not_modified() {
+        subject.put(Ipv4Resource.parse("10.0.0.0/8"), entry("10.0.0.0/8", 1));
+        subject.put(Ipv4Resource.parse("10.0.0.0/16"), entry("10.0.0.0/16", 2));
+
+        final PersistentIntervalMap<Ipv4Resource, Ipv4Entry> snapshot = subject.snapshot();
+        subject.put(Ipv4Resource.parse("10.0.0.0/24"), entry("10.0.0.0/24", 3));
+        subject.put(Ipv4Resource.parse("10.0.0.0/8"), entry("10.0.0.0/8", 4));
+        subject.remove(Ipv4Resource.parse("10.0.0.0/16"));
+
+        assertThat(ids(snapshot.findExactAndAllMoreSpecific(Ipv4Resource.MAX_RANGE)), contains(1, 2));
+        assertThat(ids(subject.findExactAndAllMoreSpecific(Ipv4Resource.MAX_RANGE)), contains(4, 3));
+    }
+
+    @Test
+    public void same_results_as_nested_interval_map() {
+        final long seed = System.currentTimeMillis();
+        final Random random = new Random(seed);
+        final NestedIntervalMap<Ipv4Resource, Ipv4Entry> expected = new NestedIntervalMap<>();
+        PersistentIntervalMap<Ipv4Resource, Ipv4Entry> snapshot = subject.snapshot();
+        NestedIntervalMap<Ipv4Resource, Ipv4Entry> expectedSnapshot = new NestedIntervalMap<>(expected);
+
+        for (int i = 0; i < 5000; i++) {
+            final Ipv4Resource key = randomInterval(random);
+            final Ipv4Entry value = new Ipv4Entry(key, i);
+            try {
+                expected.put(key, value);
+            } catch (IntersectingIntervalException e) {
+                assertThrows(IntersectingIntervalException.class, () -> subject.put(key, value), "seed: " + seed);
+                continue;
+            }
+
+            subject.put(key, value);
+
+            if (random.nextInt(10) == 0) {
+                final Ipv4Resource removed = randomInterval(random);
+                expected.remove(removed);
+                subject.remove(removed);
+            }
+
+            final List<Ipv4Entry> entries = expected.findExactAndAllMoreSpecific(Ipv4Resource.MAX_RANGE);
+            if (!entries.isEmpty() && random.nextInt(10) == 0) {
+                final Ipv4Entry removed = entries.get(random.nextInt(entries.size()));
+                expected.remove(removed.getKey(), removed);
+                subject.remove(removed.getKey(), removed);
+            }
+
+            if (random.nextInt(100) == 0) {
+                snapshot = subject.snapshot();
+                expectedSnapshot = new NestedIntervalMap<>(expected);
+            }
+        }
+
+        assertSameResults(expected, subject, random, seed);
+        assertSameResults(expectedSnapshot, snapshot, random, seed);
+    }
+
+    private static void assertSameResults(final NestedIntervalMap<Ipv4Resource, Ipv4Entry> expected, final PersistentIntervalMap<Ipv4Resource, Ipv4Entry> actual, final Random random, final long seed) {
+        final List<Ipv4Entry> entries = expected.findExactAndAllMoreSpecific(Ipv4Resource.MAX_RANGE);
+        assertEquals(ids(entries), ids(actual.findExactAndAllMoreSpecific(Ipv4Resource.MAX_RANGE)), "seed: " + seed);
+
+        for (int i = 0; i < 1000; i++) {
+            final Ipv4Resource key = random.nextBoolean() || entries.isEmpty() ? randomInterval(random) : entries.get(random.nextInt(entries.size())).getKey();
+            final String message = "key: " + key + ", seed: " + seed;
+
+            assertEquals(ids(expected.findExact(key)), ids(actual.findExact(key)), message);
+            assertEquals(ids(expected.findFirstLessSpecific(key)), ids(actual.findFirstLessSpecific(key)), message);
+            assertEquals(ids(expected.findExactOrFirstLessSpecific(key)), ids(actual.findExactOrFirstLessSpecific(key)), message);
+            assertEquals(ids(expected.findAllLessSpecific(key)), ids(actual.findAllLessSpecific(key)), message);
+            assertEquals(ids(expected.findExactAndAllLessSpecific(key)), ids(actual.findExactAndAllLessSpecific(key)), message);
+            assertEquals(ids(expected.findFirstMoreSpecific(key)), ids(actual.findFirstMoreSpecific(key)), message);
+            assertEquals(ids(expected.findAllMoreSpecific(key)), ids(actual.findAllMoreSpecific(key)), message);
+            assertEquals(ids(expected.findExactAndAllMoreSpecific(key)), ids(actual.findExactAndAllMoreSpecific(key)), message);
+        }
+    }
+
+    private static Ipv4Resource randomInterval(final Random random) {
+        final long base = Ipv4Resource.parse("10.0.0.0").begin();
+        if (random.nextInt(5) == 0) {
+            final long begin = base + random.nextInt(1 << 16);
+            return new Ipv4Resource(begin, begin + random.nextInt(256));
+        }
+
+        final int prefixLength = 16 + random.nextInt(17);
+        final long begin = (base + random.nextInt(1 << 16)) & (0xffffffffL << (32 - prefixLength));
+        return new Ipv4Resource(begin, begin + (1L << (32 - prefixLength)) - 1);
+    }
+
+    private static Ipv4Entry entry(final String key, final int objectId) {
+        return new Ipv4Entry(Ipv4Resource.parse(key), objectId);
+    }
+
+    private static List<Integer> ids(final List<? extends Ipv4Entry> entries) {
+        return entries.stream().map(Ipv4Entry::getObjectId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,99 @@
+package net.ripe.db.whois.common.etree;
+
+import net.ripe.db.whois.common.ip.Ipv4Resource;
+import net.ripe.db.whois.common.iptree.Ipv4Entry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+
+public class SnapshotIntervalMapTest {
+    private SnapshotIntervalMap<Ipv4Resource, Ipv4Entry> subject;
+
+    private final Ipv4Resource parentKey = Ipv4Resource.parse("10.0.0.0/8");
+    private final Ipv4Entry parent = new Ipv4Entry(parentKey, 1);
+    private final Ipv4Resource childKey = Ipv4Resource.parse("10.0.0.0/24");
+    private final Ipv4Entry child = new Ipv4Entry(childKey, 2);
+
+    @BeforeEach
+    public void setUp() {
+        subject = SnapshotIntervalMap.snapshotMap(new NestedIntervalMap<Ipv4Resource, Ipv4Entry>());
+    }
+
+    @Test
+    public void empty_map() {
+        assertThat(subject.getVersion(), is(0L));
+        assertThat(subject.findExact(parentKey), is(empty()));
+    }
+
+    @Test
+    public void put_not_visible_before_publish() {
+        subject.put(parentKey, parent);
+
+        assertThat(subject.findExact(parentKey), is(empty()));
+        assertThat(subject.getVersion(), is(0L));
+    }
+
+    @Test
+    public void put_visible_after_publish() {
+        subject.put(parentKey, parent);
+        subject.put(childKey, child);
+
+        assertThat(subject.publish(), is(1L));
+        assertThat(subject.findExact(parentKey), contains(parent));
+        assertThat(subject.findFirstMoreSpecific(parentKey), contains(child));
+        assertThat(subject.findExactAndAllLessSpecific(childKey), contains(parent, child));
+    }
+
+    @Test
+    public void publish_without_modifications_keeps_version() {
+        subject.put(parentKey, parent);
+        subject.publish();
+
+        assertThat(subject.publish(), is(1L));
+        assertThat(subject.getVersion(), is(1L));
+    }
+
+    @Test
+    public void remove_not_visible_before_publish() {
+        subject.put(parentKey, parent);
+        subject.publish();
+
+        subject.remove(parentKey, parent);
+        assertThat(subject.findExact(parentKey), contains(parent));
+
+        subject.publish();
+        assertThat(subject.findExact(parentKey), is(empty()));
+    }
+
+    @Test
+    public void clear() {
+        subject.put(parentKey, parent);
+        subject.publish();
+
+        subject.clear();
+        subject.publish();
+
+        assertThat(subject.findExactOrFirstLessSpecific(childKey), is(empty()));
+        assertThat(subject.getVersion(), is(2L));
+    }
+
+    @Test
+    public void published_snapshot_unaffected_by_later_modifications() {
+        final SnapshotIntervalMap<Ipv4Resource, String> multiValue = SnapshotIntervalMap.snapshotMap(new MultiValueIntervalMap<Ipv4Resource, String>());
+        multiValue.put(parentKey, "a");
+        multiValue.publish();
+
+        multiValue.put(parentKey, "b");
+        final List<String> beforePublish = multiValue.findExact(parentKey);
+        multiValue.publish();
+
+        assertThat(beforePublish, contains("a"));
+        assertThat(multiValue.findExact(parentKey), contains("a", "b"));
+    }
+}
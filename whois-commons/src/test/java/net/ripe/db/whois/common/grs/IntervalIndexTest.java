@@ -0,0 +1,130 @@
+package net.ripe.db.whois.common.grs;
+
+import com.google.common.base.Stopwatch;
+import net.ripe.commons.ip.Asn;
+import net.ripe.commons.ip.AsnRange;
+import net.ripe.commons.ip.Ipv4;
+import net.ripe.commons.ip.Ipv4Range;
+import net.ripe.commons.ip.Ipv6;
+import net.ripe.commons.ip.Ipv6Range;
+import net.ripe.commons.ip.SortedRangeSet;
+import net.ripe.db.whois.common.ip.Ipv4Resource;
+import net.ripe.db.whois.common.ip.Ipv6Resource;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+public class IntervalIndexTest {
+    private static final Logger LOGGER = LoggerFactory.getLogger(IntervalIndexTest.class);
+
+    @Test
+    public void empty() {
+        final IntervalIndex subject = new IntervalIndex(new SortedRangeSet<Asn, AsnRange>());
+
+        assertThat(subject.size(), is(0));
+        assertThat(subject.contains(0, 0), is(false));
+    }
+
+    @Test
+    public void asn_ranges() {
+        final SortedRangeSet<Asn, AsnRange> ranges = new SortedRangeSet<>();
+        ranges.add(AsnRange.parse("AS10-AS20"));
+        ranges.add(AsnRange.parse("AS4294967290-AS4294967295"));
+        final IntervalIndex subject = new IntervalIndex(ranges);
+
+        assertThat(subject.size(), is(2));
+        assertThat(subject.contains(9, 9), is(false));
+        assertThat(subject.contains(10, 10), is(true));
+        assertThat(subject.contains(20, 20), is(true));
+        assertThat(subject.contains(21, 21), is(false));
+        assertThat(subject.contains(4294967295L, 4294967295L), is(true));
+    }
+
+    @Test
+    public void ipv4_range_must_be_contained_by_a_single_range() {
+        final SortedRangeSet<Ipv4, Ipv4Range> ranges = new SortedRangeSet<>();
+        ranges.add(Ipv4Range.parse("10.0.0.0/16"));
+        ranges.add(Ipv4Range.parse("10.2.0.0/16"));
+        final IntervalIndex subject = new IntervalIndex(ranges);
+
+        assertThat(contains(subject, "10.0.0.0/24"), is(true));
+        assertThat(contains(subject, "10.0.0.0/16"), is(true));
+        assertThat(contains(subject, "10.0.0.0/15"), is(false));
+        assertThat(contains(subject, "10.1.0.0/24"), is(false));
+        assertThat(contains(subject, "10.2.255.255"), is(true));
+        assertThat(contains(subject, "255.255.255.255"), is(false));
+    }
+
+    @Test
+    public void ipv6_ranges_above_sign_bit() {
+        final SortedRangeSet<Ipv6, Ipv6Range> ranges = new SortedRangeSet<>();
+        ranges.add(Ipv6Range.parse("2001:db8::/32"));
+        ranges.add(Ipv6Range.parse("ff00::/8"));
+        final IntervalIndex subject = new IntervalIndex(ranges);
+
+        assertThat(contains(subject, "2001:db8:1::/48"), is(true));
+        assertThat(contains(subject, "2001:db9::/48"), is(false));
+        assertThat(contains(subject, "ff02::1"), is(true));
+        assertThat(contains(subject, "fe80::/10"), is(false));
+        assertThat(contains(subject, "::/0"), is(false));
+    }
+
+    /**
+     * Compares lookups against the range set the index is built from, and reports the cost of a lookup for each.
+     */
+    @Test
+    public void benchmark_against_sorted_range_set() {
+        final Random random = new Random(1);
+        final SortedRangeSet<Ipv4, Ipv4Range> ranges = new SortedRangeSet<>();
+        for (int i = 0; i < 10_000; i++) {
+            final long begin = random.nextInt() & 0xffff_ff00L;
+            ranges.add(Ipv4Range.from(begin).to(Math.min(begin + random.nextInt(1 << 16), Ipv4.LAST_IPV4_ADDRESS.asBigInteger().longValue())));
+        }
+        final IntervalIndex subject = new IntervalIndex(ranges);
+
+        final int nrLookups = 200_000;
+        final Ipv4Resource[] lookups = new Ipv4Resource[nrLookups];
+        for (int i = 0; i < nrLookups; i++) {
+            final long begin = random.nextInt() & 0xffff_fff0L;
+            lookups[i] = new Ipv4Resource(begin, begin + 15);
+        }
+
+        final Stopwatch rangeSetStopwatch = Stopwatch.createStarted();
+        final boolean[] expected = new boolean[nrLookups];
+        for (int i = 0; i < nrLookups; i++) {
+            expected[i] = ranges.contains(Ipv4Range.from(lookups[i].begin()).to(lookups[i].end()));
+        }
+        rangeSetStopwatch.stop();
+
+        final Stopwatch indexStopwatch = Stopwatch.createStarted();
+        final boolean[] actual = new boolean[nrLookups];
+        for (int i = 0; i < nrLookups; i++) {
+            actual[i] = subject.contains(lookups[i].begin(), lookups[i].end());
+        }
+        indexStopwatch.stop();
+
+        assertThat(actual, is(expected));
+
+        LOGGER.info("{} ranges, {} lookups: sorted range set {} ns per lookup, interval index {} ns per lookup",
+                subject.size(),
+                nrLookups,
+                rangeSetStopwatch.elapsed(TimeUnit.NANOSECONDS) / nrLookups,
+                indexStopwatch.elapsed(TimeUnit.NANOSECONDS) / nrLookups);
+    }
+
+    private static boolean contains(final IntervalIndex subject, final String ipv4OrIpv6) {
+        if (ipv4OrIpv6.contains(":")) {
+            final Ipv6Resource ipv6Resource = Ipv6Resource.parse(ipv4OrIpv6);
+            return subject.contains(ipv6Resource.beginMsb(), ipv6Resource.beginLsb(), ipv6Resource.endMsb(), ipv6Resource.endLsb());
+        }
+
+        final Ipv4Resource ipv4Resource = Ipv4Resource.parse(ipv4OrIpv6);
+        return subject.contains(ipv4Resource.begin(), ipv4Resource.end());
+    }
+}
@@ -0,0 +1,64 @@
+package net.ripe.db.whois.common.iptree;
+
+import net.ripe.db.whois.common.ip.Ipv4Resource;
+import net.ripe.db.whois.common.ip.Ipv6Resource;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
+
+import static net.ripe.db.whois.common.domain.CIString.ciString;
+import static net.ripe.db.whois.common.rpsl.ObjectType.INETNUM;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class IpTreeSnapshotTest {
+    @TempDir
+    public Path folder;
+
+    @Test
+    public void write_and_read() throws IOException {
+        final IpTreeCacheManager.NestedIntervalMaps written = new IpTreeCacheManager.NestedIntervalMaps(false, Collections.emptySet());
+        final Ipv4Entry parent = new Ipv4Entry(Ipv4Resource.parse("10.0.0.0/8"), 1);
+        final Ipv4Entry child = new Ipv4Entry(Ipv4Resource.parse("10.0.0.0/24"), 2);
+        final Ipv6Entry ipv6Entry = new Ipv6Entry(Ipv6Resource.parse("2001:db8::/32"), 3);
+        final Ipv4RouteEntry routeEntry = new Ipv4RouteEntry(Ipv4Resource.parse("10.0.0.0/16"), 4, "AS3333");
+        final Ipv6RouteEntry route6Entry = new Ipv6RouteEntry(Ipv6Resource.parse("2001:db8::/48"), 5, "AS3333");
+        final Ipv4Entry domainEntry = new Ipv4Entry(Ipv4Resource.parse("193.0.0.0/24"), 6);
+        written.getIpv4TreeCache().put(child.getKey(), child);
+        written.getIpv4TreeCache().put(parent.getKey(), parent);
+        written.getIpv6TreeCache().put(ipv6Entry.getKey(), ipv6Entry);
+        written.getIpv4RouteTreeCache().put(routeEntry.getKey(), routeEntry);
+        written.getIpv6RouteTreeCache().put(route6Entry.getKey(), route6Entry);
+        written.getIpv4DomainTreeCache().put(domainEntry.getKey(), domainEntry);
+        written.lastSerial = 42;
+
+        final Path file = folder.resolve("ripe.iptree");
+        IpTreeSnapshot.write(file, ciString("RIPE"), written);
+
+        final IpTreeCacheManager.NestedIntervalMaps read = new IpTreeCacheManager.NestedIntervalMaps(true, Collections.singleton(INETNUM));
+        assertThat(IpTreeSnapshot.read(file, ciString("RIPE"), read), is(42L));
+        read.publish();
+
+        assertThat(read.getIpv4TreeCache().findExactAndAllMoreSpecific(Ipv4Resource.MAX_RANGE), contains(parent, child));
+        assertThat(read.getIpv4TreeCache().findExact(child.getKey()).get(0).getObjectId(), is(2));
+        assertThat(read.getIpv6TreeCache().findExactAndAllMoreSpecific(Ipv6Resource.MAX_RANGE), contains(ipv6Entry));
+        assertThat(read.getIpv4RouteTreeCache().findExactAndAllMoreSpecific(Ipv4Resource.MAX_RANGE), contains(routeEntry));
+        assertThat(read.getIpv6RouteTreeCache().findExactAndAllMoreSpecific(Ipv6Resource.MAX_RANGE), contains(route6Entry));
+        assertThat(read.getIpv4DomainTreeCache().findExactAndAllMoreSpecific(Ipv4Resource.MAX_RANGE), contains(domainEntry));
+    }
+
+    @Test
+    public void read_other_source() throws IOException {
+        final IpTreeCacheManager.NestedIntervalMaps written = new IpTreeCacheManager.NestedIntervalMaps(false, Collections.emptySet());
+        final Path file = folder.resolve("ripe.iptree");
+        IpTreeSnapshot.write(file, ciString("RIPE"), written);
+
+        assertThrows(IOException.class, () ->
+                IpTreeSnapshot.read(file, ciString("RIPE-GRS"), new IpTreeCacheManager.NestedIntervalMaps(false, Collections.emptySet())));
+    }
+}
@@ -0,0 +1,73 @@
+package net.ripe.db.whois.common.pipeline;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class ChannelWritabilityTest {
+    @Mock Channel channel;
+    @Mock ChannelHandlerContext ctx;
+
+    private final ChannelWritability subject = new ChannelWritability();
+
+    @Test
+    public void writable() {
+        when(channel.isWritable()).thenReturn(true);
+
+        assertThat(subject.await(channel), is(true));
+    }
+
+    @Test
+    public void inactive() {
+        when(channel.isWritable()).thenReturn(false);
+        when(channel.isActive()).thenReturn(false);
+
+        assertThat(subject.await(channel), is(false));
+    }
+
+    @Test
+    public void woken_up_when_writable() throws Exception {
+        final AtomicBoolean writable = new AtomicBoolean(false);
+        when(channel.isWritable()).thenAnswer(invocation -> writable.get());
+        when(channel.isActive()).thenReturn(true);
+
+        final CompletableFuture<Boolean> result = CompletableFuture.supplyAsync(() -> subject.await(channel));
+        verify(channel, timeout(1000).atLeastOnce()).isActive();
+
+        writable.set(true);
+        subject.channelWritabilityChanged(ctx);
+
+        assertThat(result.get(1, TimeUnit.SECONDS), is(true));
+        verify(ctx).fireChannelWritabilityChanged();
+    }
+
+    @Test
+    public void woken_up_when_inactive() throws Exception {
+        final AtomicBoolean active = new AtomicBoolean(true);
+        when(channel.isWritable()).thenReturn(false);
+        when(channel.isActive()).thenAnswer(invocation -> active.get());
+
+        final CompletableFuture<Boolean> result = CompletableFuture.supplyAsync(() -> subject.await(channel));
+        verify(channel, timeout(1000).atLeastOnce()).isActive();
+
+        active.set(false);
+        subject.channelInactive(ctx);
+
+        assertThat(result.get(1, TimeUnit.SECONDS), is(false));
+        verify(ctx).fireChannelInactive();
+    }
+}
@@ -1,6 +1,5 @@
 package net.ripe.db.whois.nrtm;
 
-import com.google.common.util.concurrent.Uninterruptibles;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelException;
@@ -15,6 +14,7 @@ import net.ripe.db.whois.common.dao.SerialDao;
 import net.ripe.db.whois.common.domain.serials.SerialEntry;
 import net.ripe.db.whois.common.domain.serials.SerialRange;
 import net.ripe.db.whois.common.pipeline.ChannelUtil;
+import net.ripe.db.whois.common.pipeline.ChannelWritability;
 import net.ripe.db.whois.common.rpsl.AttributeType;
 import net.ripe.db.whois.common.rpsl.Dummifier;
 import net.ripe.db.whois.common.rpsl.RpslObject;
@@ -23,13 +23,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.task.TaskRejectedException;
 import org.springframework.jdbc.CannotGetJdbcConnectionException;
-import org.springframework.scheduling.TaskScheduler;
 
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Map;
 
 public class NrtmQueryHandler extends ChannelInboundHandlerAdapter {
 
@@ -41,37 +37,38 @@ public class NrtmQueryHandler extends ChannelInboundHandlerAdapter {
     static final int HISTORY_AGE_LIMIT = 14 * SECONDS_PER_DAY;
 
     private final SerialDao serialDao;
-    private final Dummifier dummifier;
-    private final TaskScheduler clientSynchronisationScheduler;
+    private final NrtmSerialRenderer serialRenderer;
+    private final NrtmSerialTailer nrtmSerialTailer;
 
     private final NrtmLog nrtmLog;
     private final ApplicationVersion applicationVersion;
     private final String source;
     private final String nonAuthSource;
-    private final long updateInterval;
-    private final boolean keepaliveEndOfStream;
+    private final int serialBatchSize;
+    private final ChannelWritability channelWritability;
 
-    private volatile ScheduledFuture<?> scheduledFuture;
+    private volatile boolean keepalive;
 
     public NrtmQueryHandler(
             @Qualifier("jdbcSlaveSerialDao") final SerialDao serialDao,
             @Qualifier("dummifierNrtm") final Dummifier dummifier,
-            @Qualifier("clientSynchronisationScheduler") final TaskScheduler clientSynchronisationScheduler,
+            final NrtmSerialTailer nrtmSerialTailer,
             final NrtmLog nrtmLog,
             final ApplicationVersion applicationVersion,
             @Value("${whois.source}") final String source,
             @Value("${whois.nonauth.source}") final String nonAuthSource,
-            @Value("${nrtm.update.interval:60}") final long updateInterval,
-            @Value("${nrtm.keepalive.end.of.stream:false}") final boolean keepaliveEndOfStream) {
+            @Value("${nrtm.keepalive.end.of.stream:false}") final boolean keepaliveEndOfStream,
+            @Value("${nrtm.serial.batch.size:500}") final int serialBatchSize,
+            final ChannelWritability channelWritability) {
         this.serialDao = serialDao;
-        this.dummifier = dummifier;
-        this.clientSynchronisationScheduler = clientSynchronisationScheduler;
+        this.serialRenderer = new NrtmSerialRenderer(dummifier, keepaliveEndOfStream);
+        this.nrtmSerialTailer = nrtmSerialTailer;
         this.nrtmLog = nrtmLog;
         this.applicationVersion = applicationVersion;
         this.source = source;
         this.nonAuthSource = nonAuthSource;
-        this.updateInterval = updateInterval;
-        this.keepaliveEndOfStream = keepaliveEndOfStream;
+        this.serialBatchSize = serialBatchSize;
+        this.channelWritability = channelWritability;
     }
 
     @Override
@@ -138,7 +135,7 @@ public class NrtmQueryHandler extends ChannelInboundHandlerAdapter {
     }
 
     private boolean isKeepAlive() {
-        return scheduledFuture != null;
+        return keepalive;
     }
 
     private Query parseQueryString(final String queryString) {
@@ -150,85 +147,53 @@ public class NrtmQueryHandler extends ChannelInboundHandlerAdapter {
     }
 
     void handleMirrorQueryWithKeepalive(final Query query, final Channel channel) {
-        final Runnable instance = new Runnable() {
-            private int serial = query.getSerialBegin();
-
-            @Override
-            public void run() {
-                try {
-                    final SerialRange range = serialDao.getSerials();
-                    serial = writeSerials(serial, range.getEnd(), query, channel);
-                } catch (ChannelException e) {
-                    LOGGER.debug("writeSerials: closed channel");
-                } catch (Exception e) {
-                    // [EB]: no rethrowing else the repeating scheduler unschedules us
-                    LOGGER.info("Exception in scheduled task:", e);
-                }
-            }
-        };
+        final int nextSerial = writeSerials(query.getSerialBegin(), query.getSerialEnd(), query, channel);
 
-        try {
-            scheduledFuture = clientSynchronisationScheduler.scheduleAtFixedRate(instance, updateInterval * 1000);
-        } catch (TaskRejectedException e) {
-            LOGGER.warn("Unable to schedule keepalive instance ({})", e.getMessage());
-            throw e;
-        }
+        keepalive = true;
+        nrtmSerialTailer.subscribe(channel, query, nextSerial);
     }
 
     private void handleMirrorQuery(final Query query, final Channel channel) {
-        for (int serial = query.getSerialBegin(); serial <= query.getSerialEnd(); ) {
-            serial = writeSerials(serial, query.getSerialEnd(), query, channel);
-            if (serial <= query.getSerialEnd()) {
-                Uninterruptibles.sleepUninterruptibly(1, TimeUnit.SECONDS);
-            }
-        }
-
+        writeSerials(query.getSerialBegin(), query.getSerialEnd(), query, channel);
         writeMessage(channel, NrtmMessages.end(query.getSource()));
     }
 
     private int writeSerials(final int begin, final int end, final Query query, final Channel channel) {
-        final int version = query.getVersion();
         int serial = begin;
         boolean written = false;
 
         while (serial <= end) {
+            final int batchEnd = (int) Math.min(end, (long) serial + serialBatchSize - 1);
 
-            if (PendingWrites.isPending(channel)) {
-                Uninterruptibles.sleepUninterruptibly(1, TimeUnit.SECONDS);
-                continue;
-            }
-
-            final SerialEntry serialEntry = readSerial(serial);
-
-            if (serialEntry != null && isSerialEntryQueriedSourceType(query.getSource(), serialEntry.getRpslObject())) {
-                if (dummifier.isAllowed(version, serialEntry.getRpslObject())) {
-                    final String operation = serialEntry.getOperation().toString();
-                    final String message;
-                    if (version == NrtmServer.NRTM_VERSION) {
-                        message = operation + " " + serial;
-                    } else {
-                        message = operation;
-                    }
-
-                    writeMessage(channel, message);
-                    writeMessage(channel, dummifier.dummify(version, serialEntry.getRpslObject()).toString().trim());
-                    written = true;
-                }
+            for (final String rendered : serialRenderer.render(query.getSource(), query.getVersion(), readSerials(serial, batchEnd)).values()) {
+                awaitWritable(channel);
+                write(channel, rendered);
+                written = true;
             }
 
-            serial++;
+            serial = batchEnd + 1;
         }
 
-        if (written && query.isKeepalive() && keepaliveEndOfStream) {
-            writeMessage(channel, NrtmMessages.end(begin, end));
+        if (query.isKeepalive()) {
+            final String endOfStream = serialRenderer.endOfStream(written, begin, end);
+            if (endOfStream != null) {
+                write(channel, endOfStream);
+            }
         }
 
         return serial;
     }
 
     @RetryFor(attempts = 10, value = CannotGetJdbcConnectionException.class)
-    private SerialEntry readSerial(final int serial) {
-        return serialDao.getByIdForNrtm(serial);
+    private Map<Integer, SerialEntry> readSerials(final int begin, final int end) {
+        return serialDao.getByIdRangeForNrtm(begin, end);
+    }
+
+    // block until the outbound buffer of the channel drains below its low water mark
+    private void awaitWritable(final Channel channel) {
+        if (!channelWritability.await(channel)) {
+            throw new ChannelException("channel closed");
+        }
     }
 
     private boolean isRequestedSerialInRange(final Query query, final SerialRange range) {
@@ -236,7 +201,7 @@ public class NrtmQueryHandler extends ChannelInboundHandlerAdapter {
                 query.getSerialEnd() >= range.getBegin() && query.getSerialEnd() <= range.getEnd();
     }
 
-    private boolean isSerialEntryQueriedSourceType(final String queriedSource, final RpslObject rpslObject) {
+    static boolean isSerialEntryQueriedSourceType(final String queriedSource, final RpslObject rpslObject) {
         if (queriedSource != null && rpslObject.containsAttribute(AttributeType.SOURCE)) {
             return queriedSource.equals(rpslObject.getValueForAttribute(AttributeType.SOURCE).toString());
         }
@@ -263,8 +228,6 @@ public class NrtmQueryHandler extends ChannelInboundHandlerAdapter {
     @Override
     public void channelActive(final ChannelHandlerContext ctx) throws Exception {
         if (!ctx.channel().hasAttr(TERMS_CONDITIONS)) {
-            PendingWrites.add(ctx.channel());
-
             writeMessage(ctx.channel(),  NrtmMessages.termsAndConditions());
 
             ctx.channel().attr(TERMS_CONDITIONS).set(true);
@@ -275,62 +238,22 @@ public class NrtmQueryHandler extends ChannelInboundHandlerAdapter {
 
     @Override
     public void channelInactive(ChannelHandlerContext ctx) throws Exception {
-        if (scheduledFuture != null) {
-            scheduledFuture.cancel(true);
+        if (keepalive) {
+            nrtmSerialTailer.unsubscribe(ctx.channel());
         }
 
-        PendingWrites.remove(ctx.channel());
         ctx.fireChannelInactive();
     }
 
     private void writeMessage(final Channel channel, final Object message) {
-        if (!channel.isOpen()) {
-            throw new ChannelException();
-        }
-
-        PendingWrites.increment(channel);
-
-        channel.writeAndFlush(message + "\n\n").addListener(LISTENER);
+        write(channel, message + "\n\n");
     }
 
-    private static final ChannelFutureListener LISTENER = future -> PendingWrites.decrement(future.channel());
-
-    static final class PendingWrites {
-
-        private static final AttributeKey<AtomicInteger> PENDING_WRITE_KEY = AttributeKey.newInstance("pending_write_key");
-
-        private static final int MAX_PENDING_WRITES = 16;
-
-        static void add(final Channel channel) {
-            channel.attr(PENDING_WRITE_KEY).set(new AtomicInteger());
-        }
-
-        static void remove(final Channel channel) {
-            channel.attr(PENDING_WRITE_KEY).set(null);
-        }
-
-
-        static void increment(final Channel channel) {
-            final AtomicInteger pending = channel.attr(PENDING_WRITE_KEY).get();
-            if (pending != null) {
-                pending.incrementAndGet();
-            }
-        }
-
-        static void decrement(final Channel channel) {
-            final AtomicInteger pending = channel.attr(PENDING_WRITE_KEY).get();
-            if (pending != null) {
-                pending.decrementAndGet();
-            }
+    private void write(final Channel channel, final String content) {
+        if (!channel.isOpen()) {
+            throw new ChannelException();
         }
 
-        static boolean isPending(final Channel channel) {
-            final AtomicInteger pending = channel.attr(PENDING_WRITE_KEY).get();
-            if (pending == null) {
-                throw new ChannelException("channel removed");
-            }
-
-            return (pending.get() > MAX_PENDING_WRITES);
-        }
+        channel.writeAndFlush(content);
     }
 }
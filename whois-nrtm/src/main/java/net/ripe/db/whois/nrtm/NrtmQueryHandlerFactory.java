@@ -2,11 +2,11 @@ package net.ripe.db.whois.nrtm;
 
 import net.ripe.db.whois.common.ApplicationVersion;
 import net.ripe.db.whois.common.dao.SerialDao;
+import net.ripe.db.whois.common.pipeline.ChannelWritability;
 import net.ripe.db.whois.common.rpsl.Dummifier;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.scheduling.TaskScheduler;
 import org.springframework.stereotype.Component;
 
 @Component
@@ -14,47 +14,48 @@ public class NrtmQueryHandlerFactory {
 
     private final SerialDao serialDao;
     private final Dummifier dummifier;
-    private final TaskScheduler clientSynchronisationScheduler;
+    private final NrtmSerialTailer nrtmSerialTailer;
     private final NrtmLog nrtmLog;
     final ApplicationVersion applicationVersion;
     private final String source;
     private final String nonAuthSource;
-    private final long updateInterval;
     private final boolean keepaliveEndOfStream;
+    private final int serialBatchSize;
 
     @Autowired
     public NrtmQueryHandlerFactory(
             @Qualifier("jdbcSlaveSerialDao") final SerialDao serialDao,
             final NrtmLog nrtmLog,
             @Qualifier("dummifierNrtm") final Dummifier dummifier,
-            @Qualifier("clientSynchronisationScheduler") final TaskScheduler clientSynchronisationScheduler,
+            final NrtmSerialTailer nrtmSerialTailer,
             final ApplicationVersion applicationVersion,
             @Value("${whois.source}") final String source,
             @Value("${whois.nonauth.source}") final String nonAuthSource,
-            @Value("${nrtm.update.interval:60}") final long updateInterval,
-            @Value("${nrtm.keepalive.end.of.stream:false}") final boolean keepaliveEndOfStream) {
+            @Value("${nrtm.keepalive.end.of.stream:false}") final boolean keepaliveEndOfStream,
+            @Value("${nrtm.serial.batch.size:500}") final int serialBatchSize) {
         this.serialDao = serialDao;
         this.dummifier = dummifier;
-        this.clientSynchronisationScheduler = clientSynchronisationScheduler;
+        this.nrtmSerialTailer = nrtmSerialTailer;
         this.nrtmLog = nrtmLog;
         this.applicationVersion = applicationVersion;
         this.source = source;
         this.nonAuthSource = nonAuthSource;
-        this.updateInterval = updateInterval;
         this.keepaliveEndOfStream = keepaliveEndOfStream;
+        this.serialBatchSize = serialBatchSize;
     }
 
-    public NrtmQueryHandler getInstance() {
+    public NrtmQueryHandler getInstance(final ChannelWritability channelWritability) {
         return new NrtmQueryHandler(
             serialDao,
             dummifier,
-            clientSynchronisationScheduler,
+            nrtmSerialTailer,
             nrtmLog,
             applicationVersion,
             source,
             nonAuthSource,
-            updateInterval,
-            keepaliveEndOfStream);
+            keepaliveEndOfStream,
+            serialBatchSize,
+            channelWritability);
     }
 
 
@@ -0,0 +1,53 @@
+package net.ripe.db.whois.nrtm;
+
+import com.google.common.collect.Maps;
+import net.ripe.db.whois.common.domain.serials.SerialEntry;
+import net.ripe.db.whois.common.rpsl.Dummifier;
+import net.ripe.db.whois.common.rpsl.RpslObject;
+
+import javax.annotation.Nullable;
+import java.util.Map;
+
+/**
+ * Renders serials as they are sent to NRTM clients, both for a mirror query and for the keepalive updates after it.
+ */
+class NrtmSerialRenderer {
+
+    private final Dummifier dummifier;
+    private final boolean keepaliveEndOfStream;
+
+    NrtmSerialRenderer(final Dummifier dummifier, final boolean keepaliveEndOfStream) {
+        this.dummifier = dummifier;
+        this.keepaliveEndOfStream = keepaliveEndOfStream;
+    }
+
+    /**
+     * @return the serials sent for the queried source and NRTM version in serial order, each rendered as the ADD or
+     * DEL operation (followed by the serial as of version 3) and the dummified object.
+     */
+    Map<Integer, String> render(final String source, final int version, final Map<Integer, SerialEntry> serialEntries) {
+        final Map<Integer, String> rendered = Maps.newLinkedHashMap();
+
+        for (final Map.Entry<Integer, SerialEntry> entry : serialEntries.entrySet()) {
+            final RpslObject rpslObject = entry.getValue().getRpslObject();
+
+            if (NrtmQueryHandler.isSerialEntryQueriedSourceType(source, rpslObject) && dummifier.isAllowed(version, rpslObject)) {
+                final String operation = entry.getValue().getOperation().toString();
+                final String message = (version == NrtmServer.NRTM_VERSION) ? operation + " " + entry.getKey() : operation;
+
+                rendered.put(entry.getKey(), message + "\n\n" + dummifier.dummify(version, rpslObject).toString().trim() + "\n\n");
+            }
+        }
+
+        return rendered;
+    }
+
+    /**
+     * @return the end of stream message after the serials begin to end were sent to a keepalive connection, or null
+     * if there is none.
+     */
+    @Nullable
+    String endOfStream(final boolean written, final int begin, final int end) {
+        return written && keepaliveEndOfStream ? NrtmMessages.end(begin, end) + "\n\n" : null;
+    }
+}
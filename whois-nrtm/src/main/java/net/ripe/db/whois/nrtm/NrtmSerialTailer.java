@@ -0,0 +1,260 @@
+package net.ripe.db.whois.nrtm;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import net.ripe.db.whois.common.aspects.RetryFor;
+import net.ripe.db.whois.common.dao.SerialDao;
+import net.ripe.db.whois.common.domain.serials.SerialEntry;
+import net.ripe.db.whois.common.rpsl.Dummifier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Follows the serials table on behalf of all NRTM keepalive connections.
+ *
+ * Every update interval the serials since the previous run are read once, rendered once per queried source and NRTM
+ * version, and the same bytes are written to every subscribed channel. A channel that is not writable is skipped. A
+ * channel that is behind the serials since the previous run catches up with its own reads first, so it does not
+ * widen the shared reads for the others.
+ */
+@Component
+public class NrtmSerialTailer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NrtmSerialTailer.class);
+
+    private final SerialDao serialDao;
+    private final NrtmSerialRenderer serialRenderer;
+    private final TaskScheduler clientSynchronisationScheduler;
+    private final long updateInterval;
+    private final int serialBatchSize;
+
+    private final Map<Channel, Subscription> subscriptions = Maps.newConcurrentMap();
+
+    private boolean scheduled;
+
+    // the last serial read by the previous run, only accessed by the tailer
+    private int lastEnd = -1;
+
+    @Autowired
+    public NrtmSerialTailer(
+            @Qualifier("jdbcSlaveSerialDao") final SerialDao serialDao,
+            @Qualifier("dummifierNrtm") final Dummifier dummifier,
+            @Qualifier("clientSynchronisationScheduler") final TaskScheduler clientSynchronisationScheduler,
+            @Value("${nrtm.update.interval:60}") final long updateInterval,
+            @Value("${nrtm.keepalive.end.of.stream:false}") final boolean keepaliveEndOfStream,
+            @Value("${nrtm.serial.batch.size:500}") final int serialBatchSize) {
+        this.serialDao = serialDao;
+        this.serialRenderer = new NrtmSerialRenderer(dummifier, keepaliveEndOfStream);
+        this.clientSynchronisationScheduler = clientSynchronisationScheduler;
+        this.updateInterval = updateInterval;
+        this.serialBatchSize = serialBatchSize;
+    }
+
+    /**
+     * Send the serials from nextSerial onwards to the channel, as they appear.
+     */
+    public void subscribe(final Channel channel, final Query query, final int nextSerial) {
+        subscriptions.put(channel, new Subscription(channel, query.getSource(), query.getVersion(), nextSerial));
+        schedule();
+    }
+
+    public void unsubscribe(final Channel channel) {
+        subscriptions.remove(channel);
+    }
+
+    private synchronized void schedule() {
+        if (scheduled) {
+            return;
+        }
+
+        try {
+            clientSynchronisationScheduler.scheduleAtFixedRate(this::run, updateInterval * 1000);
+            scheduled = true;
+        } catch (TaskRejectedException e) {
+            LOGGER.warn("Unable to schedule serial tailer ({})", e.getMessage());
+            throw e;
+        }
+    }
+
+    private void run() {
+        try {
+            tail();
+        } catch (Exception e) {
+            // [EB]: no rethrowing else the repeating scheduler unschedules us
+            LOGGER.info("Exception in scheduled task:", e);
+        }
+    }
+
+    void tail() {
+        subscriptions.values().removeIf(subscription -> !subscription.channel.isOpen());
+        if (subscriptions.isEmpty()) {
+            return;
+        }
+
+        final int end = serialDao.getSerials().getEnd();
+        final List<Subscription> current = Lists.newArrayList(subscriptions.values());
+
+        int begin = Integer.MAX_VALUE;
+        for (final Subscription subscription : current) {
+            subscription.begin = subscription.nextSerial;
+            subscription.written = false;
+            begin = Math.min(begin, subscription.nextSerial);
+        }
+
+        if (lastEnd != -1) {
+            begin = lastEnd + 1;
+            for (final Subscription subscription : current) {
+                if (subscription.nextSerial < begin) {
+                    catchUp(subscription, begin - 1);
+                }
+            }
+        }
+
+        for (int serial = begin; serial <= end; ) {
+            final int batchEnd = (int) Math.min(end, (long) serial + serialBatchSize - 1);
+            writeBatch(current, serial, batchEnd, readSerials(serial, batchEnd));
+            serial = batchEnd + 1;
+        }
+
+        lastEnd = end;
+
+        for (final Subscription subscription : current) {
+            final String endOfStream = serialRenderer.endOfStream(subscription.written, subscription.begin, end);
+            if (endOfStream != null) {
+                subscription.channel.writeAndFlush(endOfStream);
+            }
+        }
+    }
+
+    /*
+     * Write the serials up to end to a subscription that is behind, for as long as its channel is writable.
+     */
+    private void catchUp(final Subscription subscription, final int end) {
+        while (subscription.nextSerial <= end && subscription.channel.isWritable()) {
+            final int batchEnd = (int) Math.min(end, (long) subscription.nextSerial + serialBatchSize - 1);
+
+            for (final String rendered : serialRenderer.render(subscription.source, subscription.version, readSerials(subscription.nextSerial, batchEnd)).values()) {
+                subscription.channel.write(Unpooled.copiedBuffer(rendered, StandardCharsets.UTF_8));
+                subscription.written = true;
+            }
+
+            subscription.channel.flush();
+            subscription.nextSerial = batchEnd + 1;
+        }
+    }
+
+    private void writeBatch(final List<Subscription> current, final int begin, final int end, final Map<Integer, SerialEntry> serialEntries) {
+        final Map<RenderKey, List<RenderedSerial>> rendered = Maps.newHashMap();
+
+        try {
+            for (final Subscription subscription : current) {
+                // a subscription still behind could not catch up in this run
+                if (subscription.nextSerial < begin || subscription.nextSerial > end) {
+                    continue;
+                }
+
+                if (!subscription.channel.isWritable()) {
+                    continue;
+                }
+
+                final List<RenderedSerial> renderedSerials = rendered.computeIfAbsent(
+                        new RenderKey(subscription.source, subscription.version),
+                        key -> render(key, serialEntries));
+
+                for (final RenderedSerial renderedSerial : renderedSerials) {
+                    if (renderedSerial.serial >= subscription.nextSerial) {
+                        subscription.channel.write(renderedSerial.content.retainedDuplicate());
+                        subscription.written = true;
+                    }
+                }
+
+                subscription.channel.flush();
+                subscription.nextSerial = end + 1;
+            }
+        } finally {
+            rendered.values().forEach(renderedSerials -> renderedSerials.forEach(renderedSerial -> renderedSerial.content.release()));
+        }
+    }
+
+    private List<RenderedSerial> render(final RenderKey key, final Map<Integer, SerialEntry> serialEntries) {
+        final List<RenderedSerial> renderedSerials = Lists.newArrayList();
+        serialRenderer.render(key.source, key.version, serialEntries).forEach((serial, content) ->
+                renderedSerials.add(new RenderedSerial(serial, Unpooled.copiedBuffer(content, StandardCharsets.UTF_8))));
+        return renderedSerials;
+    }
+
+    @RetryFor(attempts = 10, value = CannotGetJdbcConnectionException.class)
+    private Map<Integer, SerialEntry> readSerials(final int begin, final int end) {
+        return serialDao.getByIdRangeForNrtm(begin, end);
+    }
+
+    private static final class Subscription {
+        private final Channel channel;
+        private final String source;
+        private final int version;
+
+        // only accessed by the tailer once subscribed
+        private int nextSerial;
+        private int begin;
+        private boolean written;
+
+        private Subscription(final Channel channel, final String source, final int version, final int nextSerial) {
+            this.channel = channel;
+            this.source = source;
+            this.version = version;
+            this.nextSerial = nextSerial;
+        }
+    }
+
+    private static final class RenderKey {
+        private final String source;
+        private final int version;
+
+        private RenderKey(final String source, final int version) {
+            this.source = source;
+            this.version = version;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            final RenderKey renderKey = (RenderKey) o;
+            return version == renderKey.version && Objects.equals(source, renderKey.source);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(source, version);
+        }
+    }
+
+    private static final class RenderedSerial {
+        private final int serial;
+        private final ByteBuf content;
+
+        private RenderedSerial(final int serial, final ByteBuf content) {
+            this.serial = serial;
+            this.content = content;
+        }
+    }
+}
@@ -10,6 +10,7 @@ import io.netty.handler.codec.string.StringDecoder;
 import io.netty.handler.codec.string.StringEncoder;
 import io.netty.util.concurrent.DefaultEventExecutorGroup;
 import io.netty.util.concurrent.EventExecutorGroup;
+import net.ripe.db.whois.common.pipeline.ChannelWritability;
 import net.ripe.db.whois.common.pipeline.MaintenanceHandler;
 import net.ripe.db.whois.query.pipeline.ProxyProtocolChannelHandler;
 import org.slf4j.Logger;
@@ -65,7 +66,9 @@ public class NrtmServerChannelInitializer extends ChannelInitializer<Channel> {
     @Override
     protected void initChannel(Channel channel) {
         ChannelPipeline pipeline = channel.pipeline();
+        final ChannelWritability channelWritability = new ChannelWritability();
 
+        pipeline.addLast("U-writability", channelWritability);
         pipeline.addLast("U-maintenanceHandler", maintenanceHandler);
         pipeline.addLast("U-acl", nrtmAclLimitHandler);
         pipeline.addLast("connectionPerIpLimit", nrtmConnectionPerIpLimitHandler);
@@ -80,7 +83,7 @@ public class NrtmServerChannelInitializer extends ChannelInitializer<Channel> {
         pipeline.addLast("U-string-decoder", stringDecoder);
         pipeline.addLast("D-string-encoder", stringEncoder);
 
-        pipeline.addLast(executorGroup, "U-query-handler", nrtmQueryHandlerFactory.getInstance());
+        pipeline.addLast(executorGroup, "U-query-handler", nrtmQueryHandlerFactory.getInstance(channelWritability));
 
         pipeline.addLast("U-exception-handler", exceptionHandler);
     }
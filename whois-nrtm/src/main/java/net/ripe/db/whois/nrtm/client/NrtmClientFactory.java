@@ -1,13 +1,18 @@
 package net.ripe.db.whois.nrtm.client;
 
 
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.google.common.util.concurrent.Uninterruptibles;
 import net.ripe.db.whois.common.MaintenanceMode;
 import net.ripe.db.whois.common.aspects.RetryFor;
 import net.ripe.db.whois.common.dao.RpslObjectUpdateDao;
 import net.ripe.db.whois.common.dao.RpslObjectUpdateInfo;
 import net.ripe.db.whois.common.dao.SerialDao;
+import net.ripe.db.whois.common.domain.CIString;
 import net.ripe.db.whois.common.domain.serials.Operation;
+import net.ripe.db.whois.common.rpsl.ObjectType;
 import net.ripe.db.whois.common.rpsl.RpslObject;
 import net.ripe.db.whois.common.source.Source;
 import net.ripe.db.whois.common.source.SourceContext;
@@ -17,15 +22,21 @@ import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DataAccessException;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.net.UnknownHostException;
 import java.nio.channels.ClosedByInterruptException;
 import java.nio.channels.SocketChannel;
 import java.nio.channels.UnresolvedAddressException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -40,18 +51,21 @@ class NrtmClientFactory {
     private final RpslObjectUpdateDao rpslObjectUpdateDao;
     private final NrtmClientDao nrtmClientDao;
     private final MaintenanceMode maintenanceMode;
+    private final int batchSize;
 
     @Autowired
     public NrtmClientFactory(final SourceContext sourceContext,
                              final SerialDao serialDao,
                              final RpslObjectUpdateDao rpslObjectUpdateDao,
                              final NrtmClientDao nrtmClientDao,
-                             final MaintenanceMode maintenanceMode) {
+                             final MaintenanceMode maintenanceMode,
+                             @Value("${nrtm.import.batch.size:1}") final int batchSize) {
         this.sourceContext = sourceContext;
         this.serialDao = serialDao;
         this.rpslObjectUpdateDao = rpslObjectUpdateDao;
         this.nrtmClientDao = nrtmClientDao;
         this.maintenanceMode = maintenanceMode;
+        this.batchSize = Math.max(1, batchSize);
     }
 
     public NrtmClient createNrtmClient(final NrtmSource nrtmSource) {
@@ -179,7 +193,11 @@ class NrtmClientFactory {
                 if (maintenanceMode.allowUpdate()) {
                     final OperationSerial operationSerial = readOperationAndSerial();
                     final RpslObject object = readObject();
-                    update(operationSerial.getOperation(), operationSerial.getSerial(), object);
+                    if (batchSize == 1) {
+                        update(operationSerial.getOperation(), operationSerial.getSerial(), object);
+                    } else {
+                        update(readAhead(new SerialUpdate(operationSerial.getOperation(), operationSerial.getSerial(), object)));
+                    }
                 } else {
                     Uninterruptibles.sleepUninterruptibly(1, TimeUnit.SECONDS);
                 }
@@ -222,6 +240,87 @@ class NrtmClientFactory {
             }
         }
 
+        /**
+         * Read the updates already sent by the server, up to the batch size.
+         */
+        private List<SerialUpdate> readAhead(final SerialUpdate first) throws IOException {
+            final List<SerialUpdate> updates = Lists.newArrayList(first);
+
+            while (updates.size() < batchSize) {
+                final OperationSerial operationSerial = readOperationAndSerialIfReady();
+                if (operationSerial == null) {
+                    break;
+                }
+
+                updates.add(new SerialUpdate(operationSerial.getOperation(), operationSerial.getSerial(), readObject()));
+            }
+
+            return updates;
+        }
+
+        /**
+         * Apply the updates in serial order in a single transaction. Objects and applied serials are looked up for all
+         * updates at once, and kept up to date while the updates are applied.
+         */
+        @Transactional
+        void update(final List<SerialUpdate> updates) {
+            final Map<ObjectType, Set<String>> pkeys = Maps.newEnumMap(ObjectType.class);
+            int fromSerialId = Integer.MAX_VALUE;
+            int toSerialId = Integer.MIN_VALUE;
+            for (final SerialUpdate update : updates) {
+                pkeys.computeIfAbsent(update.getObject().getType(), type -> Sets.newHashSet()).add(update.getObject().getKey().toString());
+                fromSerialId = Math.min(fromSerialId, update.getSerialId());
+                toSerialId = Math.max(toSerialId, update.getSerialId());
+            }
+
+            try {
+                final Map<ObjectType, Map<CIString, RpslObjectUpdateInfo>> objects = Maps.newEnumMap(ObjectType.class);
+                for (final Map.Entry<ObjectType, Set<String>> entry : pkeys.entrySet()) {
+                    objects.put(entry.getKey(), Maps.newHashMap(nrtmClientDao.lookupObjects(entry.getKey(), entry.getValue())));
+                }
+
+                final Map<Integer, Integer> appliedSerials = nrtmClientDao.getObjectIdsBySerial(fromSerialId, toSerialId);
+
+                for (final SerialUpdate update : updates) {
+                    final RpslObject rpslObject = update.getObject();
+                    final Map<CIString, RpslObjectUpdateInfo> objectsOfType = objects.get(rpslObject.getType());
+                    final RpslObjectUpdateInfo updateInfo = objectsOfType.get(rpslObject.getKey());
+                    final int serialId = update.getSerialId();
+
+                    switch (update.getOperation()) {
+                        case UPDATE:
+                            if (updateInfo == null) {
+                                objectsOfType.put(rpslObject.getKey(), nrtmClientDao.createObject(rpslObject, serialId));
+                            } else if (isApplied(appliedSerials, serialId, updateInfo)) {
+                                LOGGER.warn("Already applied serial {}", serialId);
+                            } else {
+                                objectsOfType.put(rpslObject.getKey(), nrtmClientDao.updateObject(rpslObject, updateInfo, serialId));
+                            }
+                            break;
+
+                        case DELETE:
+                            if (updateInfo == null) {
+                                throw new IllegalStateException("DELETE serial:" + serialId + " but object:" + rpslObject.getKey().toString() + " doesn't exist");
+                            } else if (isApplied(appliedSerials, serialId, updateInfo)) {
+                                LOGGER.warn("Already applied serial {}", serialId);
+                            } else {
+                                nrtmClientDao.deleteObject(updateInfo, serialId);
+                                objectsOfType.remove(rpslObject.getKey());
+                            }
+                            break;
+                    }
+                }
+            } catch (DataAccessException e) {
+                LOGGER.error(e.getMessage(), e);
+                throw new IllegalStateException("Unexpected error on serials " + fromSerialId + " - " + toSerialId, e);
+            }
+        }
+
+        private boolean isApplied(final Map<Integer, Integer> appliedSerials, final int serialId, final RpslObjectUpdateInfo updateInfo) {
+            final Integer objectId = appliedSerials.get(serialId);
+            return objectId != null && objectId == updateInfo.getObjectId();
+        }
+
         private final Pattern OPERATION_AND_SERIAL_PATTERN = Pattern.compile("^(ADD|DEL)[ ](\\d+)$");
 
         private OperationSerial readOperationAndSerial() throws IOException {
@@ -238,6 +337,24 @@ class NrtmClientFactory {
             return new OperationSerial(operation, serial);
         }
 
+        /**
+         * @return the next operation and serial, or null if the server has not sent it yet.
+         */
+        @Nullable
+        private OperationSerial readOperationAndSerialIfReady() throws IOException {
+            while (reader.isReady()) {
+                final Matcher matcher = OPERATION_AND_SERIAL_PATTERN.matcher(readLineWithExpected(""));
+                if (matcher.find()) {
+                    final Operation operation = Operation.getByName(matcher.group(1));
+                    final String serial = matcher.group(2);
+                    readEmptyLine();
+                    return new OperationSerial(operation, serial);
+                }
+            }
+
+            return null;
+        }
+
         private RpslObject readObject() throws IOException {
             final StringBuilder builder = new StringBuilder();
             String line;
@@ -266,4 +383,28 @@ class NrtmClientFactory {
             }
         }
     }
+
+    static final class SerialUpdate {
+        private final Operation operation;
+        private final int serialId;
+        private final RpslObject object;
+
+        SerialUpdate(final Operation operation, final int serialId, final RpslObject object) {
+            this.operation = operation;
+            this.serialId = serialId;
+            this.object = object;
+        }
+
+        Operation getOperation() {
+            return operation;
+        }
+
+        int getSerialId() {
+            return serialId;
+        }
+
+        RpslObject getObject() {
+            return object;
+        }
+    }
 }
@@ -31,15 +31,47 @@ public class SocketChannelFactory {
     public static class Reader {
         private final SocketChannel socketChannel;
         final ByteBuffer buffer = ByteBuffer.allocate(1024);
+        // bytes were read into the buffer by isReady()
+        private boolean readAhead;
 
         public Reader(final SocketChannel socketChannel) {
             this.socketChannel = socketChannel;
         }
 
+        /**
+         * @return true if input is available, so reading will not wait for the server.
+         */
+        public boolean isReady() throws IOException {
+            if (buffer.position() > 0 || readAhead) {
+                return true;
+            }
+
+            final int length;
+            socketChannel.configureBlocking(false);
+            try {
+                length = socketChannel.read(buffer);
+            } finally {
+                socketChannel.configureBlocking(true);
+            }
+
+            if (length == -1) {
+                throw new IOException("End of stream");
+            }
+
+            if (length == 0) {
+                return false;
+            }
+
+            buffer.flip();
+            readAhead = true;
+            return true;
+        }
+
         public String readLine() throws IOException {
             final StringBuilder builder = new StringBuilder();
 
-            if (buffer.position() > 0) {
+            if (buffer.position() > 0 || readAhead) {
+                readAhead = false;
                 if (readLineFromBuffer(builder)) {
                     return builder.toString();
                 }
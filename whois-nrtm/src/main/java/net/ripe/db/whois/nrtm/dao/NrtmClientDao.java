@@ -1,8 +1,13 @@
 package net.ripe.db.whois.nrtm.dao;
 
 import net.ripe.db.whois.common.dao.RpslObjectUpdateInfo;
+import net.ripe.db.whois.common.domain.CIString;
+import net.ripe.db.whois.common.rpsl.ObjectType;
 import net.ripe.db.whois.common.rpsl.RpslObject;
 
+import java.util.Collection;
+import java.util.Map;
+
 public interface NrtmClientDao {
 
     RpslObjectUpdateInfo createObject(RpslObject object, int serialId);
@@ -12,4 +17,8 @@ public interface NrtmClientDao {
     void deleteObject(RpslObjectUpdateInfo info, int serialId);
 
     boolean objectExistsWithSerial(int serialId, int objectId);
+
+    Map<CIString, RpslObjectUpdateInfo> lookupObjects(ObjectType type, Collection<String> pkeys);
+
+    Map<Integer, Integer> getObjectIdsBySerial(int fromSerialId, int toSerialId);
 }
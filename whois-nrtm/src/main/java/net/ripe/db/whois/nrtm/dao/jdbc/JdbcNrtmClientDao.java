@@ -1,16 +1,26 @@
 package net.ripe.db.whois.nrtm.dao.jdbc;
 
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
 import net.ripe.db.whois.common.DateTimeProvider;
 import net.ripe.db.whois.common.dao.RpslObjectUpdateInfo;
+import net.ripe.db.whois.common.dao.jdbc.domain.ObjectTypeIds;
+import net.ripe.db.whois.common.domain.CIString;
+import net.ripe.db.whois.common.rpsl.ObjectType;
 import net.ripe.db.whois.common.rpsl.RpslObject;
 import net.ripe.db.whois.nrtm.dao.NrtmClientDao;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.sql.DataSource;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
 
 import static net.ripe.db.whois.common.dao.jdbc.JdbcRpslObjectOperations.copyToHistoryAndUpdateSerials;
 import static net.ripe.db.whois.common.dao.jdbc.JdbcRpslObjectOperations.deleteFromLastAndSetSerials;
@@ -24,11 +34,13 @@ import static net.ripe.db.whois.common.dao.jdbc.JdbcRpslObjectOperations.updateL
 public class JdbcNrtmClientDao implements NrtmClientDao {
 
     private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
     private final DateTimeProvider dateTimeProvider;
 
     @Autowired
     public JdbcNrtmClientDao(@Qualifier("sourceAwareDataSource") final DataSource dataSource, final DateTimeProvider dateTimeProvider) {
         this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
         this.dateTimeProvider = dateTimeProvider;
     }
 
@@ -64,4 +76,31 @@ public class JdbcNrtmClientDao implements NrtmClientDao {
                 serialId, objectId);
         return found > 0;
     }
+
+    @Override
+    public Map<CIString, RpslObjectUpdateInfo> lookupObjects(final ObjectType type, final Collection<String> pkeys) {
+        if (pkeys.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        final Map<CIString, RpslObjectUpdateInfo> objects = Maps.newHashMapWithExpectedSize(pkeys.size());
+        namedParameterJdbcTemplate.query(
+                "SELECT object_id, sequence_id, pkey FROM last WHERE object_type = :objectType AND pkey IN (:pkeys) AND sequence_id > 0",
+                ImmutableMap.of("objectType", ObjectTypeIds.getId(type), "pkeys", pkeys),
+                (RowCallbackHandler) rs -> {
+                    final String pkey = rs.getString(3);
+                    objects.put(CIString.ciString(pkey), new RpslObjectUpdateInfo(rs.getInt(1), rs.getInt(2), type, pkey));
+                });
+        return objects;
+    }
+
+    @Override
+    public Map<Integer, Integer> getObjectIdsBySerial(final int fromSerialId, final int toSerialId) {
+        final Map<Integer, Integer> objectIds = Maps.newHashMap();
+        jdbcTemplate.query(
+                "SELECT serial_id, object_id FROM serials WHERE serial_id BETWEEN ? AND ?",
+                (RowCallbackHandler) rs -> objectIds.put(rs.getInt(1), rs.getInt(2)),
+                fromSerialId, toSerialId);
+        return objectIds;
+    }
 }
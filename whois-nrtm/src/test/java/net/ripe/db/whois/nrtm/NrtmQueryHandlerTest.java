@@ -1,5 +1,6 @@
 package net.ripe.db.whois.nrtm;
 
+import com.google.common.collect.ImmutableMap;
 import com.google.common.util.concurrent.Uninterruptibles;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelException;
@@ -11,6 +12,7 @@ import net.ripe.db.whois.common.dao.SerialDao;
 import net.ripe.db.whois.common.domain.serials.Operation;
 import net.ripe.db.whois.common.domain.serials.SerialEntry;
 import net.ripe.db.whois.common.domain.serials.SerialRange;
+import net.ripe.db.whois.common.pipeline.ChannelWritability;
 import net.ripe.db.whois.common.rpsl.DummifierNrtm;
 import net.ripe.db.whois.common.rpsl.RpslObject;
 import org.junit.jupiter.api.BeforeEach;
@@ -22,19 +24,19 @@ import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.jdbc.CannotGetJdbcConnectionException;
-import org.springframework.scheduling.TaskScheduler;
 
 import java.net.InetSocketAddress;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static net.ripe.db.whois.nrtm.NrtmQueryHandlerTest.StringMatcher.instanceofString;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.containsString;
 import static org.junit.jupiter.api.Assertions.fail;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.atLeast;
 import static org.mockito.Mockito.atMost;
 import static org.mockito.Mockito.inOrder;
@@ -50,7 +52,7 @@ public class NrtmQueryHandlerTest {
 
     @Mock private SerialDao serialDaoMock;
     @Mock private DummifierNrtm dummifierMock;
-    @Mock private TaskScheduler mySchedulerMock;
+    @Mock private NrtmSerialTailer nrtmSerialTailerMock;
     @Mock private ChannelHandlerContext contextMock;
     @Mock(answer = Answers.RETURNS_DEEP_STUBS) private Channel channelMock;
     @Mock private ChannelFuture channelFutureMock;
@@ -58,8 +60,8 @@ public class NrtmQueryHandlerTest {
     @Mock private NrtmLog nrtmLogMock;
     @Mock private ApplicationVersion applicationVersion;
 
-    private static final long UPDATE_INTERVAL = 1;
     private static final boolean KEEPALIVE_END_OF_STREAM = false;
+    private static final int SERIAL_BATCH_SIZE = 500;
     private static final String SOURCE = "RIPE";
     private static final String NONAUTH_SOURCE = "";
     private static final String VERSION = "1.0-SNAPSHOT";
@@ -67,6 +69,7 @@ public class NrtmQueryHandlerTest {
     private static final RpslObject inetnum = RpslObject.parse("inetnum:10.0.0.1");
     private static final RpslObject person = RpslObject.parse("person:one\nnic-hdl:ONE");
 
+    private final ChannelWritability channelWritability = new ChannelWritability();
     private NrtmQueryHandler subject;
 
     @BeforeEach
@@ -74,30 +77,28 @@ public class NrtmQueryHandlerTest {
         lenient().when(contextMock.channel()).thenReturn(channelMock);
         lenient().when(channelMock.remoteAddress()).thenReturn(new InetSocketAddress(0));
         lenient().when(channelMock.isOpen()).thenReturn(true);
+        lenient().when(channelMock.isActive()).thenReturn(true);
+        lenient().when(channelMock.isWritable()).thenReturn(true);
         lenient().when(channelMock.writeAndFlush(any())).thenReturn(channelFutureMock);
+        lenient().when(channelFutureMock.isDone()).thenReturn(true);
         lenient().when(channelMock.attr(any())).thenReturn(attributeMock);
         lenient().doNothing().when(attributeMock).set(any());
         lenient().when(serialDaoMock.getSerials()).thenReturn(new SerialRange(1, 2));
-        lenient().when(serialDaoMock.getByIdForNrtm(1)).thenReturn(new SerialEntry(Operation.UPDATE, true, 1, 1000, 1000, inetnum.toByteArray()));
         lenient().when(dummifierMock.isAllowed(NrtmServer.NRTM_VERSION, inetnum)).thenReturn(true);
         lenient().when(dummifierMock.dummify(NrtmServer.NRTM_VERSION, inetnum)).thenReturn(inetnum);
-        lenient().when(serialDaoMock.getByIdForNrtm(2)).thenReturn(new SerialEntry(Operation.UPDATE, true, 2, 1000, 1000, person.toByteArray()));
+        final SerialEntry inetnumEntry = new SerialEntry(Operation.UPDATE, true, 1, 1000, 1000, inetnum.toByteArray());
+        final SerialEntry personEntry = new SerialEntry(Operation.UPDATE, true, 2, 1000, 1000, person.toByteArray());
+        lenient().when(serialDaoMock.getByIdRangeForNrtm(1, 1)).thenReturn(ImmutableMap.of(1, inetnumEntry));
+        lenient().when(serialDaoMock.getByIdRangeForNrtm(1, 2)).thenReturn(ImmutableMap.of(1, inetnumEntry, 2, personEntry));
+        lenient().when(serialDaoMock.getByIdRangeForNrtm(2, 2)).thenReturn(ImmutableMap.of(2, personEntry));
         lenient().when(dummifierMock.isAllowed(NrtmServer.NRTM_VERSION, person)).thenReturn(false);
         lenient().when(applicationVersion.getVersion()).thenReturn("1.0-SNAPSHOT");
 
-        lenient().when(mySchedulerMock.scheduleAtFixedRate(any(Runnable.class), anyLong())).thenAnswer(invocation -> {
-            Object[] args = invocation.getArguments();
-            ((Runnable) args[0]).run();
-            return null;
-        });
-
-        subject = new NrtmQueryHandler(serialDaoMock, dummifierMock, mySchedulerMock, nrtmLogMock, applicationVersion, SOURCE, NONAUTH_SOURCE, UPDATE_INTERVAL, KEEPALIVE_END_OF_STREAM);
-        NrtmQueryHandler.PendingWrites.add(channelMock);
+        subject = new NrtmQueryHandler(serialDaoMock, dummifierMock, nrtmSerialTailerMock, nrtmLogMock, applicationVersion, SOURCE, NONAUTH_SOURCE, KEEPALIVE_END_OF_STREAM, SERIAL_BATCH_SIZE, channelWritability);
     }
 
     @Test
     public void gFlagWithVersion2Works() {
-        when(channelMock.attr(any()).get()).thenReturn(new AtomicInteger());
         when(dummifierMock.isAllowed(2, person)).thenReturn(true);
         when(dummifierMock.isAllowed(2, inetnum)).thenReturn(true);
         when(dummifierMock.dummify(2, inetnum)).thenReturn(inetnum);
@@ -108,13 +109,11 @@ public class NrtmQueryHandlerTest {
 
         InOrder orderedChannelMock = inOrder(channelMock);
 
-        verify(channelMock, times(7)).writeAndFlush(argThat(instanceofString()));
+        verify(channelMock, times(5)).writeAndFlush(argThat(instanceofString()));
         orderedChannelMock.verify(channelMock).writeAndFlush("%START Version: 2 RIPE 1-2\n\n");
         orderedChannelMock.verify(channelMock).writeAndFlush("%WARNING: NRTM version 2 is deprecated, please consider migrating to version 3!\n\n");
-        orderedChannelMock.verify(channelMock).writeAndFlush("ADD\n\n");
-        orderedChannelMock.verify(channelMock).writeAndFlush(inetnum + "\n");
-        orderedChannelMock.verify(channelMock).writeAndFlush("ADD\n\n");
-        orderedChannelMock.verify(channelMock).writeAndFlush(DummifierNrtm.getPlaceholderPersonObject() + "\n");
+        orderedChannelMock.verify(channelMock).writeAndFlush("ADD\n\n" + inetnum + "\n");
+        orderedChannelMock.verify(channelMock).writeAndFlush("ADD\n\n" + DummifierNrtm.getPlaceholderPersonObject() + "\n");
         orderedChannelMock.verify(channelMock).writeAndFlush("%END RIPE\n\n");
     }
 
@@ -141,60 +140,51 @@ public class NrtmQueryHandlerTest {
     @Test
     public void gFlagValidRange() {
         String msg = "-g RIPE:3:1-2";
-        when(channelMock.attr(any()).get()).thenReturn(new AtomicInteger());
         subject.channelRead(contextMock, msg);
 
-        verify(channelMock, times(4)).writeAndFlush(argThat(instanceofString()));
+        verify(channelMock, times(3)).writeAndFlush(argThat(instanceofString()));
         verify(channelMock).writeAndFlush("%START Version: 3 RIPE 1-2\n\n");
-        verify(channelMock).writeAndFlush("ADD 1\n\n");
-        verify(channelMock).writeAndFlush(inetnum.toString() + "\n");
-        verify(channelMock, never()).writeAndFlush("ADD 2\n\n");
-        verify(channelMock, never()).writeAndFlush(person.toString() + "\n");
+        verify(channelMock).writeAndFlush("ADD 1\n\n" + inetnum.toString() + "\n");
+        verify(channelMock, never()).writeAndFlush("ADD 2\n\n" + person.toString() + "\n");
         verify(channelMock).writeAndFlush("%END RIPE\n\n");
     }
 
     @Test
     public void keepalive() {
         String msg = "-g RIPE:3:1-LAST -k";
-        when(channelMock.attr(any()).get()).thenReturn(new AtomicInteger());
 
         subject.channelRead(contextMock, msg);
 
-        verify(channelMock, times(3)).writeAndFlush(argThat(instanceofString()));
+        verify(channelMock, times(2)).writeAndFlush(argThat(instanceofString()));
         verify(channelMock).writeAndFlush("%START Version: 3 RIPE 1-2\n\n");
-        verify(mySchedulerMock).scheduleAtFixedRate(any(Runnable.class), anyLong());
-        verify(channelMock).writeAndFlush("ADD 1\n\n");
-        verify(channelMock).writeAndFlush(inetnum.toString() + "\n");
+        verify(nrtmSerialTailerMock).subscribe(eq(channelMock), any(Query.class), eq(3));
+        verify(channelMock).writeAndFlush("ADD 1\n\n" + inetnum.toString() + "\n");
     }
 
     @Test
     public void keepaliveEndOfStreamIndicator() {
         String msg = "-g RIPE:3:1-LAST -k";
-        when(channelMock.attr(any()).get()).thenReturn(new AtomicInteger());
 
-        subject = new NrtmQueryHandler(serialDaoMock, dummifierMock, mySchedulerMock, nrtmLogMock, applicationVersion, SOURCE, NONAUTH_SOURCE, UPDATE_INTERVAL, true);
+        subject = new NrtmQueryHandler(serialDaoMock, dummifierMock, nrtmSerialTailerMock, nrtmLogMock, applicationVersion, SOURCE, NONAUTH_SOURCE, true, SERIAL_BATCH_SIZE, channelWritability);
 
         subject.channelRead(contextMock, msg);
 
-        verify(channelMock, times(4)).writeAndFlush(argThat(instanceofString()));
+        verify(channelMock, times(3)).writeAndFlush(argThat(instanceofString()));
         verify(channelMock).writeAndFlush("%START Version: 3 RIPE 1-2\n\n");
-        verify(mySchedulerMock).scheduleAtFixedRate(any(Runnable.class), anyLong());
-        verify(channelMock).writeAndFlush("ADD 1\n\n");
-        verify(channelMock).writeAndFlush(inetnum.toString() + "\n");
+        verify(nrtmSerialTailerMock).subscribe(eq(channelMock), any(Query.class), eq(3));
+        verify(channelMock).writeAndFlush("ADD 1\n\n" + inetnum.toString() + "\n");
         verify(channelMock).writeAndFlush("%END 1 - 2\n\n");
     }
 
     @Test
     public void gFlagValidRangeToLast() {
         String msg = "-g RIPE:3:1-LAST";
-        when(channelMock.attr(any()).get()).thenReturn(new AtomicInteger());
 
         subject.channelRead(contextMock, msg);
 
-        verify(channelMock, times(4)).writeAndFlush(argThat(instanceofString()));
+        verify(channelMock, times(3)).writeAndFlush(argThat(instanceofString()));
         verify(channelMock).writeAndFlush("%START Version: 3 RIPE 1-2\n\n");
-        verify(channelMock).writeAndFlush("ADD 1\n\n");
-        verify(channelMock).writeAndFlush(inetnum.toString() + "\n");
+        verify(channelMock).writeAndFlush("ADD 1\n\n" + inetnum.toString() + "\n");
         verify(channelMock).writeAndFlush("%END RIPE\n\n");
     }
 
@@ -241,7 +231,6 @@ public class NrtmQueryHandlerTest {
     @Test
     public void gFlagDeprecatedVersion() {
         String msg = "-g RIPE:2:1-1";
-        when(channelMock.attr(any()).get()).thenReturn(new AtomicInteger());
         subject.channelRead(contextMock, msg);
 
         verify(channelMock, times(3)).writeAndFlush(argThat(instanceofString()));
@@ -259,43 +248,45 @@ public class NrtmQueryHandlerTest {
 
     @Test
     public void throttleChannelKeepaliveQuery() {
-        when(channelMock.attr(any()).get()).thenReturn(new AtomicInteger());
-        setPending(channelMock);
+        final AtomicBoolean writable = new AtomicBoolean(false);
+        when(channelMock.isWritable()).thenAnswer(invocation -> writable.get());
         String msg = "-g RIPE:3:1-LAST -k";
 
         messageReceived(msg);
-        unsetPending(channelMock);
+        Uninterruptibles.sleepUninterruptibly(1, TimeUnit.SECONDS);
 
         verify(channelMock).writeAndFlush("%START Version: 3 RIPE 1-2\n\n");
         verify(channelMock, atMost(1)).writeAndFlush(any(String.class));
-        verify(mySchedulerMock).scheduleAtFixedRate(any(Runnable.class), anyLong());
+        verify(nrtmSerialTailerMock, never()).subscribe(any(Channel.class), any(Query.class), anyInt());
+
+        writable.set(true);
+        channelWritability.channelWritabilityChanged(contextMock);
     }
 
     // TODO: [ES] slow unit test (takes ~10s)
     @Test
     public void retryForAnnotation() {
-        when(serialDaoMock.getByIdForNrtm(any(Integer.class))).thenThrow(CannotGetJdbcConnectionException.class);
-        when(channelMock.attr(any()).get()).thenReturn(new AtomicInteger());
+        when(serialDaoMock.getByIdRangeForNrtm(any(Integer.class), any(Integer.class))).thenThrow(CannotGetJdbcConnectionException.class);
         String msg = "-g RIPE:3:1-LAST";
 
         try {
             subject.channelRead(contextMock, msg);
             fail();
         } catch (CannotGetJdbcConnectionException e) {
-            verify(serialDaoMock, times(10)).getByIdForNrtm(1);
+            verify(serialDaoMock, times(10)).getByIdRangeForNrtm(1, 2);
         }
     }
 
-    private void setPending(final Channel channelMock) {
-        NrtmQueryHandler.PendingWrites.add(channelMock);
-        while (!NrtmQueryHandler.PendingWrites.isPending(channelMock)) {
-            NrtmQueryHandler.PendingWrites.increment(channelMock);
-        }
-    }
+    @Test
+    public void serialsReadInBatches() {
+        subject = new NrtmQueryHandler(serialDaoMock, dummifierMock, nrtmSerialTailerMock, nrtmLogMock, applicationVersion, SOURCE, NONAUTH_SOURCE, KEEPALIVE_END_OF_STREAM, 1, channelWritability);
 
-    private void unsetPending(final Channel channelMock) {
-        Uninterruptibles.sleepUninterruptibly(1, TimeUnit.SECONDS);
-        NrtmQueryHandler.PendingWrites.decrement(channelMock);
+        subject.channelRead(contextMock, "-g RIPE:3:1-2");
+
+        verify(serialDaoMock).getByIdRangeForNrtm(1, 1);
+        verify(serialDaoMock).getByIdRangeForNrtm(2, 2);
+        verify(channelMock).writeAndFlush("ADD 1\n\n" + inetnum.toString() + "\n");
+        verify(channelMock).writeAndFlush("%END RIPE\n\n");
     }
 
     private void messageReceived(String message) {
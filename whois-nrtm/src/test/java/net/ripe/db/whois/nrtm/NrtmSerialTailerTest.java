@@ -0,0 +1,172 @@
+package net.ripe.db.whois.nrtm;
+
+import com.google.common.collect.ImmutableMap;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import net.ripe.db.whois.common.dao.SerialDao;
+import net.ripe.db.whois.common.domain.serials.Operation;
+import net.ripe.db.whois.common.domain.serials.SerialEntry;
+import net.ripe.db.whois.common.domain.serials.SerialRange;
+import net.ripe.db.whois.common.rpsl.DummifierNrtm;
+import net.ripe.db.whois.common.rpsl.RpslObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.scheduling.TaskScheduler;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class NrtmSerialTailerTest {
+
+    @Mock private SerialDao serialDaoMock;
+    @Mock private DummifierNrtm dummifierMock;
+    @Mock private TaskScheduler schedulerMock;
+    @Mock private Channel firstChannel;
+    @Mock private Channel secondChannel;
+
+    private static final RpslObject inetnum = RpslObject.parse("inetnum: 10.0.0.1\nsource: RIPE");
+    private static final RpslObject person = RpslObject.parse("person: one\nnic-hdl: ONE\nsource: RIPE");
+
+    private NrtmSerialTailer subject;
+
+    @BeforeEach
+    public void setup() {
+        lenient().when(firstChannel.isOpen()).thenReturn(true);
+        lenient().when(firstChannel.isWritable()).thenReturn(true);
+        lenient().when(secondChannel.isOpen()).thenReturn(true);
+        lenient().when(secondChannel.isWritable()).thenReturn(true);
+
+        lenient().when(dummifierMock.isAllowed(NrtmServer.NRTM_VERSION, inetnum)).thenReturn(true);
+        lenient().when(dummifierMock.dummify(NrtmServer.NRTM_VERSION, inetnum)).thenReturn(inetnum);
+        lenient().when(dummifierMock.isAllowed(NrtmServer.NRTM_VERSION, person)).thenReturn(true);
+        lenient().when(dummifierMock.dummify(NrtmServer.NRTM_VERSION, person)).thenReturn(person);
+
+        lenient().when(serialDaoMock.getByIdRangeForNrtm(3, 4)).thenReturn(ImmutableMap.of(
+                3, new SerialEntry(Operation.UPDATE, true, 1, 1000, 1000, inetnum.toByteArray()),
+                4, new SerialEntry(Operation.UPDATE, true, 2, 1000, 1000, person.toByteArray())));
+        lenient().when(serialDaoMock.getByIdRangeForNrtm(4, 4)).thenReturn(ImmutableMap.of(
+                4, new SerialEntry(Operation.UPDATE, true, 2, 1000, 1000, person.toByteArray())));
+
+        subject = new NrtmSerialTailer(serialDaoMock, dummifierMock, schedulerMock, 60, false, 500);
+    }
+
+    @Test
+    public void subscribe_schedules_once() {
+        subject.subscribe(firstChannel, new Query("RIPE", "", "-g RIPE:3:1-LAST -k"), 3);
+        subject.subscribe(secondChannel, new Query("RIPE", "", "-g RIPE:3:1-LAST -k"), 3);
+
+        verify(schedulerMock, times(1)).scheduleAtFixedRate(any(Runnable.class), anyLong());
+    }
+
+    @Test
+    public void no_subscriptions() {
+        subject.tail();
+
+        verify(serialDaoMock, never()).getSerials();
+    }
+
+    @Test
+    public void new_serials_read_and_rendered_once() {
+        when(serialDaoMock.getSerials()).thenReturn(new SerialRange(1, 4));
+        subject.subscribe(firstChannel, new Query("RIPE", "", "-g RIPE:3:1-LAST -k"), 3);
+        subject.subscribe(secondChannel, new Query("RIPE", "", "-g RIPE:3:1-LAST -k"), 3);
+
+        subject.tail();
+
+        verify(serialDaoMock, times(1)).getByIdRangeForNrtm(3, 4);
+        verify(dummifierMock, times(1)).dummify(NrtmServer.NRTM_VERSION, inetnum);
+        assertThat(written(firstChannel, 2), contains("ADD 3\n\n" + inetnum.toString().trim() + "\n\n", "ADD 4\n\n" + person.toString().trim() + "\n\n"));
+        assertThat(written(secondChannel, 2), contains("ADD 3\n\n" + inetnum.toString().trim() + "\n\n", "ADD 4\n\n" + person.toString().trim() + "\n\n"));
+    }
+
+    @Test
+    public void subscriptions_at_different_serials() {
+        when(serialDaoMock.getSerials()).thenReturn(new SerialRange(1, 4));
+        subject.subscribe(firstChannel, new Query("RIPE", "", "-g RIPE:3:1-LAST -k"), 3);
+        subject.subscribe(secondChannel, new Query("RIPE", "", "-g RIPE:3:1-LAST -k"), 4);
+
+        subject.tail();
+
+        assertThat(written(firstChannel, 2), contains("ADD 3\n\n" + inetnum.toString().trim() + "\n\n", "ADD 4\n\n" + person.toString().trim() + "\n\n"));
+        assertThat(written(secondChannel, 1), contains("ADD 4\n\n" + person.toString().trim() + "\n\n"));
+    }
+
+    @Test
+    public void unwritable_channel_is_skipped_until_writable() {
+        when(serialDaoMock.getSerials()).thenReturn(new SerialRange(1, 4));
+        when(secondChannel.isWritable()).thenReturn(false);
+        subject.subscribe(firstChannel, new Query("RIPE", "", "-g RIPE:3:1-LAST -k"), 3);
+        subject.subscribe(secondChannel, new Query("RIPE", "", "-g RIPE:3:1-LAST -k"), 3);
+
+        subject.tail();
+
+        verify(secondChannel, never()).write(any());
+
+        when(secondChannel.isWritable()).thenReturn(true);
+        subject.tail();
+
+        assertThat(written(firstChannel, 2), contains("ADD 3\n\n" + inetnum.toString().trim() + "\n\n", "ADD 4\n\n" + person.toString().trim() + "\n\n"));
+        assertThat(written(secondChannel, 2), contains("ADD 3\n\n" + inetnum.toString().trim() + "\n\n", "ADD 4\n\n" + person.toString().trim() + "\n\n"));
+    }
+
+    @Test
+    public void lagging_subscription_catches_up_with_own_read() {
+        when(serialDaoMock.getSerials()).thenReturn(new SerialRange(1, 4));
+        when(secondChannel.isWritable()).thenReturn(false);
+        subject.subscribe(firstChannel, new Query("RIPE", "", "-g RIPE:3:1-LAST -k"), 3);
+        subject.subscribe(secondChannel, new Query("RIPE", "", "-g RIPE:3:1-LAST -k"), 3);
+
+        subject.tail();
+
+        when(serialDaoMock.getSerials()).thenReturn(new SerialRange(1, 5));
+        when(serialDaoMock.getByIdRangeForNrtm(5, 5)).thenReturn(ImmutableMap.of(
+                5, new SerialEntry(Operation.DELETE, true, 1, 1000, 1000, inetnum.toByteArray())));
+        when(secondChannel.isWritable()).thenReturn(true);
+        subject.tail();
+
+        verify(serialDaoMock, times(2)).getByIdRangeForNrtm(3, 4);
+        verify(serialDaoMock, never()).getByIdRangeForNrtm(3, 5);
+        assertThat(written(firstChannel, 3), contains(
+                "ADD 3\n\n" + inetnum.toString().trim() + "\n\n",
+                "ADD 4\n\n" + person.toString().trim() + "\n\n",
+                "DEL 5\n\n" + inetnum.toString().trim() + "\n\n"));
+        assertThat(written(secondChannel, 3), contains(
+                "ADD 3\n\n" + inetnum.toString().trim() + "\n\n",
+                "ADD 4\n\n" + person.toString().trim() + "\n\n",
+                "DEL 5\n\n" + inetnum.toString().trim() + "\n\n"));
+    }
+
+    @Test
+    public void closed_channel_is_unsubscribed() {
+        when(firstChannel.isOpen()).thenReturn(false);
+        subject.subscribe(firstChannel, new Query("RIPE", "", "-g RIPE:3:1-LAST -k"), 3);
+
+        subject.tail();
+
+        verify(serialDaoMock, never()).getSerials();
+        verify(serialDaoMock, never()).getByIdRangeForNrtm(anyInt(), anyInt());
+    }
+
+    private static List<String> written(final Channel channel, final int times) {
+        final ArgumentCaptor<ByteBuf> captor = ArgumentCaptor.forClass(ByteBuf.class);
+        verify(channel, times(times)).write(captor.capture());
+        return captor.getAllValues().stream().map(buf -> buf.toString(StandardCharsets.UTF_8)).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,101 @@
+package net.ripe.db.whois.nrtm.client;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import net.ripe.db.whois.common.MaintenanceMode;
+import net.ripe.db.whois.common.dao.RpslObjectUpdateDao;
+import net.ripe.db.whois.common.dao.RpslObjectUpdateInfo;
+import net.ripe.db.whois.common.dao.SerialDao;
+import net.ripe.db.whois.common.domain.serials.Operation;
+import net.ripe.db.whois.common.rpsl.ObjectType;
+import net.ripe.db.whois.common.rpsl.RpslObject;
+import net.ripe.db.whois.common.source.SourceContext;
+import net.ripe.db.whois.nrtm.dao.NrtmClientDao;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Collections;
+
+import static net.ripe.db.whois.common.domain.CIString.ciString;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class NrtmClientFactoryTest {
+
+    @Mock private SourceContext sourceContext;
+    @Mock private SerialDao serialDao;
+    @Mock private RpslObjectUpdateDao rpslObjectUpdateDao;
+    @Mock private NrtmClientDao nrtmClientDao;
+    @Mock private MaintenanceMode maintenanceMode;
+
+    private NrtmClientFactory.NrtmClient subject;
+
+    private final RpslObject mntner = RpslObject.parse("mntner: TEST-MNT\nsource: TEST");
+    private final RpslObject person = RpslObject.parse("person: Test Person\nnic-hdl: TP1-TEST\nsource: TEST");
+
+    @BeforeEach
+    public void setup() {
+        subject = new NrtmClientFactory(sourceContext, serialDao, rpslObjectUpdateDao, nrtmClientDao, maintenanceMode, 100)
+                .createNrtmClient(new NrtmSource(ciString("TEST"), ciString("TEST"), "localhost", 1044));
+    }
+
+    @Test
+    public void batch_applied_in_order_with_lookups_in_bulk() {
+        final RpslObjectUpdateInfo personInfo = new RpslObjectUpdateInfo(2, 1, ObjectType.PERSON, "TP1-TEST");
+        final RpslObjectUpdateInfo created = new RpslObjectUpdateInfo(3, 1, ObjectType.MNTNER, "TEST-MNT");
+        final RpslObjectUpdateInfo updated = new RpslObjectUpdateInfo(3, 2, ObjectType.MNTNER, "TEST-MNT");
+        when(nrtmClientDao.lookupObjects(eq(ObjectType.MNTNER), any())).thenReturn(Collections.emptyMap());
+        when(nrtmClientDao.lookupObjects(eq(ObjectType.PERSON), any())).thenReturn(ImmutableMap.of(ciString("TP1-TEST"), personInfo));
+        when(nrtmClientDao.getObjectIdsBySerial(10, 13)).thenReturn(Collections.emptyMap());
+        when(nrtmClientDao.createObject(mntner, 10)).thenReturn(created);
+        when(nrtmClientDao.updateObject(mntner, created, 11)).thenReturn(updated);
+
+        subject.update(Lists.newArrayList(
+                new NrtmClientFactory.SerialUpdate(Operation.UPDATE, 10, mntner),
+                new NrtmClientFactory.SerialUpdate(Operation.UPDATE, 11, mntner),
+                new NrtmClientFactory.SerialUpdate(Operation.DELETE, 12, person),
+                new NrtmClientFactory.SerialUpdate(Operation.DELETE, 13, mntner)));
+
+        final InOrder inOrder = inOrder(nrtmClientDao);
+        inOrder.verify(nrtmClientDao).createObject(mntner, 10);
+        inOrder.verify(nrtmClientDao).updateObject(mntner, created, 11);
+        inOrder.verify(nrtmClientDao).deleteObject(personInfo, 12);
+        inOrder.verify(nrtmClientDao).deleteObject(updated, 13);
+        verify(nrtmClientDao, never()).objectExistsWithSerial(anyInt(), anyInt());
+        verify(rpslObjectUpdateDao, never()).lookupObject(any(), any());
+    }
+
+    @Test
+    public void batch_skips_applied_serials() {
+        final RpslObjectUpdateInfo mntnerInfo = new RpslObjectUpdateInfo(3, 2, ObjectType.MNTNER, "TEST-MNT");
+        when(nrtmClientDao.lookupObjects(eq(ObjectType.MNTNER), any())).thenReturn(ImmutableMap.of(ciString("TEST-MNT"), mntnerInfo));
+        when(nrtmClientDao.getObjectIdsBySerial(10, 11)).thenReturn(ImmutableMap.of(10, 3));
+
+        subject.update(Lists.newArrayList(
+                new NrtmClientFactory.SerialUpdate(Operation.UPDATE, 10, mntner),
+                new NrtmClientFactory.SerialUpdate(Operation.UPDATE, 11, mntner)));
+
+        verify(nrtmClientDao, never()).updateObject(mntner, mntnerInfo, 10);
+        verify(nrtmClientDao).updateObject(mntner, mntnerInfo, 11);
+    }
+
+    @Test
+    public void batch_delete_of_missing_object() {
+        when(nrtmClientDao.lookupObjects(eq(ObjectType.MNTNER), any())).thenReturn(Collections.emptyMap());
+        when(nrtmClientDao.getObjectIdsBySerial(10, 10)).thenReturn(Collections.emptyMap());
+
+        Assertions.assertThrows(IllegalStateException.class, () ->
+                subject.update(Lists.newArrayList(new NrtmClientFactory.SerialUpdate(Operation.DELETE, 10, mntner))));
+    }
+}
@@ -1,7 +1,10 @@
 package net.ripe.db.whois.nrtm.dao.jdbc;
 
 
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
 import net.ripe.db.whois.common.dao.RpslObjectUpdateInfo;
+import net.ripe.db.whois.common.domain.CIString;
 import net.ripe.db.whois.common.domain.serials.Operation;
 import net.ripe.db.whois.common.rpsl.ObjectType;
 import net.ripe.db.whois.common.rpsl.RpslObject;
@@ -14,6 +17,8 @@ import org.springframework.test.context.ContextConfiguration;
 
 import java.util.Map;
 
+import static net.ripe.db.whois.common.domain.CIString.ciString;
+import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.not;
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -70,6 +75,29 @@ public class JdbcNrtmClientDaoIntegrationTest extends AbstractDaoIntegrationTest
         assertThat(subject.objectExistsWithSerial(2462345, object.getObjectId()), is(true));
     }
 
+    @Test
+    public void lookupObjects() {
+        final RpslObject first = databaseHelper.addObject(RpslObject.parse("mntner: FIRST-MNT"));
+        final RpslObject second = databaseHelper.addObject(RpslObject.parse("mntner: SECOND-MNT"));
+
+        final Map<CIString, RpslObjectUpdateInfo> objects = subject.lookupObjects(ObjectType.MNTNER, Lists.newArrayList("first-mnt", "SECOND-MNT", "THIRD-MNT"));
+
+        assertThat(objects.keySet(), containsInAnyOrder(ciString("FIRST-MNT"), ciString("SECOND-MNT")));
+        assertThat(objects.get(ciString("FIRST-MNT")).getObjectId(), is(first.getObjectId()));
+        assertThat(objects.get(ciString("SECOND-MNT")).getObjectId(), is(second.getObjectId()));
+    }
+
+    @Test
+    public void getObjectIdsBySerial() {
+        final RpslObject object = databaseHelper.addObject(RpslObject.parse("aut-num: AS2345"));
+        databaseHelper.getWhoisTemplate().update("" +
+                "INSERT INTO serials(serial_id, object_id, sequence_id, atlast, operation) " +
+                "VALUES (2462345, ?, 2, 1, ?)",
+                object.getObjectId(), Operation.UPDATE.getCode());
+
+        assertThat(subject.getObjectIdsBySerial(2462340, 2462350), is(ImmutableMap.of(2462345, object.getObjectId())));
+    }
+
     @Test
     public void deleteObject() {
         final RpslObject object = databaseHelper.updateObject(databaseHelper.addObject(RpslObject.parse("person: Test Person\nnic-hdl: TP1-TEST")));
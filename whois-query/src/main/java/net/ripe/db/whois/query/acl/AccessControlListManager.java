@@ -1,5 +1,7 @@
 package net.ripe.db.whois.query.acl;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import net.ripe.db.whois.common.DateTimeProvider;
 import net.ripe.db.whois.common.domain.BlockEvent;
 import net.ripe.db.whois.common.domain.IpRanges;
@@ -26,12 +28,16 @@ public class AccessControlListManager {
 
     static final int IPV6_NETMASK = 64;
 
+    private static final int MASKED_ADDRESS_CACHE_SIZE = 10_000;
+
     private final DateTimeProvider dateTimeProvider;
     private final IpResourceConfiguration resourceConfiguration;
     private final AccessControlListDao accessControlListDao;
     private final PersonalObjectAccounting personalObjectAccounting;
     private final IpRanges ipRanges;
 
+    private final Cache<InetAddress, InetAddress> maskedAddresses = CacheBuilder.newBuilder().maximumSize(MASKED_ADDRESS_CACHE_SIZE).build();
+
     @Autowired
     public AccessControlListManager(final DateTimeProvider dateTimeProvider,
                                     final IpResourceConfiguration resourceConfiguration,
@@ -56,19 +62,19 @@ public class AccessControlListManager {
     }
 
     public boolean isDenied(final InetAddress remoteAddress) {
-        return resourceConfiguration.isDenied(remoteAddress);
+        return resourceConfiguration.getDecision(remoteAddress).isDenied();
     }
 
     public boolean isAllowedToProxy(final InetAddress remoteAddress) {
-        return resourceConfiguration.isProxy(remoteAddress);
+        return resourceConfiguration.getDecision(remoteAddress).isProxy();
     }
 
     int getPersonalDataLimit(final InetAddress remoteAddress) {
-        return resourceConfiguration.getLimit(remoteAddress);
+        return resourceConfiguration.getDecision(remoteAddress).getLimit();
     }
 
     public boolean isUnlimited(final InetAddress remoteAddress) {
-        return getPersonalDataLimit(remoteAddress) < 0;
+        return resourceConfiguration.getDecision(remoteAddress).isUnlimited();
     }
 
     public boolean canQueryPersonalObjects(final InetAddress remoteAddress) {
@@ -80,15 +86,15 @@ public class AccessControlListManager {
     }
 
     public int getPersonalObjects(final InetAddress remoteAddress) {
-        if (isUnlimited(remoteAddress)) {
+        final IpResourceConfiguration.AclDecision decision = resourceConfiguration.getDecision(remoteAddress);
+        if (decision.isUnlimited()) {
             return Integer.MAX_VALUE;
         }
 
-        final InetAddress maskedAddress = mask(remoteAddress, IPV6_NETMASK);
+        final InetAddress maskedAddress = getMaskedAddress(remoteAddress);
         final int queried = personalObjectAccounting.getQueriedPersonalObjects(maskedAddress);
-        final int personalDataLimit = getPersonalDataLimit(remoteAddress);
 
-        return personalDataLimit - queried;
+        return decision.getLimit() - queried;
     }
 
     /**
@@ -103,7 +109,7 @@ public class AccessControlListManager {
             return;
         }
 
-        final InetAddress maskedAddress = mask(remoteAddress, IPV6_NETMASK);
+        final InetAddress maskedAddress = getMaskedAddress(remoteAddress);
         final int remaining = limit - personalObjectAccounting.accountPersonalObject(maskedAddress, amount);
         if (remaining < 0) {
             blockTemporary(maskedAddress, limit);
@@ -120,6 +126,20 @@ public class AccessControlListManager {
         accessControlListDao.saveAclEvent(maskedAddress, dateTimeProvider.getCurrentDate(), limit, BlockEvent.Type.BLOCK_TEMPORARY);
     }
 
+    private InetAddress getMaskedAddress(final InetAddress remoteAddress) {
+        if (!(remoteAddress instanceof Inet6Address)) {
+            return remoteAddress;
+        }
+
+        final InetAddress cached = maskedAddresses.getIfPresent(remoteAddress);
+        if (cached != null) {
+            return cached;
+        }
+
+        final InetAddress maskedAddress = mask(remoteAddress, IPV6_NETMASK);
+        maskedAddresses.put(remoteAddress, maskedAddress);
+        return maskedAddress;
+    }
 
     public static InetAddress mask(final InetAddress address, final int mask) {
         if (address instanceof Inet6Address) {
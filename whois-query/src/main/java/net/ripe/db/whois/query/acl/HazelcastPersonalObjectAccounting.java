@@ -1,17 +1,29 @@
 package net.ripe.db.whois.query.acl;
 
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.hazelcast.core.HazelcastInstance;
 import com.hazelcast.core.OperationTimeoutException;
+import com.hazelcast.map.EntryProcessor;
 import com.hazelcast.map.IMap;
 import net.ripe.db.whois.common.profiles.DeployedProfile;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Primary;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
 import java.net.InetAddress;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @DeployedProfile
 @Primary
@@ -19,19 +31,32 @@ import java.util.concurrent.TimeUnit;
 public class HazelcastPersonalObjectAccounting implements PersonalObjectAccounting {
     private static final Logger LOGGER = LoggerFactory.getLogger(HazelcastPersonalObjectAccounting.class);
 
+    private static final int SYNCHRONISE_IN_SECONDS = 1;
+
     private final IMap<InetAddress, Integer> counterMap;
     private final HazelcastInstance hazelcastInstance;
+    private final boolean localEnabled;
+
+    // node-local counters, only used when local accounting is enabled
+    private final ConcurrentMap<InetAddress, LocalCounter> localCounters = Maps.newConcurrentMap();
 
     @Autowired
-    public HazelcastPersonalObjectAccounting(final HazelcastInstance hazelcastInstance) {
+    public HazelcastPersonalObjectAccounting(final HazelcastInstance hazelcastInstance,
+                                             @Value("${personal.accounting.local.enabled:false}") final boolean localEnabled) {
         this.hazelcastInstance = hazelcastInstance;
         this.counterMap =  hazelcastInstance.getMap("queriedPersonal");
+        this.localEnabled = localEnabled;
 
         LOGGER.info("hazelcast instances {} members: {} " , this.hazelcastInstance.getName() , this.hazelcastInstance.getCluster().getMembers());
     }
 
     @Override
     public int getQueriedPersonalObjects(final InetAddress remoteAddress) {
+        if (localEnabled) {
+            final LocalCounter localCounter = localCounters.get(remoteAddress);
+            return (localCounter == null) ? 0 : localCounter.getCount();
+        }
+
         Integer count = null;
         try {
             count = counterMap.get(remoteAddress);
@@ -49,6 +74,10 @@ public class HazelcastPersonalObjectAccounting implements PersonalObjectAccounti
 
     @Override
     public int accountPersonalObject(final InetAddress remoteAddress, final int amount) {
+        if (localEnabled) {
+            return localCounters.computeIfAbsent(remoteAddress, address -> new LocalCounter()).add(amount);
+        }
+
         boolean isLocked = false;
 
         try {
@@ -87,5 +116,140 @@ public class HazelcastPersonalObjectAccounting implements PersonalObjectAccounti
     public void resetAccounting() {
         LOGGER.debug("Reset person object counters ({} entries)", counterMap.size());
         counterMap.clear();
+        localCounters.clear();
+    }
+
+    /**
+     * Push the locally accounted amounts to the cluster, and read back the cluster wide counts.
+     *
+     * Until then a node only sees its own queries since the last run, so a remote address can overshoot its limit by
+     * what it queried on the other nodes in one interval. An address that is no longer in the cluster map (because the
+     * accounting was reset on another node) and has nothing pending is dropped.
+     *
+     * Each push is settled on its own: a delta is taken out of the pending amount when it is submitted, and only put
+     * back if that push fails, so a failure for one address never makes the deltas of the others be pushed again.
+     */
+    @Scheduled(fixedDelay = SYNCHRONISE_IN_SECONDS * 1000)
+    public void synchronise() {
+        if (!localEnabled || localCounters.isEmpty()) {
+            return;
+        }
+
+        final List<CompletableFuture<Integer>> pushed = Lists.newArrayList();
+        final Set<InetAddress> unchanged = Sets.newHashSet();
+
+        for (final Map.Entry<InetAddress, LocalCounter> entry : localCounters.entrySet()) {
+            final LocalCounter localCounter = entry.getValue();
+            final int delta = localCounter.push();
+            if (delta == 0) {
+                unchanged.add(entry.getKey());
+                continue;
+            }
+
+            try {
+                pushed.add(counterMap.submitToKey(entry.getKey(), new AddProcessor(delta))
+                        .toCompletableFuture()
+                        .whenComplete((clusterCount, throwable) -> {
+                            if (throwable == null) {
+                                localCounter.pushed(clusterCount, delta);
+                            } else {
+                                localCounter.failed(delta);
+                            }
+                        }));
+            } catch (Exception e) {
+                localCounter.failed(delta);
+                LOGGER.info("Unable to push personal object accounting. Threw {}: {}", e.getClass().getName(), e.getMessage());
+            }
+        }
+
+        try {
+            CompletableFuture.allOf(pushed.toArray(new CompletableFuture[0])).get(SYNCHRONISE_IN_SECONDS * 3, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            // failed pushes are pending again, those still running are settled when they complete
+            LOGGER.info("Unable to push personal object accounting. Threw {}: {}", e.getClass().getName(), e.getMessage());
+        }
+
+        if (unchanged.isEmpty()) {
+            return;
+        }
+
+        try {
+            final Map<InetAddress, Integer> clusterCounts = counterMap.getAll(unchanged);
+            for (final InetAddress address : unchanged) {
+                final LocalCounter localCounter = localCounters.get(address);
+                if (localCounter == null) {
+                    continue;
+                }
+
+                final Integer clusterCount = clusterCounts.get(address);
+                if (clusterCount == null) {
+                    if (localCounter.isSettled()) {
+                        localCounters.remove(address, localCounter);
+                    }
+                } else {
+                    localCounter.clusterCount = clusterCount;
+                }
+            }
+        } catch (Exception e) {
+            LOGGER.info("Unable to synchronise personal object accounting. Threw {}: {}", e.getClass().getName(), e.getMessage());
+        }
+    }
+
+    private static final class LocalCounter {
+        // last known count in the cluster, including what this node pushed
+        private volatile int clusterCount;
+        // accounted on this node but not pushed yet
+        private final AtomicInteger pending = new AtomicInteger();
+        // pushed to the cluster but not confirmed yet
+        private final AtomicInteger inFlight = new AtomicInteger();
+
+        int add(final int amount) {
+            return clusterCount + inFlight.get() + pending.addAndGet(amount);
+        }
+
+        int getCount() {
+            return clusterCount + inFlight.get() + pending.get();
+        }
+
+        boolean isSettled() {
+            return pending.get() == 0 && inFlight.get() == 0;
+        }
+
+        // move the pending amount to in flight, a concurrent reader may briefly count it twice but never misses it
+        int push() {
+            final int delta = pending.get();
+            if (delta != 0) {
+                inFlight.addAndGet(delta);
+                pending.addAndGet(-delta);
+            }
+            return delta;
+        }
+
+        // update the cluster count before the in flight amount, for the same reason
+        void pushed(final int clusterCount, final int delta) {
+            this.clusterCount = clusterCount;
+            inFlight.addAndGet(-delta);
+        }
+
+        void failed(final int delta) {
+            pending.addAndGet(delta);
+            inFlight.addAndGet(-delta);
+        }
+    }
+
+    static final class AddProcessor implements EntryProcessor<InetAddress, Integer, Integer> {
+        private final int amount;
+
+        AddProcessor(final int amount) {
+            this.amount = amount;
+        }
+
+        @Override
+        public Integer process(final Map.Entry<InetAddress, Integer> entry) {
+            final Integer count = entry.getValue();
+            final int result = (count == null) ? amount : (count + amount);
+            entry.setValue(result);
+            return result;
+        }
     }
 }
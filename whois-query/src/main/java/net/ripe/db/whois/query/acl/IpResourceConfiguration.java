@@ -1,5 +1,8 @@
 package net.ripe.db.whois.query.acl;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Sets;
 import net.ripe.db.whois.common.domain.IpResourceEntry;
 import net.ripe.db.whois.common.domain.IpResourceTree;
 import net.ripe.db.whois.common.ip.IpInterval;
@@ -12,6 +15,7 @@ import org.springframework.stereotype.Component;
 import javax.annotation.PostConstruct;
 import java.net.InetAddress;
 import java.util.List;
+import java.util.Set;
 
 @Component
 public class IpResourceConfiguration {
@@ -22,66 +26,91 @@ public class IpResourceConfiguration {
 
     private static final int DEFAULT_LIMIT = 5000;
 
+    private static final int DECISION_CACHE_SIZE = 10_000;
+
     private final Loader loader;
 
-    private IpResourceTree<Boolean> denied;
-    private IpResourceTree<Boolean> proxy;
-    private IpResourceTree<Integer> limit;
-    private IpResourceTree<Boolean> unlimitedConnections;
+    private volatile Decisions decisions = new Decisions(new IpResourceTree<>());
 
     @Autowired
     public IpResourceConfiguration(final Loader loader) {
         this.loader = loader;
     }
 
+    /**
+     * @return the denied, proxy, limit and unlimited connections configuration of the address, from a single lookup.
+     */
+    public AclDecision getDecision(final InetAddress address) {
+        return decisions.get(address);
+    }
+
+    public AclDecision getDecision(final IpInterval address) {
+        return decisions.get(address);
+    }
+
     public boolean isDenied(final InetAddress address) {
-        final Boolean result = denied.getValue(IpInterval.asIpInterval(address));
-        return result != null && result;
+        return getDecision(address).isDenied();
     }
 
     public boolean isDenied(final IpInterval address) {
-        final Boolean result = denied.getValue(address);
-        return result != null && result;
+        return getDecision(address).isDenied();
     }
 
     public boolean isProxy(final InetAddress address) {
-        final Boolean result = proxy.getValue(IpInterval.asIpInterval(address));
-        return result != null && result;
+        return getDecision(address).isProxy();
     }
 
     public boolean isProxy(final IpInterval address) {
-        final Boolean result = proxy.getValue(address);
-        return result != null && result;
+        return getDecision(address).isProxy();
     }
 
     public int getLimit(final InetAddress address) {
-        final Integer result = limit.getValue(IpInterval.asIpInterval(address));
-        return result == null ? DEFAULT_LIMIT : result;
+        return getDecision(address).getLimit();
     }
 
     public int getLimit(final IpInterval address) {
-        final Integer result = limit.getValue(address);
-        return result == null ? DEFAULT_LIMIT : result;
+        return getDecision(address).getLimit();
     }
 
     public boolean isUnlimitedConnections(final InetAddress address) {
-        final Boolean result = unlimitedConnections.getValue(IpInterval.asIpInterval(address));
-        return result != null && result;
+        return getDecision(address).isUnlimitedConnections();
     }
 
     public boolean isUnlimitedConnections(final IpInterval address) {
-        final Boolean result = unlimitedConnections.getValue(address);
-        return result != null && result;
+        return getDecision(address).isUnlimitedConnections();
     }
 
     @PostConstruct
     @Scheduled(fixedDelay = TREE_UPDATE_IN_SECONDS * 1000)
     public synchronized void reload() {
         try {
-            denied = refreshEntries(loader.loadIpDenied());
-            proxy = refreshEntries(loader.loadIpProxy());
-            limit = refreshEntries(loader.loadIpLimit());
-            unlimitedConnections = refreshEntries(loader.loadUnlimitedConnections());
+            final List<IpResourceEntry<Boolean>> deniedEntries = loader.loadIpDenied();
+            final List<IpResourceEntry<Boolean>> proxyEntries = loader.loadIpProxy();
+            final List<IpResourceEntry<Integer>> limitEntries = loader.loadIpLimit();
+            final List<IpResourceEntry<Boolean>> unlimitedConnectionsEntries = loader.loadUnlimitedConnections();
+
+            final IpResourceTree<Boolean> denied = refreshEntries(deniedEntries);
+            final IpResourceTree<Boolean> proxy = refreshEntries(proxyEntries);
+            final IpResourceTree<Integer> limit = refreshEntries(limitEntries);
+            final IpResourceTree<Boolean> unlimitedConnections = refreshEntries(unlimitedConnectionsEntries);
+
+            // every address gets the decision of the most specific prefix in any of the lists containing it
+            final Set<IpInterval<?>> prefixes = Sets.newHashSet();
+            addPrefixes(prefixes, deniedEntries);
+            addPrefixes(prefixes, proxyEntries);
+            addPrefixes(prefixes, limitEntries);
+            addPrefixes(prefixes, unlimitedConnectionsEntries);
+
+            final IpResourceTree<AclDecision> decisionTree = new IpResourceTree<>();
+            for (final IpInterval<?> prefix : prefixes) {
+                decisionTree.add(prefix, new AclDecision(
+                        isTrue(denied.getValue(prefix)),
+                        isTrue(proxy.getValue(prefix)),
+                        getLimit(limit.getValue(prefix)),
+                        isTrue(unlimitedConnections.getValue(prefix))));
+            }
+
+            decisions = new Decisions(decisionTree);
         } catch (RuntimeException e) {
             LOGGER.warn("Refresh failed due to {}: {}", e.getClass().getName(), e.getMessage());
         }
@@ -97,6 +126,85 @@ public class IpResourceConfiguration {
         return temp;
     }
 
+    private static void addPrefixes(final Set<IpInterval<?>> prefixes, final List<? extends IpResourceEntry<?>> entries) {
+        for (final IpResourceEntry<?> entry : entries) {
+            prefixes.add(entry.getIpInterval());
+        }
+    }
+
+    private static boolean isTrue(final Boolean value) {
+        return value != null && value;
+    }
+
+    private static int getLimit(final Integer value) {
+        return value == null ? DEFAULT_LIMIT : value;
+    }
+
+    /**
+     * The ACL configuration of an address.
+     */
+    public static final class AclDecision {
+        static final AclDecision DEFAULT = new AclDecision(false, false, DEFAULT_LIMIT, false);
+
+        private final boolean denied;
+        private final boolean proxy;
+        private final int limit;
+        private final boolean unlimitedConnections;
+
+        AclDecision(final boolean denied, final boolean proxy, final int limit, final boolean unlimitedConnections) {
+            this.denied = denied;
+            this.proxy = proxy;
+            this.limit = limit;
+            this.unlimitedConnections = unlimitedConnections;
+        }
+
+        public boolean isDenied() {
+            return denied;
+        }
+
+        public boolean isProxy() {
+            return proxy;
+        }
+
+        public int getLimit() {
+            return limit;
+        }
+
+        public boolean isUnlimited() {
+            return limit < 0;
+        }
+
+        public boolean isUnlimitedConnections() {
+            return unlimitedConnections;
+        }
+    }
+
+    // the decision tree of one reload, with the decisions of recently seen addresses
+    private static final class Decisions {
+        private final IpResourceTree<AclDecision> tree;
+        private final Cache<InetAddress, AclDecision> cache = CacheBuilder.newBuilder().maximumSize(DECISION_CACHE_SIZE).build();
+
+        private Decisions(final IpResourceTree<AclDecision> tree) {
+            this.tree = tree;
+        }
+
+        AclDecision get(final InetAddress address) {
+            final AclDecision cached = cache.getIfPresent(address);
+            if (cached != null) {
+                return cached;
+            }
+
+            final AclDecision decision = get(IpInterval.asIpInterval(address));
+            cache.put(address, decision);
+            return decision;
+        }
+
+        AclDecision get(final IpInterval<?> address) {
+            final AclDecision decision = tree.getValue(address);
+            return decision == null ? AclDecision.DEFAULT : decision;
+        }
+    }
+
     /**
      * Implement the Loader interface to load the values into the IpResourceConfiguration.
      */
@@ -0,0 +1,107 @@
+package net.ripe.db.whois.query.executor;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import net.ripe.db.whois.common.source.SourceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Nullable;
+import javax.annotation.PreDestroy;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.function.Supplier;
+
+/**
+ * Runs the independent index lookups of a single query concurrently.
+ * <p/>
+ * A query uses at most whois.query.lookup.concurrency threads (including the query thread itself), each running its
+ * share of the lookups one after another. Lookups run on the query thread if whois.query.lookup.threads is not set.
+ */
+@Component
+class IndexLookupFanout {
+    private static final Logger LOGGER = LoggerFactory.getLogger(IndexLookupFanout.class);
+
+    private final SourceContext sourceContext;
+    private final int concurrency;
+
+    @Nullable private final ThreadPoolExecutor executorService;
+
+    @Autowired
+    IndexLookupFanout(final SourceContext sourceContext,
+                      @Value("${whois.query.lookup.threads:0}") final int threads,
+                      @Value("${whois.query.lookup.concurrency:4}") final int concurrency) {
+        this.sourceContext = sourceContext;
+        this.concurrency = concurrency;
+
+        if (threads > 0 && concurrency > 1) {
+            LOGGER.info("Running index lookups on {} threads ({} per query)", threads, concurrency);
+            this.executorService = SourceAwareExecutors.newBoundedExecutor("IndexLookup", threads, threads);
+        } else {
+            this.executorService = null;
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (executorService != null) {
+            executorService.shutdownNow();
+        }
+    }
+
+    /**
+     * @return the result of every lookup, in the same order as the lookups.
+     */
+    public <T> List<T> getAll(final List<Supplier<T>> lookups) {
+        // every lane sets its own elements, and the futures publish them to the query thread
+        final List<T> results = Lists.newArrayList(Collections.<T>nCopies(lookups.size(), null));
+
+        final int lanes = executorService == null ? 1 : Math.min(concurrency, lookups.size());
+        if (lanes <= 1) {
+            runLane(lookups, results, 0, 1);
+            return results;
+        }
+
+        final SourceAwareExecutors.SourceBinding sourceBinding = SourceAwareExecutors.bindCurrentSource(sourceContext);
+        final List<Future<?>> futures = Lists.newArrayListWithExpectedSize(lanes - 1);
+        boolean completed = false;
+        try {
+            for (int lane = 1; lane < lanes; lane++) {
+                final int first = lane;
+                futures.add(executorService.submit(() -> sourceBinding.run(() -> runLane(lookups, results, first, lanes))));
+            }
+
+            runLane(lookups, results, 0, lanes);
+
+            for (final Future<?> future : futures) {
+                future.get();
+            }
+
+            completed = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted during index lookup", e);
+        } catch (ExecutionException e) {
+            Throwables.throwIfUnchecked(e.getCause());
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            if (!completed) {
+                futures.forEach(future -> future.cancel(true));
+            }
+        }
+
+        return results;
+    }
+
+    private static <T> void runLane(final List<Supplier<T>> lookups, final List<T> results, final int first, final int step) {
+        for (int i = first; i < lookups.size(); i += step) {
+            results.set(i, lookups.get(i).get());
+        }
+    }
+}
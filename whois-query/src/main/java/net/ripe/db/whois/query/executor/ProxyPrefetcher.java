@@ -0,0 +1,129 @@
+package net.ripe.db.whois.query.executor;
+
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import net.ripe.db.whois.common.collect.CollectionHelper;
+import net.ripe.db.whois.common.collect.PrefetchingProxyIterable;
+import net.ripe.db.whois.common.collect.ProxyLoader;
+import net.ripe.db.whois.common.domain.Identifiable;
+import net.ripe.db.whois.common.domain.ResponseObject;
+import net.ripe.db.whois.common.rpsl.RpslObject;
+import net.ripe.db.whois.common.source.SourceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Nullable;
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads the objects of a search result on a bounded pool, ahead of the query thread writing the response.
+ * <p/>
+ * Prefetching is disabled unless whois.query.prefetch.threads is set; results are then loaded on the query thread.
+ * If the pool is saturated, batches are loaded on the query thread as well. Only results created within an open
+ * {@link Scope} are prefetched, so the per-thread state never outlives the query.
+ */
+@Component
+class ProxyPrefetcher {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProxyPrefetcher.class);
+
+    private static final int MIN_PREFETCH = 100;
+
+    private final SourceContext sourceContext;
+    private final int depth;
+    private final int maxPrefetch;
+    private final long targetLatencyNanos;
+
+    @Nullable private final ThreadPoolExecutor executorService;
+
+    private final ThreadLocal<Scope> currentScope = new ThreadLocal<>();
+
+    @Autowired
+    ProxyPrefetcher(final SourceContext sourceContext,
+                    @Value("${whois.query.prefetch.threads:0}") final int threads,
+                    @Value("${whois.query.prefetch.depth:2}") final int depth,
+                    @Value("${whois.query.prefetch.max.batch:1000}") final int maxPrefetch,
+                    @Value("${whois.query.prefetch.target.latency.ms:50}") final long targetLatencyMillis) {
+        this.sourceContext = sourceContext;
+        this.depth = depth;
+        this.maxPrefetch = Math.max(MIN_PREFETCH, maxPrefetch);
+        this.targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(targetLatencyMillis);
+
+        if (threads > 0) {
+            LOGGER.info("Prefetching query results on {} threads (depth {})", threads, depth);
+            this.executorService = SourceAwareExecutors.newBoundedExecutor("ProxyPrefetch", threads, threads * depth);
+        } else {
+            this.executorService = null;
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (executorService != null) {
+            executorService.shutdownNow();
+        }
+    }
+
+    /**
+     * Prefetch the results created by the current thread until the returned scope is closed.
+     * Closing the scope cancels prefetching, e.g. when the client has disconnected.
+     */
+    public Scope open() {
+        final Scope scope = new Scope(currentScope.get());
+        currentScope.set(scope);
+        return scope;
+    }
+
+    public Iterable<ResponseObject> iterateProxy(final ProxyLoader<Identifiable, RpslObject> rpslObjectLoader, final Iterable<? extends Identifiable> identifiables) {
+        final Scope scope = currentScope.get();
+        if (executorService == null || scope == null) {
+            return CollectionHelper.iterateProxy(rpslObjectLoader, identifiables);
+        }
+
+        final PrefetchingProxyIterable<Identifiable, RpslObject> result = new PrefetchingProxyIterable<>(
+                identifiables,
+                sourceAware(rpslObjectLoader),
+                executorService,
+                depth,
+                MIN_PREFETCH,
+                maxPrefetch,
+                targetLatencyNanos);
+
+        scope.iterables.add(result);
+        return Iterables.unmodifiableIterable(result);
+    }
+
+    private ProxyLoader<Identifiable, RpslObject> sourceAware(final ProxyLoader<Identifiable, RpslObject> rpslObjectLoader) {
+        final SourceAwareExecutors.SourceBinding sourceBinding = SourceAwareExecutors.bindCurrentSource(sourceContext);
+        return (proxy, result) -> sourceBinding.run(() -> rpslObjectLoader.load(proxy, result));
+    }
+
+    final class Scope implements AutoCloseable {
+        @Nullable private final Scope parent;
+        private final List<PrefetchingProxyIterable<?, ?>> iterables = Lists.newArrayList();
+
+        private Scope(@Nullable final Scope parent) {
+            this.parent = parent;
+        }
+
+        @Override
+        public void close() {
+            try {
+                for (final PrefetchingProxyIterable<?, ?> iterable : iterables) {
+                    iterable.cancel();
+                }
+            } finally {
+                if (parent == null) {
+                    currentScope.remove();
+                } else {
+                    currentScope.set(parent);
+                }
+            }
+        }
+    }
+}
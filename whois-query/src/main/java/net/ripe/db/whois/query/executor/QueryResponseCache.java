@@ -0,0 +1,276 @@
+package net.ripe.db.whois.query.executor;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalListener;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import net.ripe.db.whois.common.domain.ResponseObject;
+import net.ripe.db.whois.common.rpsl.RpslAttribute;
+import net.ripe.db.whois.common.rpsl.RpslObject;
+import net.ripe.db.whois.common.source.Source;
+import net.ripe.db.whois.common.source.SourceContext;
+import net.ripe.db.whois.query.QueryFlag;
+import net.ripe.db.whois.query.domain.MessageObject;
+import net.ripe.db.whois.query.query.Query;
+import org.apache.commons.collections.CollectionUtils;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.CheckForNull;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of decorated search responses, so repeated identical queries are not searched, grouped, filtered and
+ * dummified again.
+ * <p/>
+ * Responses are cached per normalised query, trusted status and origin, and are dropped when any of the sources they
+ * were read from advances its serials, or after whois.query.cache.ttl seconds. Queries authenticated with passwords or
+ * an SSO token, and paged queries, are never cached. Disabled unless whois.query.cache.size (in estimated bytes of
+ * the responses) is set.
+ * <p/>
+ * Cached responses are replayed through the query handler as usual, so personal objects are still accounted for.
+ */
+@Component
+public class QueryResponseCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(QueryResponseCache.class);
+
+    public static final int UPDATE_IN_SECONDS = 1;
+
+    // larger responses are streamed rather than held in memory
+    static final int MAX_RESPONSE_OBJECTS = 250;
+
+    // estimated bytes of a response object, without serialising it: attribute keys are padded to 16 characters
+    private static final int ATTRIBUTE_KEY_LENGTH = 16;
+    private static final int MESSAGE_LENGTH = 80;
+
+    // flags that do not change the response
+    private static final Set<QueryFlag> IGNORED_FLAGS = Sets.immutableEnumSet(QueryFlag.CLIENT, QueryFlag.PERSISTENT_CONNECTION);
+
+    private final SourceContext sourceContext;
+    private final boolean enabled;
+
+    private final Cache<Key, Response> responses;
+    private final AtomicLong weight = new AtomicLong();
+    private final Map<Source, Long> lastSerials = Maps.newConcurrentMap();
+    private volatile long generation;
+
+    @Autowired
+    public QueryResponseCache(final SourceContext sourceContext,
+                              @Value("${whois.query.cache.size:0}") final long maximumSize,
+                              @Value("${whois.query.cache.ttl:10}") final long ttlSeconds) {
+        this.sourceContext = sourceContext;
+        this.enabled = maximumSize > 0;
+        this.responses = CacheBuilder.newBuilder()
+                .maximumWeight(Math.max(0, maximumSize))
+                .weigher((Key key, Response response) -> response.weight)
+                .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                .removalListener((RemovalListener<Key, Response>) notification -> weight.addAndGet(-notification.getValue().weight))
+                .recordStats()
+                .build();
+
+        if (enabled) {
+            LOGGER.info("Caching up to {} bytes of query responses for {} seconds", maximumSize, ttlSeconds);
+        }
+    }
+
+    /**
+     * @return the cache key of the query, or null if its response is not to be cached.
+     */
+    @CheckForNull
+    public Key getKey(final Query query) {
+        if (!enabled || CollectionUtils.isNotEmpty(query.getPasswords()) || StringUtils.isNotBlank(query.getSsoToken()) || query.getPaging() != null) {
+            return null;
+        }
+
+        final StringBuilder normalised = new StringBuilder();
+        for (final QueryFlag queryFlag : QueryFlag.values()) {
+            if (!IGNORED_FLAGS.contains(queryFlag) && query.hasOption(queryFlag)) {
+                normalised.append(queryFlag.getName()).append(Sets.newTreeSet(query.getOptionValues(queryFlag))).append(' ');
+            }
+        }
+        normalised.append(query.getSearchValue());
+
+        return new Key(normalised.toString(), query.isTrusted(), query.via(Query.Origin.REST), query.isMatchPrimaryKeyOnly());
+    }
+
+    @CheckForNull
+    public Response getIfPresent(final Key key) {
+        return responses.getIfPresent(key);
+    }
+
+    /**
+     * @return the generation, to be read before searching for a response that is to be cached.
+     */
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Cache a response, provided no responses were invalidated since the given generation.
+     */
+    public synchronized void put(final long expectedGeneration, final Key key, final Response response) {
+        if (generation != expectedGeneration) {
+            return;
+        }
+
+        // the first response read from a source is not cached, as the source may have changed while it was read
+        boolean followed = true;
+        for (final Source source : response.getSources()) {
+            if (!lastSerials.containsKey(source)) {
+                lastSerials.put(source, getLastSerial(source));
+                followed = false;
+            }
+        }
+
+        if (!followed) {
+            return;
+        }
+
+        weight.addAndGet(response.weight);
+        responses.put(key, response);
+    }
+
+    public CacheStats getStats() {
+        return responses.stats();
+    }
+
+    public long getSize() {
+        return responses.size();
+    }
+
+    public long getWeight() {
+        return weight.get();
+    }
+
+    public synchronized void invalidateAll() {
+        generation++;
+        responses.invalidateAll();
+    }
+
+    @Scheduled(fixedDelay = UPDATE_IN_SECONDS * 1000)
+    public void update() {
+        responses.cleanUp();
+
+        for (final Map.Entry<Source, Long> entry : lastSerials.entrySet()) {
+            final Source source = entry.getKey();
+            try {
+                final long lastSerial = getLastSerial(source);
+                if (lastSerial != entry.getValue()) {
+                    invalidate(source);
+                    entry.setValue(lastSerial);
+                }
+            } catch (RuntimeException e) {
+                LOGGER.warn("Unable to update query response cache for {} due to {}", source, e.getMessage());
+            }
+        }
+    }
+
+    private synchronized void invalidate(final Source source) {
+        generation++;
+        responses.asMap().values().removeIf(response -> response.getSources().contains(source));
+    }
+
+    static int estimateWeight(final ResponseObject responseObject) {
+        if (responseObject instanceof RpslObject) {
+            int weight = 0;
+            for (final RpslAttribute attribute : ((RpslObject) responseObject).getAttributes()) {
+                weight += ATTRIBUTE_KEY_LENGTH + attribute.getValue().length();
+            }
+            return weight;
+        }
+
+        if (responseObject instanceof MessageObject) {
+            return responseObject.toString().length();
+        }
+
+        return MESSAGE_LENGTH;
+    }
+
+    private long getLastSerial(final Source source) {
+        return sourceContext.getSourceConfiguration(source).getJdbcTemplate().queryForObject("SELECT IFNULL(MAX(serial_id),0) FROM serials", Long.class);
+    }
+
+    public static final class Key {
+        private final String query;
+        private final boolean trusted;
+        private final boolean rest;
+        private final boolean matchPrimaryKeyOnly;
+
+        private Key(final String query, final boolean trusted, final boolean rest, final boolean matchPrimaryKeyOnly) {
+            this.query = query;
+            this.trusted = trusted;
+            this.rest = rest;
+            this.matchPrimaryKeyOnly = matchPrimaryKeyOnly;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            final Key that = (Key) o;
+            return trusted == that.trusted && rest == that.rest && matchPrimaryKeyOnly == that.matchPrimaryKeyOnly && query.equals(that.query);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(query, trusted, rest, matchPrimaryKeyOnly);
+        }
+
+        @Override
+        public String toString() {
+            return query;
+        }
+    }
+
+    /**
+     * The decorated response objects of a query, by the source they were read from.
+     */
+    public static final class Response {
+        private final Map<Source, List<ResponseObject>> responseObjects = Maps.newLinkedHashMap();
+        private int count;
+        private int weight;
+
+        public Set<Source> getSources() {
+            return Collections.unmodifiableSet(responseObjects.keySet());
+        }
+
+        public List<ResponseObject> getResponseObjects(final Source source) {
+            return responseObjects.getOrDefault(source, Collections.emptyList());
+        }
+
+        void addSource(final Source source) {
+            responseObjects.computeIfAbsent(source, key -> Lists.newArrayList());
+        }
+
+        /**
+         * @return false if the response became too large to be cached.
+         */
+        boolean add(final Source source, final ResponseObject responseObject) {
+            if (++count > MAX_RESPONSE_OBJECTS) {
+                return false;
+            }
+
+            responseObjects.computeIfAbsent(source, key -> Lists.newArrayList()).add(responseObject);
+            weight += estimateWeight(responseObject);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package net.ripe.db.whois.query.executor;
+
+import net.ripe.db.whois.common.jmx.JmxBase;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Callable;
+
+@Component
+@ManagedResource(objectName = JmxBase.OBJECT_NAME_BASE + "QueryResponseCache", description = "Whois query response cache")
+public class QueryResponseCacheJmx extends JmxBase {
+    private static final Logger LOGGER = LoggerFactory.getLogger(QueryResponseCacheJmx.class);
+
+    private final QueryResponseCache queryResponseCache;
+
+    @Autowired
+    public QueryResponseCacheJmx(final QueryResponseCache queryResponseCache) {
+        super(LOGGER);
+        this.queryResponseCache = queryResponseCache;
+    }
+
+    @ManagedAttribute(description = "Number of cached responses")
+    public long getSize() {
+        return queryResponseCache.getSize();
+    }
+
+    @ManagedAttribute(description = "Approximate size of the cached responses in bytes")
+    public long getSizeInBytes() {
+        return queryResponseCache.getWeight();
+    }
+
+    @ManagedAttribute(description = "Number of queries answered from the cache")
+    public long getHitCount() {
+        return queryResponseCache.getStats().hitCount();
+    }
+
+    @ManagedAttribute(description = "Number of cacheable queries not found in the cache")
+    public long getMissCount() {
+        return queryResponseCache.getStats().missCount();
+    }
+
+    @ManagedAttribute(description = "Ratio of cacheable queries answered from the cache")
+    public double getHitRate() {
+        return queryResponseCache.getStats().hitRate();
+    }
+
+    @ManagedAttribute(description = "Number of responses evicted because the cache was full")
+    public long getEvictionCount() {
+        return queryResponseCache.getStats().evictionCount();
+    }
+
+    @ManagedOperation(description = "Remove all responses from the cache")
+    public String invalidateAll() {
+        return invokeOperation("Invalidate query response cache", "", new Callable<String>() {
+            @Override
+            public String call() {
+                queryResponseCache.invalidateAll();
+                return "Query response cache invalidated";
+            }
+        });
+    }
+}
@@ -2,8 +2,9 @@ package net.ripe.db.whois.query.executor;
 
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
-import net.ripe.db.whois.common.collect.CollectionHelper;
+import com.google.common.collect.UnmodifiableIterator;
 import net.ripe.db.whois.common.dao.RpslObjectDao;
 import net.ripe.db.whois.common.dao.RpslObjectInfo;
 import net.ripe.db.whois.common.domain.Identifiable;
@@ -30,25 +31,31 @@ import net.ripe.db.whois.query.dao.InetnumDao;
 import net.ripe.db.whois.query.domain.MessageObject;
 import net.ripe.db.whois.query.filter.AttributeFilter;
 import net.ripe.db.whois.query.query.Query;
+import net.ripe.db.whois.query.query.QueryPaging;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.Nullable;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.Supplier;
 
 @Component
 class RpslObjectSearcher {
     private static final Logger LOGGER = LoggerFactory.getLogger(RpslObjectSearcher.class);
     private static final Set<AttributeType> INVERSE_ATTRIBUTE_TYPES = EnumSet.noneOf(AttributeType.class);
     private static final Set<AttributeType> INVERSE_ATTRIBUTE_TYPES_OVERRIDE = EnumSet.of(AttributeType.SPONSORING_ORG);
+    private static final Set<ObjectType> NON_INDEX_LOOKUP_TYPES = EnumSet.of(ObjectType.AS_BLOCK, ObjectType.INETNUM, ObjectType.INET6NUM, ObjectType.DOMAIN, ObjectType.ROUTE, ObjectType.ROUTE6);
 
     static {
         for (final ObjectType objectType : ObjectType.values()) {
@@ -66,6 +73,8 @@ class RpslObjectSearcher {
     private final Ipv4DomainTree ipv4DomainTree;
     private final Ipv6DomainTree ipv6DomainTree;
     private final Set<AttributeFilter> attributeFilters;
+    private final ProxyPrefetcher proxyPrefetcher;
+    private final IndexLookupFanout indexLookupFanout;
 
     @Autowired
     public RpslObjectSearcher(
@@ -78,7 +87,9 @@ class RpslObjectSearcher {
             final Ipv6RouteTree route6Tree,
             final Ipv4DomainTree ipv4DomainTree,
             final Ipv6DomainTree ipv6DomainTree,
-            final Set<AttributeFilter> attributeFilters) {
+            final Set<AttributeFilter> attributeFilters,
+            final ProxyPrefetcher proxyPrefetcher,
+            final IndexLookupFanout indexLookupFanout) {
         this.rpslObjectDao = rpslObjectDao;
         this.inetnumDao = inetnumDao;
         this.inet6numDao = inet6numDao;
@@ -89,6 +100,8 @@ class RpslObjectSearcher {
         this.ipv4DomainTree = ipv4DomainTree;
         this.ipv6DomainTree = ipv6DomainTree;
         this.attributeFilters = attributeFilters;
+        this.proxyPrefetcher = proxyPrefetcher;
+        this.indexLookupFanout = indexLookupFanout;
     }
 
     public Iterable<? extends ResponseObject> search(final Query query, final SourceContext sourceContext) {
@@ -103,8 +116,15 @@ class RpslObjectSearcher {
         } else if (query.isMatchPrimaryKeyOnly()) {
             result = indexLookupDirect(query);
         } else {
-            for (final ObjectType objectType : query.getObjectTypes()) {
-                result = Iterables.concat(result, executeForObjectType(query, objectType));
+            final Iterable<ObjectType> objectTypes = query.getPaging() == null ? query.getObjectTypes() : Iterables.filter(query.getObjectTypes(), objectType -> !query.getPaging().isSkipped(objectType));
+
+            // index lookups for all object types are independent of each other, so run them together
+            final Map<ObjectType, Iterable<ResponseObject>> indexLookupResults = indexLookup(query,
+                    Iterables.filter(objectTypes, objectType -> !NON_INDEX_LOOKUP_TYPES.contains(objectType)));
+
+            for (final ObjectType objectType : objectTypes) {
+                final Iterable<ResponseObject> indexLookupResult = indexLookupResults.get(objectType);
+                result = Iterables.concat(result, indexLookupResult != null ? indexLookupResult : executeForObjectType(query, objectType));
             }
         }
 
@@ -118,7 +138,7 @@ class RpslObjectSearcher {
     private Iterable<? extends ResponseObject> indexLookupDirect(Query query) {
         try {
             ObjectType type = Iterables.getOnlyElement(query.getObjectTypes());
-            return Arrays.asList(rpslObjectDao.getByKey(type, query.getSearchValue()));
+            return page(query, type, Arrays.asList(rpslObjectDao.getByKey(type, query.getSearchValue())));
         } catch (EmptyResultDataAccessException e) {
             return Collections.emptyList();
         }
@@ -129,22 +149,22 @@ class RpslObjectSearcher {
             case AS_BLOCK:
                 return asBlockLookup(query);
             case INETNUM:
-                return query.getIpKeyOrNull() != null ? proxy(ipTreeLookup(ipv4Tree, query.getIpKeyOrNull(), query)) : proxy(inetnumDao.findByNetname(query.getSearchValue()));
+                return query.getIpKeyOrNull() != null ? proxy(query, type, ipTreeLookup(ipv4Tree, query.getIpKeyOrNull(), query)) : proxy(query, type, inetnumDao.findByNetname(query.getSearchValue()));
             case INET6NUM:
-                return query.getIpKeyOrNull() != null ? proxy(ipTreeLookup(ipv6Tree, query.getIpKeyOrNull(), query)) : proxy(inet6numDao.findByNetname(query.getSearchValue()));
+                return query.getIpKeyOrNull() != null ? proxy(query, type, ipTreeLookup(ipv6Tree, query.getIpKeyOrNull(), query)) : proxy(query, type, inet6numDao.findByNetname(query.getSearchValue()));
             case DOMAIN:
                 return domainLookup(query);
             case ROUTE:
-                return routeLookup(route4Tree, query);
+                return routeLookup(route4Tree, query, type);
             case ROUTE6:
-                return routeLookup(route6Tree, query);
+                return routeLookup(route6Tree, query, type);
             default:
-                return indexLookup(query, type);
+                return indexLookup(query, Collections.singleton(type)).get(type);
         }
     }
 
     @SuppressWarnings("unchecked")
-    private Iterable<ResponseObject> routeLookup(IpTree routeTree, Query query) {
+    private Iterable<ResponseObject> routeLookup(IpTree routeTree, Query query, ObjectType type) {
         final String origin = query.getRouteOrigin();
         if (origin != null) {
             final List newEntries = new ArrayList();
@@ -153,9 +173,9 @@ class RpslObjectSearcher {
                     newEntries.add(ipEntry);
                 }
             }
-            return proxy(newEntries);
+            return proxy(query, type, newEntries);
         } else {
-            return proxy(ipTreeLookup(routeTree, query.getIpKeyOrNull(), query));
+            return proxy(query, type, ipTreeLookup(routeTree, query.getIpKeyOrNull(), query));
         }
     }
 
@@ -164,7 +184,7 @@ class RpslObjectSearcher {
         if (range != null) {
             final RpslObject asBlock = rpslObjectDao.findAsBlock(range.getBegin(), range.getEnd());
             if (asBlock != null) {
-                return Collections.<ResponseObject>singletonList(asBlock);
+                return page(query, ObjectType.AS_BLOCK, Collections.singletonList(asBlock));
             }
         }
 
@@ -175,7 +195,7 @@ class RpslObjectSearcher {
         String searchValue = query.getSearchValue().toLowerCase();
 
         if (searchValue.endsWith("e164.arpa")) {
-            return indexLookup(query, ObjectType.DOMAIN, searchValue);
+            return indexLookup(query, Collections.singleton(ObjectType.DOMAIN), searchValue).get(ObjectType.DOMAIN);
         }
 
         final IpInterval<?> ipInterval = query.getIpKeyOrNullReverse();
@@ -185,9 +205,9 @@ class RpslObjectSearcher {
 
         switch (ipInterval.getAttributeType()) {
             case INETNUM:
-                return proxy(ipTreeLookup(ipv4DomainTree, ipInterval, query));
+                return proxy(query, ObjectType.DOMAIN, ipTreeLookup(ipv4DomainTree, ipInterval, query));
             case INET6NUM:
-                return proxy(ipTreeLookup(ipv6DomainTree, ipInterval, query));
+                return proxy(query, ObjectType.DOMAIN, ipTreeLookup(ipv6DomainTree, ipInterval, query));
             default:
                 throw new IllegalArgumentException(String.format("Unexpected type: %s", ipInterval.getAttributeType()));
         }
@@ -230,36 +250,67 @@ class RpslObjectSearcher {
         }
     }
 
-    private Iterable<ResponseObject> indexLookup(final Query query, final ObjectType type) {
-        if (query.isKeysOnly() && (ObjectType.PERSON.equals(type) || ObjectType.ROLE.equals(type) || ObjectType.ORGANISATION.equals(type))) {
-            return Collections.emptyList();
+    private Map<ObjectType, Iterable<ResponseObject>> indexLookup(final Query query, final Iterable<ObjectType> types) {
+        final List<ObjectType> lookupTypes = Lists.newArrayList();
+        for (final ObjectType type : types) {
+            if (!(query.isKeysOnly() && (ObjectType.PERSON.equals(type) || ObjectType.ROLE.equals(type) || ObjectType.ORGANISATION.equals(type)))) {
+                lookupTypes.add(type);
+            }
         }
 
-        return indexLookup(query, type, query.getSearchValue());
+        final Map<ObjectType, Iterable<ResponseObject>> result = indexLookup(query, lookupTypes, query.getSearchValue());
+        for (final ObjectType type : types) {
+            result.putIfAbsent(type, Collections.emptyList());
+        }
+
+        return result;
     }
 
-    private Iterable<ResponseObject> indexLookup(final Query query, final ObjectType type, final String searchValue) {
-        final ObjectTemplate objectTemplate = ObjectTemplate.getTemplate(type);
-        final Set<AttributeType> keyAttributes = objectTemplate.getKeyAttributes();
+    private Map<ObjectType, Iterable<ResponseObject>> indexLookup(final Query query, final Iterable<ObjectType> types, final String searchValue) {
+        final List<ObjectType> lookupTypes = Lists.newArrayList();
+        final List<Supplier<Collection<RpslObjectInfo>>> lookups = Lists.newArrayList();
 
-        final Set<RpslObjectInfo> result = Sets.newTreeSet();
-        for (final AttributeType lookupAttribute : objectTemplate.getLookupAttributes()) {
-            if (!query.matchesObjectTypeAndAttribute(type, lookupAttribute)) {
-                continue;
-            }
+        for (final ObjectType type : types) {
+            final ObjectTemplate objectTemplate = ObjectTemplate.getTemplate(type);
+            final Set<AttributeType> keyAttributes = objectTemplate.getKeyAttributes();
 
-            if (keyAttributes.contains(lookupAttribute)) {
-                try {
-                    result.add(rpslObjectDao.findByKey(type, searchValue));
-                } catch (EmptyResultDataAccessException ignored) {
-                    LOGGER.debug("{}: {}", ignored.getClass().getName(), ignored.getMessage());
+            for (final AttributeType lookupAttribute : objectTemplate.getLookupAttributes()) {
+                if (!query.matchesObjectTypeAndAttribute(type, lookupAttribute)) {
+                    continue;
+                }
+
+                lookupTypes.add(type);
+                if (keyAttributes.contains(lookupAttribute)) {
+                    lookups.add(() -> {
+                        try {
+                            return Collections.singletonList(rpslObjectDao.findByKey(type, searchValue));
+                        } catch (EmptyResultDataAccessException ignored) {
+                            LOGGER.debug("{}: {}", ignored.getClass().getName(), ignored.getMessage());
+                            return Collections.emptyList();
+                        }
+                    });
+                } else {
+                    lookups.add(() -> filterByType(type, rpslObjectDao.findByAttribute(lookupAttribute, searchValue)));
                 }
-            } else {
-                result.addAll(filterByType(type, rpslObjectDao.findByAttribute(lookupAttribute, searchValue)));
             }
         }
 
-        return proxy(result);
+        final Map<ObjectType, Set<RpslObjectInfo>> objectInfos = Maps.newEnumMap(ObjectType.class);
+        for (final ObjectType type : types) {
+            objectInfos.put(type, Sets.newTreeSet());
+        }
+
+        final List<Collection<RpslObjectInfo>> lookupResults = indexLookupFanout.getAll(lookups);
+        for (int i = 0; i < lookupResults.size(); i++) {
+            objectInfos.get(lookupTypes.get(i)).addAll(lookupResults.get(i));
+        }
+
+        final Map<ObjectType, Iterable<ResponseObject>> result = Maps.newEnumMap(ObjectType.class);
+        for (final Map.Entry<ObjectType, Set<RpslObjectInfo>> entry : objectInfos.entrySet()) {
+            result.put(entry.getKey(), proxy(query, entry.getKey(), entry.getValue()));
+        }
+
+        return result;
     }
 
     private static List<RpslObjectInfo> filterByType(final ObjectType type, final List<RpslObjectInfo> objectInfos) {
@@ -287,10 +338,13 @@ class RpslObjectSearcher {
 
         final Set<ObjectType> objectTypes = query.getObjectTypes();
 
-        final Set<RpslObjectInfo> result = Sets.newTreeSet();
+        final List<Supplier<List<RpslObjectInfo>>> lookups = Lists.newArrayList();
         for (final AttributeType attributeType : query.getAttributeTypes()) {
-            final String searchValue = query.getSearchValue();
-            final Collection<RpslObjectInfo> objectInfos = rpslObjectDao.findByAttribute(attributeType, searchValue);
+            lookups.add(() -> rpslObjectDao.findByAttribute(attributeType, query.getSearchValue()));
+        }
+
+        final Set<RpslObjectInfo> result = Sets.newTreeSet();
+        for (final List<RpslObjectInfo> objectInfos : indexLookupFanout.getAll(lookups)) {
             for (final RpslObjectInfo objectInfo : objectInfos) {
                 if (objectTypes.contains(objectInfo.getObjectType())) {
                     result.add(objectInfo);
@@ -298,10 +352,62 @@ class RpslObjectSearcher {
             }
         }
 
-        return proxy(result);
+        return proxy(query, null, result);
+    }
+
+    private Iterable<ResponseObject> proxy(final Query query, @Nullable final ObjectType type, final Iterable<? extends Identifiable> identifiables) {
+        final QueryPaging paging = query.getPaging();
+        if (paging == null) {
+            return proxyPrefetcher.iterateProxy(rpslObjectDao, identifiables);
+        }
+
+        // skip the results of previous pages before loading any objects
+        final int startIndex = paging.getStartIndex(type, identifiables);
+        final Iterable<? extends Identifiable> remaining = Iterables.skip(identifiables, startIndex);
+        return track(paging, type, startIndex, remaining, proxyPrefetcher.iterateProxy(rpslObjectDao, remaining));
     }
 
-    private Iterable<ResponseObject> proxy(final Iterable<? extends Identifiable> identifiables) {
-        return CollectionHelper.iterateProxy(rpslObjectDao, identifiables);
+    private static Iterable<ResponseObject> page(final Query query, final ObjectType type, final List<RpslObject> rpslObjects) {
+        final QueryPaging paging = query.getPaging();
+        if (paging == null) {
+            return Collections.unmodifiableList(rpslObjects);
+        }
+
+        final int startIndex = paging.getStartIndex(type, rpslObjects);
+        final List<RpslObject> remaining = Collections.unmodifiableList(rpslObjects.subList(startIndex, rpslObjects.size()));
+        return track(paging, type, startIndex, remaining, remaining);
+    }
+
+    /**
+     * Keep track of the position of the primary objects as they are read. The position is the index in the search
+     * results, as used by {@link QueryPaging#getStartIndex}, so results that are no longer found are counted too.
+     */
+    private static Iterable<ResponseObject> track(final QueryPaging paging, @Nullable final ObjectType type, final int startIndex, final Iterable<? extends Identifiable> identifiables, final Iterable<? extends ResponseObject> responseObjects) {
+        return () -> new UnmodifiableIterator<ResponseObject>() {
+            private final Iterator<? extends ResponseObject> iterator = responseObjects.iterator();
+            private final Iterator<? extends Identifiable> positions = identifiables.iterator();
+            private int index = startIndex - 1;
+
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public ResponseObject next() {
+                final ResponseObject responseObject = iterator.next();
+                if (responseObject instanceof RpslObject) {
+                    final int objectId = ((RpslObject) responseObject).getObjectId();
+                    while (positions.hasNext()) {
+                        index++;
+                        if (positions.next().getObjectId() == objectId) {
+                            break;
+                        }
+                    }
+                    paging.setPosition(type, index, objectId);
+                }
+                return responseObject;
+            }
+        };
     }
 }
@@ -16,6 +16,7 @@ import net.ripe.db.whois.query.query.Query;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.Nullable;
 import java.util.Set;
 
 @Component
@@ -23,14 +24,20 @@ public class SearchQueryExecutor implements QueryExecutor {
     private final SourceContext sourceContext;
     private final RpslObjectSearcher rpslObjectSearcher;
     private final RpslResponseDecorator rpslResponseDecorator;
+    private final ProxyPrefetcher proxyPrefetcher;
+    private final QueryResponseCache queryResponseCache;
 
     @Autowired
     public SearchQueryExecutor(final SourceContext sourceContext,
                                final RpslObjectSearcher rpslObjectSearcher,
-                               final RpslResponseDecorator rpslResponseDecorator) {
+                               final RpslResponseDecorator rpslResponseDecorator,
+                               final ProxyPrefetcher proxyPrefetcher,
+                               final QueryResponseCache queryResponseCache) {
         this.sourceContext = sourceContext;
         this.rpslObjectSearcher = rpslObjectSearcher;
         this.rpslResponseDecorator = rpslResponseDecorator;
+        this.proxyPrefetcher = proxyPrefetcher;
+        this.queryResponseCache = queryResponseCache;
     }
 
     @Override
@@ -55,19 +62,58 @@ public class SearchQueryExecutor implements QueryExecutor {
 
     @Override
     public void execute(final Query query, final ResponseHandler responseHandler) {
+        final Set<Source> sources = getSources(query);
+
+        final QueryResponseCache.Key cacheKey = queryResponseCache.getKey(query);
+        if (cacheKey == null) {
+            search(query, sources, responseHandler, null);
+            return;
+        }
+
+        final QueryResponseCache.Response cachedResponse = queryResponseCache.getIfPresent(cacheKey);
+        if (cachedResponse != null) {
+            replay(sources, cachedResponse, responseHandler);
+            return;
+        }
+
+        final long generation = queryResponseCache.getGeneration();
+        final QueryResponseCache.Response response = new QueryResponseCache.Response();
+        if (search(query, sources, responseHandler, response)) {
+            queryResponseCache.put(generation, cacheKey, response);
+        }
+    }
+
+    /**
+     * @return true if the complete response was recorded.
+     */
+    private boolean search(final Query query, final Set<Source> sources, final ResponseHandler responseHandler, @Nullable final QueryResponseCache.Response response) {
         //TODO intentional lack of RsplObject in results should not give below error (-> add+implement Query.shouldProduceRpslObjects())
         boolean noResults = true;
+        boolean recording = response != null;
 
-        final Set<Source> sources = getSources(query);
         for (final Source source : sources) {
-            try {
+            if (query.getPaging() != null && !query.getPaging().startSource(source.getName().toString())) {
+                // already returned on previous pages
+                continue;
+            }
+
+            // stop loading results nobody is going to read when leaving the source, e.g. if the client disconnected
+            try (ProxyPrefetcher.Scope ignored = proxyPrefetcher.open()) {
                 sourceContext.setCurrent(source);
                 final Iterable<? extends ResponseObject> searchResults = rpslObjectSearcher.search(query, sourceContext);
 
+                if (recording) {
+                    response.addSource(source);
+                }
+
                 for (final ResponseObject responseObject : rpslResponseDecorator.getResponse(query, searchResults)) {
 
                     responseHandler.handle(responseObject);
 
+                    if (recording) {
+                        recording = response.add(source, responseObject);
+                    }
+
                     if (!(responseObject instanceof MessageObject)) {
                         noResults = false;
                     }
@@ -75,14 +121,46 @@ public class SearchQueryExecutor implements QueryExecutor {
             } catch (IllegalSourceException e) {
                 responseHandler.handle(new MessageObject(QueryMessages.unknownSource(source.getName())));
                 noResults = false;
+                recording = false;
             } finally {
                 sourceContext.removeCurrentSource();
             }
         }
 
         if (noResults) {
-            responseHandler.handle(new MessageObject(QueryMessages.noResults(Joiner.on(',').join(Iterables.transform(sources, source -> source.getName().toUpperCase())))));
+            handleNoResults(sources, responseHandler);
         }
+
+        return recording;
+    }
+
+    private void replay(final Set<Source> sources, final QueryResponseCache.Response response, final ResponseHandler responseHandler) {
+        boolean noResults = true;
+
+        for (final Source source : sources) {
+            // the current source decides whether objects are accounted for
+            try {
+                sourceContext.setCurrent(source);
+
+                for (final ResponseObject responseObject : response.getResponseObjects(source)) {
+                    responseHandler.handle(responseObject);
+
+                    if (!(responseObject instanceof MessageObject)) {
+                        noResults = false;
+                    }
+                }
+            } finally {
+                sourceContext.removeCurrentSource();
+            }
+        }
+
+        if (noResults) {
+            handleNoResults(sources, responseHandler);
+        }
+    }
+
+    private void handleNoResults(final Set<Source> sources, final ResponseHandler responseHandler) {
+        responseHandler.handle(new MessageObject(QueryMessages.noResults(Joiner.on(',').join(Iterables.transform(sources, source -> source.getName().toUpperCase())))));
     }
 
     private Set<Source> getSources(final Query query) {
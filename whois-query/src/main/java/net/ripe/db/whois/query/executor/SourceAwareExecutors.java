@@ -0,0 +1,79 @@
+package net.ripe.db.whois.query.executor;
+
+import net.ripe.db.whois.common.source.Source;
+import net.ripe.db.whois.common.source.SourceContext;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Helpers for running parts of a query on a pool while the DAOs read from the query thread's current source.
+ */
+final class SourceAwareExecutors {
+
+    private SourceAwareExecutors() {
+        // do not instantiate
+    }
+
+    /**
+     * A fixed size pool of daemon threads with a bounded queue; tasks run on the submitting thread when the queue is full.
+     */
+    static ThreadPoolExecutor newBoundedExecutor(final String name, final int threads, final int queueSize) {
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueSize)),
+                new ThreadFactory() {
+                    final AtomicInteger threadNum = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(final Runnable r) {
+                        final Thread thread = new Thread(r, String.format("%s-%s", name, threadNum.incrementAndGet()));
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * Capture the current source of the calling thread, so tasks running on other threads read from the same source.
+     */
+    static SourceBinding bindCurrentSource(final SourceContext sourceContext) {
+        return new SourceBinding(sourceContext, sourceContext.getCurrentSource(), Thread.currentThread());
+    }
+
+    static final class SourceBinding {
+        private final SourceContext sourceContext;
+        private final Source source;
+        private final Thread boundThread;
+
+        private SourceBinding(final SourceContext sourceContext, final Source source, final Thread boundThread) {
+            this.sourceContext = sourceContext;
+            this.source = source;
+            this.boundThread = boundThread;
+        }
+
+        <T> T get(final Supplier<T> task) {
+            if (Thread.currentThread() == boundThread) {
+                return task.get();
+            }
+
+            try {
+                sourceContext.setCurrent(source);
+                return task.get();
+            } finally {
+                sourceContext.removeCurrentSource();
+            }
+        }
+
+        void run(final Runnable task) {
+            get(() -> {
+                task.run();
+                return null;
+            });
+        }
+    }
+}
@@ -57,7 +57,7 @@ public class ConnectionPerIpLimitHandler extends ChannelInboundHandlerAdapter {
             whoisLog.logQueryResult("QRY", 0, 0, QueryCompletionInfo.REJECTED, 0, remoteAddress, channel.id().hashCode(), "");
             channel.write(QueryMessages.termsAndConditions());
             channel.write(QueryMessages.connectionsExceeded(maxConnectionsPerIp));
-            channel.write(QueryMessages.servedByNotice(applicationVersion.getVersion())).addListener(ChannelFutureListener.CLOSE);
+            channel.writeAndFlush(QueryMessages.servedByNotice(applicationVersion.getVersion())).addListener(ChannelFutureListener.CLOSE);
             return;
         }
 
@@ -16,8 +16,10 @@ public class ServedByHandler extends ChannelOutboundHandlerAdapter {
     public void write(final ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
         if (msg instanceof QueryCompletedEvent) {
             ctx.channel().write(QueryMessages.servedByNotice(version));
+            ctx.writeAndFlush(msg, promise);
+        } else {
+            // results are flushed in batches by WhoisServerHandler
+            ctx.write(msg, promise);
         }
-
-        ctx.writeAndFlush(msg);
     }
 }
@@ -25,7 +25,8 @@ public class WhoisEncoder extends MessageToMessageEncoder<Object> {
     @Override
     protected void encode(final ChannelHandlerContext ctx, final Object msg, final List<Object> out) throws IOException {
         if (msg instanceof ResponseObject) {
-            final ByteBuf result = ctx.alloc().buffer(DEFAULT_BUFFER_SIZE);
+            // pooled direct buffer, written to the socket without copying
+            final ByteBuf result = ctx.alloc().ioBuffer(DEFAULT_BUFFER_SIZE);
             final ByteBufOutputStream outputStream = new ByteBufOutputStream(result);
 
             ((ResponseObject) msg).writeTo(outputStream);
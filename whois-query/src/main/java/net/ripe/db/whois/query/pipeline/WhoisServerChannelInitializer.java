@@ -11,6 +11,7 @@ import io.netty.handler.timeout.WriteTimeoutHandler;
 import io.netty.util.concurrent.DefaultEventExecutorGroup;
 import io.netty.util.concurrent.EventExecutorGroup;
 import net.ripe.db.whois.common.ApplicationVersion;
+import net.ripe.db.whois.common.pipeline.ChannelWritability;
 import net.ripe.db.whois.common.pipeline.MaintenanceHandler;
 import net.ripe.db.whois.query.handler.QueryHandler;
 import org.slf4j.Logger;
@@ -78,7 +79,9 @@ public class WhoisServerChannelInitializer extends ChannelInitializer<Channel> {
     @Override
     public void initChannel(Channel channel) {
         ChannelPipeline pipeline = channel.pipeline();
+        final ChannelWritability channelWritability = new ChannelWritability();
 
+        pipeline.addLast("writability", channelWritability);
         pipeline.addLast("maintenanceHandler", maintenanceHandler);
         pipeline.addLast("connectionPerIpLimit", connectionPerIpLimitHandler);
 
@@ -101,7 +104,7 @@ public class WhoisServerChannelInitializer extends ChannelInitializer<Channel> {
         pipeline.addLast(executorGroup, "connection-state", new ConnectionStateHandler());
 
         pipeline.addLast(executorGroup, "served-by", new ServedByHandler(applicationVersion.getVersion()));
-        pipeline.addLast(executorGroup, "whois", new WhoisServerHandler(queryHandler));
+        pipeline.addLast(executorGroup, "whois", new WhoisServerHandler(queryHandler, channelWritability));
         pipeline.addLast("exception", new ExceptionHandler());
     }
 
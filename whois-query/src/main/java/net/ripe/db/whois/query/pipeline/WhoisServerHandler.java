@@ -5,6 +5,7 @@ import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
 import net.ripe.db.whois.common.domain.ResponseObject;
 import net.ripe.db.whois.common.pipeline.ChannelUtil;
+import net.ripe.db.whois.common.pipeline.ChannelWritability;
 import net.ripe.db.whois.query.domain.QueryCompletionInfo;
 import net.ripe.db.whois.query.domain.QueryException;
 import net.ripe.db.whois.query.domain.ResponseHandler;
@@ -13,14 +14,21 @@ import net.ripe.db.whois.query.query.Query;
 
 /**
  * The worker threads are asynchronously pushing data down the Netty pipeline.
- * Make sure IO threads can handle the flow.
+ * Make sure IO threads can handle the flow: results are flushed in batches, and the worker thread waits while the
+ * outbound buffer of the channel is above its high water mark, until the channel signals it is writable again.
  */
 public class WhoisServerHandler extends ChannelInboundHandlerAdapter {
+    private static final int FLUSH_BATCH_SIZE = 64;
+
     private final QueryHandler queryHandler;
+    private final ChannelWritability channelWritability;
     private boolean closed;
 
-    public WhoisServerHandler(final QueryHandler queryHandler) {
+    private int unflushed;
+
+    public WhoisServerHandler(final QueryHandler queryHandler, final ChannelWritability channelWritability) {
         this.queryHandler = queryHandler;
+        this.channelWritability = channelWritability;
     }
 
     @Override
@@ -39,13 +47,35 @@ public class WhoisServerHandler extends ChannelInboundHandlerAdapter {
                     throw new QueryException(QueryCompletionInfo.DISCONNECTED);
                 }
 
+                awaitWritable(channel);
+
                 channel.write(responseObject);
+                if (++unflushed >= FLUSH_BATCH_SIZE) {
+                    channel.flush();
+                    unflushed = 0;
+                }
             }
         });
 
+        unflushed = 0;
+
         ctx.pipeline().write(new QueryCompletedEvent(channel));
     }
 
+    // channelInactive() is handled by this (blocked) thread, so the IO thread signals a closed channel
+    private void awaitWritable(final Channel channel) {
+        if (channel.isWritable()) {
+            return;
+        }
+
+        channel.flush();
+        unflushed = 0;
+
+        if (!channelWritability.await(channel)) {
+            throw new QueryException(QueryCompletionInfo.DISCONNECTED);
+        }
+    }
+
     @Override
     public void channelInactive(ChannelHandlerContext ctx) {
         closed = true;
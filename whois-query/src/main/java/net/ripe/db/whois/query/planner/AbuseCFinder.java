@@ -78,7 +78,14 @@ public class AbuseCFinder {
     }
 
     public Optional<AbuseContact> getAbuseContact(final RpslObject rpslObject) {
-        final RpslObject role = getAbuseContactRole(rpslObject);
+        return getAbuseContact(rpslObject, objectDao);
+    }
+
+    /**
+     * Find the abuse contact, reading the related objects using the given object dao.
+     */
+    public Optional<AbuseContact> getAbuseContact(final RpslObject rpslObject, final RpslObjectDao objectDao) {
+        final RpslObject role = getAbuseContactRole(rpslObject, objectDao);
         if (role == null) {
             return Optional.empty();
         }
@@ -89,39 +96,39 @@ public class AbuseCFinder {
         return Optional.of(new AbuseContact(
                         role,
                         suspect,
-                        getOrgToContact(rpslObject, suspect)
+                        getOrgToContact(rpslObject, suspect, objectDao)
                 ));
     }
 
     @Nullable
-    private CIString getOrgToContact(final RpslObject rpslObject, final boolean suspect) {
+    private CIString getOrgToContact(final RpslObject rpslObject, final boolean suspect, final RpslObjectDao objectDao) {
         if (suspect) {
-            final CIString lir = findResponsibleOrgReference(rpslObject, true);
+            final CIString lir = findResponsibleOrgReference(rpslObject, true, objectDao);
             if (lir != null) {
                 return lir;
             }
         }
 
-        return findResponsibleOrgReference(rpslObject, false);
+        return findResponsibleOrgReference(rpslObject, false, objectDao);
     }
 
     @Nullable
-    private CIString findResponsibleOrgReference(final RpslObject rpslObject, final boolean findLir) {
+    private CIString findResponsibleOrgReference(final RpslObject rpslObject, final boolean findLir, final RpslObjectDao objectDao) {
         if (rpslObject.containsAttribute(AttributeType.SPONSORING_ORG)) {
             return rpslObject.getValueForAttribute(AttributeType.SPONSORING_ORG);
         }
 
         final CIString org = rpslObject.getValueOrNullForAttribute(AttributeType.ORG);
         if ((org != null) &&
-            (!findLir || isLir(getByKey(ObjectType.ORGANISATION, org)))) {
+            (!findLir || isLir(getByKey(ObjectType.ORGANISATION, org, objectDao)))) {
             return org;
         }
 
         switch (rpslObject.getType()) {
             case INETNUM:
             case INET6NUM:
-                final RpslObject parent = getParentObject(rpslObject);
-                return parent != null ? findResponsibleOrgReference(parent, findLir) : null;
+                final RpslObject parent = getParentObject(rpslObject, objectDao);
+                return parent != null ? findResponsibleOrgReference(parent, findLir, objectDao) : null;
             default:
                 return null;
         }
@@ -133,7 +140,7 @@ public class AbuseCFinder {
 
     @CheckForNull
     @Nullable
-    private RpslObject getAbuseContactRole(final RpslObject rpslObject) {
+    private RpslObject getAbuseContactRole(final RpslObject rpslObject, final RpslObjectDao objectDao) {
         if(!mainSources.contains(rpslObject.getValueForAttribute(AttributeType.SOURCE))) {
             return null;
         }
@@ -142,19 +149,19 @@ public class AbuseCFinder {
             case INETNUM:
             case INET6NUM:
 
-                final RpslObject role = getAbuseContactRoleInternal(rpslObject);
+                final RpslObject role = getAbuseContactRoleInternal(rpslObject, objectDao);
 
                 if (role == null) {
-                    final RpslObject parentObject = getParentObject(rpslObject);
+                    final RpslObject parentObject = getParentObject(rpslObject, objectDao);
                     if (parentObject != null && !isMaintainedByRs(rpslObject)) {
-                        return getAbuseContactRole(parentObject);
+                        return getAbuseContactRole(parentObject, objectDao);
                     }
                 }
 
                 return role;
 
             case AUT_NUM:
-                return getAbuseContactRoleInternal(rpslObject);
+                return getAbuseContactRoleInternal(rpslObject, objectDao);
 
             default:
                 return null;
@@ -163,16 +170,16 @@ public class AbuseCFinder {
 
     @CheckForNull
     @Nullable
-    private RpslObject getAbuseContactRoleInternal(final RpslObject rpslObject) {
+    private RpslObject getAbuseContactRoleInternal(final RpslObject rpslObject, final RpslObjectDao objectDao) {
         try {
             // use the abuse-c from the object if it exists:
-            RpslObject abuseContact = getAbuseC(rpslObject);
+            RpslObject abuseContact = getAbuseC(rpslObject, objectDao);
             if (abuseContact != null) {
                 return abuseContact;
             }
 
             // otherwise see if it can be obtained via an org attribute:
-            return getOrgAbuseC(rpslObject);
+            return getOrgAbuseC(rpslObject, objectDao);
         } catch (EmptyResultDataAccessException ignored) {
             LOGGER.debug("Ignored invalid reference (object {})", rpslObject.getKey());
         }
@@ -181,18 +188,18 @@ public class AbuseCFinder {
     }
 
     @Nullable
-    private RpslObject getOrgAbuseC(@Nullable final RpslObject rpslObject) {
+    private RpslObject getOrgAbuseC(@Nullable final RpslObject rpslObject, final RpslObjectDao objectDao) {
         if ((rpslObject != null) && rpslObject.containsAttribute(AttributeType.ORG)) {
-            final RpslObject organisation = getByKey(ObjectType.ORGANISATION, rpslObject.getValueForAttribute(AttributeType.ORG));
-            return getAbuseC(organisation);
+            final RpslObject organisation = getByKey(ObjectType.ORGANISATION, rpslObject.getValueForAttribute(AttributeType.ORG), objectDao);
+            return getAbuseC(organisation, objectDao);
         }
         return null;
     }
 
     @Nullable
-    private RpslObject getAbuseC(@Nullable final RpslObject rpslObject) {
+    private RpslObject getAbuseC(@Nullable final RpslObject rpslObject, final RpslObjectDao objectDao) {
         if ((rpslObject != null) && rpslObject.containsAttribute(AttributeType.ABUSE_C)) {
-            final RpslObject abuseCRole = getByKey(ObjectType.ROLE, rpslObject.getValueForAttribute(AttributeType.ABUSE_C));
+            final RpslObject abuseCRole = getByKey(ObjectType.ROLE, rpslObject.getValueForAttribute(AttributeType.ABUSE_C), objectDao);
             if ((abuseCRole != null) && abuseCRole.containsAttribute(AttributeType.ABUSE_MAILBOX)) {
                 return abuseCRole;
             }
@@ -205,7 +212,7 @@ public class AbuseCFinder {
     }
 
     @Nullable
-    private RpslObject getParentObject(final RpslObject rpslObject) {
+    private RpslObject getParentObject(final RpslObject rpslObject, final RpslObjectDao objectDao) {
         final IpEntry ipEntry;
 
         switch (rpslObject.getType()) {
@@ -221,11 +228,11 @@ public class AbuseCFinder {
                 throw new IllegalArgumentException("Unexpected type: " + rpslObject.getType());
         }
 
-        return (ipEntry != null) ? getById(ipEntry.getObjectId()) : null;
+        return (ipEntry != null) ? getById(ipEntry.getObjectId(), objectDao) : null;
     }
 
     @Nullable
-    private RpslObject getById(final int objectId) {
+    private RpslObject getById(final int objectId, final RpslObjectDao objectDao) {
         try {
             return objectDao.getById(objectId);
         } catch (EmptyResultDataAccessException e) {
@@ -235,7 +242,7 @@ public class AbuseCFinder {
     }
 
     @Nullable
-    private RpslObject getByKey(final ObjectType objectType, final CIString key) {
+    private RpslObject getByKey(final ObjectType objectType, final CIString key, final RpslObjectDao objectDao) {
         try {
             return objectDao.getByKey(objectType, key);
         } catch (EmptyResultDataAccessException e) {
@@ -20,6 +20,8 @@ import net.ripe.db.whois.query.domain.QueryCompletionInfo;
 import net.ripe.db.whois.query.domain.QueryException;
 import org.apache.commons.lang.StringUtils;
 
+import javax.annotation.CheckForNull;
+
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -65,6 +67,7 @@ public class Query {
     private boolean trusted;
     // TODO: [AH] we should use -x flag for direct match for all object types instead of this hack
     private boolean matchPrimaryKeyOnly;
+    private QueryPaging paging;
 
     private Query(final String query, final Origin origin, final boolean trusted) {
         try {
@@ -588,6 +591,16 @@ public class Query {
         return this;
     }
 
+    @CheckForNull
+    public QueryPaging getPaging() {
+        return paging;
+    }
+
+    public Query setPaging(final QueryPaging paging) {
+        this.paging = paging;
+        return this;
+    }
+
     public enum MatchOperation {
         MATCH_EXACT_OR_FIRST_LEVEL_LESS_SPECIFIC(),
         MATCH_EXACT(QueryFlag.EXACT),
@@ -0,0 +1,96 @@
+package net.ripe.db.whois.query.query;
+
+import com.google.common.base.Splitter;
+import net.ripe.db.whois.common.rpsl.ObjectType;
+import org.apache.commons.lang.StringUtils;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Position of a primary object in the results of a search: the source, the object type (none for inverse lookups),
+ * the index in the results for that type, and the object id.
+ * <p/>
+ * Handed to clients as an opaque token, to resume a paged search after this object.
+ */
+public final class QueryCursor {
+    private static final Splitter TOKEN_SPLITTER = Splitter.on(',');
+
+    private final String source;
+    @Nullable private final ObjectType objectType;
+    private final int index;
+    private final int objectId;
+
+    public QueryCursor(final String source, @Nullable final ObjectType objectType, final int index, final int objectId) {
+        this.source = source;
+        this.objectType = objectType;
+        this.index = index;
+        this.objectId = objectId;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    @CheckForNull
+    public ObjectType getObjectType() {
+        return objectType;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public int getObjectId() {
+        return objectId;
+    }
+
+    public String encode() {
+        final String value = String.format("%s,%s,%d,%d", source, objectType == null ? "" : objectType.getName(), index, objectId);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @throws IllegalArgumentException if the token was not created by {@link #encode()}
+     */
+    public static QueryCursor decode(final String token) {
+        final List<String> values = TOKEN_SPLITTER.splitToList(new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8));
+        if (values.size() != 4 || StringUtils.isBlank(values.get(0))) {
+            throw new IllegalArgumentException("Invalid cursor: " + token);
+        }
+
+        final ObjectType objectType = values.get(1).isEmpty() ? null : ObjectType.getByName(values.get(1));
+        final int index = Integer.parseInt(values.get(2));
+        if (index < 0) {
+            throw new IllegalArgumentException("Invalid cursor: " + token);
+        }
+
+        return new QueryCursor(values.get(0), objectType, index, Integer.parseInt(values.get(3)));
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        final QueryCursor that = (QueryCursor) o;
+        return index == that.index && objectId == that.objectId && source.equals(that.source) && objectType == that.objectType;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(source, objectType, index, objectId);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s %s #%d (%d)", source, objectType, index, objectId);
+    }
+}
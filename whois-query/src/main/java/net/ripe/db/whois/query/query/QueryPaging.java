@@ -0,0 +1,82 @@
+package net.ripe.db.whois.query.query;
+
+import net.ripe.db.whois.common.domain.Identifiable;
+import net.ripe.db.whois.common.rpsl.ObjectType;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import java.util.Objects;
+
+/**
+ * State of a paged search: where to resume, and the position of the primary object most recently read.
+ * <p/>
+ * Searches resume after the cursor of the previous page, by skipping the sources, object types and search results up
+ * to it before any object is loaded. Result objects are located by object id; if the object is gone, the index is used.
+ */
+public class QueryPaging {
+    @Nullable private final QueryCursor resumeAfter;
+
+    private boolean resumed;
+    private boolean resuming;
+    private String source;
+    @Nullable private QueryCursor position;
+
+    public QueryPaging(@Nullable final QueryCursor resumeAfter) {
+        this.resumeAfter = resumeAfter;
+        this.resumed = resumeAfter == null;
+    }
+
+    /**
+     * @return false if the source precedes the source to resume in, and is to be skipped.
+     */
+    public boolean startSource(final String source) {
+        resuming = false;
+
+        if (!resumed) {
+            if (!resumeAfter.getSource().equalsIgnoreCase(source)) {
+                return false;
+            }
+
+            resumed = true;
+            resuming = true;
+        }
+
+        this.source = source;
+        return true;
+    }
+
+    /**
+     * @return true if the results of the object type precede the object type to resume at, and are to be skipped.
+     */
+    public boolean isSkipped(final ObjectType objectType) {
+        return resuming && resumeAfter.getObjectType() != null && ObjectType.COMPARATOR.compare(objectType, resumeAfter.getObjectType()) < 0;
+    }
+
+    /**
+     * @return the index of the first of the results (for the object type) to return.
+     */
+    public int getStartIndex(@Nullable final ObjectType objectType, final Iterable<? extends Identifiable> results) {
+        if (!resuming || !Objects.equals(objectType, resumeAfter.getObjectType())) {
+            return 0;
+        }
+
+        int index = 0;
+        for (final Identifiable identifiable : results) {
+            index++;
+            if (identifiable.getObjectId() == resumeAfter.getObjectId()) {
+                return index;
+            }
+        }
+
+        return Math.min(resumeAfter.getIndex() + 1, index);
+    }
+
+    public void setPosition(@Nullable final ObjectType objectType, final int index, final int objectId) {
+        position = new QueryCursor(source, objectType, index, objectId);
+    }
+
+    @CheckForNull
+    public QueryCursor getPosition() {
+        return position;
+    }
+}
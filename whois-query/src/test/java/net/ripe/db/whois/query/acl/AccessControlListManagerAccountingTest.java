@@ -71,7 +71,7 @@ public class AccessControlListManagerAccountingTest {
     }
 
     private void setPersonalLimit(int count) {
-        when(ipResourceConfiguration.getLimit(ipv4Address)).thenReturn(count);
+        when(ipResourceConfiguration.getDecision(ipv4Address)).thenReturn(new IpResourceConfiguration.AclDecision(false, false, count, false));
         personalObjectAccounting.resetAccounting();
     }
 }
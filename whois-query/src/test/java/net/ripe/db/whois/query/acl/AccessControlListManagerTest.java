@@ -77,6 +77,7 @@ public class AccessControlListManagerTest {
         ipv6Unrestricted = InetAddress.getByName("2001:1::1");
         ipv6Unknown = InetAddress.getByName("::1");
 
+        lenient().when(ipResourceConfiguration.getDecision(any(InetAddress.class))).thenReturn(new IpResourceConfiguration.AclDecision(false, false, 0, false));
         mockResourceConfiguration(ipv4Restricted, true, false, PERSONAL_DATA_LIMIT);
         mockResourceConfiguration(ipv4Unrestricted, false, true, PERSONAL_DATA_NO_LIMIT);
         mockResourceConfiguration(ipv6Restricted, true, false, PERSONAL_DATA_LIMIT);
@@ -84,9 +85,7 @@ public class AccessControlListManagerTest {
     }
 
     private void mockResourceConfiguration(InetAddress address, boolean denied, boolean proxy, int limit) throws UnknownHostException {
-        lenient().when(ipResourceConfiguration.isDenied(address)).thenReturn(denied);
-        lenient().when(ipResourceConfiguration.isProxy(address)).thenReturn(proxy);
-        lenient().when(ipResourceConfiguration.getLimit(address)).thenReturn(limit);
+        lenient().when(ipResourceConfiguration.getDecision(address)).thenReturn(new IpResourceConfiguration.AclDecision(denied, proxy, limit, false));
     }
 
     @Test
@@ -2,6 +2,8 @@ package net.ripe.db.whois.query.acl;
 
 import com.hazelcast.core.Hazelcast;
 import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.OperationTimeoutException;
+import com.hazelcast.map.IMap;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.BeforeAll;
@@ -12,9 +14,19 @@ import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.net.Inet4Address;
 import java.net.InetAddress;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
 public class HazelcastPersonalObjectAccountingTest {
@@ -26,7 +38,7 @@ public class HazelcastPersonalObjectAccountingTest {
     @BeforeAll
     public static void startHazelcast() {
        instance = Hazelcast.newHazelcastInstance(null);
-       subject = new HazelcastPersonalObjectAccounting(instance);
+       subject = new HazelcastPersonalObjectAccounting(instance, false);
     }
 
     @AfterAll
@@ -79,4 +91,78 @@ public class HazelcastPersonalObjectAccountingTest {
 
         assertThat(subject.getQueriedPersonalObjects(ipv4Address), is(0));
     }
+
+    @Test
+    public void test_local_account_personal_object() {
+        final HazelcastPersonalObjectAccounting local = new HazelcastPersonalObjectAccounting(instance, true);
+
+        assertThat(local.accountPersonalObject(ipv4Address, 5), is(5));
+        assertThat(local.getQueriedPersonalObjects(ipv4Address), is(5));
+        assertThat(subject.getQueriedPersonalObjects(ipv4Address), is(0));
+
+        local.synchronise();
+
+        assertThat(subject.getQueriedPersonalObjects(ipv4Address), is(5));
+        assertThat(local.getQueriedPersonalObjects(ipv4Address), is(5));
+    }
+
+    @Test
+    public void test_local_account_personal_object_on_multiple_nodes() {
+        final HazelcastPersonalObjectAccounting first = new HazelcastPersonalObjectAccounting(instance, true);
+        final HazelcastPersonalObjectAccounting second = new HazelcastPersonalObjectAccounting(instance, true);
+
+        first.accountPersonalObject(ipv4Address, 3);
+        second.accountPersonalObject(ipv4Address, 4);
+        first.synchronise();
+        second.synchronise();
+        first.synchronise();
+
+        assertThat(first.getQueriedPersonalObjects(ipv4Address), is(7));
+        assertThat(second.getQueriedPersonalObjects(ipv4Address), is(7));
+        assertThat(first.accountPersonalObject(ipv4Address, 1), is(8));
+    }
+
+    @Test
+    public void test_local_reset_on_other_node() {
+        final HazelcastPersonalObjectAccounting local = new HazelcastPersonalObjectAccounting(instance, true);
+        local.accountPersonalObject(ipv4Address, 5);
+        local.synchronise();
+
+        subject.resetAccounting();
+        local.synchronise();
+
+        assertThat(local.getQueriedPersonalObjects(ipv4Address), is(0));
+    }
+
+    @Test
+    public void test_local_failed_push_is_retried_without_pushing_others_again() throws Exception {
+        final HazelcastInstance hazelcastInstance = mock(HazelcastInstance.class, RETURNS_DEEP_STUBS);
+        @SuppressWarnings("unchecked")
+        final IMap<InetAddress, Integer> counterMap = mock(IMap.class);
+        when(hazelcastInstance.<InetAddress, Integer>getMap("queriedPersonal")).thenReturn(counterMap);
+        final InetAddress pushedAddress = InetAddress.getByName("10.0.0.1");
+        final InetAddress failedAddress = InetAddress.getByName("10.0.0.2");
+        when(counterMap.submitToKey(eq(pushedAddress), any(HazelcastPersonalObjectAccounting.AddProcessor.class)))
+                .thenReturn(CompletableFuture.completedFuture(3));
+        when(counterMap.submitToKey(eq(failedAddress), any(HazelcastPersonalObjectAccounting.AddProcessor.class)))
+                .thenReturn(CompletableFuture.failedFuture(new OperationTimeoutException("timeout")))
+                .thenReturn(CompletableFuture.completedFuture(4));
+        when(counterMap.getAll(Set.of(pushedAddress))).thenReturn(Map.of(pushedAddress, 3));
+
+        final HazelcastPersonalObjectAccounting local = new HazelcastPersonalObjectAccounting(hazelcastInstance, true);
+        local.accountPersonalObject(pushedAddress, 3);
+        local.accountPersonalObject(failedAddress, 4);
+
+        local.synchronise();
+
+        assertThat(local.getQueriedPersonalObjects(pushedAddress), is(3));
+        assertThat(local.getQueriedPersonalObjects(failedAddress), is(4));
+
+        local.synchronise();
+
+        verify(counterMap, times(1)).submitToKey(eq(pushedAddress), any(HazelcastPersonalObjectAccounting.AddProcessor.class));
+        verify(counterMap, times(2)).submitToKey(eq(failedAddress), any(HazelcastPersonalObjectAccounting.AddProcessor.class));
+        assertThat(local.getQueriedPersonalObjects(pushedAddress), is(3));
+        assertThat(local.getQueriedPersonalObjects(failedAddress), is(4));
+    }
 }
@@ -103,4 +103,36 @@ public class IpResourceConfigurationTest {
 
         assertThat(subject.isUnlimitedConnections(inetAddress), is(true));
     }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void test_decision_combines_most_specific_entries() throws Exception {
+        when(loader.loadIpLimit()).thenReturn(Arrays.asList(new IpResourceEntry<>(IpInterval.parse("128.0.0.0/8"), 1000)));
+        when(loader.loadIpDenied()).thenReturn(Arrays.asList(new IpResourceEntry<>(IpInterval.parse("128.0.0.0/24"), true)));
+        when(loader.loadIpProxy()).thenReturn(Arrays.asList(new IpResourceEntry<>(IpInterval.parse("128.0.0.1/32"), true)));
+
+        subject.reload();
+
+        final IpResourceConfiguration.AclDecision decision = subject.getDecision(inetAddress);
+        assertThat(decision.isDenied(), is(true));
+        assertThat(decision.isProxy(), is(true));
+        assertThat(decision.getLimit(), is(1000));
+        assertThat(decision.isUnlimitedConnections(), is(false));
+
+        final IpResourceConfiguration.AclDecision other = subject.getDecision(InetAddress.getByName("128.0.1.1"));
+        assertThat(other.isDenied(), is(false));
+        assertThat(other.isProxy(), is(false));
+        assertThat(other.getLimit(), is(1000));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void test_reload_replaces_cached_decisions() throws Exception {
+        assertThat(subject.isDenied(inetAddress), is(false));
+
+        when(loader.loadIpDenied()).thenReturn(Arrays.asList(new IpResourceEntry<>(IpInterval.asIpInterval(inetAddress), true)));
+        subject.reload();
+
+        assertThat(subject.isDenied(inetAddress), is(true));
+    }
 }
@@ -0,0 +1,114 @@
+package net.ripe.db.whois.query.executor;
+
+import com.google.common.collect.Lists;
+import net.ripe.db.whois.common.source.Source;
+import net.ripe.db.whois.common.source.SourceContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class IndexLookupFanoutTest {
+    @Mock SourceContext sourceContext;
+
+    private IndexLookupFanout subject;
+
+    @BeforeEach
+    public void setUp() {
+        subject = new IndexLookupFanout(sourceContext, 4, 3);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        subject.stop();
+    }
+
+    @Test
+    public void results_in_lookup_order() {
+        when(sourceContext.getCurrentSource()).thenReturn(Source.slave("TEST"));
+        final List<Supplier<Integer>> lookups = IntStream.range(0, 20)
+                .mapToObj(i -> (Supplier<Integer>) () -> i)
+                .collect(Collectors.toList());
+
+        assertThat(subject.getAll(lookups), is(IntStream.range(0, 20).boxed().collect(Collectors.toList())));
+    }
+
+    @Test
+    public void lookups_run_concurrently_within_budget() throws Exception {
+        final Source source = Source.slave("TEST");
+        when(sourceContext.getCurrentSource()).thenReturn(source);
+
+        final CountDownLatch started = new CountDownLatch(3);
+        final Set<String> threads = ConcurrentHashMap.newKeySet();
+        final List<Supplier<String>> lookups = Lists.newArrayList();
+        for (int i = 0; i < 6; i++) {
+            lookups.add(() -> {
+                threads.add(Thread.currentThread().getName());
+                started.countDown();
+                try {
+                    started.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return "ok";
+            });
+        }
+
+        subject.getAll(lookups);
+
+        assertThat(started.getCount(), is(0L));
+        assertThat(threads.size(), greaterThan(1));
+        assertThat(threads.size(), lessThanOrEqualTo(3));
+        verify(sourceContext, atLeastOnce()).setCurrent(source);
+        verify(sourceContext, atLeastOnce()).removeCurrentSource();
+    }
+
+    @Test
+    public void lookup_exception_is_propagated() {
+        when(sourceContext.getCurrentSource()).thenReturn(Source.slave("TEST"));
+        final List<Supplier<String>> lookups = Lists.newArrayList(
+                () -> "ok",
+                () -> {
+                    throw new IllegalArgumentException("failed");
+                });
+
+        final IllegalArgumentException e = Assertions.assertThrows(IllegalArgumentException.class, () -> subject.getAll(lookups));
+        assertThat(e.getMessage(), is("failed"));
+    }
+
+    @Test
+    public void sequential_when_disabled() {
+        final IndexLookupFanout sequential = new IndexLookupFanout(sourceContext, 0, 3);
+        final Set<String> threads = ConcurrentHashMap.newKeySet();
+        final List<Supplier<Integer>> lookups = IntStream.range(0, 5)
+                .mapToObj(i -> (Supplier<Integer>) () -> {
+                    threads.add(Thread.currentThread().getName());
+                    return i;
+                })
+                .collect(Collectors.toList());
+
+        assertThat(sequential.getAll(lookups), is(IntStream.range(0, 5).boxed().collect(Collectors.toList())));
+        assertThat(threads, is(Set.of(Thread.currentThread().getName())));
+    }
+}
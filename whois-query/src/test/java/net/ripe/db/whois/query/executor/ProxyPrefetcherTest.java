@@ -0,0 +1,107 @@
+package net.ripe.db.whois.query.executor;
+
+import com.google.common.collect.Lists;
+import net.ripe.db.whois.common.collect.ProxyLoader;
+import net.ripe.db.whois.common.dao.RpslObjectInfo;
+import net.ripe.db.whois.common.domain.Identifiable;
+import net.ripe.db.whois.common.domain.ResponseObject;
+import net.ripe.db.whois.common.rpsl.ObjectType;
+import net.ripe.db.whois.common.rpsl.RpslObject;
+import net.ripe.db.whois.common.source.SourceContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@ExtendWith(MockitoExtension.class)
+public class ProxyPrefetcherTest {
+    @Mock SourceContext sourceContext;
+
+    private final Set<Thread> loadingThreads = ConcurrentHashMap.newKeySet();
+    private final ProxyLoader<Identifiable, RpslObject> loader = (proxy, result) -> {
+        loadingThreads.add(Thread.currentThread());
+        for (final Identifiable identifiable : proxy) {
+            result.add(RpslObject.parse("mntner: MNT-" + identifiable.getObjectId()));
+        }
+    };
+    private final List<RpslObjectInfo> identifiables = Lists.newArrayList(
+            new RpslObjectInfo(1, ObjectType.MNTNER, "MNT-1"),
+            new RpslObjectInfo(2, ObjectType.MNTNER, "MNT-2"));
+
+    private ProxyPrefetcher subject;
+
+    @BeforeEach
+    public void setUp() {
+        subject = new ProxyPrefetcher(sourceContext, 1, 2, 1000, 50);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        subject.stop();
+    }
+
+    @Test
+    public void loaded_on_current_thread_outside_scope() {
+        assertThat(load(subject.iterateProxy(loader, identifiables)), contains("MNT-1", "MNT-2"));
+        assertThat(loadingThreads, contains(Thread.currentThread()));
+    }
+
+    @Test
+    public void prefetched_within_scope() {
+        try (ProxyPrefetcher.Scope ignored = subject.open()) {
+            assertThat(load(subject.iterateProxy(loader, identifiables)), contains("MNT-1", "MNT-2"));
+        }
+
+        assertThat(loadingThreads, hasSize(1));
+        assertThat(loadingThreads.contains(Thread.currentThread()), is(false));
+    }
+
+    @Test
+    public void close_cancels_and_clears_scope() {
+        final Iterable<ResponseObject> prefetched;
+        try (ProxyPrefetcher.Scope ignored = subject.open()) {
+            prefetched = subject.iterateProxy(loader, identifiables);
+        }
+
+        assertThrows(CancellationException.class, () -> load(prefetched));
+
+        assertThat(load(subject.iterateProxy(loader, identifiables)), contains("MNT-1", "MNT-2"));
+        assertThat(loadingThreads, contains(Thread.currentThread()));
+    }
+
+    @Test
+    public void close_nested_scope_restores_outer_scope() {
+        final ProxyPrefetcher.Scope outer = subject.open();
+
+        final Iterable<ResponseObject> inner;
+        try (ProxyPrefetcher.Scope ignored = subject.open()) {
+            inner = subject.iterateProxy(loader, identifiables);
+        }
+        assertThrows(CancellationException.class, () -> load(inner));
+
+        final Iterable<ResponseObject> prefetched = subject.iterateProxy(loader, identifiables);
+        outer.close();
+        assertThrows(CancellationException.class, () -> load(prefetched));
+    }
+
+    private static List<String> load(final Iterable<ResponseObject> responseObjects) {
+        final List<String> keys = Lists.newArrayList();
+        for (final ResponseObject responseObject : responseObjects) {
+            keys.add(((RpslObject) responseObject).getKey().toString());
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,143 @@
+package net.ripe.db.whois.query.executor;
+
+import com.google.common.collect.Lists;
+import net.ripe.db.whois.common.rpsl.RpslObject;
+import net.ripe.db.whois.common.source.Source;
+import net.ripe.db.whois.common.source.SourceConfiguration;
+import net.ripe.db.whois.common.source.SourceContext;
+import net.ripe.db.whois.query.domain.MessageObject;
+import net.ripe.db.whois.query.query.Query;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.both;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class QueryResponseCacheTest {
+    private static final Source SOURCE = Source.slave("TEST");
+
+    @Mock SourceContext sourceContext;
+    @Mock SourceConfiguration sourceConfiguration;
+    @Mock JdbcTemplate jdbcTemplate;
+
+    private final RpslObject inetnum = RpslObject.parse("inetnum: 10.0.0.0 - 10.255.255.255\nsource: TEST");
+
+    private QueryResponseCache subject;
+
+    @BeforeEach
+    public void setUp() {
+        lenient().when(sourceContext.getSourceConfiguration(SOURCE)).thenReturn(sourceConfiguration);
+        lenient().when(sourceConfiguration.getJdbcTemplate()).thenReturn(jdbcTemplate);
+        lenient().when(jdbcTemplate.queryForObject(anyString(), eq(Long.class))).thenReturn(1L);
+
+        subject = new QueryResponseCache(sourceContext, 1_000_000, 10);
+    }
+
+    @Test
+    public void disabled() {
+        subject = new QueryResponseCache(sourceContext, 0, 10);
+
+        assertThat(subject.getKey(Query.parse("10.0.0.0")), is(nullValue()));
+    }
+
+    @Test
+    public void key_normalises_flags() {
+        assertThat(subject.getKey(Query.parse("-r -B 10.0.0.0")), is(subject.getKey(Query.parse("-B  -r 10.0.0.0"))));
+        assertThat(subject.getKey(Query.parse("-T inetnum,route 10.0.0.0")), is(subject.getKey(Query.parse("-T route,inetnum 10.0.0.0"))));
+        assertThat(subject.getKey(Query.parse("-k -V client,10.1.1.1 10.0.0.0")), is(subject.getKey(Query.parse("10.0.0.0"))));
+
+        assertThat(subject.getKey(Query.parse("-r 10.0.0.0")), is(not(subject.getKey(Query.parse("10.0.0.0")))));
+        assertThat(subject.getKey(Query.parse("10.0.0.0", Query.Origin.LEGACY, true)), is(not(subject.getKey(Query.parse("10.0.0.0")))));
+        assertThat(subject.getKey(Query.parse("10.0.0.0", Query.Origin.REST, false)), is(not(subject.getKey(Query.parse("10.0.0.0")))));
+    }
+
+    @Test
+    public void authenticated_query_not_cached() {
+        assertThat(subject.getKey(Query.parse("10.0.0.0", null, Lists.newArrayList("password"), false)), is(nullValue()));
+        assertThat(subject.getKey(Query.parse("10.0.0.0", "token", null, false)), is(nullValue()));
+    }
+
+    @Test
+    public void first_response_from_source_not_cached() {
+        final QueryResponseCache.Key key = subject.getKey(Query.parse("10.0.0.0"));
+
+        subject.put(subject.getGeneration(), key, response(inetnum));
+        assertThat(subject.getIfPresent(key), is(nullValue()));
+
+        subject.put(subject.getGeneration(), key, response(inetnum));
+        assertThat(subject.getIfPresent(key).getResponseObjects(SOURCE), contains(inetnum));
+        assertThat(subject.getWeight(), is((long) QueryResponseCache.estimateWeight(inetnum)));
+    }
+
+    @Test
+    public void estimated_weight_close_to_serialised_size() {
+        final int size = inetnum.toByteArray().length;
+
+        assertThat(QueryResponseCache.estimateWeight(inetnum), is(both(greaterThan(size * 9 / 10)).and(lessThan(size * 11 / 10))));
+        assertThat(QueryResponseCache.estimateWeight(new MessageObject("% message\n")), is(10));
+    }
+
+    @Test
+    public void invalidated_on_serial_advance() {
+        final QueryResponseCache.Key key = subject.getKey(Query.parse("10.0.0.0"));
+        subject.put(subject.getGeneration(), key, response(inetnum));
+        subject.put(subject.getGeneration(), key, response(inetnum));
+
+        subject.update();
+        assertThat(subject.getIfPresent(key), is(notNullValue()));
+
+        when(jdbcTemplate.queryForObject(anyString(), eq(Long.class))).thenReturn(2L);
+        subject.update();
+
+        assertThat(subject.getIfPresent(key), is(nullValue()));
+        assertThat(subject.getWeight(), is(0L));
+    }
+
+    @Test
+    public void not_cached_if_invalidated_while_searching() {
+        final QueryResponseCache.Key key = subject.getKey(Query.parse("10.0.0.0"));
+        subject.put(subject.getGeneration(), key, response(inetnum));
+
+        final long generation = subject.getGeneration();
+        subject.invalidateAll();
+        subject.put(generation, key, response(inetnum));
+
+        assertThat(subject.getIfPresent(key), is(nullValue()));
+    }
+
+    @Test
+    public void large_response_not_recorded() {
+        final QueryResponseCache.Response response = new QueryResponseCache.Response();
+
+        for (int i = 0; i < QueryResponseCache.MAX_RESPONSE_OBJECTS; i++) {
+            assertThat(response.add(SOURCE, new MessageObject("message")), is(true));
+        }
+
+        assertThat(response.add(SOURCE, inetnum), is(false));
+    }
+
+    private static QueryResponseCache.Response response(final RpslObject... rpslObjects) {
+        final QueryResponseCache.Response response = new QueryResponseCache.Response();
+        response.addSource(SOURCE);
+        for (final RpslObject rpslObject : rpslObjects) {
+            response.add(SOURCE, rpslObject);
+        }
+        return response;
+    }
+}
@@ -25,12 +25,15 @@ import net.ripe.db.whois.query.dao.Inet6numDao;
 import net.ripe.db.whois.query.dao.InetnumDao;
 import net.ripe.db.whois.query.filter.AttributeFilter;
 import net.ripe.db.whois.query.query.Query;
+import net.ripe.db.whois.query.query.QueryCursor;
+import net.ripe.db.whois.query.query.QueryPaging;
 import net.ripe.db.whois.query.support.Fixture;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.dao.EmptyResultDataAccessException;
 
@@ -47,6 +50,8 @@ import static org.hamcrest.Matchers.is;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -65,6 +70,8 @@ public class RpslObjectSearcherTest {
     @Mock Ipv6DomainTree ipv6DomainTree;
     @Mock Set<AttributeFilter> attributeFilters;
     @Mock SourceContext sourceContext;
+    @Spy ProxyPrefetcher proxyPrefetcher = new ProxyPrefetcher(mock(SourceContext.class), 0, 2, 1000, 50);
+    @Spy IndexLookupFanout indexLookupFanout = new IndexLookupFanout(mock(SourceContext.class), 0, 4);
     @InjectMocks RpslObjectSearcher subject;
 
     @BeforeEach
@@ -154,6 +161,65 @@ public class RpslObjectSearcherTest {
     }
 
 
+    @Test
+    public void paged_search_resumes_after_cursor() {
+        final RpslObject inetnum1 = RpslObject.parse("inetnum: 10.0.0.0 - 10.0.0.255");
+        final RpslObject inetnum2 = RpslObject.parse("inetnum: 10.0.1.0 - 10.0.1.255");
+        final RpslObject inetnum3 = RpslObject.parse("inetnum: 10.0.2.0 - 10.0.2.255");
+        mockRpslObjects(inetnum1, inetnum2, inetnum3);
+
+        final Ipv4Resource ipResource = Ipv4Resource.parse("10.0.0.0/16");
+        when(ipv4Tree.findAllMoreSpecific(ipResource)).thenReturn(Lists.newArrayList(
+                new Ipv4Entry(Ipv4Resource.parse("10.0.0.0/24"), infoFor(inetnum1).getObjectId()),
+                new Ipv4Entry(Ipv4Resource.parse("10.0.1.0/24"), infoFor(inetnum2).getObjectId()),
+                new Ipv4Entry(Ipv4Resource.parse("10.0.2.0/24"), infoFor(inetnum3).getObjectId())));
+
+        final QueryPaging paging = new QueryPaging(new QueryCursor("TEST", ObjectType.INETNUM, 0, infoFor(inetnum1).getObjectId()));
+        paging.startSource("TEST");
+
+        assertQueryResult(Query.parse("-r -T inetnum -M 10.0.0.0/16").setPaging(paging), inetnum2, inetnum3);
+
+        verify(rpslObjectDao, never()).getById(infoFor(inetnum1).getObjectId());
+        assertThat(paging.getPosition(), is(new QueryCursor("TEST", ObjectType.INETNUM, 2, infoFor(inetnum3).getObjectId())));
+    }
+
+    @Test
+    public void paged_search_resumes_at_index_if_object_gone() {
+        final RpslObject inetnum1 = RpslObject.parse("inetnum: 10.0.0.0 - 10.0.0.255");
+        final RpslObject inetnum2 = RpslObject.parse("inetnum: 10.0.1.0 - 10.0.1.255");
+        mockRpslObjects(inetnum1, inetnum2);
+
+        final Ipv4Resource ipResource = Ipv4Resource.parse("10.0.0.0/16");
+        when(ipv4Tree.findAllMoreSpecific(ipResource)).thenReturn(Lists.newArrayList(
+                new Ipv4Entry(Ipv4Resource.parse("10.0.0.0/24"), infoFor(inetnum1).getObjectId()),
+                new Ipv4Entry(Ipv4Resource.parse("10.0.1.0/24"), infoFor(inetnum2).getObjectId())));
+
+        final QueryPaging paging = new QueryPaging(new QueryCursor("TEST", ObjectType.INETNUM, 0, 1000));
+        paging.startSource("TEST");
+
+        assertQueryResult(Query.parse("-r -T inetnum -M 10.0.0.0/16").setPaging(paging), inetnum2);
+    }
+
+    @Test
+    public void paged_search_position_counts_objects_not_found() {
+        final RpslObject inetnum1 = RpslObject.parse("inetnum: 10.0.0.0 - 10.0.0.255");
+        final RpslObject inetnum3 = RpslObject.parse("inetnum: 10.0.2.0 - 10.0.2.255");
+        mockRpslObjects(inetnum1, inetnum3);
+
+        final Ipv4Resource ipResource = Ipv4Resource.parse("10.0.0.0/16");
+        when(ipv4Tree.findAllMoreSpecific(ipResource)).thenReturn(Lists.newArrayList(
+                new Ipv4Entry(Ipv4Resource.parse("10.0.0.0/24"), infoFor(inetnum1).getObjectId()),
+                new Ipv4Entry(Ipv4Resource.parse("10.0.1.0/24"), 1000),
+                new Ipv4Entry(Ipv4Resource.parse("10.0.2.0/24"), infoFor(inetnum3).getObjectId())));
+
+        final QueryPaging paging = new QueryPaging(new QueryCursor("TEST", ObjectType.INETNUM, 0, infoFor(inetnum1).getObjectId()));
+        paging.startSource("TEST");
+
+        assertQueryResult(Query.parse("-r -T inetnum -M 10.0.0.0/16").setPaging(paging), inetnum3);
+
+        assertThat(paging.getPosition(), is(new QueryCursor("TEST", ObjectType.INETNUM, 2, infoFor(inetnum3).getObjectId())));
+    }
+
     @Test
     public void inverse_lookup_never_returns_null() {
         for (final AttributeType attributeType : AttributeType.values()) {
@@ -219,8 +285,12 @@ public class RpslObjectSearcherTest {
     }
 
     private void assertQueryResult(final String query, final RpslObject... expectedResults) {
+        assertQueryResult(Query.parse(query), expectedResults);
+    }
+
+    private void assertQueryResult(final Query query, final RpslObject... expectedResults) {
         final Set<RpslObject> rpslObjects = Sets.newLinkedHashSet();
-        for (final ResponseObject responseObject : subject.search(Query.parse(query), sourceContext)) {
+        for (final ResponseObject responseObject : subject.search(query, sourceContext)) {
             if (responseObject instanceof RpslObject) {
                 rpslObjects.add((RpslObject) responseObject);
             }
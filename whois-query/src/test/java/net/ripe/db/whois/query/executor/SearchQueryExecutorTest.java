@@ -3,6 +3,7 @@ package net.ripe.db.whois.query.executor;
 import net.ripe.db.whois.common.domain.CIString;
 import net.ripe.db.whois.common.domain.ResponseObject;
 import net.ripe.db.whois.common.rpsl.AttributeType;
+import net.ripe.db.whois.common.rpsl.RpslObject;
 import net.ripe.db.whois.common.source.IllegalSourceException;
 import net.ripe.db.whois.common.source.Source;
 import net.ripe.db.whois.common.source.SourceContext;
@@ -16,6 +17,7 @@ import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.invocation.InvocationOnMock;
@@ -45,6 +47,8 @@ public class SearchQueryExecutorTest {
     @Mock SourceContext sourceContext;
     @Mock RpslObjectSearcher rpslObjectSearcher;
     @Mock RpslResponseDecorator rpslResponseDecorator;
+    @Mock ProxyPrefetcher proxyPrefetcher;
+    @Mock QueryResponseCache queryResponseCache;
     @InjectMocks SearchQueryExecutor subject;
 
     @BeforeEach
@@ -111,6 +115,44 @@ public class SearchQueryExecutorTest {
         assertThat(responseHandler.getResponseObjects().get(0), Matchers.<ResponseObject>is(new MessageObject(QueryMessages.unknownSource("UNKNOWN"))));
     }
 
+    @Test
+    public void cached_response_replayed() {
+        when(sourceContext.getWhoisSlaveSource()).thenReturn(Source.slave("RIPE"));
+        final RpslObject inetnum = RpslObject.parse("inetnum: 10.0.0.0 - 10.255.255.255\nsource: RIPE");
+        final QueryResponseCache.Response response = new QueryResponseCache.Response();
+        response.add(Source.slave("RIPE"), inetnum);
+
+        final Query query = Query.parse("10.0.0.0");
+        final QueryResponseCache.Key key = new QueryResponseCache(sourceContext, 1, 10).getKey(query);
+        when(queryResponseCache.getKey(query)).thenReturn(key);
+        when(queryResponseCache.getIfPresent(key)).thenReturn(response);
+
+        final CaptureResponseHandler responseHandler = new CaptureResponseHandler();
+        subject.execute(query, responseHandler);
+
+        verify(rpslObjectSearcher, never()).search(any(Query.class), any(SourceContext.class));
+        verify(sourceContext).setCurrent(Source.slave("RIPE"));
+        verify(sourceContext).removeCurrentSource();
+        assertThat(responseHandler.getResponseObjects(), contains((ResponseObject) inetnum));
+    }
+
+    @Test
+    public void response_cached() {
+        when(sourceContext.getWhoisSlaveSource()).thenReturn(Source.slave("RIPE"));
+        final RpslObject inetnum = RpslObject.parse("inetnum: 10.0.0.0 - 10.255.255.255\nsource: RIPE");
+        when(rpslObjectSearcher.search(any(Query.class), any(SourceContext.class))).thenReturn((Iterable) Collections.singletonList(inetnum));
+
+        final Query query = Query.parse("10.0.0.0");
+        final QueryResponseCache.Key key = new QueryResponseCache(sourceContext, 1, 10).getKey(query);
+        when(queryResponseCache.getKey(query)).thenReturn(key);
+
+        subject.execute(query, new CaptureResponseHandler());
+
+        final ArgumentCaptor<QueryResponseCache.Response> responseCaptor = ArgumentCaptor.forClass(QueryResponseCache.Response.class);
+        verify(queryResponseCache).put(eq(0L), eq(key), responseCaptor.capture());
+        assertThat(responseCaptor.getValue().getResponseObjects(Source.slave("RIPE")), contains((ResponseObject) inetnum));
+    }
+
     @Test
     public void query_all_sources() {
         when(sourceContext.getAllSourceNames()).thenReturn(ciSet("APNIC-GRS", "ARIN-GRS"));
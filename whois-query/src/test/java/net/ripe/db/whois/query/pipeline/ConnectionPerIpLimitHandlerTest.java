@@ -55,7 +55,8 @@ public class ConnectionPerIpLimitHandlerTest {
 
         lenient().when(ipResourceConfiguration.isUnlimitedConnections(any(InetAddress.class))).thenReturn(false);
         lenient().when(ipResourceConfiguration.isProxy(any(InetAddress.class))).thenReturn(false);
-        when(channel.write(any())).thenReturn(channelFuture);
+        lenient().when(channel.write(any())).thenReturn(channelFuture);
+        lenient().when(channel.writeAndFlush(any())).thenReturn(channelFuture);
     }
 
     @AfterEach
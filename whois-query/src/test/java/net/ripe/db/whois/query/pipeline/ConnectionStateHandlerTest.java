@@ -17,6 +17,7 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.times;
@@ -62,7 +63,7 @@ public class ConnectionStateHandlerTest {
 
         subject.write(contextMock, new QueryCompletedEvent(channelMock), promiseMock);
         verify(contextMock, atLeastOnce()).channel();
-        verify(contextMock, atLeastOnce()).write(any(QueryCompletedEvent.class));
+        verify(contextMock, atLeastOnce()).write(any(QueryCompletedEvent.class), eq(promiseMock));
         verify(channelMock, atLeastOnce()).write(any(byte[].class));
         verify(channelMock, atLeastOnce()).write(QueryMessages.termsAndConditions());
         verify(futureMock, times(0)).addListener(ChannelFutureListener.CLOSE);
@@ -42,10 +42,11 @@ public class ServedByHandlerTest {
     public void test_handleDownstream_whois() {
         String msg = "msg";
         subject.write(ctxMock, msg, promiseMock);
-        verify(ctxMock, times(1)).writeAndFlush(msg);
+        verify(ctxMock, times(1)).write(msg, promiseMock);
 
         subject.write(ctxMock, queryCompletedEventMock, promiseMock);
         verify(ctxMock, times(1)).channel();
         verify(channelMock, times(1)).write(QueryMessages.servedByNotice(any()));
+        verify(ctxMock, times(1)).writeAndFlush(queryCompletedEventMock, promiseMock);
     }
 }
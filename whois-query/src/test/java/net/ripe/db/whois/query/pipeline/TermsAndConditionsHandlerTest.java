@@ -35,6 +35,6 @@ public class TermsAndConditionsHandlerTest {
         subject.channelActive(ctxMock);
 
         verify(ctxMock, times(1)).channel();
-        verify(channelMock, times(1)).write(QueryMessages.termsAndConditions());
+        verify(channelMock, times(1)).writeAndFlush(QueryMessages.termsAndConditions());
     }
 }
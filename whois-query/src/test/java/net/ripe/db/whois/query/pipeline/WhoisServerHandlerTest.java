@@ -6,6 +6,7 @@ import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelId;
 import io.netty.channel.ChannelPipeline;
 import net.ripe.db.whois.common.domain.ResponseObject;
+import net.ripe.db.whois.common.pipeline.ChannelWritability;
 import net.ripe.db.whois.common.rpsl.RpslObject;
 import net.ripe.db.whois.query.domain.QueryCompletionInfo;
 import net.ripe.db.whois.query.domain.QueryException;
@@ -15,12 +16,12 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.hasSize;
@@ -31,6 +32,8 @@ import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -45,8 +48,8 @@ public class WhoisServerHandlerTest {
     @Mock
     ChannelId channelId;
     @Mock QueryHandler queryHandler;
-    @InjectMocks WhoisServerHandler subject;
-
+    ChannelWritability channelWritability = new ChannelWritability();
+    WhoisServerHandler subject;
 
     InetAddress inetAddress = InetAddresses.forString("10.0.0.1");
     ResponseObject responseObject = RpslObject.parse("inetnum: 10.0.0.0");
@@ -57,6 +60,7 @@ public class WhoisServerHandlerTest {
         lenient().when(ctx.pipeline()).thenReturn(pipeline);
         when(channel.remoteAddress()).thenReturn(new InetSocketAddress(inetAddress, 80));
         when(channel.id()).thenReturn(channelId);
+        lenient().when(channel.isWritable()).thenReturn(true);
 
         lenient().doNothing().when(queryHandler).streamResults(
             any(Query.class),
@@ -66,6 +70,8 @@ public class WhoisServerHandlerTest {
                 o.handle(responseObject);
                 return true;
             }));
+
+        subject = new WhoisServerHandler(queryHandler, channelWritability);
     }
 
     @Test
@@ -95,4 +101,45 @@ public class WhoisServerHandlerTest {
             assertThat(e.getMessages(), hasSize(0));
         }
     }
+
+    @Test
+    public void messageReceived_waits_until_writable() throws Exception {
+        final AtomicBoolean writable = new AtomicBoolean(false);
+        when(channel.isWritable()).thenAnswer(invocation -> writable.get());
+        when(channel.isActive()).thenReturn(true);
+
+        final Thread worker = new Thread(() -> {
+            try {
+                subject.channelRead(ctx, Query.parse("10.0.0.0"));
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        worker.start();
+
+        verify(channel, timeout(1000)).flush();
+        verify(channel, never()).write(responseObject);
+
+        writable.set(true);
+        channelWritability.channelWritabilityChanged(ctx);
+        worker.join(1000);
+
+        assertThat(worker.isAlive(), is(false));
+        verify(channel).write(responseObject);
+    }
+
+    @Test
+    public void messageReceived_disconnected_while_not_writable() throws Exception {
+        when(channel.isWritable()).thenReturn(false);
+        when(channel.isActive()).thenReturn(false);
+
+        try {
+            subject.channelRead(ctx, Query.parse("10.0.0.0"));
+            fail("Expected query exception");
+        } catch (QueryException e) {
+            assertThat(e.getCompletionInfo(), is(QueryCompletionInfo.DISCONNECTED));
+        }
+
+        verify(channel, never()).write(responseObject);
+    }
 }
@@ -0,0 +1,46 @@
+package net.ripe.db.whois.query.query;
+
+import net.ripe.db.whois.common.rpsl.ObjectType;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class QueryCursorTest {
+
+    @Test
+    public void encode_and_decode() {
+        final QueryCursor cursor = new QueryCursor("TEST-GRS", ObjectType.INET6NUM, 12, 4711);
+
+        assertThat(QueryCursor.decode(cursor.encode()), is(cursor));
+    }
+
+    @Test
+    public void encode_and_decode_without_object_type() {
+        final QueryCursor cursor = new QueryCursor("TEST", null, 0, 1);
+
+        assertThat(QueryCursor.decode(cursor.encode()), is(cursor));
+    }
+
+    @Test
+    public void decode_invalid() {
+        assertThrows(IllegalArgumentException.class, () -> QueryCursor.decode("invalid"));
+        assertThrows(IllegalArgumentException.class, () -> QueryCursor.decode("%%%"));
+        assertThrows(IllegalArgumentException.class, () -> QueryCursor.decode(new QueryCursor("TEST", ObjectType.INETNUM, -1, 1).encode()));
+    }
+
+    @Test
+    public void paging_skips_sources_and_types_before_cursor() {
+        final QueryPaging subject = new QueryPaging(new QueryCursor("TEST", ObjectType.INET6NUM, 0, 1));
+
+        assertThat(subject.startSource("TEST-GRS"), is(false));
+        assertThat(subject.startSource("TEST"), is(true));
+        assertThat(subject.isSkipped(ObjectType.INETNUM), is(true));
+        assertThat(subject.isSkipped(ObjectType.INET6NUM), is(false));
+        assertThat(subject.isSkipped(ObjectType.ROUTE), is(false));
+
+        assertThat(subject.startSource("TEST-GRS"), is(true));
+        assertThat(subject.isSkipped(ObjectType.INETNUM), is(false));
+    }
+}
@@ -0,0 +1,159 @@
+package net.ripe.db.whois.scheduler.task.export;
+
+import com.google.common.collect.Lists;
+import net.ripe.db.whois.common.domain.Tag;
+import net.ripe.db.whois.common.rpsl.RpslObject;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hands the exported objects to each export file writer on a thread of its own, so objects are decorated, written and
+ * compressed for all export files in parallel rather than on the thread reading the database.
+ * <p/>
+ * Objects are passed on in batches through a bounded queue per writer, so reading is held back by the slowest writer.
+ */
+class ExportWriterPipeline {
+    private static final int BATCH_SIZE = 100;
+
+    private static final List<ExportEntry> END = Collections.emptyList();
+
+    private final List<Worker> workers;
+    private List<ExportEntry> batch = Lists.newArrayListWithExpectedSize(BATCH_SIZE);
+
+    ExportWriterPipeline(final List<ExportFileWriter> exportFileWriters, final int queueSize) {
+        this.workers = Lists.newArrayListWithExpectedSize(exportFileWriters.size());
+
+        for (int index = 0; index < exportFileWriters.size(); index++) {
+            final Worker worker = new Worker(exportFileWriters.get(index), queueSize);
+            final Thread thread = new Thread(worker, String.format("export-writer-%s", index + 1));
+            worker.thread = thread;
+            workers.add(worker);
+            thread.start();
+        }
+    }
+
+    public void write(final RpslObject object, final List<Tag> tags) {
+        batch.add(new ExportEntry(object, tags));
+        if (batch.size() >= BATCH_SIZE) {
+            flush();
+        }
+    }
+
+    /**
+     * Wait until all objects are written.
+     *
+     * @throws RuntimeException if any of the writers failed
+     */
+    public void finish() {
+        flush();
+
+        for (final Worker worker : workers) {
+            worker.put(END);
+        }
+
+        for (final Worker worker : workers) {
+            try {
+                worker.thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted waiting for " + worker.exportFileWriter, e);
+            }
+            worker.checkFailure();
+        }
+    }
+
+    /**
+     * Stop any writers still running, e.g. if reading failed.
+     */
+    public void stop() {
+        for (final Worker worker : workers) {
+            worker.thread.interrupt();
+        }
+
+        for (final Worker worker : workers) {
+            try {
+                worker.thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void flush() {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        for (final Worker worker : workers) {
+            worker.put(batch);
+        }
+
+        batch = Lists.newArrayListWithExpectedSize(BATCH_SIZE);
+    }
+
+    private static final class ExportEntry {
+        private final RpslObject object;
+        private final List<Tag> tags;
+
+        private ExportEntry(final RpslObject object, final List<Tag> tags) {
+            this.object = object;
+            this.tags = tags;
+        }
+    }
+
+    private static final class Worker implements Runnable {
+        private final ExportFileWriter exportFileWriter;
+        private final BlockingQueue<List<ExportEntry>> queue;
+        private Thread thread;
+        private volatile Exception failure;
+
+        private Worker(final ExportFileWriter exportFileWriter, final int queueSize) {
+            this.exportFileWriter = exportFileWriter;
+            this.queue = new ArrayBlockingQueue<>(queueSize);
+        }
+
+        private void put(final List<ExportEntry> entries) {
+            try {
+                while (!queue.offer(entries, 1, TimeUnit.SECONDS)) {
+                    checkFailure();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted exporting to " + exportFileWriter, e);
+            }
+            checkFailure();
+        }
+
+        private void checkFailure() {
+            if (failure != null) {
+                throw new RuntimeException("Exporting to " + exportFileWriter, failure);
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    final List<ExportEntry> entries = queue.take();
+                    if (entries == END) {
+                        return;
+                    }
+
+                    for (final ExportEntry entry : entries) {
+                        exportFileWriter.write(entry.object, entry.tags);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException | RuntimeException e) {
+                failure = e;
+            }
+        }
+    }
+}
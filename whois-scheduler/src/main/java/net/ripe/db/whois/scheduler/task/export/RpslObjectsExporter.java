@@ -1,7 +1,6 @@
 package net.ripe.db.whois.scheduler.task.export;
 
 import com.google.common.base.Stopwatch;
-import net.ripe.db.whois.common.dao.TagsDao;
 import net.ripe.db.whois.common.domain.Tag;
 import net.ripe.db.whois.common.rpsl.RpslObject;
 import net.ripe.db.whois.scheduler.task.export.dao.ExportCallbackHandler;
@@ -18,7 +17,6 @@ import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.FileSystemUtils;
 
 import java.io.File;
-import java.io.IOException;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -28,7 +26,7 @@ class RpslObjectsExporter {
 
     private final ExportFileWriterFactory exportFileWriterFactory;
     private final ExportDao exportDao;
-    private final TagsDao tagsDao;
+    private final int queueSize;
     private final File exportDir;
     private final File tmpDir;
 
@@ -38,13 +36,13 @@ class RpslObjectsExporter {
     @Autowired
     public RpslObjectsExporter(final ExportFileWriterFactory exportFileWriterFactory,
                                final ExportDao exportDao,
-                               final TagsDao tagsDao,
                                @Value("${dir.rpsl.export}") final String exportDirName,
                                @Value("${dir.rpsl.export.tmp}") final String tmpDirName,
-                               @Value("${rpsl.export.enabled:true}") final boolean enabled) {
+                               @Value("${rpsl.export.enabled:true}") final boolean enabled,
+                               @Value("${rpsl.export.queue.size:100}") final int queueSize) {
         this.exportFileWriterFactory = exportFileWriterFactory;
         this.exportDao = exportDao;
-        this.tagsDao = tagsDao;
+        this.queueSize = queueSize;
         this.enabled = enabled;
 
         exportDir = new File(exportDirName);
@@ -104,10 +102,13 @@ class RpslObjectsExporter {
 
         final List<ExportFileWriter> exportFileWriters = exportFileWriterFactory.createExportFileWriters(tmpDir, maxSerial);
         try {
-            final TextFileExporter textFileExporter = new TextFileExporter(exportFileWriters);
+            final ExportWriterPipeline exportWriterPipeline = new ExportWriterPipeline(exportFileWriters, queueSize);
+            final TextFileExporter textFileExporter = new TextFileExporter(exportWriterPipeline);
             try {
                 exportDao.exportObjects(textFileExporter);
+                exportWriterPipeline.finish();
             } finally {
+                exportWriterPipeline.stop();
                 textFileExporter.logNrExported();
             }
         } finally {
@@ -119,25 +120,18 @@ class RpslObjectsExporter {
 
     private final class TextFileExporter implements ExportCallbackHandler {
         private static final int LOG_EVERY = 500000;
-        private final Iterable<ExportFileWriter> exportFileWriters;
+        private final ExportWriterPipeline exportWriterPipeline;
 
         private int lastLogged = -1;
         private int nrExported = 0;
 
-        private TextFileExporter(final Iterable<ExportFileWriter> exportFileWriters) {
-            this.exportFileWriters = exportFileWriters;
+        private TextFileExporter(final ExportWriterPipeline exportWriterPipeline) {
+            this.exportWriterPipeline = exportWriterPipeline;
         }
 
         @Override
-        public void exportObject(final RpslObject object) {
-            final List<Tag> tags = tagsDao.getTags(object.getObjectId());
-            for (final ExportFileWriter exportFileWriter : exportFileWriters) {
-                try {
-                    exportFileWriter.write(object, tags);
-                } catch (IOException e) {
-                    throw new RuntimeException("Exporting to " + exportFileWriter, e);
-                }
-            }
+        public void exportObject(final RpslObject object, final List<Tag> tags) {
+            exportWriterPipeline.write(object, tags);
 
             if (++nrExported % LOG_EVERY == 0) {
                 logNrExported();
@@ -1,18 +1,23 @@
 package net.ripe.db.whois.scheduler.task.export.dao;
 
+import com.google.common.collect.Lists;
 import net.ripe.db.whois.common.dao.jdbc.JdbcStreamingHelper;
+import net.ripe.db.whois.common.domain.CIString;
+import net.ripe.db.whois.common.domain.Tag;
 import net.ripe.db.whois.common.rpsl.RpslObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.ResultSetExtractor;
 import org.springframework.stereotype.Repository;
 
+import javax.annotation.Nullable;
 import javax.sql.DataSource;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.List;
 
 @Repository
 class JdbcExportDao implements ExportDao {
@@ -30,34 +35,67 @@ class JdbcExportDao implements ExportDao {
         return jdbcTemplate.queryForObject("SELECT max(serial_id) FROM serials", Integer.class);
     }
 
+    /**
+     * Stream the objects in object_id order, joined with their tags, so tags are not looked up for each object.
+     */
     @Override
     public void exportObjects(final ExportCallbackHandler exportCallbackHandler) {
         JdbcStreamingHelper.executeStreaming(jdbcTemplate,
-                "SELECT object_id, object " +
+                "SELECT last.object_id, last.object, tags.tag_id, tags.data " +
                         "FROM last " +
-                        "WHERE sequence_id != 0 ",
-                new ExportRowCallbackHandler(exportCallbackHandler));
+                        "LEFT JOIN tags ON tags.object_id = last.object_id " +
+                        "WHERE last.sequence_id != 0 " +
+                        "ORDER BY last.object_id",
+                new ExportResultSetExtractor(exportCallbackHandler));
     }
 
-    private static final class ExportRowCallbackHandler implements RowCallbackHandler {
+    private static final class ExportResultSetExtractor implements ResultSetExtractor<Void> {
         private final ExportCallbackHandler exportCallbackHandler;
 
-        private ExportRowCallbackHandler(final ExportCallbackHandler exportCallbackHandler) {
+        private ExportResultSetExtractor(final ExportCallbackHandler exportCallbackHandler) {
             this.exportCallbackHandler = exportCallbackHandler;
         }
 
         @Override
-        public void processRow(final ResultSet rs) throws SQLException {
-            final int objectId = rs.getInt(1);
+        public Void extractData(final ResultSet rs) throws SQLException {
+            int objectId = 0;
             RpslObject object = null;
+            List<Tag> tags = Lists.newArrayList();
+
+            while (rs.next()) {
+                final int rowObjectId = rs.getInt(1);
+                if (rowObjectId != objectId) {
+                    // rows of the same object are consecutive, one per tag
+                    export(object, tags);
+
+                    objectId = rowObjectId;
+                    object = parse(objectId, rs.getBytes(2));
+                    tags = Lists.newArrayList();
+                }
+
+                final String tagId = rs.getString(3);
+                if (tagId != null) {
+                    tags.add(new Tag(CIString.ciString(tagId), objectId, rs.getString(4)));
+                }
+            }
+
+            export(object, tags);
+            return null;
+        }
+
+        @Nullable
+        private static RpslObject parse(final int objectId, final byte[] bytes) {
             try {
-                object = RpslObject.parse(objectId, rs.getBytes(2));
+                return RpslObject.parse(objectId, bytes);
             } catch (RuntimeException e) {
                 LOGGER.warn("Unable to parse RPSL object with object_id: {}, {}", objectId, e.toString());
+                return null;
             }
+        }
 
+        private void export(@Nullable final RpslObject object, final List<Tag> tags) {
             if (object != null) {
-                exportCallbackHandler.exportObject(object);
+                exportCallbackHandler.exportObject(object, tags);
             }
         }
     }
@@ -1,5 +1,7 @@
 package net.ripe.db.whois.scheduler.task.grs;
 
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
 import net.ripe.db.whois.common.DateTimeProvider;
 import net.ripe.db.whois.common.collect.CollectionHelper;
 import net.ripe.db.whois.common.dao.RpslObjectInfo;
@@ -13,14 +15,20 @@ import net.ripe.db.whois.common.source.Source;
 import net.ripe.db.whois.common.source.SourceContext;
 import org.slf4j.Logger;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.annotation.CheckForNull;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import static net.ripe.db.whois.common.dao.jdbc.JdbcRpslObjectOperations.deleteFromLastAndUpdateSerials;
@@ -38,6 +46,8 @@ class GrsDao {
 
     private JdbcTemplate masterJdbcTemplate;
     private JdbcTemplate slaveJdbcTemplate;
+    private NamedParameterJdbcTemplate masterNamedParameterJdbcTemplate;
+    private TransactionTemplate masterTransactionTemplate;
 
     GrsDao(final Logger logger, final DateTimeProvider dateTimeProvider, final CIString sourceName, final SourceContext sourceContext) {
         this.logger = logger;
@@ -52,6 +62,8 @@ class GrsDao {
             final JdbcTemplate slaveJdbcTemplate = sourceContext.getSourceConfiguration(Source.slave(sourceName)).getJdbcTemplate();
             JdbcRpslObjectOperations.sanityCheck(masterJdbcTemplate);
             JdbcRpslObjectOperations.sanityCheck(slaveJdbcTemplate);
+            this.masterNamedParameterJdbcTemplate = new NamedParameterJdbcTemplate(masterJdbcTemplate);
+            this.masterTransactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(masterJdbcTemplate.getDataSource()));
             this.masterJdbcTemplate = masterJdbcTemplate;
             this.slaveJdbcTemplate = slaveJdbcTemplate;
         }
@@ -117,6 +129,40 @@ class GrsDao {
         ));
     }
 
+    /**
+     * @return the objects of the given type and primary keys, by primary key
+     */
+    Map<CIString, GrsObjectInfo> find(final Collection<String> pkeys, final ObjectType objectType) {
+        ensureInitialized();
+        if (pkeys.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        final Map<CIString, GrsObjectInfo> objects = Maps.newHashMapWithExpectedSize(pkeys.size());
+        masterNamedParameterJdbcTemplate.query("" +
+                "SELECT object_id, sequence_id, object, pkey " +
+                "  FROM last " +
+                "  WHERE object_type = :objectType" +
+                "  AND pkey IN (:pkeys)" +
+                "  AND sequence_id != 0 ",
+                ImmutableMap.of("objectType", ObjectTypeIds.getId(objectType), "pkeys", pkeys),
+                (RowCallbackHandler) rs -> objects.put(CIString.ciString(rs.getString(4)), new GrsObjectInfo(
+                        rs.getInt(1),
+                        rs.getInt(2),
+                        RpslObject.parse(rs.getString(3))
+                ))
+        );
+        return objects;
+    }
+
+    /**
+     * Run in a single transaction on the master database of the source.
+     */
+    void executeInTransaction(final Runnable runnable) {
+        ensureInitialized();
+        masterTransactionTemplate.executeWithoutResult(status -> runnable.run());
+    }
+
     UpdateResult createObject(final RpslObject rpslObject) {
         ensureInitialized();
         final RpslObjectUpdateInfo rpslObjectInfo = insertIntoLastAndUpdateSerials(dateTimeProvider, masterJdbcTemplate, rpslObject);
@@ -2,7 +2,11 @@ package net.ripe.db.whois.scheduler.task.grs;
 
 import com.google.common.base.Joiner;
 import com.google.common.base.Stopwatch;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import net.ripe.db.whois.common.domain.CIString;
 import net.ripe.db.whois.common.grs.AuthoritativeResource;
 import net.ripe.db.whois.common.rpsl.AttributeSanitizer;
 import net.ripe.db.whois.common.rpsl.AttributeType;
@@ -19,16 +23,28 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
 
+import javax.annotation.Nullable;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayDeque;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 @Component
 class GrsSourceImporter {
@@ -37,9 +53,14 @@ class GrsSourceImporter {
     private static final Joiner LINE_JOINER = Joiner.on("");
     private static final int LOG_EVERY_NR_HANDLED = 100000;
 
+    // objects prepared ahead of the writer, and objects looked up and written together
+    private static final int QUEUE_SIZE = 1000;
+    private static final int BATCH_SIZE = 100;
+
     private final AttributeSanitizer sanitizer;
     private final ResourceTagger resourceTagger;
     private final SourceContext sourceContext;
+    private final int nrWorkers;
 
     private Path downloadDir;
 
@@ -50,8 +71,10 @@ class GrsSourceImporter {
             @Value("${dir.grs.import.download}") final String downloadDir,
             final AttributeSanitizer sanitizer,
             final ResourceTagger resourceTagger,
-            final SourceContext sourceContext) {
+            final SourceContext sourceContext,
+            @Value("${grs.import.workers:4}") final int nrWorkers) {
         this.sourceContext = sourceContext;
+        this.nrWorkers = Math.max(1, nrWorkers);
         this.downloadDir = Paths.get(downloadDir);
         this.sanitizer = sanitizer;
         this.resourceTagger = resourceTagger;
@@ -75,6 +98,10 @@ class GrsSourceImporter {
         resourceTagger.tagObjects(grsSource);
     }
 
+    /**
+     * Imports a dump as a pipeline: objects are parsed, sanitised and validated by worker threads, and written in dump
+     * order by the reading thread, in batches that are looked up and written in a single transaction.
+     */
     private void acquireAndUpdateGrsData(final GrsSource grsSource, final boolean rebuild, final AuthoritativeResource authoritativeData) {
         final Logger logger = grsSource.getLogger();
 
@@ -84,11 +111,16 @@ class GrsSourceImporter {
             private int nrCreated;
             private int nrUpdated;
             private int nrDeleted;
-            private int nrIgnored;
+            private final AtomicInteger nrIgnored = new AtomicInteger();
 
             private Set<Integer> currentObjectIds;
             private Set<Integer> incompletelyIndexedObjectIds = Sets.newHashSet();
 
+            private final Throughput prepared = new Throughput("Prepared");
+            private final Throughput written = new Throughput("Written");
+            private final Throughput deleted = new Throughput("Deleted");
+            private final Throughput indexed = new Throughput("Indexed");
+
             @Override
             public void run() {
                 final Path dump = downloadDir.resolve(String.format("%s-DMP", grsSource.getName().toUpperCase()));
@@ -121,114 +153,258 @@ class GrsSourceImporter {
                 }
 
                 updateIndexes();
+
+                for (final Throughput throughput : Lists.newArrayList(prepared, written, deleted, indexed)) {
+                    logger.info("{}", throughput);
+                }
             }
 
             private void importObjects(final File dumpFile) throws IOException {
-                grsSource.handleObjects(dumpFile, new ObjectHandler() {
-                    @Override
-                    public void handle(final List<String> lines) {
-                        final String rpslObjectString = LINE_JOINER.join(lines);
+                final AtomicInteger threadNum = new AtomicInteger();
+                final ExecutorService workers = Executors.newFixedThreadPool(nrWorkers, runnable -> {
+                    final Thread thread = new Thread(runnable, String.format("grs-import-%s-worker-%s", grsSource.getName(), threadNum.incrementAndGet()));
+                    thread.setDaemon(true);
+                    return thread;
+                });
 
-                        final RpslObject rpslObject;
-                        try {
-                            rpslObject = RpslObject.parse(rpslObjectString);
-                        } catch (RuntimeException e) {
-                            logger.info("Unable to parse input as object: {}\n\n{}\n", e.getMessage(), rpslObjectString);
-                            return;
+                final Deque<PreparedObject> queue = new ArrayDeque<>(QUEUE_SIZE);
+                final BatchWriter batchWriter = new BatchWriter();
+
+                try {
+                    grsSource.handleObjects(dumpFile, new ObjectHandler() {
+                        @Override
+                        public void handle(final List<String> lines) {
+                            final String rpslObjectString = LINE_JOINER.join(lines);
+
+                            submit(lines.isEmpty() ? "" : lines.get(0).trim(), () -> {
+                                final RpslObject rpslObject;
+                                try {
+                                    rpslObject = RpslObject.parse(rpslObjectString);
+                                } catch (RuntimeException e) {
+                                    logger.info("Unable to parse input as object: {}\n\n{}\n", e.getMessage(), rpslObjectString);
+                                    return null;
+                                }
+
+                                return prepare(FILTER_CHANGED_FUNCTION.apply(rpslObject));
+                            });
                         }
 
-                        handle(FILTER_CHANGED_FUNCTION.apply(rpslObject));
-                    }
+                        @Override
+                        public void handle(final RpslObject rpslObject) {
+                            submit(rpslObject.getFormattedKey(), () -> prepare(rpslObject));
+                        }
 
-                    @Override
-                    public void handle(final RpslObject rpslObject) {
-                        if (rpslObject.getType() == null) {
-                            logger.debug("Unknown type: \n\n{}\n", rpslObject);
-                            nrIgnored++;
-                        } else {
-                            final ObjectMessages messages = new ObjectMessages();
-                            final RpslObject filteredObject = filterObject(rpslObject);
-                            final RpslObject cleanObject = sanitizer.sanitize(filteredObject, messages);
-                            final RpslAttribute typeAttribute = cleanObject.getTypeAttribute();
-                            typeAttribute.validateSyntax(cleanObject.getType(), messages);
-                            if (messages.hasErrors()) {
-                                logger.debug("Errors for object with key {}: {}", typeAttribute, messages);
-                                nrIgnored++;
-                            } else if (authoritativeData.isMaintainedInRirSpace(cleanObject)) {
-                                createOrUpdate(cleanObject);
+                        private void submit(final String description, final Callable<RpslObject> task) {
+                            queue.add(new PreparedObject(description, workers.submit(() -> {
+                                final long start = System.nanoTime();
+                                try {
+                                    return task.call();
+                                } finally {
+                                    prepared.add(System.nanoTime() - start);
+                                }
+                            })));
+
+                            while (queue.size() > QUEUE_SIZE) {
+                                write(queue.remove(), batchWriter);
                             }
                         }
+                    });
+
+                    while (!queue.isEmpty()) {
+                        write(queue.remove(), batchWriter);
                     }
+                    batchWriter.flush();
+                } finally {
+                    workers.shutdownNow();
+                }
+            }
 
-                    private RpslObject filterObject(final RpslObject rpslObject) {
-                        final ObjectTemplate objectTemplate = ObjectTemplate.getTemplate(rpslObject.getType());
+            private void write(final PreparedObject preparedObject, final BatchWriter batchWriter) {
+                final RpslObject rpslObject;
+                try {
+                    rpslObject = preparedObject.future.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Interrupted", e);
+                } catch (ExecutionException e) {
+                    logger.warn("Unexpected error handling lines starting with {}: {}", preparedObject.description, e.getCause().getMessage(), e.getCause());
+                    return;
+                }
 
-                        final RpslObjectBuilder builder = new RpslObjectBuilder(rpslObject);
+                if (rpslObject != null) {
+                    batchWriter.add(rpslObject);
+                }
+            }
 
-                        for (int i = 0; i < builder.size(); i++) {
-                            final RpslAttribute rpslAttribute = builder.get(i);
-                            final AttributeType attributeType = rpslAttribute.getType();
+            /**
+             * @return the object to import, or null if it is to be ignored.
+             */
+            @Nullable
+            private RpslObject prepare(final RpslObject rpslObject) {
+                if (rpslObject.getType() == null) {
+                    logger.debug("Unknown type: \n\n{}\n", rpslObject);
+                    nrIgnored.incrementAndGet();
+                    return null;
+                }
 
-                            if (attributeType == null || !objectTemplate.hasAttribute(attributeType)) {
-                                logger.debug("Ignoring attribute in object {}: {}", rpslObject.getFormattedKey(), rpslAttribute);
-                                builder.remove(i--);
+                final ObjectMessages messages = new ObjectMessages();
+                final RpslObject filteredObject = filterObject(rpslObject);
+                final RpslObject cleanObject = sanitizer.sanitize(filteredObject, messages);
+                final RpslAttribute typeAttribute = cleanObject.getTypeAttribute();
+                typeAttribute.validateSyntax(cleanObject.getType(), messages);
+                if (messages.hasErrors()) {
+                    logger.debug("Errors for object with key {}: {}", typeAttribute, messages);
+                    nrIgnored.incrementAndGet();
+                    return null;
+                }
 
-                            } else  if (attributeType.equals(AttributeType.SOURCE)) {
-                                builder.remove(i--);
-                            }
-                        }
+                return authoritativeData.isMaintainedInRirSpace(cleanObject) ? cleanObject : null;
+            }
+
+            private RpslObject filterObject(final RpslObject rpslObject) {
+                final ObjectTemplate objectTemplate = ObjectTemplate.getTemplate(rpslObject.getType());
+
+                final RpslObjectBuilder builder = new RpslObjectBuilder(rpslObject);
+
+                for (int i = 0; i < builder.size(); i++) {
+                    final RpslAttribute rpslAttribute = builder.get(i);
+                    final AttributeType attributeType = rpslAttribute.getType();
 
-                        // best not to sort to avoid reordering remarks: attributes
-                        builder.append(sourceAttribute);
+                    if (attributeType == null || !objectTemplate.hasAttribute(attributeType)) {
+                        logger.debug("Ignoring attribute in object {}: {}", rpslObject.getFormattedKey(), rpslAttribute);
+                        builder.remove(i--);
 
-                        return builder.get();
+                    } else  if (attributeType.equals(AttributeType.SOURCE)) {
+                        builder.remove(i--);
                     }
+                }
 
-                    @Transactional
-                    private void createOrUpdate(final RpslObject importedObject) {
-                        final String pkey = importedObject.getKey().toString();
-                        final ObjectType type = importedObject.getType();
-                        final GrsObjectInfo grsObjectInfo = grsSource.getDao().find(pkey, type);
+                // best not to sort to avoid reordering remarks: attributes
+                builder.append(sourceAttribute);
 
-                        if (grsObjectInfo == null) {
-                            if (type == ObjectType.PERSON && grsSource.getDao().find(pkey, ObjectType.ROLE) != null) {
-                                return;
-                            }
+                return builder.get();
+            }
 
-                            if (type == ObjectType.ROLE && grsSource.getDao().find(pkey, ObjectType.PERSON) != null) {
-                                return;
-                            }
+            /**
+             * Writes objects in batches: the existing objects are looked up for the whole batch, and the batch is
+             * written in a single transaction. A batch ends before an object with a primary key already in it, so
+             * every lookup reflects the objects written before. If the batch fails, it is retried one object per
+             * transaction, so only the failing objects are skipped.
+             */
+            final class BatchWriter {
+                private final List<RpslObject> batch = Lists.newArrayListWithExpectedSize(BATCH_SIZE);
+                private final Set<CIString> batchKeys = Sets.newHashSet();
+
+                void add(final RpslObject importedObject) {
+                    // persons and roles share their primary keys
+                    final ObjectType keyType = importedObject.getType() == ObjectType.ROLE ? ObjectType.PERSON : importedObject.getType();
+                    final CIString batchKey = CIString.ciString(keyType.getName() + " " + importedObject.getKey());
+
+                    if (batch.size() >= BATCH_SIZE || batchKeys.contains(batchKey)) {
+                        flush();
+                    }
+
+                    batch.add(importedObject);
+                    batchKeys.add(batchKey);
+                }
 
-                            create(importedObject);
-                        } else {
-                            currentObjectIds.remove(grsObjectInfo.getObjectId());
-                            if (!grsObjectInfo.getRpslObject().equals(importedObject)) {
-                                update(importedObject, grsObjectInfo);
+                void flush() {
+                    if (batch.isEmpty()) {
+                        return;
+                    }
+
+                    final Stopwatch stopwatch = Stopwatch.createStarted();
+                    try {
+                        try {
+                            write(batch);
+                        } catch (RuntimeException e) {
+                            logger.info("Writing batch of {} objects failed, retrying each object: {}", batch.size(), e.getMessage());
+
+                            for (final RpslObject importedObject : batch) {
+                                try {
+                                    write(Collections.singletonList(importedObject));
+                                } catch (RuntimeException objectException) {
+                                    logger.error("Writing object {}", importedObject.getFormattedKey(), objectException);
+                                }
                             }
                         }
 
-                        final int nrImported = nrCreated + nrUpdated;
-                        if ((nrImported % LOG_EVERY_NR_HANDLED == 0) && (nrImported > 0)) {
-                            logger.info("Imported {} objects", nrImported);
+                        written.add(batch.size(), stopwatch.elapsed(TimeUnit.NANOSECONDS));
+                    } finally {
+                        batch.clear();
+                        batchKeys.clear();
+                    }
+                }
+
+                /**
+                 * Writes the objects in a single transaction, and only records the outcome once it has committed.
+                 */
+                private void write(final List<RpslObject> importedObjects) {
+                    final Map<ObjectType, Set<String>> pkeys = Maps.newEnumMap(ObjectType.class);
+                    for (final RpslObject importedObject : importedObjects) {
+                        final String pkey = importedObject.getKey().toString();
+                        pkeys.computeIfAbsent(importedObject.getType(), type -> Sets.newHashSet()).add(pkey);
+                        if (importedObject.getType() == ObjectType.PERSON) {
+                            pkeys.computeIfAbsent(ObjectType.ROLE, type -> Sets.newHashSet()).add(pkey);
+                        } else if (importedObject.getType() == ObjectType.ROLE) {
+                            pkeys.computeIfAbsent(ObjectType.PERSON, type -> Sets.newHashSet()).add(pkey);
                         }
                     }
 
-                    private void create(final RpslObject importedObject) {
-                        final GrsDao.UpdateResult updateResult = grsSource.getDao().createObject(importedObject);
-                        if (updateResult.hasMissingReferences()) {
-                            incompletelyIndexedObjectIds.add(updateResult.getObjectId());
+                    final Map<ObjectType, Map<CIString, GrsObjectInfo>> existing = Maps.newEnumMap(ObjectType.class);
+                    for (final Map.Entry<ObjectType, Set<String>> entry : pkeys.entrySet()) {
+                        existing.put(entry.getKey(), grsSource.getDao().find(entry.getValue(), entry.getKey()));
+                    }
+
+                    final WriteResult result = new WriteResult();
+                    grsSource.getDao().executeInTransaction(() -> {
+                        for (final RpslObject importedObject : importedObjects) {
+                            createOrUpdate(importedObject, existing, result);
                         }
-                        nrCreated++;
+                    });
+
+                    final int nrImportedBefore = nrCreated + nrUpdated;
+                    nrCreated += result.nrCreated;
+                    nrUpdated += result.nrUpdated;
+                    currentObjectIds.removeAll(result.foundObjectIds);
+                    incompletelyIndexedObjectIds.addAll(result.incompletelyIndexedObjectIds);
+
+                    final int nrImported = nrCreated + nrUpdated;
+                    if (nrImported / LOG_EVERY_NR_HANDLED != nrImportedBefore / LOG_EVERY_NR_HANDLED) {
+                        logger.info("Imported {} objects", nrImported);
                     }
+                }
+
+                private void createOrUpdate(final RpslObject importedObject, final Map<ObjectType, Map<CIString, GrsObjectInfo>> existing, final WriteResult result) {
+                    final CIString pkey = importedObject.getKey();
+                    final ObjectType type = importedObject.getType();
+                    final GrsObjectInfo grsObjectInfo = existing.getOrDefault(type, Collections.emptyMap()).get(pkey);
+
+                    if (grsObjectInfo == null) {
+                        if (type == ObjectType.PERSON && existing.getOrDefault(ObjectType.ROLE, Collections.emptyMap()).containsKey(pkey)) {
+                            return;
+                        }
+
+                        if (type == ObjectType.ROLE && existing.getOrDefault(ObjectType.PERSON, Collections.emptyMap()).containsKey(pkey)) {
+                            return;
+                        }
 
-                    private void update(final RpslObject importedObject, final GrsObjectInfo grsObjectInfo) {
-                        final GrsDao.UpdateResult updateResult = grsSource.getDao().updateObject(grsObjectInfo, importedObject);
+                        final GrsDao.UpdateResult updateResult = grsSource.getDao().createObject(importedObject);
                         if (updateResult.hasMissingReferences()) {
-                            incompletelyIndexedObjectIds.add(updateResult.getObjectId());
+                            result.incompletelyIndexedObjectIds.add(updateResult.getObjectId());
+                        }
+                        result.nrCreated++;
+                    } else {
+                        result.foundObjectIds.add(grsObjectInfo.getObjectId());
+                        if (!grsObjectInfo.getRpslObject().equals(importedObject)) {
+                            final GrsDao.UpdateResult updateResult = grsSource.getDao().updateObject(grsObjectInfo, importedObject);
+                            if (updateResult.hasMissingReferences()) {
+                                result.incompletelyIndexedObjectIds.add(updateResult.getObjectId());
+                            }
+                            result.nrUpdated++;
                         }
-                        nrUpdated++;
                     }
-                });
+                }
             }
 
             private void deleteNotFoundInImport() {
@@ -238,34 +414,104 @@ class GrsSourceImporter {
                 }
 
                 logger.info("Cleaning up {} currently unreferenced objects", currentObjectIds.size());
-                for (final Integer objectId : currentObjectIds) {
-                    try {
-                        grsSource.getDao().deleteObject(objectId);
-                        nrDeleted++;
-                    } catch (RuntimeException e) {
-                        logger.error("Deleting object with id: {}", objectId, e);
-                    }
-                }
+                nrDeleted += executeInBatches(currentObjectIds, deleted, "Deleting", objectId -> grsSource.getDao().deleteObject(objectId));
             }
 
             private void updateIndexes() {
                 logger.info("Updating indexes for {} changed objects with missing references", incompletelyIndexedObjectIds.size());
 
-                int nrUpdated = 0;
+                final int nrIndexed = executeInBatches(incompletelyIndexedObjectIds, indexed, "Updating index for", objectId -> grsSource.getDao().updateIndexes(objectId));
+                logger.info("Updated {} indexes", nrIndexed);
+            }
 
-                for (final Integer objectId : incompletelyIndexedObjectIds) {
+            /**
+             * Handles the objects in batches, each in a single transaction. A failing object (or a deadlock or lock
+             * wait timeout) rolls back the whole batch, which is then retried one object per transaction, so only
+             * the failing objects are skipped.
+             *
+             * @return the number of objects handled successfully.
+             */
+            private int executeInBatches(final Iterable<Integer> objectIds, final Throughput throughput, final String action, final Consumer<Integer> handler) {
+                int nrHandled = 0;
+
+                for (final List<Integer> batch : Iterables.partition(objectIds, BATCH_SIZE)) {
+                    final Stopwatch stopwatch = Stopwatch.createStarted();
+                    final int nrHandledBefore = nrHandled;
                     try {
-                        grsSource.getDao().updateIndexes(objectId);
+                        grsSource.getDao().executeInTransaction(() -> batch.forEach(handler));
+                        nrHandled += batch.size();
                     } catch (RuntimeException e) {
-                        logger.error("Updating index for object with id: {}", objectId, e);
+                        logger.info("{} batch of {} objects failed, retrying each object: {}", action, batch.size(), e.getMessage());
+
+                        for (final Integer objectId : batch) {
+                            try {
+                                grsSource.getDao().executeInTransaction(() -> handler.accept(objectId));
+                                nrHandled++;
+                            } catch (RuntimeException objectException) {
+                                logger.error("{} object with id: {}", action, objectId, objectException);
+                            }
+                        }
                     }
+                    throughput.add(batch.size(), stopwatch.elapsed(TimeUnit.NANOSECONDS));
 
-                    nrUpdated++;
-                    if (nrUpdated % LOG_EVERY_NR_HANDLED == 0) {
-                        logger.info("Updated {} indexes", nrUpdated);
+                    if (nrHandled / LOG_EVERY_NR_HANDLED != nrHandledBefore / LOG_EVERY_NR_HANDLED) {
+                        logger.info("{} {} objects", action, nrHandled);
                     }
                 }
+
+                return nrHandled;
             }
         }.run();
     }
+
+    /**
+     * An object being prepared by a worker, and where it came from in the dump.
+     */
+    private static final class PreparedObject {
+        private final String description;
+        private final Future<RpslObject> future;
+
+        private PreparedObject(final String description, final Future<RpslObject> future) {
+            this.description = description;
+            this.future = future;
+        }
+    }
+
+    /**
+     * Changes made by a write transaction, applied to the import state once it has committed.
+     */
+    private static final class WriteResult {
+        private int nrCreated;
+        private int nrUpdated;
+        private final List<Integer> foundObjectIds = Lists.newArrayList();
+        private final List<Integer> incompletelyIndexedObjectIds = Lists.newArrayList();
+    }
+
+    /**
+     * Number of objects handled by a stage of the import, and the time spent (summed over threads).
+     */
+    private static final class Throughput {
+        private final String name;
+        private final AtomicInteger count = new AtomicInteger();
+        private final AtomicLong nanos = new AtomicLong();
+
+        private Throughput(final String name) {
+            this.name = name;
+        }
+
+        void add(final long elapsedNanos) {
+            add(1, elapsedNanos);
+        }
+
+        void add(final int nrObjects, final long elapsedNanos) {
+            count.addAndGet(nrObjects);
+            nanos.addAndGet(elapsedNanos);
+        }
+
+        @Override
+        public String toString() {
+            final long millis = TimeUnit.NANOSECONDS.toMillis(nanos.get());
+            return String.format("%s %d objects in %d ms (%d per second)", name, count.get(), millis, millis == 0 ? count.get() : count.get() * 1000L / millis);
+        }
+    }
 }
@@ -1,7 +1,6 @@
 package net.ripe.db.whois.scheduler.task.export;
 
 import com.google.common.collect.Lists;
-import net.ripe.db.whois.common.dao.TagsDao;
 import net.ripe.db.whois.common.domain.Tag;
 import net.ripe.db.whois.common.rpsl.RpslObject;
 import net.ripe.db.whois.scheduler.task.export.dao.ExportCallbackHandler;
@@ -30,7 +29,6 @@ import java.util.concurrent.TimeUnit;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.Mockito.when;
 
 
@@ -41,7 +39,6 @@ public class RpslObjectsToTextExporterTest {
 
     @Mock ExportFileWriterFactory exportFileWriterFactory;
     @Mock ExportDao exportDao;
-    @Mock TagsDao tagsDao;
 
     RpslObjectsExporter subject;
     File exportDir;
@@ -54,7 +51,7 @@ public class RpslObjectsToTextExporterTest {
 
         when(exportFileWriterFactory.isExportDir(any(File.class))).thenReturn(true);
 
-        subject = new RpslObjectsExporter(exportFileWriterFactory, exportDao, tagsDao, exportDir.toPath().toString(), tmpDir.toPath().toString(), true);
+        subject = new RpslObjectsExporter(exportFileWriterFactory, exportDao, exportDir.toPath().toString(), tmpDir.toPath().toString(), true, 10);
     }
 
     //TempDir is not cleaned up properly after each test run.
@@ -107,15 +104,13 @@ public class RpslObjectsToTextExporterTest {
                 ExportCallbackHandler exportCallbackHandler = (ExportCallbackHandler) invocation.getArguments()[0];
 
                 for (final RpslObject rpslObject : Lists.newArrayList(rpslObject1, rpslObject2)) {
-                    exportCallbackHandler.exportObject(rpslObject);
+                    exportCallbackHandler.exportObject(rpslObject, emptyList);
                 }
 
                 return null;
             }
         }).when(exportDao).exportObjects(any(ExportCallbackHandler.class));
 
-        when(tagsDao.getTags(anyInt())).thenReturn(emptyList);
-
         subject.export();
 
         Mockito.verify(exportFileWriter1).write(rpslObject1, emptyList);
@@ -143,7 +138,7 @@ public class RpslObjectsToTextExporterTest {
             public Void answer(InvocationOnMock invocation) throws Throwable {
                 ExportCallbackHandler exportCallbackHandler = (ExportCallbackHandler) invocation.getArguments()[0];
                 for (final RpslObject rpslObject : Lists.newArrayList(rpslObject1, rpslObject2)) {
-                    exportCallbackHandler.exportObject(rpslObject);
+                    exportCallbackHandler.exportObject(rpslObject, emptyList);
                 }
 
                 return null;
@@ -152,8 +147,6 @@ public class RpslObjectsToTextExporterTest {
 
         Mockito.doThrow(IOException.class).when(exportFileWriter).write(rpslObject1, emptyList);
 
-        when(tagsDao.getTags(2)).thenReturn(emptyList);
-
         try {
             subject.export();
             Assertions.fail("Expected exception");
@@ -1,7 +1,10 @@
 package net.ripe.db.whois.scheduler.task.export.dao;
 
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
+import net.ripe.db.whois.common.domain.CIString;
+import net.ripe.db.whois.common.domain.Tag;
 import net.ripe.db.whois.common.rpsl.RpslObject;
 import net.ripe.db.whois.scheduler.AbstractSchedulerIntegrationTest;
 import org.awaitility.Awaitility;
@@ -9,11 +12,15 @@ import org.junit.jupiter.api.Test;
 
 import org.springframework.beans.factory.annotation.Autowired;
 
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.IntStream;
 
+import static net.ripe.db.whois.common.domain.CIString.ciString;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
 import static org.junit.jupiter.api.Assertions.fail;
@@ -34,7 +41,7 @@ public class JdbcExportDaoIntegrationTest extends AbstractSchedulerIntegrationTe
         databaseHelper.addObject(RpslObject.parse("mntner: DEV-MNT"));
         final AtomicBoolean callback = new AtomicBoolean();
 
-        subject.exportObjects(invocation -> callback.set(true));
+        subject.exportObjects((invocation, tags) -> callback.set(true));
 
         Awaitility.await().until(() -> true);
     }
@@ -44,7 +51,7 @@ public class JdbcExportDaoIntegrationTest extends AbstractSchedulerIntegrationTe
         databaseHelper.addObject(RpslObject.parse("mntner: DEV-MNT"));
 
         try {
-            subject.exportObjects(invocation -> { throw new RuntimeException("Oops"); });
+            subject.exportObjects((invocation, tags) -> { throw new RuntimeException("Oops"); });
             fail("Should throw exception");
         } catch (RuntimeException ignored) {
             // expected
@@ -61,7 +68,7 @@ public class JdbcExportDaoIntegrationTest extends AbstractSchedulerIntegrationTe
             databaseHelper.addObject(object);
         });
 
-        subject.exportObjects(object -> {
+        subject.exportObjects((object, tags) -> {
             if (!objects.remove(object)) {
                 fail("Object not in set: " + object);
             }
@@ -69,4 +76,19 @@ public class JdbcExportDaoIntegrationTest extends AbstractSchedulerIntegrationTe
 
         assertThat(objects, hasSize(0));
     }
+
+    @Test
+    public void exportObjects_with_tags() {
+        final RpslObject tagged = databaseHelper.addObject(RpslObject.parse("mntner: TAGGED-MNT"));
+        final RpslObject untagged = databaseHelper.addObject(RpslObject.parse("mntner: UNTAGGED-MNT"));
+        databaseHelper.getWhoisTemplate().update("INSERT INTO tags(object_id, tag_id, data) VALUES (?, 'foo', 'foo data'), (?, 'bar', 'bar data')",
+                tagged.getObjectId(), tagged.getObjectId());
+
+        final Map<CIString, List<Tag>> exported = Maps.newHashMap();
+        subject.exportObjects((object, tags) -> exported.put(object.getKey(), tags));
+
+        assertThat(exported.keySet(), containsInAnyOrder(ciString("TAGGED-MNT"), ciString("UNTAGGED-MNT")));
+        assertThat(exported.get(ciString("TAGGED-MNT")), hasSize(2));
+        assertThat(exported.get(ciString("UNTAGGED-MNT")), hasSize(0));
+    }
 }
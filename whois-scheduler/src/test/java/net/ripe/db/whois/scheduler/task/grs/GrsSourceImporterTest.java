@@ -1,5 +1,6 @@
 package net.ripe.db.whois.scheduler.task.grs;
 
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import net.ripe.db.whois.common.grs.AuthoritativeResource;
 import net.ripe.db.whois.common.rpsl.AttributeSanitizer;
@@ -21,9 +22,11 @@ import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.Collection;
 
 import static net.ripe.db.whois.common.domain.CIString.ciString;
 import static org.junit.jupiter.api.Assertions.fail;
+import static org.mockito.ArgumentMatchers.anyCollection;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.anyInt;
@@ -70,7 +73,12 @@ public class GrsSourceImporterTest {
         lenient().when(grsDao.createObject(any(RpslObject.class))).thenReturn(updateResultCreate);
         lenient().when(grsDao.updateObject(any(GrsObjectInfo.class), any(RpslObject.class))).thenReturn(updateResultUpdate);
 
-        subject = new GrsSourceImporter(folder.getAbsolutePath(), sanitizer, resourceTagger, sourceContext);
+        lenient().doAnswer(invocation -> {
+            ((Runnable) invocation.getArguments()[0]).run();
+            return null;
+        }).when(grsDao).executeInTransaction(any(Runnable.class));
+
+        subject = new GrsSourceImporter(folder.getAbsolutePath(), sanitizer, resourceTagger, sourceContext, 2);
     }
 
     @Test
@@ -303,8 +311,7 @@ public class GrsSourceImporterTest {
         }).when(grsSource).handleObjects(any(File.class), any(ObjectHandler.class));
 
         final GrsObjectInfo grsObjectInfo1 = new GrsObjectInfo(1, 1, RpslObject.parse("role: Ninja Role\nnic-hdl: NI124-RIPE\n"));
-        when(grsDao.find("NI124-RIPE", ObjectType.PERSON)).thenReturn(null);
-        when(grsDao.find("NI124-RIPE", ObjectType.ROLE)).thenReturn(grsObjectInfo1);
+        lenient().when(grsDao.find(anyCollection(), eq(ObjectType.ROLE))).thenReturn(ImmutableMap.of(ciString("NI124-RIPE"), grsObjectInfo1));
 
         subject.grsImport(grsSource, false);
 
@@ -341,10 +348,10 @@ public class GrsSourceImporterTest {
         when(updateResultUpdate.hasMissingReferences()).thenReturn(true);
 
         final GrsObjectInfo grsObjectInfo1 = new GrsObjectInfo(1, 1, RpslObject.parse("mntner: MODIFY-MNT"));
-        when(grsDao.find("MODIFY-MNT", ObjectType.MNTNER)).thenReturn(grsObjectInfo1);
-
         final GrsObjectInfo grsObjectInfo2 = new GrsObjectInfo(2, 2, RpslObject.parse("mntner:         NOOP-MNT\nsource:         APNIC-GRS"));
-        lenient().when(grsDao.find("NOOP-MNT", ObjectType.MNTNER)).thenReturn(grsObjectInfo2);
+        when(grsDao.find(anyCollection(), eq(ObjectType.MNTNER))).thenReturn(ImmutableMap.of(
+                ciString("MODIFY-MNT"), grsObjectInfo1,
+                ciString("NOOP-MNT"), grsObjectInfo2));
 
         subject.grsImport(grsSource, false);
 
@@ -363,4 +370,108 @@ public class GrsSourceImporterTest {
 
         verify(grsDao).deleteObject(3);
     }
+
+    @Test
+    public void run_failed_delete_retries_batch_per_object() throws IOException {
+        when(grsSource.getName()).thenReturn(ciString("APNIC-GRS"));
+        when(grsDao.getCurrentObjectIds()).thenReturn(Lists.newArrayList(1, 2, 3));
+        when(authoritativeResource.isMaintainedInRirSpace(any(RpslObject.class))).thenReturn(true);
+
+        doAnswer(invocation -> {
+            final ObjectHandler objectHandler = (ObjectHandler) invocation.getArguments()[1];
+            objectHandler.handle(RpslObject.parse("mntner: CREATE-MNT\n"));
+            return null;
+        }).when(grsSource).handleObjects(any(File.class), any(ObjectHandler.class));
+
+        lenient().doThrow(new IllegalStateException("Deadlock")).when(grsDao).deleteObject(2);
+
+        subject.grsImport(grsSource, false);
+
+        // the batch is rolled back at the failing object, and each object is retried in its own transaction
+        verify(grsDao, times(2)).deleteObject(1);
+        verify(grsDao, times(2)).deleteObject(2);
+        verify(grsDao, times(1)).deleteObject(3);
+        verify(grsDao, times(5)).executeInTransaction(any(Runnable.class));
+    }
+
+    @Test
+    public void run_failed_write_retries_batch_per_object() throws IOException {
+        when(grsSource.getName()).thenReturn(ciString("APNIC-GRS"));
+        when(grsDao.getCurrentObjectIds()).thenReturn(Lists.newArrayList(1, 2));
+        when(authoritativeResource.isMaintainedInRirSpace(any(RpslObject.class))).thenReturn(true);
+
+        doAnswer(invocation -> {
+            final ObjectHandler objectHandler = (ObjectHandler) invocation.getArguments()[1];
+            objectHandler.handle(RpslObject.parse("mntner: FIRST-MNT\n"));
+            objectHandler.handle(RpslObject.parse("mntner: FAILING-MNT\n"));
+            objectHandler.handle(RpslObject.parse("mntner: EXISTING-MNT\n"));
+            objectHandler.handle(RpslObject.parse("mntner: LAST-MNT\n"));
+            return null;
+        }).when(grsSource).handleObjects(any(File.class), any(ObjectHandler.class));
+
+        final RpslObject failing = RpslObject.parse("mntner: FAILING-MNT\nsource: APNIC-GRS");
+        lenient().when(grsDao.createObject(failing)).thenThrow(new IllegalStateException("Deadlock"));
+
+        final GrsObjectInfo existing = new GrsObjectInfo(1, 1, RpslObject.parse("mntner:         EXISTING-MNT\nsource:         APNIC-GRS"));
+        when(grsDao.find(anyCollection(), eq(ObjectType.MNTNER))).thenAnswer(invocation ->
+                invocation.<Collection<String>>getArgument(0).contains("EXISTING-MNT") ? ImmutableMap.of(ciString("EXISTING-MNT"), existing) : ImmutableMap.of());
+
+        subject.grsImport(grsSource, false);
+
+        // the batch is rolled back at the failing object, and each object is retried in its own transaction
+        verify(grsDao, times(2)).createObject(RpslObject.parse("mntner: FIRST-MNT\nsource: APNIC-GRS"));
+        verify(grsDao, times(2)).createObject(failing);
+        verify(grsDao, times(1)).createObject(RpslObject.parse("mntner: LAST-MNT\nsource: APNIC-GRS"));
+        // the batch, four retries and the delete batch
+        verify(grsDao, times(6)).executeInTransaction(any(Runnable.class));
+
+        // objects found in the rolled back batch are only counted once the retry has committed
+        verify(grsDao, never()).deleteObject(1);
+        verify(grsDao).deleteObject(2);
+    }
+
+    @Test
+    public void run_failed_prepare_continues_import() throws IOException {
+        when(grsSource.getName()).thenReturn(ciString("APNIC-GRS"));
+        when(authoritativeResource.isMaintainedInRirSpace(any(RpslObject.class))).thenReturn(true);
+
+        doAnswer(invocation -> {
+            final ObjectHandler objectHandler = (ObjectHandler) invocation.getArguments()[1];
+            objectHandler.handle(Lists.newArrayList("mntner: FAILING-MNT\n"));
+            objectHandler.handle(Lists.newArrayList("mntner: NEXT-MNT\n"));
+            return null;
+        }).when(grsSource).handleObjects(any(File.class), any(ObjectHandler.class));
+
+        lenient().when(sanitizer.sanitize(eq(RpslObject.parse("mntner: FAILING-MNT\nsource: APNIC-GRS")), any(ObjectMessages.class)))
+                .thenThrow(new IllegalStateException("Unexpected"));
+
+        subject.grsImport(grsSource, false);
+
+        verify(grsDao).createObject(RpslObject.parse("mntner: NEXT-MNT\nsource: APNIC-GRS"));
+        verify(grsDao, times(1)).createObject(any(RpslObject.class));
+    }
+
+    @Test
+    public void run_repeated_key_is_written_in_next_batch() throws IOException {
+        when(grsSource.getName()).thenReturn(ciString("APNIC-GRS"));
+        when(authoritativeResource.isMaintainedInRirSpace(any(RpslObject.class))).thenReturn(true);
+
+        doAnswer(invocation -> {
+            final ObjectHandler objectHandler = (ObjectHandler) invocation.getArguments()[1];
+            objectHandler.handle(RpslObject.parse("mntner: DUPLICATE-MNT\nmnt-by: FIRST-MNT\n"));
+            objectHandler.handle(RpslObject.parse("mntner: DUPLICATE-MNT\nmnt-by: SECOND-MNT\n"));
+            return null;
+        }).when(grsSource).handleObjects(any(File.class), any(ObjectHandler.class));
+
+        final GrsObjectInfo created = new GrsObjectInfo(1, 1, RpslObject.parse("mntner: DUPLICATE-MNT\nmnt-by: FIRST-MNT\nsource: APNIC-GRS"));
+        when(grsDao.find(anyCollection(), eq(ObjectType.MNTNER)))
+                .thenReturn(ImmutableMap.of())
+                .thenReturn(ImmutableMap.of(ciString("DUPLICATE-MNT"), created));
+
+        subject.grsImport(grsSource, false);
+
+        verify(grsDao, times(2)).executeInTransaction(any(Runnable.class));
+        verify(grsDao).createObject(RpslObject.parse("mntner: DUPLICATE-MNT\nmnt-by: FIRST-MNT\nsource: APNIC-GRS"));
+        verify(grsDao).updateObject(created, RpslObject.parse("mntner: DUPLICATE-MNT\nmnt-by: SECOND-MNT\nsource: APNIC-GRS"));
+    }
 }
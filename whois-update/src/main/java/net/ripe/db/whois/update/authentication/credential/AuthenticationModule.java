@@ -80,6 +80,27 @@ public class AuthenticationModule {
         return authenticatedCandidates;
     }
 
+    /**
+     * Verify the offered credentials against the maintainers ahead of authentication, where this is expensive.
+     * Authentication then reuses the verdicts, but still decides which maintainers apply.
+     */
+    public void preverify(final PreparedUpdate update, final UpdateContext updateContext, final Collection<RpslObject> maintainers) {
+        final Credentials offered = update.getCredentials();
+
+        for (final RpslObject maintainer : maintainers) {
+            for (final CIString auth : maintainer.getValuesForAttribute(AttributeType.AUTH)) {
+                final Credential credential = getCredential(auth);
+                if (credential == null) {
+                    continue;
+                }
+
+                for (CredentialValidator credentialValidator : credentialValidatorMap.getOrDefault(credential.getClass(), Collections.emptySet())) {
+                    credentialValidator.preverify(updateContext, offered.ofType(credentialValidator.getSupportedOfferedCredentialType()), credential);
+                }
+            }
+        }
+    }
+
     private boolean hasValidCredentialForCandidate(final PreparedUpdate update, final UpdateContext updateContext, final Credentials offered, final RpslObject maintainer) {
         final List<CIString> authAttributes = Lists.newArrayList(maintainer.getValuesForAttribute(AttributeType.AUTH));
         Collections.sort(authAttributes, AUTH_COMPARATOR);
@@ -13,4 +13,12 @@ interface CredentialValidator<T extends Credential, K extends Credential> {
     Class<T> getSupportedOfferedCredentialType();
 
     boolean hasValidCredential(PreparedUpdate update, UpdateContext updateContext, Collection<T> offeredCredentials, K knownCredential);
+
+    /**
+     * Verify the offered credentials ahead of authentication, and keep the verdicts in the update context.
+     * Only implemented where verification is expensive. Anything read here may change before authentication, so the
+     * verdicts are kept by what they were verified against.
+     */
+    default void preverify(UpdateContext updateContext, Collection<T> offeredCredentials, K knownCredential) {
+    }
 }
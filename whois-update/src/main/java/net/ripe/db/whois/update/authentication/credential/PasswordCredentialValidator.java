@@ -11,6 +11,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.util.Collection;
+import java.util.Optional;
 
 @Component
 class PasswordCredentialValidator implements CredentialValidator<PasswordCredential, PasswordCredential> {
@@ -39,9 +40,8 @@ class PasswordCredentialValidator implements CredentialValidator<PasswordCredent
 
         for (final PasswordCredential offeredCredential : offeredCredentials) {
             try {
-                String offeredPassword = offeredCredential.getPassword();
-                String knownPassword = knownCredential.getPassword();
-                if (PasswordHelper.authenticateMd5Passwords(knownPassword, offeredPassword)) {
+                final String knownPassword = knownCredential.getPassword();
+                if (verify(updateContext, offeredCredential, knownCredential)) {
                     loggerContext.logString(
                             update.getUpdate(),
                             getClass().getCanonicalName(),
@@ -56,4 +56,30 @@ class PasswordCredentialValidator implements CredentialValidator<PasswordCredent
 
         return false;
     }
+
+    @Override
+    public void preverify(final UpdateContext updateContext,
+                          final Collection<PasswordCredential> offeredCredentials,
+                          final PasswordCredential knownCredential) {
+
+        for (final PasswordCredential offeredCredential : offeredCredentials) {
+            try {
+                verify(updateContext, offeredCredential, knownCredential);
+            } catch (IllegalArgumentException ignored) {
+                // reported when authenticating
+            }
+        }
+    }
+
+    // hashing is expensive, and the same passwords are checked against the same maintainers for every object in a request
+    private boolean verify(final UpdateContext updateContext, final PasswordCredential offeredCredential, final PasswordCredential knownCredential) {
+        final Optional<Boolean> verdict = updateContext.getCredentialVerdict(knownCredential, offeredCredential);
+        if (verdict.isPresent()) {
+            return verdict.get();
+        }
+
+        final boolean valid = PasswordHelper.authenticateMd5Passwords(knownCredential.getPassword(), offeredCredential.getPassword());
+        updateContext.addCredentialVerdict(knownCredential, offeredCredential, valid);
+        return valid;
+    }
 }
@@ -1,5 +1,7 @@
 package net.ripe.db.whois.update.authentication.credential;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import net.ripe.db.whois.common.DateTimeProvider;
 import net.ripe.db.whois.common.Message;
 import net.ripe.db.whois.common.Messages;
@@ -15,12 +17,15 @@ import net.ripe.db.whois.update.keycert.PgpPublicKeyWrapper;
 import net.ripe.db.whois.update.log.LoggerContext;
 import org.bouncycastle.openpgp.PGPPublicKey;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.CheckForNull;
 import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
 
 @Component
 class PgpCredentialValidator implements CredentialValidator<PgpCredential, PgpCredential> {
@@ -29,11 +34,18 @@ class PgpCredentialValidator implements CredentialValidator<PgpCredential, PgpCr
     private final DateTimeProvider dateTimeProvider;
     private final LoggerContext loggerContext;
 
+    // parsed public keys by key-cert, so a changed key-cert is parsed again
+    private final Cache<RpslObject, PgpPublicKeyWrapper> keyWrappers;
+
     @Autowired
-    public PgpCredentialValidator(final RpslObjectDao rpslObjectDao, final DateTimeProvider dateTimeProvider, LoggerContext loggerContext) {
+    public PgpCredentialValidator(final RpslObjectDao rpslObjectDao,
+                                  final DateTimeProvider dateTimeProvider,
+                                  final LoggerContext loggerContext,
+                                  @Value("${whois.update.keycert.cache.size:1000}") final int keyCertCacheSize) {
         this.rpslObjectDao = rpslObjectDao;
         this.dateTimeProvider = dateTimeProvider;
         this.loggerContext = loggerContext;
+        this.keyWrappers = CacheBuilder.newBuilder().maximumSize(keyCertCacheSize).build();
     }
 
     @Override
@@ -58,14 +70,62 @@ class PgpCredentialValidator implements CredentialValidator<PgpCredential, PgpCr
         return false;
     }
 
+    /**
+     * Read and parse the key-cert, and verify the signatures ahead of authentication. The verdicts are kept by
+     * key-cert, so they are only reused if the key-cert is unchanged when authenticating. Problems are not reported
+     * here, but when authenticating.
+     */
+    @Override
+    public void preverify(final UpdateContext updateContext, final Collection<PgpCredential> offeredCredentials, final PgpCredential knownCredential) {
+        if (offeredCredentials.isEmpty()) {
+            return;
+        }
+
+        final RpslObject keyCert;
+        final PgpPublicKeyWrapper pgpPublicKeyWrapper;
+        try {
+            keyCert = rpslObjectDao.getByKey(ObjectType.KEY_CERT, knownCredential.getKeyId());
+            pgpPublicKeyWrapper = keyWrappers.get(keyCert, () -> PgpPublicKeyWrapper.parse(keyCert));
+        } catch (ExecutionException | RuntimeException e) {
+            return;
+        }
+
+        for (final PgpCredential offeredCredential : offeredCredentials) {
+            if (updateContext.getSignatureVerdict(keyCert, offeredCredential).isPresent()) {
+                continue;
+            }
+
+            try {
+                final boolean valid = offeredCredential.verify(pgpPublicKeyWrapper.getPublicKey()) || verifyAny(offeredCredential, pgpPublicKeyWrapper.getSubKeys());
+                updateContext.addSignatureVerdict(keyCert, offeredCredential, valid);
+            } catch (IllegalArgumentException ignored) {
+                // reported when authenticating
+            }
+        }
+    }
+
+    private static boolean verifyAny(final PgpCredential pgpCredential, final List<PGPPublicKey> pgpPublicKeys) {
+        for (final PGPPublicKey pgpPublicKey : pgpPublicKeys) {
+            if (pgpCredential.verify(pgpPublicKey)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private boolean verifySignedMessage(final PreparedUpdate update, final UpdateContext updateContext, final PgpCredential offeredCredential, final PgpCredential knownCredential) {
         final String keyId = knownCredential.getKeyId();
-        final PgpPublicKeyWrapper pgpPublicKeyWrapper = getKeyWrapper(update, updateContext, keyId);
+        final RpslObject keyCert = getKeyCert(update, updateContext, keyId);
+        if (keyCert == null) {
+            return false;
+        }
+
+        final PgpPublicKeyWrapper pgpPublicKeyWrapper = getKeyWrapper(update, updateContext, keyId, keyCert);
         if (pgpPublicKeyWrapper == null) {
             return false;
         }
 
-        if (verify(update, offeredCredential, pgpPublicKeyWrapper.getPublicKey()) || verify(update, offeredCredential, pgpPublicKeyWrapper.getSubKeys())) {
+        if (verify(update, updateContext, offeredCredential, keyCert, pgpPublicKeyWrapper)) {
             log(update, String.format("Validated %s with keyId %s", update.getFormattedKey(), keyId));
 
             if (pgpPublicKeyWrapper.isExpired(dateTimeProvider)) {
@@ -92,6 +152,18 @@ class PgpCredentialValidator implements CredentialValidator<PgpCredential, PgpCr
         return false;
     }
 
+    // the same signed message is often checked against the same key-cert for every object in a request
+    private boolean verify(final PreparedUpdate update, final UpdateContext updateContext, final PgpCredential pgpCredential, final RpslObject keyCert, final PgpPublicKeyWrapper pgpPublicKeyWrapper) {
+        final Optional<Boolean> verdict = updateContext.getSignatureVerdict(keyCert, pgpCredential);
+        if (verdict.isPresent()) {
+            return verdict.get();
+        }
+
+        final boolean valid = verify(update, pgpCredential, pgpPublicKeyWrapper.getPublicKey()) || verify(update, pgpCredential, pgpPublicKeyWrapper.getSubKeys());
+        updateContext.addSignatureVerdict(keyCert, pgpCredential, valid);
+        return valid;
+    }
+
     private boolean verify(final PreparedUpdate update, final PgpCredential pgpCredential, final PGPPublicKey pgpPublicKey) {
         try {
             return pgpCredential.verify(pgpPublicKey);
@@ -112,13 +184,32 @@ class PgpCredentialValidator implements CredentialValidator<PgpCredential, PgpCr
     }
 
     @CheckForNull
-    protected PgpPublicKeyWrapper getKeyWrapper(final PreparedUpdate update, final UpdateContext updateContext, final String keyId) {
+    private RpslObject getKeyCert(final PreparedUpdate update, final UpdateContext updateContext, final String keyId) {
         try {
-            final RpslObject object = rpslObjectDao.getByKey(ObjectType.KEY_CERT, keyId);
-            return PgpPublicKeyWrapper.parse(object);
+            return rpslObjectDao.getByKey(ObjectType.KEY_CERT, keyId);
         } catch (EmptyResultDataAccessException e) {
             updateContext.addMessage(update, UpdateMessages.keyNotFound(keyId));
             log(update, String.format("Unable to find %s: %s", keyId, e.getMessage()));
+        } catch (RuntimeException e) {
+            updateContext.addMessage(update, UpdateMessages.keyInvalid(keyId));
+            log(update, String.format("Unable to read %s for PGP signature: %s", keyId, e.getMessage()));
+            logException(update, e);
+        }
+
+        return null;
+    }
+
+    @CheckForNull
+    protected PgpPublicKeyWrapper getKeyWrapper(final PreparedUpdate update, final UpdateContext updateContext, final String keyId, final RpslObject keyCert) {
+        final PgpPublicKeyWrapper cached = keyWrappers.getIfPresent(keyCert);
+        if (cached != null) {
+            return cached;
+        }
+
+        try {
+            final PgpPublicKeyWrapper pgpPublicKeyWrapper = PgpPublicKeyWrapper.parse(keyCert);
+            keyWrappers.put(keyCert, pgpPublicKeyWrapper);
+            return pgpPublicKeyWrapper;
         } catch (RuntimeException e) {
             updateContext.addMessage(update, UpdateMessages.keyInvalid(keyId));
             log(update, String.format("Unable to parse %s for PGP signature: %s", keyId, e.getMessage()));
@@ -35,6 +35,8 @@ public class UpdateContext {
     private final Map<Update, Context> contexts = Maps.newLinkedHashMap();
     private final Map<DnsCheckRequest, DnsCheckResponse> dnsCheckResponses = Maps.newHashMap();
     private final Map<String, String> ssoTranslation = Maps.newHashMap();
+    private final Map<Credential, Map<Credential, Boolean>> credentialVerdicts = Maps.newHashMap();
+    private final Map<RpslObject, Map<Credential, Boolean>> signatureVerdicts = Maps.newHashMap();
     private final LoggerContext loggerContext;
 
     private int nrSinceRestart;
@@ -103,6 +105,30 @@ public class UpdateContext {
         return dnsCheckResponses.get(dnsCheckRequest);
     }
 
+    public void addCredentialVerdict(final Credential knownCredential, final Credential offeredCredential, final boolean valid) {
+        credentialVerdicts.computeIfAbsent(knownCredential, key -> Maps.newHashMap()).put(offeredCredential, valid);
+    }
+
+    /**
+     * @return whether the offered credential was verified against the known credential, or empty if it was not verified.
+     */
+    public Optional<Boolean> getCredentialVerdict(final Credential knownCredential, final Credential offeredCredential) {
+        final Map<Credential, Boolean> verdicts = credentialVerdicts.get(knownCredential);
+        return verdicts == null ? Optional.empty() : Optional.ofNullable(verdicts.get(offeredCredential));
+    }
+
+    public void addSignatureVerdict(final RpslObject keyCert, final Credential offeredCredential, final boolean valid) {
+        signatureVerdicts.computeIfAbsent(keyCert, key -> Maps.newHashMap()).put(offeredCredential, valid);
+    }
+
+    /**
+     * @return whether the offered credential was signed with a key in the key-cert, or empty if it was not verified.
+     */
+    public Optional<Boolean> getSignatureVerdict(final RpslObject keyCert, final Credential offeredCredential) {
+        final Map<Credential, Boolean> verdicts = signatureVerdicts.get(keyCert);
+        return verdicts == null ? Optional.empty() : Optional.ofNullable(verdicts.get(offeredCredential));
+    }
+
     public void addMessage(final UpdateContainer updateContainer, final Message message) {
         getOrCreateContext(updateContainer).objectMessages.addMessage(message);
         loggerContext.logMessage(updateContainer, message);
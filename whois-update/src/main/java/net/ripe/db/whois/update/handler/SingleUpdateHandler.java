@@ -1,9 +1,11 @@
 package net.ripe.db.whois.update.handler;
 
+import com.google.common.collect.Sets;
 import net.ripe.db.whois.common.dao.RpslObjectDao;
 import net.ripe.db.whois.common.dao.UpdateLockDao;
 import net.ripe.db.whois.common.domain.CIString;
 import net.ripe.db.whois.common.iptree.IpTreeUpdater;
+import net.ripe.db.whois.common.rpsl.AttributeType;
 import net.ripe.db.whois.common.rpsl.AttributeSanitizer;
 import net.ripe.db.whois.common.rpsl.ObjectMessages;
 import net.ripe.db.whois.common.rpsl.ObjectTemplate;
@@ -11,6 +13,7 @@ import net.ripe.db.whois.common.rpsl.ObjectType;
 import net.ripe.db.whois.common.rpsl.RpslObject;
 import net.ripe.db.whois.common.rpsl.RpslObjectFilter;
 import net.ripe.db.whois.update.authentication.Authenticator;
+import net.ripe.db.whois.update.authentication.credential.AuthenticationModule;
 import net.ripe.db.whois.update.domain.Action;
 import net.ripe.db.whois.update.domain.Keyword;
 import net.ripe.db.whois.update.domain.Operation;
@@ -35,7 +38,9 @@ import org.springframework.transaction.annotation.Transactional;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
 
 
 @Component
@@ -46,6 +51,7 @@ public class SingleUpdateHandler {
     private final RpslObjectDao rpslObjectDao;
     private final UpdateLockDao updateLockDao;
     private final Authenticator authenticator;
+    private final AuthenticationModule authenticationModule;
     private final UpdateObjectHandler updateObjectHandler;
     private final IpTreeUpdater ipTreeUpdater;
     private final SsoTranslator ssoTranslator;
@@ -56,12 +62,17 @@ public class SingleUpdateHandler {
     @Value("#{T(net.ripe.db.whois.common.domain.CIString).ciString('${whois.nonauth.source}')}")
     private CIString nonAuthSource;
 
+    // check and authenticate as much as possible before taking the update lock
+    @Value("${whois.update.lock.optimistic:false}")
+    private boolean optimisticLocking;
+
     @Autowired
     public SingleUpdateHandler(final List<AttributeGenerator> attributeGenerators,
                                final Transformer[] transformers,
                                final AttributeSanitizer attributeSanitizer,
                                final UpdateLockDao updateLockDao,
                                final Authenticator authenticator,
+                               final AuthenticationModule authenticationModule,
                                final UpdateObjectHandler updateObjectHandler,
                                final RpslObjectDao rpslObjectDao,
                                final IpTreeUpdater ipTreeUpdater,
@@ -74,16 +85,21 @@ public class SingleUpdateHandler {
         this.rpslObjectDao = rpslObjectDao;
         this.updateLockDao = updateLockDao;
         this.authenticator = authenticator;
+        this.authenticationModule = authenticationModule;
         this.updateObjectHandler = updateObjectHandler;
         this.ipTreeUpdater = ipTreeUpdater;
         this.ssoTranslator = ssoTranslator;
     }
 
+    /**
+     * Handle a single update, holding the global update lock from reading the original object until commit.
+     * <p/>
+     * With optimistic locking, the original object is read and the submitted object is checked and its credentials
+     * verified before the lock is taken, and invalid updates fail without taking it. Once locked, the original object
+     * is read again, and the update is prepared again if it changed in the meantime.
+     */
     @Transactional(isolation = Isolation.READ_COMMITTED, propagation = Propagation.REQUIRED)
     public void handle(final Origin origin, final Keyword keyword, final Update update, final UpdateContext updateContext) {
-        updateLockDao.setUpdateLock();
-        ipTreeUpdater.updateTransactional();
-
         if (updateContext.isDryRun()) {
             updateContext.addMessage(update, UpdateMessages.dryRunNotice());
         }
@@ -91,29 +107,34 @@ public class SingleUpdateHandler {
         updateContext.setOrigin(update, origin);
 
         final OverrideOptions overrideOptions = OverrideOptions.parse(update, updateContext);
-        final RpslObject originalObject = getOriginalObject(update, updateContext, overrideOptions);
-        RpslObject updatedObject = getUpdatedObject(update, updateContext, keyword);
-
-        Action action = getAction(originalObject, updatedObject, update, updateContext, keyword, overrideOptions);
-        updateContext.setAction(update, action);
 
-        if (action == Action.NOOP) {
-            updatedObject = originalObject;
+        // an object id override can report on the original object, which is then only read once
+        final boolean optimistic = optimisticLocking && !overrideOptions.isObjectIdOverride();
+        if (!optimistic) {
+            lock();
         }
 
-        if (action == Action.DELETE && originalObject == null) {
-            updateContext.addMessage(update, UpdateMessages.objectNotFound(update.getSubmittedObject().getFormattedKey()));
-        }
+        RpslObject originalObject = getOriginalObject(update, updateContext, overrideOptions);
+        final RpslObject updatedObject = getUpdatedObject(update, updateContext, keyword);
 
-        // up to this point, updatedObject could have structural+syntax errors (unknown attributes, etc...), bail out if so
-        PreparedUpdate preparedUpdate = new PreparedUpdate(update, originalObject, updatedObject, action, overrideOptions);
-        updateContext.setPreparedUpdate(preparedUpdate);
-        if (updateContext.hasErrors(update)) {
-            throw new UpdateFailedException();
+        PreparedUpdate preparedUpdate = prepareUpdate(originalObject, updatedObject, update, updateContext, keyword, overrideOptions);
+
+        if (optimistic) {
+            preverifyCredentials(preparedUpdate, updateContext);
+
+            lock();
+
+            final RpslObject currentObject = getOriginalObject(update, updateContext, overrideOptions);
+            if (!isSameVersion(originalObject, currentObject)) {
+                originalObject = currentObject;
+                preparedUpdate = prepareUpdate(originalObject, updatedObject, update, updateContext, keyword, overrideOptions);
+            }
         }
 
+        Action action = preparedUpdate.getAction();
+
         // apply object transformation
-        RpslObject updatedObjectWithAutoKeys = updatedObject;
+        RpslObject updatedObjectWithAutoKeys = preparedUpdate.getUpdatedObject();
         for (Transformer transformer : transformers) {
             updatedObjectWithAutoKeys = transformer.transform(updatedObjectWithAutoKeys, update, updateContext, action);
         }
@@ -156,6 +177,68 @@ public class SingleUpdateHandler {
         }
     }
 
+    /*
+     * The attributes include the last-modified timestamp, and a deleted and re-created object has a new object id.
+     */
+    private static boolean isSameVersion(@Nullable final RpslObject originalObject, @Nullable final RpslObject currentObject) {
+        if (originalObject == null || currentObject == null) {
+            return originalObject == currentObject;
+        }
+
+        return originalObject.getObjectId() == currentObject.getObjectId() && originalObject.equals(currentObject);
+    }
+
+    private void lock() {
+        updateLockDao.setUpdateLock();
+        ipTreeUpdater.updateTransactional();
+    }
+
+    // up to this point, updatedObject could have structural+syntax errors (unknown attributes, etc...), bail out if so
+    private PreparedUpdate prepareUpdate(@Nullable final RpslObject originalObject,
+                                         final RpslObject updatedObject,
+                                         final Update update,
+                                         final UpdateContext updateContext,
+                                         final Keyword keyword,
+                                         final OverrideOptions overrideOptions) {
+        final Action action = getAction(originalObject, updatedObject, update, updateContext, keyword, overrideOptions);
+        updateContext.setAction(update, action);
+
+        if (action == Action.DELETE && originalObject == null) {
+            updateContext.addMessage(update, UpdateMessages.objectNotFound(update.getSubmittedObject().getFormattedKey()));
+        }
+
+        final PreparedUpdate preparedUpdate = new PreparedUpdate(update, originalObject, action == Action.NOOP ? originalObject : updatedObject, action, overrideOptions);
+        updateContext.setPreparedUpdate(preparedUpdate);
+        if (updateContext.hasErrors(update)) {
+            throw new UpdateFailedException();
+        }
+
+        return preparedUpdate;
+    }
+
+    /**
+     * Verify the offered credentials against the maintainers of the object, as expensive password hashes and PGP
+     * signatures are best not checked while holding the update lock. Authentication still runs under the lock, reusing these verdicts.
+     */
+    private void preverifyCredentials(final PreparedUpdate preparedUpdate, final UpdateContext updateContext) {
+        final Set<CIString> maintainerKeys = Sets.newLinkedHashSet();
+        final Set<RpslObject> maintainers = Sets.newLinkedHashSet();
+
+        for (final RpslObject rpslObject : Arrays.asList(preparedUpdate.getReferenceObject(), preparedUpdate.getUpdatedObject())) {
+            if (rpslObject == null) {
+                continue;
+            }
+
+            maintainerKeys.addAll(rpslObject.getValuesForAttribute(AttributeType.MNT_BY));
+            if (rpslObject.getType() == ObjectType.MNTNER) {
+                maintainers.add(rpslObject);
+            }
+        }
+
+        maintainers.addAll(rpslObjectDao.getByKeys(ObjectType.MNTNER, maintainerKeys));
+        authenticationModule.preverify(preparedUpdate, updateContext, maintainers);
+    }
+
     @CheckForNull
     private RpslObject getOriginalObject(final Update update, final UpdateContext updateContext, final OverrideOptions overrideOptions) {
         RpslObject originalObject;
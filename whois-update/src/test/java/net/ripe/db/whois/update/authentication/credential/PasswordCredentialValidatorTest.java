@@ -12,10 +12,13 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.util.Collections;
+import java.util.Optional;
 
 import static org.hamcrest.Matchers.is;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
 public class PasswordCredentialValidatorTest {
@@ -47,6 +50,25 @@ public class PasswordCredentialValidatorTest {
         return subject.hasValidCredential(update, updateContext, Collections.singleton(new PasswordCredential(offered)), new PasswordCredential(known));
     }
 
+    @Test
+    public void preverify_keeps_verdicts() {
+        final PasswordCredential offered = new PasswordCredential("emptypassword");
+        final PasswordCredential known = new PasswordCredential("MD5-PW $1$/7f2XnzQ$p5ddbI7SXq4z4yNrObFS/0");
+
+        subject.preverify(updateContext, Collections.singleton(offered), known);
+
+        verify(updateContext).addCredentialVerdict(known, offered, true);
+    }
+
+    @Test
+    public void authenticate_uses_preverified_verdict() {
+        final PasswordCredential offered = new PasswordCredential("emptypassword");
+        final PasswordCredential known = new PasswordCredential("MD5-PW $1$/7f2XnzQ$p5ddbI7SXq4z4yNrObFS/0");
+        when(updateContext.getCredentialVerdict(known, offered)).thenReturn(Optional.of(false));
+
+        assertThat(subject.hasValidCredential(update, updateContext, Collections.singleton(offered), known), is(false));
+    }
+
     @Test
     public void supports() {
         assertEquals(PasswordCredential.class, subject.getSupportedCredentials());
@@ -17,9 +17,9 @@ import net.ripe.db.whois.update.domain.Update;
 import net.ripe.db.whois.update.domain.UpdateContext;
 import net.ripe.db.whois.update.log.LoggerContext;
 import org.hamcrest.core.Is;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.dao.EmptyResultDataAccessException;
@@ -28,6 +28,7 @@ import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.Arrays;
+import java.util.Optional;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
@@ -35,7 +36,9 @@ import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -46,7 +49,7 @@ public class PgpCredentialValidatorTest {
     @Mock private RpslObjectDao rpslObjectDao;
     @Mock private DateTimeProvider dateTimeProvider;
     @Mock private LoggerContext loggerContext;
-    @InjectMocks private PgpCredentialValidator subject;
+    private PgpCredentialValidator subject;
 
     private static final RpslObject KEYCERT_OBJECT = RpslObject.parse("" +
             "key-cert:       PGPKEY-5763950D\n" +
@@ -87,6 +90,39 @@ public class PgpCredentialValidatorTest {
             "mnt-by:         TEST-MNT\n" +
             "source:         RIPE\n");
 
+    private static final String SIGNED_DELETE =
+            "-----BEGIN PGP SIGNED MESSAGE-----\n" +
+            "Hash: SHA1\n" +
+            "\n" +
+            "inetnum:        213.168.127.96 - 213.168.127.10\n" +
+            "netname:        NETNAME\n" +
+            "descr:          Description\n" +
+            "country:        DE\n" +
+            "admin-c:        TEST-RIPE\n" +
+            "tech-c:         TEST-RIPE\n" +
+            "status:         ASSIGNED PA\n" +
+            "mnt-by:         TEST-MNT\n" +
+            "mnt-lower:      TEST-MNT\n" +
+            "source:         RIPE\n" +
+            "delete:         reason\n" +
+            "-----BEGIN PGP SIGNATURE-----\n" +
+            "Version: GnuPG v1\n" +
+            "Comment: GPGTools - http://gpgtools.org\n" +
+            "\n" +
+            "iQEcBAEBAgAGBQJWTc5TAAoJELvMuy1XY5UNorkIAJsWhjbTcPBLCtug50Hkp0ty\n" +
+            "6hMMVWfIS92fGFzpUKkS3fTnUXkTwsaF0+KQRSHEa6pobMXsP5MCl0SPJaVY4FTz\n" +
+            "CtlpTHQ1avld/o281Y44wGmN/JFcGml8cnpY9/wseNS2OogemJ1ZQdd9Y4zNuCNX\n" +
+            "YS5y2jXLQyuLEzmhg423+b4IqeVZBHdWX43tituzk5phy9U2ZuVAnxLQWvNt0QZC\n" +
+            "v6g0Rig345U3rn0aRCAAFz6C/Al1QbRt5dsH3vQ/lQfiCBoR0A1x9ttsUkB7oCdJ\n" +
+            "P4eeAXVVIZIqCPKBmNo2fRoDJW5Ly1YEAIASp1pjh0h/kDfJwPQc+mqOQ1CRwgQ=\n" +
+            "=KPdC\n" +
+            "-----END PGP SIGNATURE-----";
+
+    @BeforeEach
+    public void setup() {
+        subject = new PgpCredentialValidator(rpslObjectDao, dateTimeProvider, loggerContext, 10);
+    }
+
     @Test
     public void authenticateExistingRpslObject() {
         when(dateTimeProvider.getCurrentDateTime()).thenReturn(LocalDateTime.now());
@@ -213,6 +249,62 @@ public class PgpCredentialValidatorTest {
         assertThat(update.getEffectiveCredentialType(), Is.is(Update.EffectiveCredentialType.PGP));
     }
 
+    @Test
+    public void signatureVerdictReusedWithinRequest() {
+        when(dateTimeProvider.getCurrentDateTime()).thenReturn(LocalDateTime.now());
+
+        final PgpCredential offeredCredential = PgpCredential.createOfferedCredential(SIGNED_DELETE);
+        final PgpCredential knownCredential = PgpCredential.createKnownCredential("PGPKEY-5763950D");
+        final UpdateContext requestContext = new UpdateContext(loggerContext);
+        final Update firstUpdate = createUpdate();
+        final Update secondUpdate = createUpdate();
+        when(rpslObjectDao.getByKey(ObjectType.KEY_CERT, KEYCERT_OBJECT.getKey().toString())).thenReturn(KEYCERT_OBJECT);
+
+        when(preparedUpdate.getUpdate()).thenReturn(firstUpdate);
+        assertThat(subject.hasValidCredential(preparedUpdate, requestContext, Sets.newHashSet(offeredCredential), knownCredential), is(true));
+        assertThat(requestContext.getSignatureVerdict(KEYCERT_OBJECT, offeredCredential), is(Optional.of(true)));
+
+        when(preparedUpdate.getUpdate()).thenReturn(secondUpdate);
+        assertThat(subject.hasValidCredential(preparedUpdate, requestContext, Sets.newHashSet(offeredCredential), knownCredential), is(true));
+
+        // the key-cert is read again for every update, so changes to it are seen
+        verify(rpslObjectDao, times(2)).getByKey(ObjectType.KEY_CERT, KEYCERT_OBJECT.getKey().toString());
+        assertThat(secondUpdate.getEffectiveCredential(), is(knownCredential.getKeyId()));
+    }
+
+    @Test
+    public void preverifyKeepsSignatureVerdictForKeyCert() {
+        when(dateTimeProvider.getCurrentDateTime()).thenReturn(LocalDateTime.now());
+        when(preparedUpdate.getUpdate()).thenReturn(createUpdate());
+        when(rpslObjectDao.getByKey(ObjectType.KEY_CERT, KEYCERT_OBJECT.getKey().toString())).thenReturn(KEYCERT_OBJECT);
+
+        final PgpCredential offeredCredential = PgpCredential.createOfferedCredential(SIGNED_DELETE);
+        final PgpCredential knownCredential = PgpCredential.createKnownCredential("PGPKEY-5763950D");
+        final UpdateContext requestContext = new UpdateContext(loggerContext);
+
+        subject.preverify(requestContext, Sets.newHashSet(offeredCredential), knownCredential);
+
+        assertThat(requestContext.getSignatureVerdict(KEYCERT_OBJECT, offeredCredential), is(Optional.of(true)));
+        assertThat(subject.hasValidCredential(preparedUpdate, requestContext, Sets.newHashSet(offeredCredential), knownCredential), is(true));
+
+        // a key-cert changed before authentication is verified again
+        final RpslObject changedKeyCert = new RpslObjectBuilder(KEYCERT_OBJECT).addAttributeSorted(new RpslAttribute(AttributeType.REMARKS, "changed")).get();
+        assertThat(requestContext.getSignatureVerdict(changedKeyCert, offeredCredential), is(Optional.empty()));
+    }
+
+    @Test
+    public void preverifyKeycertNotFound() {
+        when(rpslObjectDao.getByKey(ObjectType.KEY_CERT, "PGPKEY-5763950D")).thenThrow(new EmptyResultDataAccessException(1));
+
+        final PgpCredential offeredCredential = PgpCredential.createOfferedCredential(SIGNED_DELETE);
+        final PgpCredential knownCredential = PgpCredential.createKnownCredential("PGPKEY-5763950D");
+
+        subject.preverify(updateContext, Sets.newHashSet(offeredCredential), knownCredential);
+
+        // reported when authenticating
+        verifyNoInteractions(updateContext, loggerContext);
+    }
+
     @Test
     public void authenticateSignatureVerifyFailed() throws Exception {
         final PgpCredential offeredCredential = PgpCredential.createOfferedCredential("" +
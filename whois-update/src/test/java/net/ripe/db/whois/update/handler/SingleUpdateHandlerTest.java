@@ -0,0 +1,167 @@
+package net.ripe.db.whois.update.handler;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import net.ripe.db.whois.common.dao.RpslObjectDao;
+import net.ripe.db.whois.common.dao.UpdateLockDao;
+import net.ripe.db.whois.common.iptree.IpTreeUpdater;
+import net.ripe.db.whois.common.rpsl.AttributeSanitizer;
+import net.ripe.db.whois.common.rpsl.ObjectMessages;
+import net.ripe.db.whois.common.rpsl.ObjectType;
+import net.ripe.db.whois.common.rpsl.RpslObject;
+import net.ripe.db.whois.update.authentication.Authenticator;
+import net.ripe.db.whois.update.authentication.credential.AuthenticationModule;
+import net.ripe.db.whois.update.domain.Credentials;
+import net.ripe.db.whois.update.domain.Keyword;
+import net.ripe.db.whois.update.domain.Operation;
+import net.ripe.db.whois.update.domain.Origin;
+import net.ripe.db.whois.update.domain.OverrideCredential;
+import net.ripe.db.whois.update.domain.Paragraph;
+import net.ripe.db.whois.update.domain.PreparedUpdate;
+import net.ripe.db.whois.update.domain.Update;
+import net.ripe.db.whois.update.domain.UpdateContext;
+import net.ripe.db.whois.update.handler.transform.Transformer;
+import net.ripe.db.whois.update.sso.SsoTranslator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static net.ripe.db.whois.common.domain.CIString.ciString;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class SingleUpdateHandlerTest {
+    private static final String ORIGINAL = "mntner: TEST-MNT\nremarks: original";
+    private static final String UPDATED = "mntner: TEST-MNT\nremarks: updated";
+    private static final String CHANGED = "mntner: TEST-MNT\nremarks: changed";
+
+    @Mock AttributeSanitizer attributeSanitizer;
+    @Mock UpdateLockDao updateLockDao;
+    @Mock Authenticator authenticator;
+    @Mock AuthenticationModule authenticationModule;
+    @Mock UpdateObjectHandler updateObjectHandler;
+    @Mock RpslObjectDao rpslObjectDao;
+    @Mock IpTreeUpdater ipTreeUpdater;
+    @Mock SsoTranslator ssoTranslator;
+    @Mock UpdateContext updateContext;
+    @Mock Origin origin;
+
+    private Update update;
+    private SingleUpdateHandler subject;
+
+    @BeforeEach
+    public void setUp() {
+        subject = new SingleUpdateHandler(Lists.newArrayList(), new Transformer[0], attributeSanitizer, updateLockDao, authenticator,
+                authenticationModule, updateObjectHandler, rpslObjectDao, ipTreeUpdater, ssoTranslator);
+        ReflectionTestUtils.setField(subject, "optimisticLocking", true);
+
+        update = new Update(new Paragraph(UPDATED), Operation.UNSPECIFIED, null, RpslObject.parse(UPDATED));
+
+        lenient().when(updateContext.getMessages(update)).thenReturn(new ObjectMessages());
+        lenient().when(attributeSanitizer.sanitize(any(RpslObject.class), any(ObjectMessages.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        lenient().when(attributeSanitizer.sanitizeKey(any(RpslObject.class))).thenAnswer(invocation -> ((RpslObject) invocation.getArgument(0)).getKey());
+        lenient().when(ssoTranslator.translateFromCacheAuthToUsername(any(UpdateContext.class), any(RpslObject.class))).thenAnswer(invocation -> invocation.getArgument(1));
+        lenient().when(updateObjectHandler.validateBusinessRules(any(PreparedUpdate.class), eq(updateContext))).thenReturn(true);
+    }
+
+    @Test
+    public void optimistic_checks_and_preverifies_before_lock() {
+        when(rpslObjectDao.getByKey(ObjectType.MNTNER, ciString("TEST-MNT"))).thenReturn(RpslObject.parse(1, ORIGINAL));
+
+        subject.handle(origin, Keyword.NONE, update, updateContext);
+
+        final InOrder inOrder = inOrder(rpslObjectDao, authenticationModule, updateLockDao, updateObjectHandler);
+        inOrder.verify(rpslObjectDao).getByKey(ObjectType.MNTNER, ciString("TEST-MNT"));
+        inOrder.verify(authenticationModule).preverify(any(PreparedUpdate.class), eq(updateContext), anyCollection());
+        inOrder.verify(updateLockDao).setUpdateLock();
+        inOrder.verify(rpslObjectDao).getByKey(ObjectType.MNTNER, ciString("TEST-MNT"));
+        inOrder.verify(updateObjectHandler).execute(any(PreparedUpdate.class), eq(updateContext));
+        assertThat(executed().getReferenceObject(), is(RpslObject.parse(1, ORIGINAL)));
+    }
+
+    @Test
+    public void optimistic_fails_without_lock() {
+        when(rpslObjectDao.getByKey(ObjectType.MNTNER, ciString("TEST-MNT"))).thenReturn(RpslObject.parse(1, ORIGINAL));
+        when(updateContext.hasErrors(update)).thenReturn(true);
+
+        assertThrows(UpdateFailedException.class, () -> subject.handle(origin, Keyword.NONE, update, updateContext));
+
+        verify(updateLockDao, never()).setUpdateLock();
+        verify(ipTreeUpdater, never()).updateTransactional();
+        verify(authenticationModule, never()).preverify(any(PreparedUpdate.class), eq(updateContext), anyCollection());
+    }
+
+    @Test
+    public void optimistic_prepares_again_when_object_changed() {
+        when(rpslObjectDao.getByKey(ObjectType.MNTNER, ciString("TEST-MNT")))
+                .thenReturn(RpslObject.parse(1, ORIGINAL))
+                .thenReturn(RpslObject.parse(1, CHANGED));
+
+        subject.handle(origin, Keyword.NONE, update, updateContext);
+
+        assertThat(executed().getReferenceObject(), is(RpslObject.parse(1, CHANGED)));
+    }
+
+    @Test
+    public void optimistic_prepares_again_when_object_recreated_with_same_attributes() {
+        when(rpslObjectDao.getByKey(ObjectType.MNTNER, ciString("TEST-MNT")))
+                .thenReturn(RpslObject.parse(1, ORIGINAL))
+                .thenReturn(RpslObject.parse(2, ORIGINAL));
+
+        subject.handle(origin, Keyword.NONE, update, updateContext);
+
+        assertThat(executed().getReferenceObject().getObjectId(), is(2));
+    }
+
+    @Test
+    public void object_id_override_locks_before_reading() {
+        final OverrideCredential overrideCredential = OverrideCredential.parse("user,password,{oid=1}");
+        update = new Update(new Paragraph(UPDATED, new Credentials(Sets.newHashSet(overrideCredential))), Operation.UNSPECIFIED, null, RpslObject.parse(UPDATED));
+        lenient().when(updateContext.getMessages(update)).thenReturn(new ObjectMessages());
+        when(rpslObjectDao.getById(1)).thenReturn(RpslObject.parse(1, ORIGINAL));
+
+        subject.handle(origin, Keyword.NONE, update, updateContext);
+
+        final InOrder inOrder = inOrder(updateLockDao, rpslObjectDao);
+        inOrder.verify(updateLockDao).setUpdateLock();
+        inOrder.verify(rpslObjectDao, times(1)).getById(1);
+        verify(authenticationModule, never()).preverify(any(PreparedUpdate.class), eq(updateContext), anyCollection());
+        assertThat(executed().getReferenceObject(), is(RpslObject.parse(1, ORIGINAL)));
+    }
+
+    @Test
+    public void pessimistic_locks_before_reading() {
+        ReflectionTestUtils.setField(subject, "optimisticLocking", false);
+        when(rpslObjectDao.getByKey(ObjectType.MNTNER, ciString("TEST-MNT"))).thenReturn(RpslObject.parse(1, ORIGINAL));
+
+        subject.handle(origin, Keyword.NONE, update, updateContext);
+
+        final InOrder inOrder = inOrder(updateLockDao, rpslObjectDao);
+        inOrder.verify(updateLockDao).setUpdateLock();
+        inOrder.verify(rpslObjectDao, times(1)).getByKey(ObjectType.MNTNER, ciString("TEST-MNT"));
+        verify(authenticationModule, never()).preverify(any(PreparedUpdate.class), eq(updateContext), anyCollection());
+        assertThat(executed().getReferenceObject(), is(RpslObject.parse(1, ORIGINAL)));
+    }
+
+    private PreparedUpdate executed() {
+        final ArgumentCaptor<PreparedUpdate> preparedUpdate = ArgumentCaptor.forClass(PreparedUpdate.class);
+        verify(updateObjectHandler, times(1)).execute(preparedUpdate.capture(), eq(updateContext));
+        return preparedUpdate.getValue();
+    }
+}